@@ -0,0 +1,72 @@
+#!/usr/bin/env bash
+#
+# Measures time from JVM launch to the first successful GET /api/users, for the plain fat jar and
+# for the AOT-processed, CDS-backed layout produced by the fast-startup profile.
+#
+# Usage: scripts/startup-benchmark.sh [runs]
+# Requires a reachable database as configured in application.properties, curl and python3.
+
+set -euo pipefail
+
+RUNS="${1:-5}"
+PORT="${PORT:-8080}"
+BASE_URL="http://localhost:${PORT}"
+WORK_DIR="target/startup-benchmark"
+JAR="target/magmutual-takehome-project-0.0.1-SNAPSHOT.jar"
+
+cd "$(dirname "$0")/.."
+
+build_variants() {
+    mvn -B -q package -DskipTests
+    mkdir -p "$WORK_DIR"
+    cp "$JAR" "$WORK_DIR/plain.jar"
+
+    mvn -B -q package -DskipTests -Pfast-startup
+    rm -rf "$WORK_DIR/aot"
+    java -Djarmode=tools -jar "$JAR" extract --destination "$WORK_DIR/aot"
+    # Training run: refresh the context without touching the database, then dump the loaded classes
+    (cd "$WORK_DIR/aot" && java -XX:ArchiveClassesAtExit=app.jsa -Dspring.aot.enabled=true \
+        -Dspring.context.exit=onRefresh \
+        -Dspring.jpa.hibernate.ddl-auto=none \
+        -Dspring.jpa.properties.hibernate.boot.allow_jdbc_metadata_access=false \
+        -jar magmutual-takehome-project-0.0.1-SNAPSHOT.jar > training.log 2>&1)
+}
+
+# Prints milliseconds from launch until GET /api/users returns 200
+time_to_first_response() {
+    local start end token pid
+    start=$(date +%s%N)
+    "$@" > "$WORK_DIR/run.log" 2>&1 &
+    pid=$!
+    token=""
+    until [ -n "$token" ]; do
+        token=$(curl -s -X POST "$BASE_URL/api/auth/authenticate" -H 'Content-Type: application/json' \
+            -d '{"username":"user","password":"userpassword"}' 2>/dev/null \
+            | python3 -c 'import json,sys; print(json.load(sys.stdin).get("token",""))' 2>/dev/null || true)
+        [ -n "$token" ] || sleep 0.05
+    done
+    until [ "$(curl -s -o /dev/null -w '%{http_code}' -H "Authorization: Bearer $token" "$BASE_URL/api/users")" = "200" ]; do
+        sleep 0.05
+    done
+    end=$(date +%s%N)
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    echo $(( (end - start) / 1000000 ))
+}
+
+run_variant() {
+    local name="$1"
+    shift
+    local total=0 ms
+    for i in $(seq "$RUNS"); do
+        ms=$(time_to_first_response "$@")
+        total=$((total + ms))
+        echo "$name run $i: ${ms} ms"
+    done
+    echo "$name average: $((total / RUNS)) ms"
+}
+
+build_variants
+run_variant "plain" java -jar "$WORK_DIR/plain.jar"
+run_variant "aot+cds" java -XX:SharedArchiveFile="$WORK_DIR/aot/app.jsa" -Dspring.aot.enabled=true \
+    -jar "$WORK_DIR/aot/magmutual-takehome-project-0.0.1-SNAPSHOT.jar"
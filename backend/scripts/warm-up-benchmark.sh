@@ -0,0 +1,96 @@
+#!/usr/bin/env bash
+#
+# Measures request latency during the first minute after an instance reports ready, with the JIT warm-up
+# stage disabled and enabled. Each run launches the jar, waits for GET /api/health/readiness to return 200,
+# then drives GET /api/users and GET /api/users/{id} from a few clients and prints p50/p99/max latencies
+# for the whole window and for its first ten seconds.
+#
+# Usage: scripts/warm-up-benchmark.sh [runs] [seconds]
+# Requires a reachable database as configured in application.properties, curl and python3.
+
+set -euo pipefail
+
+RUNS="${1:-3}"
+SECONDS_PER_RUN="${2:-60}"
+CLIENTS="${CLIENTS:-4}"
+PORT="${PORT:-8080}"
+BASE_URL="http://localhost:${PORT}"
+WORK_DIR="target/warm-up-benchmark"
+JAR="target/magmutual-takehome-project-0.0.1-SNAPSHOT.jar"
+
+cd "$(dirname "$0")/.."
+
+# Drives the instance for the given number of seconds and prints its latency percentiles
+drive() {
+    python3 - "$BASE_URL" "$1" "$CLIENTS" <<'EOF'
+import http.client, json, sys, threading, time, urllib.parse
+
+base, seconds, clients = sys.argv[1], float(sys.argv[2]), int(sys.argv[3])
+host = urllib.parse.urlparse(base)
+
+def connect():
+    return http.client.HTTPConnection(host.hostname, host.port, timeout=30)
+
+conn = connect()
+conn.request("POST", "/api/auth/authenticate", json.dumps({"username": "user", "password": "userpassword"}),
+             {"Content-Type": "application/json"})
+token = json.loads(conn.getresponse().read())["token"]
+headers = {"Authorization": "Bearer " + token}
+conn.request("GET", "/api/users?limit=10", headers=headers)
+ids = [user["id"] for user in json.loads(conn.getresponse().read())["content"]] or [1]
+
+samples = []
+lock = threading.Lock()
+start = time.monotonic()
+
+def client(index):
+    conn = connect()
+    i = index
+    while time.monotonic() - start < seconds:
+        path = "/api/users?limit=10&offset=%d" % (i % 50 * 10) if i % 2 == 0 else "/api/users/%d" % ids[i % len(ids)]
+        sent = time.monotonic()
+        conn.request("GET", path, headers=headers)
+        conn.getresponse().read()
+        done = time.monotonic()
+        with lock:
+            samples.append((sent - start, (done - sent) * 1000))
+        i += 1
+
+threads = [threading.Thread(target=client, args=(n,)) for n in range(clients)]
+for thread in threads:
+    thread.start()
+for thread in threads:
+    thread.join()
+
+def summary(values):
+    values = sorted(values)
+    pick = lambda q: values[min(len(values) - 1, int(q * len(values)))]
+    return "n=%d p50=%.1fms p99=%.1fms max=%.1fms" % (len(values), pick(0.5), pick(0.99), values[-1])
+
+print("  first 10s: " + summary([latency for at, latency in samples if at < 10]))
+print("  whole run: " + summary([latency for at, latency in samples]))
+EOF
+}
+
+# Launches the jar with the given warm-up setting, waits until it is ready and drives it
+run_variant() {
+    local name="$1" enabled="$2" pid launched ready
+    for i in $(seq "$RUNS"); do
+        launched=$(date +%s%N)
+        java -jar "$JAR" --app.warm-up.enabled="$enabled" > "$WORK_DIR/$name-$i.log" 2>&1 &
+        pid=$!
+        until [ "$(curl -s -o /dev/null -w '%{http_code}' "$BASE_URL/api/health/readiness" 2>/dev/null)" = "200" ]; do
+            sleep 0.1
+        done
+        ready=$(date +%s%N)
+        echo "$name run $i: ready after $(( (ready - launched) / 1000000 )) ms"
+        drive "$SECONDS_PER_RUN"
+        kill "$pid"
+        wait "$pid" 2>/dev/null || true
+    done
+}
+
+mvn -B -q package -DskipTests
+mkdir -p "$WORK_DIR"
+run_variant "cold" false
+run_variant "warmed" true
@@ -0,0 +1,62 @@
+package com.magmutual.users.config;
+
+import com.magmutual.users.constants.Workload;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+@Configuration
+public class DataSourceConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceConfig.class);
+
+    @Value("${app.datasource.interactive.max-pool-size:10}")
+    private int interactiveMaxPoolSize;
+
+    @Value("${app.datasource.interactive.connection-timeout-ms:5000}")
+    private long interactiveConnectionTimeoutMs;
+
+    @Value("${app.datasource.bulk.max-pool-size:3}")
+    private int bulkMaxPoolSize;
+
+    @Value("${app.datasource.bulk.connection-timeout-ms:120000}")
+    private long bulkConnectionTimeoutMs;
+
+    @Value("${app.datasource.bulk.idle-timeout-ms:60000}")
+    private long bulkIdleTimeoutMs;
+
+    /**
+     * Configures the application data source as two connection pools to the spring.datasource database: an
+     * interactive pool for requests, kept warm and failing fast when exhausted, and a small bulk pool for
+     * imports, purges and scans, whose connections are only opened while bulk work runs and which queues it
+     * for as long as that takes. Each pool registers its metrics as an MBean under its own name.
+     *
+     * @param properties the spring.datasource properties
+     * @return the data source routing each connection to the pool of the current workload
+     */
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties) {
+        HikariDataSource interactive = pool(properties, "interactive", interactiveMaxPoolSize, interactiveConnectionTimeoutMs);
+        HikariDataSource bulk = pool(properties, "bulk", bulkMaxPoolSize, bulkConnectionTimeoutMs);
+        bulk.setMinimumIdle(0);
+        bulk.setIdleTimeout(bulkIdleTimeoutMs);
+        logger.info("Configuring the interactive connection pool with {} connections and the bulk pool with {}", interactiveMaxPoolSize, bulkMaxPoolSize);
+        return new WorkloadRoutingDataSource(Map.of(Workload.INTERACTIVE, interactive, Workload.BULK, bulk));
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, String name, int maxPoolSize, long connectionTimeoutMs) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName(name);
+        pool.setMaximumPoolSize(maxPoolSize);
+        pool.setConnectionTimeout(connectionTimeoutMs);
+        pool.setRegisterMbeans(true);
+        return pool;
+    }
+}
@@ -2,6 +2,7 @@ package com.magmutual.users.config;
 
 import com.magmutual.users.exception.CustomException;
 import com.magmutual.users.filter.JwtRequestFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -25,10 +26,21 @@ import org.springframework.web.filter.CorsFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Configuration
 @EnableMethodSecurity
 public class SecurityConfig {
 
+    /**
+     * The name of the executor that runs password verification.
+     */
+    public static final String LOGIN_EXECUTOR = "loginExecutor";
+
     private static final Logger logger = LoggerFactory.getLogger(SecurityConfig.class);
 
     @Autowired
@@ -37,6 +49,12 @@ public class SecurityConfig {
     @Value("${cors.allowed.origin}")
     private String corsAllowedOrigin;
 
+    @Value("${app.auth.hashing.pool-size:2}")
+    private int hashingPoolSize;
+
+    @Value("${app.auth.hashing.queue-capacity:64}")
+    private int hashingQueueCapacity;
+
     /**
      * Configures the CSRF token repository to use cookies with HttpOnly set to false.
      *
@@ -65,11 +83,13 @@ public class SecurityConfig {
             http.csrf(csrf -> csrf
                             .csrfTokenRepository(csrfTokenRepository())
                             .csrfTokenRequestHandler(requestHandler)
-                            .ignoringRequestMatchers("/api/auth/authenticate")
+                            .ignoringRequestMatchers("/api/auth/authenticate", "/api/auth/refresh", "/api/auth/logout")
                     )
                     .authorizeHttpRequests(authorize -> authorize
+                            .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                             .requestMatchers("/authenticate").permitAll()
                             .requestMatchers("/api/users/**").authenticated()
+                            .requestMatchers("/api/diagnostics/**").authenticated()
                             .anyRequest().permitAll()
                     )
                     .sessionManagement(session -> session
@@ -98,6 +118,27 @@ public class SecurityConfig {
         return new BCryptPasswordEncoder();
     }
 
+    /**
+     * Configures a bounded executor for password verification, so that a burst of logins queues
+     * behind a fixed number of BCrypt workers instead of occupying every request thread.
+     * Submissions beyond the queue capacity are rejected.
+     *
+     * @return the login executor
+     */
+    @Bean(name = LOGIN_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService loginExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        logger.info("Configuring login executor with {} threads and queue capacity {}", hashingPoolSize, hashingQueueCapacity);
+        return new ThreadPoolExecutor(hashingPoolSize, hashingPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(hashingQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "login-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
     /**
      * Configures the authentication manager.
      *
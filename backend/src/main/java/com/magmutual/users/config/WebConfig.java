@@ -0,0 +1,36 @@
+package com.magmutual.users.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.magmutual.users.diagnostics.HandlerPhaseInterceptor;
+import com.magmutual.users.diagnostics.TimedJackson2HttpMessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    /**
+     * Registers the interceptor recording the controller phase of each request.
+     *
+     * @param registry the interceptor registry
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerPhaseInterceptor());
+    }
+
+    /**
+     * Replaces the auto-configured Jackson message converter with one recording the serialization phase of
+     * each response. It uses the auto-configured object mapper, so the spring.jackson settings still apply.
+     *
+     * @param objectMapper the application object mapper
+     * @return the message converter
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        return new TimedJackson2HttpMessageConverter(objectMapper);
+    }
+}
@@ -0,0 +1,136 @@
+package com.magmutual.users.config;
+
+import com.magmutual.users.constants.Workload;
+import com.magmutual.users.model.ConnectionPoolStats;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Hands out connections from the pool of the current thread's workload, so bulk work cannot take the
+ * connections interactive requests wait on. Threads are interactive unless they run inside
+ * {@link #callBulk} or {@link #runBulk}.
+ *
+ * <p>The workload is read when a connection is taken, which for a transaction is when it begins, so bulk work
+ * must be marked before it enters a {@code @Transactional} method, and statements that join a transaction
+ * use the transaction's connection whatever the workload.
+ */
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Workload> currentWorkload = new ThreadLocal<>();
+
+    private final Map<Workload, HikariDataSource> pools;
+
+    /**
+     * @param pools the pool of every workload
+     */
+    public WorkloadRoutingDataSource(Map<Workload, HikariDataSource> pools) {
+        this.pools = new EnumMap<>(pools);
+        setTargetDataSources(new HashMap<>(pools));
+        setDefaultTargetDataSource(pools.get(Workload.INTERACTIVE));
+        setLenientFallback(false);
+    }
+
+    /**
+     * Finds the routing data source behind the application data source.
+     *
+     * @param dataSource the application data source, possibly wrapped
+     * @return the routing data source, or null if the application uses a single pool
+     */
+    public static WorkloadRoutingDataSource from(DataSource dataSource) {
+        try {
+            return dataSource != null && dataSource.isWrapperFor(WorkloadRoutingDataSource.class)
+                    ? dataSource.unwrap(WorkloadRoutingDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs work whose connections come from the bulk pool.
+     *
+     * @param work the work
+     * @return the result of the work
+     */
+    public static <T> T callBulk(Supplier<T> work) {
+        Workload previous = currentWorkload.get();
+        currentWorkload.set(Workload.BULK);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                currentWorkload.set(previous);
+            } else {
+                currentWorkload.remove();
+            }
+        }
+    }
+
+    /**
+     * Runs work whose connections come from the bulk pool.
+     *
+     * @param work the work
+     */
+    public static void runBulk(Runnable work) {
+        callBulk(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return the workload of the current thread
+     */
+    public static Workload currentWorkload() {
+        Workload workload = currentWorkload.get();
+        return workload != null ? workload : Workload.INTERACTIVE;
+    }
+
+    /**
+     * @param workload the workload
+     * @return the pool serving it
+     */
+    public HikariDataSource getPool(Workload workload) {
+        return pools.get(workload);
+    }
+
+    /**
+     * @return the size, usage and queue of every pool
+     */
+    public List<ConnectionPoolStats> getStats() {
+        List<ConnectionPoolStats> stats = new ArrayList<>();
+        for (HikariDataSource pool : pools.values()) {
+            HikariPoolMXBean poolBean = pool.getHikariPoolMXBean();
+            stats.add(new ConnectionPoolStats(
+                    pool.getPoolName(),
+                    pool.getMaximumPoolSize(),
+                    pool.getConnectionTimeout(),
+                    poolBean != null ? poolBean.getActiveConnections() : 0,
+                    poolBean != null ? poolBean.getIdleConnections() : 0,
+                    poolBean != null ? poolBean.getThreadsAwaitingConnection() : 0,
+                    poolBean != null ? poolBean.getTotalConnections() : 0));
+        }
+        return stats;
+    }
+
+    /**
+     * Closes every pool.
+     */
+    public void close() {
+        pools.values().forEach(HikariDataSource::close);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentWorkload();
+    }
+}
@@ -8,6 +8,7 @@ public class ApplicationConstants {
     public static final String POST_USERS = "POST_USERS";
     public static final String PUT_USERS = "PUT_USERS";
     public static final String DELETE_USERS = "DELETE_USERS";
+    public static final String MANAGE_DIAGNOSTICS = "MANAGE_DIAGNOSTICS";
     public static final String DATE_FORMAT = "yyyy-MM-dd";
     public static final String CSV_PARSE_ERROR = "Failed to parse CSV file";
     public static final String USER_NOT_FOUND = "User not found";
@@ -0,0 +1,21 @@
+package com.magmutual.users.constants;
+
+public enum AuditAction {
+    /**
+     * A user was added.
+     */
+    CREATE,
+    /**
+     * A user was updated; the audit record lists the fields whose value changed.
+     */
+    UPDATE,
+    /**
+     * A user was deleted. Without a user id, a purge job was queued or finished; the audit record names the
+     * job, its filter and, once it finished, the number of users it deleted.
+     */
+    DELETE,
+    /**
+     * A CSV file was imported; the audit record summarizes the rows written.
+     */
+    IMPORT
+}
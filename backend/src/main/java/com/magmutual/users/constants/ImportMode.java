@@ -0,0 +1,12 @@
+package com.magmutual.users.constants;
+
+public enum ImportMode {
+    /**
+     * Saves every row through JPA, merging it into any existing row.
+     */
+    MERGE,
+    /**
+     * Compares each row's content fingerprint with the stored one and bulk upserts only new or changed rows.
+     */
+    DIFF
+}
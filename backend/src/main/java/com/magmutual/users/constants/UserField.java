@@ -19,5 +19,20 @@ public enum UserField {
     public String getFieldName() {
         return fieldName;
     }
+
+    /**
+     * Looks up a field by its name, ignoring case.
+     *
+     * @param fieldName the field name, as used in JSON and CSV
+     * @return the field, or null if there is no such field
+     */
+    public static UserField fromFieldName(String fieldName) {
+        for (UserField field : values()) {
+            if (field.fieldName.equalsIgnoreCase(fieldName)) {
+                return field;
+            }
+        }
+        return null;
+    }
 }
 
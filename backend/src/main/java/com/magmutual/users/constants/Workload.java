@@ -0,0 +1,12 @@
+package com.magmutual.users.constants;
+
+public enum Workload {
+    /**
+     * Requests a user is waiting on, such as reading, adding or updating users. This is the default.
+     */
+    INTERACTIVE,
+    /**
+     * Long-running work on many rows, such as CSV imports, purge jobs and full table scans.
+     */
+    BULK
+}
@@ -1,23 +1,38 @@
 package com.magmutual.users.controller;
 
+import com.magmutual.users.config.SecurityConfig;
 import com.magmutual.users.exception.CustomException;
 import com.magmutual.users.model.JwtRequest;
 import com.magmutual.users.model.JwtResponse;
+import com.magmutual.users.model.RefreshTokenRequest;
 import com.magmutual.users.service.AuthenticationService;
+import com.magmutual.users.service.TokenRevocationService;
 import com.magmutual.users.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 @RestController
 @RequestMapping("/api/auth")
 public class AuthenticationController {
@@ -30,55 +45,166 @@ public class AuthenticationController {
     @Autowired
     private AuthenticationService authenticationService;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    @Qualifier(SecurityConfig.LOGIN_EXECUTOR)
+    private ExecutorService loginExecutor;
+
+    @Value("${app.auth.hashing.timeout-ms:5000}")
+    private long loginTimeoutMs;
+
     /**
-     * Authenticates the user and generates a JWT token.
+     * Authenticates the user and generates a short-lived JWT access token and a refresh token. The password is
+     * verified on the bounded login executor and the request thread is released meanwhile; the response is
+     * written once the verification completes.
      *
      * @param authenticationRequest the JWT request containing username and password
-     * @return JwtResponse containing the JWT token
-     * @throws CustomException if authentication fails or an error occurs
+     * @return JwtResponse containing the JWT token and refresh token, once the password is verified
+     * @throws CustomException if the login executor is saturated
      */
     @Operation(summary = "Authenticate user and generate JWT token")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Authentication successful"),
             @ApiResponse(responseCode = "401", description = "Invalid credentials"),
-            @ApiResponse(responseCode = "500", description = "Internal server error")
+            @ApiResponse(responseCode = "500", description = "Internal server error"),
+            @ApiResponse(responseCode = "503", description = "Login capacity exceeded")
     })
     @PostMapping("/authenticate")
-    public JwtResponse createAuthenticationToken(@RequestBody JwtRequest authenticationRequest) throws CustomException {
+    public CompletableFuture<JwtResponse> createAuthenticationToken(@RequestBody JwtRequest authenticationRequest) throws CustomException {
+        logger.info("Attempting to authenticate user: {}", authenticationRequest.getUsername());
+        return authenticateUser(authenticationRequest).handle((authentication, failure) -> {
+            if (failure != null) {
+                throw loginFailure(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+            }
+            final UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+            final String jwt = jwtUtil.generateToken(userDetails);
+            final String refreshToken = jwtUtil.generateRefreshToken(userDetails);
+
+            logger.info("User {} authenticated successfully", authenticationRequest.getUsername());
+
+            return new JwtResponse(jwt, refreshToken);
+        });
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token without verifying the password again.
+     * The presented refresh token is revoked and a new one is issued in its place.
+     *
+     * @param refreshTokenRequest the request containing the refresh token
+     * @return JwtResponse containing the new JWT token and refresh token
+     * @throws CustomException if the refresh token is invalid, expired or revoked
+     */
+    @Operation(summary = "Exchange a refresh token for a new access token")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Token refreshed"),
+            @ApiResponse(responseCode = "401", description = "Invalid, expired or revoked refresh token")
+    })
+    @PostMapping("/refresh")
+    public JwtResponse refreshAuthenticationToken(@RequestBody RefreshTokenRequest refreshTokenRequest) throws CustomException {
         try {
-            logger.info("Attempting to authenticate user: {}", authenticationRequest.getUsername());
+            final Claims claims = jwtUtil.extractRefreshClaims(refreshTokenRequest.getRefreshToken());
 
-            authenticateUser(authenticationRequest);
+            if (!tokenRevocationService.revokeIfActive(claims.getId(), claims.getExpiration().getTime())) {
+                logger.warn("Revoked refresh token presented for user: {}", claims.getSubject());
+                throw new CustomException("Invalid refresh token", "The provided refresh token has been revoked", HttpStatus.UNAUTHORIZED);
+            }
 
-            final UserDetails userDetails = authenticationService.loadUserByUsername(authenticationRequest.getUsername());
+            final UserDetails userDetails = authenticationService.loadUserByUsername(claims.getSubject());
             final String jwt = jwtUtil.generateToken(userDetails);
+            final String refreshToken = jwtUtil.generateRefreshToken(userDetails);
 
-            logger.info("User {} authenticated successfully", authenticationRequest.getUsername());
+            logger.debug("Refreshed access token for user {}", claims.getSubject());
 
-            return new JwtResponse(jwt);
-        } catch (BadCredentialsException e) {
-            String errorDetails = "Invalid username or password";
+            return new JwtResponse(jwt, refreshToken);
+        } catch (CustomException e) {
+            throw e;
+        } catch (Exception e) {
+            String errorDetails = "Invalid refresh token";
             logger.error(errorDetails, e);
-            throw new CustomException(errorDetails, "Invalid credentials provided", HttpStatus.UNAUTHORIZED);
+            throw new CustomException(errorDetails, "The provided refresh token is invalid or expired", HttpStatus.UNAUTHORIZED);
+        }
+    }
+
+    /**
+     * Revokes a refresh token so it can no longer be exchanged for access tokens.
+     *
+     * @param refreshTokenRequest the request containing the refresh token
+     * @return a response indicating the result of the logout operation
+     */
+    @Operation(summary = "Revoke a refresh token")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Refresh token revoked"),
+            @ApiResponse(responseCode = "401", description = "Invalid refresh token")
+    })
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestBody RefreshTokenRequest refreshTokenRequest) throws CustomException {
+        try {
+            final Claims claims = jwtUtil.extractRefreshClaims(refreshTokenRequest.getRefreshToken());
+            tokenRevocationService.revoke(claims.getId(), claims.getExpiration().getTime());
+            return ResponseEntity.noContent().build();
         } catch (Exception e) {
-            String errorDetails = "Authentication failed";
+            String errorDetails = "Invalid refresh token";
             logger.error(errorDetails, e);
-            throw new CustomException("Authentication failed", errorDetails, HttpStatus.INTERNAL_SERVER_ERROR);
+            throw new CustomException(errorDetails, "The provided refresh token is invalid or expired", HttpStatus.UNAUTHORIZED);
         }
     }
 
     /**
-     * Authenticates the user.
+     * Authenticates the user on the bounded login executor. A verification still queued when the timeout
+     * passes is skipped rather than run for nobody.
      *
      * @param authenticationRequest the JWT request containing username and password
-     * @throws BadCredentialsException if authentication fails
+     * @return the authenticated principal, completed on a login executor thread, or completed with a
+     *         {@link TimeoutException} if the verification does not finish in time
+     * @throws CustomException if the login executor is saturated
+     */
+    private CompletableFuture<Authentication> authenticateUser(JwtRequest authenticationRequest) {
+        UsernamePasswordAuthenticationToken token =
+                new UsernamePasswordAuthenticationToken(authenticationRequest.getUsername(), authenticationRequest.getPassword());
+        CompletableFuture<Authentication> result = new CompletableFuture<>();
+        try {
+            loginExecutor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(authenticationManager.authenticate(token));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Login executor saturated, rejecting login for user: {}", authenticationRequest.getUsername());
+            throw new CustomException("Too many login attempts", "Login capacity exceeded, retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return result.orTimeout(loginTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Maps a failed verification to the error returned to the client.
+     *
+     * @param failure why the verification failed
+     * @return the exception to complete the response with
      */
-    private void authenticateUser(JwtRequest authenticationRequest) throws BadCredentialsException {
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(authenticationRequest.getUsername(), authenticationRequest.getPassword())
-        );
+    private static CustomException loginFailure(Throwable failure) {
+        if (failure instanceof CustomException e) {
+            return e;
+        }
+        if (failure instanceof AuthenticationException) {
+            String errorDetails = "Invalid username or password";
+            logger.error(errorDetails, failure);
+            return new CustomException(errorDetails, "Invalid credentials provided", HttpStatus.UNAUTHORIZED);
+        }
+        if (failure instanceof TimeoutException) {
+            return new CustomException("Too many login attempts", "Login verification timed out, retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        String errorDetails = "Authentication failed";
+        logger.error(errorDetails, failure);
+        return new CustomException("Authentication failed", errorDetails, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 }
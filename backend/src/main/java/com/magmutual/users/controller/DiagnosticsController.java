@@ -0,0 +1,208 @@
+package com.magmutual.users.controller;
+
+import com.magmutual.users.config.WorkloadRoutingDataSource;
+import com.magmutual.users.constants.ApplicationConstants;
+import com.magmutual.users.model.AuditTrailStats;
+import com.magmutual.users.model.ConnectionPoolStats;
+import com.magmutual.users.model.ExistenceFilterStats;
+import com.magmutual.users.model.ReadFallbackStats;
+import com.magmutual.users.model.RecordingStatus;
+import com.magmutual.users.service.FlightRecordingService;
+import com.magmutual.users.service.UserAuditTrail;
+import com.magmutual.users.service.UserExistenceFilter;
+import com.magmutual.users.service.UserReadFallback;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+@RestController
+@RequestMapping("api/diagnostics")
+public class DiagnosticsController {
+
+    @Autowired
+    private FlightRecordingService flightRecordingService;
+
+    @Autowired
+    private UserExistenceFilter userExistenceFilter;
+
+    @Autowired
+    private UserReadFallback userReadFallback;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private UserAuditTrail userAuditTrail;
+
+    /**
+     * Starts a bounded Flight Recorder recording of the application.
+     *
+     * @param duration how long to record, in seconds
+     * @return the state of the new recording
+     */
+    @Operation(summary = "Start a Flight Recorder recording")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Recording started"),
+            @ApiResponse(responseCode = "400", description = "Invalid duration"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "409", description = "A recording is already running")
+    })
+    @PostMapping("/recordings")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.MANAGE_DIAGNOSTICS + "')")
+    public ResponseEntity<RecordingStatus> startRecording(@RequestParam(value = "duration", defaultValue = "60") long duration) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(flightRecordingService.start(duration));
+    }
+
+    /**
+     * Returns the state of a recording.
+     *
+     * @param recordingId the recording id
+     * @return the recording state
+     */
+    @Operation(summary = "Get the state of a Flight Recorder recording")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved recording state"),
+            @ApiResponse(responseCode = "404", description = "Recording not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/recordings/{recordingId}")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.MANAGE_DIAGNOSTICS + "')")
+    public ResponseEntity<RecordingStatus> getRecording(@PathVariable long recordingId) {
+        return ResponseEntity.ok(flightRecordingService.getStatus(recordingId));
+    }
+
+    /**
+     * Stops a recording before the end of its duration.
+     *
+     * @param recordingId the recording id
+     * @return the recording state
+     */
+    @Operation(summary = "Stop a Flight Recorder recording")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Recording stopped"),
+            @ApiResponse(responseCode = "404", description = "Recording not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @PostMapping("/recordings/{recordingId}/stop")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.MANAGE_DIAGNOSTICS + "')")
+    public ResponseEntity<RecordingStatus> stopRecording(@PathVariable long recordingId) {
+        return ResponseEntity.ok(flightRecordingService.stop(recordingId));
+    }
+
+    /**
+     * Downloads a stopped recording, to be opened in JDK Mission Control or with the jfr tool.
+     *
+     * @param recordingId the recording id
+     * @return the recording file
+     */
+    @Operation(summary = "Download a stopped Flight Recorder recording")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the recording"),
+            @ApiResponse(responseCode = "404", description = "Recording not found"),
+            @ApiResponse(responseCode = "409", description = "Recording still running"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping(value = "/recordings/{recordingId}/file", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.MANAGE_DIAGNOSTICS + "')")
+    public ResponseEntity<Resource> getRecordingFile(@PathVariable long recordingId) {
+        Resource file = new FileSystemResource(flightRecordingService.getFile(recordingId));
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("users-api-" + recordingId + ".jfr").build().toString())
+                .body(file);
+    }
+
+    /**
+     * Returns the size, fill and false positive rates of the user existence filter.
+     *
+     * @return the filter statistics
+     */
+    @Operation(summary = "Get the statistics of the user existence filter")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the statistics"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/existence-filter")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.MANAGE_DIAGNOSTICS + "')")
+    public ResponseEntity<ExistenceFilterStats> getExistenceFilterStats() {
+        return ResponseEntity.ok(userExistenceFilter.getStats());
+    }
+
+    /**
+     * Rebuilds the user existence filter from the table in the background, dropping deleted users.
+     *
+     * @return the filter statistics before the rebuild
+     */
+    @Operation(summary = "Rebuild the user existence filter")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Rebuild queued"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @PostMapping("/existence-filter/rebuild")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.MANAGE_DIAGNOSTICS + "')")
+    public ResponseEntity<ExistenceFilterStats> rebuildExistenceFilter() {
+        userExistenceFilter.requestRebuild();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(userExistenceFilter.getStats());
+    }
+
+    /**
+     * Returns the state of the circuit breaker in front of user reads.
+     *
+     * @return whether the circuit is open and how many reads it answered from stored responses
+     */
+    @Operation(summary = "Get the state of the user read circuit breaker")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the state"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/read-fallback")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.MANAGE_DIAGNOSTICS + "')")
+    public ResponseEntity<ReadFallbackStats> getReadFallbackStats() {
+        return ResponseEntity.ok(userReadFallback.getStats());
+    }
+
+    /**
+     * Returns the size, usage and queue of the interactive and bulk database connection pools.
+     *
+     * @return the statistics of every pool
+     */
+    @Operation(summary = "Get the statistics of the database connection pools")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the statistics"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/connection-pools")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.MANAGE_DIAGNOSTICS + "')")
+    public ResponseEntity<List<ConnectionPoolStats>> getConnectionPoolStats() {
+        WorkloadRoutingDataSource routing = WorkloadRoutingDataSource.from(dataSource);
+        return ResponseEntity.ok(routing != null ? routing.getStats() : List.of());
+    }
+
+    /**
+     * Returns the fill of the audit trail buffer and the progress of its writer.
+     *
+     * @return the audit trail statistics
+     */
+    @Operation(summary = "Get the statistics of the user audit trail")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the statistics"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/audit-trail")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.MANAGE_DIAGNOSTICS + "')")
+    public ResponseEntity<AuditTrailStats> getAuditTrailStats() {
+        return ResponseEntity.ok(userAuditTrail.getStats());
+    }
+}
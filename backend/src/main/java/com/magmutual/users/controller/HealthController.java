@@ -0,0 +1,58 @@
+package com.magmutual.users.controller;
+
+import com.magmutual.users.model.AvailabilityStatus;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.LivenessState;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("api/health")
+public class HealthController {
+
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    /**
+     * Reports whether the instance should receive traffic. It refuses traffic until startup, including the
+     * JIT warm-up, has finished.
+     *
+     * @return the readiness state, with 200 when accepting traffic and 503 otherwise
+     */
+    @Operation(summary = "Readiness probe for the orchestrator")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Accepting traffic"),
+            @ApiResponse(responseCode = "503", description = "Refusing traffic, for example while warming up")
+    })
+    @GetMapping("/readiness")
+    public ResponseEntity<AvailabilityStatus> readiness() {
+        ReadinessState state = applicationAvailability.getReadinessState();
+        return ResponseEntity.status(state == ReadinessState.ACCEPTING_TRAFFIC ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new AvailabilityStatus(state.name()));
+    }
+
+    /**
+     * Reports whether the instance is alive. It is live as soon as the context has started, warming up or not.
+     *
+     * @return the liveness state, with 200 when correct and 503 when broken
+     */
+    @Operation(summary = "Liveness probe for the orchestrator")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Live"),
+            @ApiResponse(responseCode = "503", description = "Broken")
+    })
+    @GetMapping("/liveness")
+    public ResponseEntity<AvailabilityStatus> liveness() {
+        LivenessState state = applicationAvailability.getLivenessState();
+        return ResponseEntity.status(state == LivenessState.CORRECT ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new AvailabilityStatus(state.name()));
+    }
+}
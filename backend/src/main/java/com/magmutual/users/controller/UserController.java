@@ -1,24 +1,55 @@
 package com.magmutual.users.controller;
 
+import com.magmutual.users.config.WorkloadRoutingDataSource;
 import com.magmutual.users.entity.Users;
 import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.ChangeFeedResponse;
+import com.magmutual.users.model.ImportResult;
+import com.magmutual.users.model.PurgeJobStatus;
+import com.magmutual.users.model.UploadSessionRequest;
+import com.magmutual.users.model.UploadSessionStatus;
+import com.magmutual.users.model.UserLookupRequest;
+import com.magmutual.users.model.UserExistsResponse;
+import com.magmutual.users.model.UserLookupResponse;
 import com.magmutual.users.model.UserRequest;
+import com.magmutual.users.service.ChunkedUploadService;
+import com.magmutual.users.service.ImportReportService;
+import com.magmutual.users.service.UserChangePublisher;
+import com.magmutual.users.service.UserPurgeService;
+import com.magmutual.users.service.UserReadFallback;
 import com.magmutual.users.service.UserService;
 import com.magmutual.users.constants.ApplicationConstants;
+import com.magmutual.users.constants.ImportMode;
+import com.magmutual.users.constants.UserField;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.sql.Date;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("api/users")
@@ -26,9 +57,32 @@ public class UserController {
 
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
 
+    private static final String CHUNK_CHECKSUM_HEADER = "X-Chunk-SHA256";
+
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserChangePublisher userChangePublisher;
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private ImportReportService importReportService;
+
+    @Autowired
+    private UserPurgeService userPurgeService;
+
+    @Autowired
+    private UserReadFallback userReadFallback;
+
+    @Value("${app.changes.max-batch-size:1000}")
+    private int maxChangeBatchSize;
+
+    @Value("${app.lookup.max-ids:1000}")
+    private int maxLookupIds;
+
     /**
      * Retrieves a paginated list of users with optional filters for date range and profession.
      *
@@ -39,24 +93,27 @@ public class UserController {
      * @param startDateStr  the start date for filtering users
      * @param endDateStr    the end date for filtering users
      * @param profession    the profession for filtering users
-     * @return a paginated list of users
+     * @param fields        a comma-separated list of the fields to return, or null for whole users
+     * @return a paginated list of users, possibly a stored one marked stale while the database is slow
      */
     @Operation(summary = "Retrieve a paginated list of users with optional filters for date range and profession")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved users"),
-            @ApiResponse(responseCode = "400", description = "Invalid date range"),
-            @ApiResponse(responseCode = "401", description = "Unauthorized")
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved users; a Warning header marks a stale response"),
+            @ApiResponse(responseCode = "400", description = "Invalid date range or fields"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "503", description = "Database not responding and no stored response")
     })
     @GetMapping
     @PreAuthorize("hasAuthority('" + ApplicationConstants.GET_USERS + "')")
-    public ResponseEntity<Page<Users>> getUsers(
+    public ResponseEntity<Page<?>> getUsers(
             @RequestParam(value = "offset", defaultValue = "0") int offset,
             @RequestParam(value = "limit", defaultValue = "10") int limit,
             @RequestParam(value = "sortBy", defaultValue = "id") String sortBy,
             @RequestParam(value = "sortDirection", defaultValue = "asc") String sortDirection,
             @RequestParam(value = "startDate", required = false) String startDateStr,
             @RequestParam(value = "endDate", required = false) String endDateStr,
-            @RequestParam(value = "profession", required = false) String profession) {
+            @RequestParam(value = "profession", required = false) String profession,
+            @RequestParam(value = "fields", required = false) String fields) {
 
         try {
             Date startDate = startDateStr != null ? Date.valueOf(startDateStr) : null;
@@ -66,8 +123,14 @@ public class UserController {
                 throw new CustomException("Invalid date range", "endDate cannot be before startDate", HttpStatus.BAD_REQUEST);
             }
 
-            Page<Users> usersPage = userService.getUsers(offset, limit, sortBy, sortDirection, startDate, endDate, profession);
-            return ResponseEntity.ok(usersPage);
+            String key = "list:" + offset + ':' + limit + ':' + sortBy + ':' + sortDirection + ':' + startDate + ':' + endDate + ':' + profession;
+            if (fields != null) {
+                Set<UserField> selectedFields = parseFields(fields);
+                return respond(userReadFallback.read(key + ':' + selectedFields,
+                        () -> userService.getUserFields(offset, limit, sortBy, sortDirection, startDate, endDate, profession, selectedFields)));
+            }
+            return respond(userReadFallback.<Page<?>>read(key,
+                    () -> userService.getUsers(offset, limit, sortBy, sortDirection, startDate, endDate, profession)));
         } catch (CustomException e) {
             logger.error("Error retrieving users: {}", e.getMessage());
             throw e;
@@ -78,25 +141,128 @@ public class UserController {
         }
     }
 
+    /**
+     * Builds the response of a read, marking a stored one with its age and a stale warning.
+     *
+     * @param read the read
+     * @return the response
+     */
+    private static <T> ResponseEntity<T> respond(UserReadFallback.Read<T> read) {
+        if (!read.stale()) {
+            return ResponseEntity.ok(read.value());
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.AGE, String.valueOf(read.ageSeconds()))
+                .header(HttpHeaders.WARNING, "110 - \"Response is Stale\"")
+                .body(read.value());
+    }
+
+    /**
+     * Retrieves the users inserted, updated or deleted since the given change token.
+     *
+     * @param since the token returned by the previous call, omitted for the first call
+     * @param limit the maximum number of changes to return
+     * @return a batch of changes and the token to resume from
+     */
+    @Operation(summary = "Retrieve the users inserted, updated or deleted since a change token")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved changes"),
+            @ApiResponse(responseCode = "400", description = "Invalid change token or limit"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "410", description = "Change token too old, full resync required")
+    })
+    @GetMapping("/changes")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.GET_USERS + "')")
+    public ResponseEntity<ChangeFeedResponse> getChanges(
+            @RequestParam(value = "since", required = false) String since,
+            @RequestParam(value = "limit", defaultValue = "500") int limit) {
+
+        if (limit < 1 || limit > maxChangeBatchSize) {
+            throw new CustomException("Invalid limit", "limit must be between 1 and " + maxChangeBatchSize, HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return ResponseEntity.ok(userService.getChangesSince(since, limit));
+        } catch (CustomException e) {
+            logger.error("Error retrieving changes: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            String errorMessage = "Unexpected error occurred while retrieving changes";
+            logger.error(errorMessage, e);
+            throw new CustomException("Failed to retrieve changes", errorMessage, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Subscribes to a Server-Sent Events stream of coalesced user change events.
+     *
+     * @return the event stream
+     */
+    @Operation(summary = "Subscribe to a stream of user change events")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Event stream opened"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "503", description = "Subscriber limit reached")
+    })
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.GET_USERS + "')")
+    public SseEmitter streamChanges() {
+        return userChangePublisher.subscribe();
+    }
+
+    /**
+     * Checks whether a user with the given id or email exists, without returning it.
+     *
+     * @param id    the user id
+     * @param email the email, compared case-insensitively, used when no id is given
+     * @return whether such a user exists
+     */
+    @Operation(summary = "Check whether a user with an id or email exists")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully checked"),
+            @ApiResponse(responseCode = "400", description = "Neither id nor email given"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/exists")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.GET_USERS + "')")
+    public ResponseEntity<UserExistsResponse> userExists(
+            @RequestParam(value = "id", required = false) Long id,
+            @RequestParam(value = "email", required = false) String email) {
+        if (id == null && (email == null || email.isBlank())) {
+            throw new CustomException("Invalid existence check", "id or email is required", HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(new UserExistsResponse(userService.exists(id, email)));
+    }
+
     /**
      * Retrieves a user by their ID.
      *
-     * @param id the ID of the user to retrieve
-     * @return the user with the specified ID
+     * @param id     the ID of the user to retrieve
+     * @param fields a comma-separated list of the fields to return, or null for the whole user
+     * @return the user with the specified ID, possibly a stored one marked stale while the database is slow
      */
     @Operation(summary = "Retrieve a user by their ID")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Successfully retrieved user"),
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved user; a Warning header marks a stale response"),
+            @ApiResponse(responseCode = "400", description = "Invalid fields"),
             @ApiResponse(responseCode = "404", description = "User not found"),
-            @ApiResponse(responseCode = "401", description = "Unauthorized")
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "503", description = "Database not responding and no stored response")
     })
     @GetMapping("/{id}")
     @PreAuthorize("hasAuthority('" + ApplicationConstants.GET_USERS + "')")
-    public ResponseEntity<Users> getUserById(@PathVariable String id) {
+    public ResponseEntity<?> getUserById(@PathVariable String id,
+                                         @RequestParam(value = "fields", required = false) String fields) {
+        Set<UserField> selectedFields = fields != null ? parseFields(fields) : null;
         try {
-            return userService.getUserById(id)
-                    .map(user -> ResponseEntity.ok().body(user))
-                    .orElse(ResponseEntity.notFound().build());
+            UserReadFallback.Read<? extends Optional<?>> read = selectedFields != null
+                    ? userReadFallback.read("user:" + id + ':' + selectedFields, () -> userService.getUserFieldsById(id, selectedFields))
+                    : userReadFallback.read("user:" + id, () -> userService.getUserById(id));
+            if (read.value().isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            return respond(new UserReadFallback.Read<>(read.value().get(), read.stale(), read.ageSeconds()));
+        } catch (CustomException e) {
+            throw e;
         } catch (Exception e) {
             String errorMessage = "Unexpected error occurred while retrieving user with id: " + id;
             logger.error(errorMessage, e);
@@ -104,6 +270,33 @@ public class UserController {
         }
     }
 
+    /**
+     * Retrieves many users by id in one query.
+     *
+     * @param request the ids of the users to retrieve
+     * @param fields  a comma-separated list of the fields to return, or null for whole users
+     * @return the users in the order of the ids, with null for every id that has no user, and the missing ids
+     */
+    @Operation(summary = "Retrieve many users by id in one call")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved users; ids without a user are listed as missing"),
+            @ApiResponse(responseCode = "400", description = "No ids, too many ids or invalid fields"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @PostMapping("/lookup")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.GET_USERS + "')")
+    public ResponseEntity<UserLookupResponse> lookupUsers(@RequestBody UserLookupRequest request,
+                                                          @RequestParam(value = "fields", required = false) String fields) {
+        List<Long> ids = request.getIds();
+        if (ids == null || ids.isEmpty() || ids.size() > maxLookupIds) {
+            throw new CustomException("Invalid ids", "ids must hold between 1 and " + maxLookupIds + " ids", HttpStatus.BAD_REQUEST);
+        }
+        if (ids.contains(null)) {
+            throw new CustomException("Invalid ids", "ids must not contain null", HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(userService.getUsersByIds(ids, fields != null ? parseFields(fields) : null));
+    }
+
     /**
      * Creates a new user.
      *
@@ -187,32 +380,258 @@ public class UserController {
         }
     }
 
+    /**
+     * Starts a background job deleting every user matching the filters, in small throttled chunks.
+     *
+     * @param startDateStr the first creation date to delete
+     * @param endDateStr   the last creation date to delete, inclusive
+     * @param profession   the profession to delete
+     * @return the state of the new job
+     */
+    @Operation(summary = "Start a job deleting every user matching a date range and/or profession")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Purge job queued"),
+            @ApiResponse(responseCode = "400", description = "No filter, invalid date or invalid date range"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "429", description = "Too many purge jobs queued")
+    })
+    @PostMapping("/purge-jobs")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.DELETE_USERS + "')")
+    public ResponseEntity<PurgeJobStatus> createPurgeJob(
+            @RequestParam(value = "startDate", required = false) String startDateStr,
+            @RequestParam(value = "endDate", required = false) String endDateStr,
+            @RequestParam(value = "profession", required = false) String profession) {
+        try {
+            Date startDate = startDateStr != null ? Date.valueOf(startDateStr) : null;
+            Date endDate = endDateStr != null ? Date.valueOf(endDateStr) : null;
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(userPurgeService.submit(startDate, endDate, profession));
+        } catch (IllegalArgumentException e) {
+            throw new CustomException("Invalid date", "startDate and endDate must be yyyy-MM-dd dates", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Returns the progress of a purge job.
+     *
+     * @param jobId the job id
+     * @return the job state, with the number of users deleted so far
+     */
+    @Operation(summary = "Get the progress of a purge job")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved job state"),
+            @ApiResponse(responseCode = "404", description = "Job not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/purge-jobs/{jobId}")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.DELETE_USERS + "')")
+    public ResponseEntity<PurgeJobStatus> getPurgeJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(userPurgeService.getStatus(jobId));
+    }
+
+    /**
+     * Cancels a purge job. Users already deleted stay deleted.
+     *
+     * @param jobId the job id
+     * @return the job state
+     */
+    @Operation(summary = "Cancel a purge job")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cancellation requested"),
+            @ApiResponse(responseCode = "404", description = "Job not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @DeleteMapping("/purge-jobs/{jobId}")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.DELETE_USERS + "')")
+    public ResponseEntity<PurgeJobStatus> cancelPurgeJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(userPurgeService.cancel(jobId));
+    }
+
     /**
      * Uploads a CSV file to add or update users.
      *
      * @param file the CSV file containing user data
-     * @return a response indicating the result of the upload operation
+     * @param mode "merge" to save every row, or "diff" to write only new and changed rows
+     * @return the outcome of the upload operation
      */
     @Operation(summary = "Upload a CSV file to add or update users")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "File uploaded and data saved to database successfully"),
-            @ApiResponse(responseCode = "400", description = "Invalid file or data format"),
+            @ApiResponse(responseCode = "200", description = "File imported; invalid rows are skipped and listed in the error report"),
+            @ApiResponse(responseCode = "400", description = "Invalid file, mode or header"),
             @ApiResponse(responseCode = "401", description = "Unauthorized")
     })
     @PostMapping("/upload")
     @PreAuthorize("hasAuthority('" + ApplicationConstants.POST_USERS + "')")
-    public ResponseEntity<String> uploadCsvFile(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<ImportResult> uploadCsvFile(@RequestParam("file") MultipartFile file,
+                                                      @RequestParam(value = "mode", defaultValue = "merge") String mode) {
         if (file.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Please upload a CSV file.");
+            throw new CustomException("Empty file", "Please upload a CSV file.", HttpStatus.BAD_REQUEST);
         }
 
+        ImportMode importMode = parseImportMode(mode);
+
         try {
-            userService.saveUsersFromCsv(file);
-            return ResponseEntity.status(HttpStatus.OK).body("File uploaded and data saved to database successfully.");
+            return ResponseEntity.status(HttpStatus.OK).body(WorkloadRoutingDataSource.callBulk(() -> userService.saveUsersFromCsv(file, importMode)));
+        } catch (CustomException e) {
+            throw e;
         } catch (Exception e) {
             String errorMessage = "Failed to parse or save CSV file";
             logger.error(errorMessage, e);
             throw new CustomException("CSV upload failed", errorMessage, HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    /**
+     * Opens a resumable chunked upload of a CSV file.
+     *
+     * @param request the import mode, chunk size and expected total size
+     * @return the new upload session
+     */
+    @Operation(summary = "Open a resumable chunked CSV upload")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Upload session created"),
+            @ApiResponse(responseCode = "400", description = "Invalid mode, chunk size or total size"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "429", description = "Too many uploads in progress")
+    })
+    @PostMapping("/uploads")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.POST_USERS + "')")
+    public ResponseEntity<UploadSessionStatus> createUpload(@RequestBody UploadSessionRequest request) {
+        ImportMode importMode = parseImportMode(request.getMode() != null ? request.getMode() : "merge");
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(chunkedUploadService.createSession(importMode, request.getChunkSize(), request.getTotalSize()));
+    }
+
+    /**
+     * Returns the state of a chunked upload, including the chunk to resume from.
+     *
+     * @param uploadId the upload session id
+     * @return the upload session state
+     */
+    @Operation(summary = "Get the state of a chunked upload")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved upload state"),
+            @ApiResponse(responseCode = "404", description = "Upload not found"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/uploads/{uploadId}")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.POST_USERS + "')")
+    public ResponseEntity<UploadSessionStatus> getUpload(@PathVariable String uploadId) {
+        return ResponseEntity.ok(chunkedUploadService.getStatus(uploadId));
+    }
+
+    /**
+     * Receives one chunk of a chunked upload as the raw request body.
+     *
+     * @param uploadId the upload session id
+     * @param index    the zero-based chunk number
+     * @param checksum the hex SHA-256 of the chunk
+     * @param request  the request whose body is the chunk
+     * @return the upload session state after the chunk
+     */
+    @Operation(summary = "Upload one chunk of a chunked upload")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Chunk acknowledged"),
+            @ApiResponse(responseCode = "400", description = "Empty chunk or checksum mismatch"),
+            @ApiResponse(responseCode = "404", description = "Upload not found"),
+            @ApiResponse(responseCode = "409", description = "Chunk out of order or already received with a different checksum"),
+            @ApiResponse(responseCode = "413", description = "Chunk larger than the chunk size"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @PutMapping(value = "/uploads/{uploadId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.POST_USERS + "')")
+    public ResponseEntity<UploadSessionStatus> uploadChunk(@PathVariable String uploadId,
+                                                           @PathVariable int index,
+                                                           @RequestHeader(CHUNK_CHECKSUM_HEADER) String checksum,
+                                                           HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(chunkedUploadService.writeChunk(uploadId, index, checksum, request.getInputStream()));
+    }
+
+    /**
+     * Imports a chunked upload once all its chunks are acknowledged.
+     *
+     * @param uploadId the upload session id
+     * @return the outcome of the import
+     */
+    @Operation(summary = "Commit a chunked upload and import it")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "File imported successfully"),
+            @ApiResponse(responseCode = "400", description = "Upload empty or incomplete"),
+            @ApiResponse(responseCode = "404", description = "Upload not found"),
+            @ApiResponse(responseCode = "409", description = "Upload is receiving a chunk or already being imported"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @PostMapping("/uploads/{uploadId}/commit")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.POST_USERS + "')")
+    public ResponseEntity<ImportResult> commitUpload(@PathVariable String uploadId) {
+        return ResponseEntity.ok(chunkedUploadService.commit(uploadId));
+    }
+
+    /**
+     * Discards a chunked upload.
+     *
+     * @param uploadId the upload session id
+     * @return a response indicating the result of the abort
+     */
+    @Operation(summary = "Abort a chunked upload")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Upload discarded"),
+            @ApiResponse(responseCode = "404", description = "Upload not found"),
+            @ApiResponse(responseCode = "409", description = "Upload is receiving a chunk or being imported"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @DeleteMapping("/uploads/{uploadId}")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.POST_USERS + "')")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId) {
+        chunkedUploadService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Downloads the per-row error report of an import that rejected rows.
+     *
+     * @param reportId the report id returned with the import result
+     * @return the rejected rows with their record number, field and problem, as CSV
+     */
+    @Operation(summary = "Download the error report of a CSV import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the report"),
+            @ApiResponse(responseCode = "404", description = "Report not found or expired"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping(value = "/import-reports/{reportId}", produces = "text/csv")
+    @PreAuthorize("hasAuthority('" + ApplicationConstants.POST_USERS + "')")
+    public ResponseEntity<Resource> getImportReport(@PathVariable String reportId) {
+        Resource report = new FileSystemResource(importReportService.find(reportId));
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("import-errors-" + reportId + ".csv").build().toString())
+                .body(report);
+    }
+
+    /**
+     * Parses the fields parameter. The id is always returned, and fields are returned in the order of
+     * {@link UserField} whatever order they are requested in.
+     *
+     * @param fields a comma-separated list of field names
+     * @return the fields to select
+     */
+    private static Set<UserField> parseFields(String fields) {
+        Set<UserField> selected = EnumSet.of(UserField.ID);
+        for (String name : fields.split(",")) {
+            UserField field = UserField.fromFieldName(name.trim());
+            if (field == null) {
+                String allowed = Arrays.stream(UserField.values()).map(UserField::getFieldName).collect(Collectors.joining(", "));
+                throw new CustomException("Invalid fields", "Unknown field '" + name.trim() + "', fields must be among " + allowed, HttpStatus.BAD_REQUEST);
+            }
+            selected.add(field);
+        }
+        return selected;
+    }
+
+    private static ImportMode parseImportMode(String mode) {
+        try {
+            return ImportMode.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new CustomException("Invalid import mode", "mode must be one of merge, diff", HttpStatus.BAD_REQUEST);
+        }
+    }
 }
@@ -0,0 +1,49 @@
+package com.magmutual.users.diagnostics;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+/**
+ * Records the time spent in a controller method as a {@link RequestPhaseEvent}. The phase ends when the
+ * controller returns: for a response body that is just before serialization, see
+ * {@link HandlerPhaseResponseAdvice}, otherwise when the handler completes.
+ */
+public class HandlerPhaseInterceptor implements HandlerInterceptor {
+
+    private static final String EVENT_ATTRIBUTE = HandlerPhaseInterceptor.class.getName() + ".event";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod handlerMethod) {
+            String operation = handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+            request.setAttribute(EVENT_ATTRIBUTE, RequestPhaseEvent.start(RequestPhaseEvent.HANDLER, operation));
+        }
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
+        finish(request, 0);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        finish(request, 0);
+    }
+
+    /**
+     * Ends the handler phase of a request if it is still open.
+     *
+     * @param request the request
+     * @param rows    the number of rows the handler returned
+     */
+    static void finish(HttpServletRequest request, long rows) {
+        if (request.getAttribute(EVENT_ATTRIBUTE) instanceof RequestPhaseEvent event) {
+            request.removeAttribute(EVENT_ATTRIBUTE);
+            event.finish(rows);
+        }
+    }
+}
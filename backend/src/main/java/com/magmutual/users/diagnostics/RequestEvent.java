@@ -0,0 +1,28 @@
+package com.magmutual.users.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering one HTTP request from the security filter to the written response. The
+ * {@link RequestPhaseEvent}s recorded on the same thread within its duration break it down.
+ */
+@Name("com.magmutual.users.Request")
+@Label("HTTP Request")
+@Category({"Users API", "Requests"})
+@Description("An HTTP request handled by the users API")
+@StackTrace(false)
+public class RequestEvent extends jdk.jfr.Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Status")
+    public int status;
+}
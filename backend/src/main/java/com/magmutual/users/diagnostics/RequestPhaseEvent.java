@@ -0,0 +1,89 @@
+package com.magmutual.users.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.springframework.data.domain.Page;
+
+import java.util.Collection;
+
+/**
+ * Flight Recorder event covering one phase of a request, such as parsing the token, loading the user
+ * details, running the repository query or serializing the response, with the number of rows it handled.
+ * When Flight Recorder is not recording the event is never committed and costs a single allocation.
+ */
+@Name("com.magmutual.users.RequestPhase")
+@Label("Request Phase")
+@Category({"Users API", "Requests"})
+@Description("A phase of an HTTP request handled by the users API")
+@StackTrace(false)
+public class RequestPhaseEvent extends jdk.jfr.Event {
+
+    public static final String TOKEN_PARSE = "token-parse";
+    public static final String USER_DETAILS = "user-details";
+    public static final String TOKEN_VALIDATE = "token-validate";
+    public static final String HANDLER = "handler";
+    public static final String QUERY = "query";
+    public static final String IMPORT = "import";
+    public static final String SERIALIZATION = "serialization";
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Rows")
+    public long rows;
+
+    /**
+     * Starts timing a phase.
+     *
+     * @param phase     the phase, one of the constants of this class
+     * @param operation what the phase works on, such as the service method or the serialized type
+     * @return the started event, to be passed the row count with {@link #finish(long)}
+     */
+    public static RequestPhaseEvent start(String phase, String operation) {
+        RequestPhaseEvent event = new RequestPhaseEvent();
+        if (event.isEnabled()) {
+            event.phase = phase;
+            event.operation = operation;
+            event.begin();
+        }
+        return event;
+    }
+
+    /**
+     * Ends the phase and commits the event if it is recorded and lasted longer than the threshold. A phase
+     * that started before the recording did is not recorded.
+     *
+     * @param rows the number of rows the phase handled
+     */
+    public void finish(long rows) {
+        if (phase != null && isEnabled()) {
+            end();
+            if (shouldCommit()) {
+                this.rows = rows;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Counts the rows of a response body: the elements of a page or collection, otherwise one row, or
+     * none for an empty body.
+     *
+     * @param body the response body
+     * @return the number of rows
+     */
+    public static long rowsOf(Object body) {
+        if (body instanceof Page<?> page) {
+            return page.getNumberOfElements();
+        } else if (body instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        return body != null ? 1 : 0;
+    }
+}
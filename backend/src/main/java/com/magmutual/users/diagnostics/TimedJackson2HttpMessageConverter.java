@@ -0,0 +1,29 @@
+package com.magmutual.users.diagnostics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * The Jackson message converter, recording each response it writes as a serialization
+ * {@link RequestPhaseEvent} with the type and number of rows written.
+ */
+public class TimedJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public TimedJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        RequestPhaseEvent serialization = RequestPhaseEvent.start(RequestPhaseEvent.SERIALIZATION,
+                object != null ? object.getClass().getSimpleName() : "null");
+        super.writeInternal(object, type, outputMessage);
+        serialization.finish(RequestPhaseEvent.rowsOf(object));
+    }
+}
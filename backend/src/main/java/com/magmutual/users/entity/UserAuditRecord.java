@@ -0,0 +1,58 @@
+package com.magmutual.users.entity;
+
+import com.magmutual.users.constants.AuditAction;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.sql.Timestamp;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of the append-only audit trail of user changes. Entries are written in batches by
+ * {@link com.magmutual.users.service.UserAuditTrail} and never updated.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "user_audit_log", indexes = @Index(name = "idx_user_audit_log_userid_occurredat", columnList = "userid, occurredat"))
+public class UserAuditRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private AuditAction action;
+
+    @Column(name = "userid")
+    private Long userId;
+
+    @Column(nullable = false)
+    private String actor;
+
+    @Column(name = "occurredat", nullable = false)
+    private Timestamp occurredAt;
+
+    @Column(name = "changedfields")
+    private String changedFields;
+
+    private String details;
+
+    public UserAuditRecord(AuditAction action, Long userId, String actor, Timestamp occurredAt, String changedFields, String details) {
+        this.action = action;
+        this.userId = userId;
+        this.actor = actor;
+        this.occurredAt = occurredAt;
+        this.changedFields = changedFields;
+        this.details = details;
+    }
+}
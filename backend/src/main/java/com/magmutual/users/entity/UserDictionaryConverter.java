@@ -0,0 +1,53 @@
+package com.magmutual.users.entity;
+
+import com.magmutual.users.constants.UserField;
+import com.magmutual.users.repository.UserDictionary;
+import jakarta.persistence.AttributeConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Stores a user field as the id of its {@link UserDictionary} entry. Hibernate obtains the converters from
+ * Spring, which injects the dictionary.
+ *
+ * <p>Converting a value for the database adds it to the dictionary if it is new, and that includes query
+ * parameters, so filters must check the value with {@link UserDictionary#find} before querying by it.
+ */
+public abstract class UserDictionaryConverter implements AttributeConverter<String, Integer> {
+
+    @Autowired
+    private UserDictionary userDictionary;
+
+    private final UserField field;
+
+    protected UserDictionaryConverter(UserField field) {
+        this.field = field;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String value) {
+        return userDictionary.idOf(field, value);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer id) {
+        return userDictionary.valueOf(id);
+    }
+
+    public static class Profession extends UserDictionaryConverter {
+        public Profession() {
+            super(UserField.PROFESSION);
+        }
+    }
+
+    public static class Country extends UserDictionaryConverter {
+        public Country() {
+            super(UserField.COUNTRY);
+        }
+    }
+
+    public static class City extends UserDictionaryConverter {
+        public City() {
+            super(UserField.CITY);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.magmutual.users.entity;
+
+import com.magmutual.users.constants.UserField;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+import lombok.Data;
+
+/**
+ * One distinct value of a user field stored by reference. Users rows hold the id of the entry instead of
+ * the string; entries are added by {@link com.magmutual.users.repository.UserDictionary} and never changed
+ * or removed, so an id keeps meaning the same value.
+ */
+@Entity
+@Data
+@Table(name = "user_dictionary", uniqueConstraints = @UniqueConstraint(name = "uk_user_dictionary_field_value", columnNames = {"field", "value"}))
+public class UserDictionaryEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private UserField field;
+
+    @Column(nullable = false)
+    private String value;
+}
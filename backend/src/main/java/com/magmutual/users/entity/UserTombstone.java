@@ -0,0 +1,32 @@
+package com.magmutual.users.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.sql.Timestamp;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Marker left behind when a user is deleted, so that syncing clients can learn about the delete.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "user_tombstones", indexes = @Index(name = "idx_user_tombstones_deletedat_id", columnList = "deletedat, id"))
+public class UserTombstone {
+
+    @Id
+    private Long id;
+
+    @Column(name = "deletedat", nullable = false)
+    private Timestamp deletedAt;
+
+    public UserTombstone(Long id, Timestamp deletedAt) {
+        this.id = id;
+        this.deletedAt = deletedAt;
+    }
+}
@@ -0,0 +1,35 @@
+package com.magmutual.users.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.sql.Timestamp;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The position of the newest tombstone purged so far, kept in a single row. A change token before it may
+ * have missed deletes that are no longer tracked; any token at or after it has not.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "user_tombstone_horizon")
+public class UserTombstoneHorizon {
+
+    /**
+     * The id of the only row.
+     */
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(name = "purgedthrough", nullable = false)
+    private Timestamp purgedThrough;
+
+    @Column(name = "purgedthroughid", nullable = false)
+    private Long purgedThroughId;
+}
@@ -1,27 +1,98 @@
 package com.magmutual.users.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.magmutual.users.utils.FingerprintUtil;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Transient;
 import java.sql.Timestamp;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.CurrentTimestamp;
+import org.hibernate.annotations.SourceType;
+import org.springframework.data.domain.Persistable;
 
+/**
+ * A user. The table is partitioned by {@code datecreated} and its indexes are maintained by
+ * {@link com.magmutual.users.service.UserPartitionService}, since Hibernate cannot see indexes on a
+ * partitioned table and would recreate them on every start. Profession, country and city are stored as
+ * references to the shared {@link com.magmutual.users.repository.UserDictionary} entries.
+ *
+ * <p>A user marked as new is persisted with a plain insert. Any other user is merged, which first looks the
+ * id up, so imports can overwrite existing rows.
+ */
 @Entity
 @Data
-public class Users {
+public class Users implements Persistable<Long> {
 
     @Id
     private Long id;
     private String firstname;
     private String lastname;
     private String email;
+
+    @Column(name = "profession_id")
+    @Convert(converter = UserDictionaryConverter.Profession.class)
     private String profession;
 
     @Column(name = "datecreated", nullable = false)
     private Timestamp dateCreated;
+
+    @Column(name = "country_id")
+    @Convert(converter = UserDictionaryConverter.Country.class)
     private String country;
+
+    @Column(name = "city_id")
+    @Convert(converter = UserDictionaryConverter.City.class)
     private String city;
 
-}
+    /**
+     * When the row was last written, on the database clock. Writes set it to the current timestamp, and a
+     * trigger replaces that with the time of the write itself, after the writing transaction has marked
+     * itself for the change feed (see {@code UserChangeTracking}).
+     */
+    @Column(name = "lastmodified")
+    @CurrentTimestamp(source = SourceType.DB)
+    private Timestamp lastModified;
+
+    @JsonIgnore
+    private Long fingerprint;
 
+    @Transient
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean newUser;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return newUser;
+    }
+
+    /**
+     * Stamps the row with the fingerprint of its content, which lets imports skip unchanged rows.
+     */
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        fingerprint = FingerprintUtil.of(this);
+    }
+
+    /**
+     * Once the row exists, later saves of this instance must update it rather than insert it again.
+     */
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        newUser = false;
+    }
+}
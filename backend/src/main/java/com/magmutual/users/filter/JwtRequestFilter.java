@@ -1,14 +1,15 @@
 package com.magmutual.users.filter;
 
 
+import com.magmutual.users.diagnostics.RequestEvent;
+import com.magmutual.users.diagnostics.RequestPhaseEvent;
 import com.magmutual.users.exception.CustomException;
 import com.magmutual.users.model.ErrorResponse;
 import com.magmutual.users.service.AuthenticationService;
 import com.magmutual.users.utils.JwtUtil;
 import com.magmutual.users.utils.ResponseUtil;
 import io.jsonwebtoken.ExpiredJwtException;
-import io.jsonwebtoken.MalformedJwtException;
-import io.jsonwebtoken.SignatureException;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -39,6 +40,8 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     /**
      * Filters each request and checks for JWT token in the Authorization header.
      * If a valid token is found, it sets the authentication in the SecurityContext.
+     * An expired token is answered with 401 so that the client can refresh it, as is any other invalid token.
+     * The request and its token and user details phases are recorded as Flight Recorder events.
      *
      * @param request  the HttpServletRequest
      * @param response the HttpServletResponse
@@ -49,6 +52,11 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
+        RequestEvent requestEvent = new RequestEvent();
+        boolean recorded = requestEvent.isEnabled();
+        if (recorded) {
+            requestEvent.begin();
+        }
         try {
             final String authorizationHeader = request.getHeader("Authorization");
 
@@ -57,13 +65,20 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
             if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
                 jwt = authorizationHeader.substring(7);
+                RequestPhaseEvent tokenParse = RequestPhaseEvent.start(RequestPhaseEvent.TOKEN_PARSE, "extractUsername");
                 username = jwtUtil.extractUsername(jwt);
+                tokenParse.finish(0);
             }
 
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                RequestPhaseEvent userDetailsPhase = RequestPhaseEvent.start(RequestPhaseEvent.USER_DETAILS, "loadUserByUsername");
                 UserDetails userDetails = this.authenticationService.loadUserByUsername(username);
+                userDetailsPhase.finish(1);
 
-                if (jwtUtil.validateToken(jwt, userDetails)) {
+                RequestPhaseEvent tokenValidate = RequestPhaseEvent.start(RequestPhaseEvent.TOKEN_VALIDATE, "validateToken");
+                boolean valid = jwtUtil.validateToken(jwt, userDetails);
+                tokenValidate.finish(0);
+                if (valid) {
                     List<SimpleGrantedAuthority> authorities = (List<SimpleGrantedAuthority>) jwtUtil.extractAllClaims(jwt)
                             .get("authorities", List.class).stream()
                             .map(authority -> new SimpleGrantedAuthority((String) authority))
@@ -79,9 +94,19 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         } catch (ExpiredJwtException ex) {
             logger.error("Token has expired", ex);
             ResponseUtil.writeErrorResponse(response, HttpStatus.UNAUTHORIZED, "Token has expired", "The provided token has expired.");
-        } catch (SignatureException | MalformedJwtException e) {
+        } catch (JwtException e) {
             logger.error("Token is invalid", e);
             ResponseUtil.writeErrorResponse(response, HttpStatus.UNAUTHORIZED, "Token is invalid", "The provided token is invalid.");
+        } finally {
+            if (recorded) {
+                requestEvent.end();
+                if (requestEvent.shouldCommit()) {
+                    requestEvent.method = request.getMethod();
+                    requestEvent.path = request.getRequestURI();
+                    requestEvent.status = response.getStatus();
+                    requestEvent.commit();
+                }
+            }
         }
     }
 }
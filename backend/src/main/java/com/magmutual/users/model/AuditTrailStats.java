@@ -0,0 +1,22 @@
+package com.magmutual.users.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * The state of the audit trail buffer. {@code reserved} counts the slots held by queued records and by
+ * changes whose transaction has not finished yet; once it reaches {@code capacity}, changes wait for the
+ * writer and are rejected if it does not catch up.
+ */
+@Data
+public class AuditTrailStats {
+    private final int capacity;
+    private final int reserved;
+    private final int queued;
+    private final long written;
+    private final long batches;
+    private final long rejected;
+    private final long failedFlushes;
+    private final Instant lastFlushAt;
+}
@@ -0,0 +1,11 @@
+package com.magmutual.users.model;
+
+import lombok.Data;
+
+/**
+ * The liveness or readiness state of the instance, such as {@code ACCEPTING_TRAFFIC} or {@code REFUSING_TRAFFIC}.
+ */
+@Data
+public class AvailabilityStatus {
+    private final String state;
+}
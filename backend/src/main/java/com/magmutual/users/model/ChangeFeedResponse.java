@@ -0,0 +1,18 @@
+package com.magmutual.users.model;
+
+import com.magmutual.users.entity.Users;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A batch of changes from the user change feed. Clients apply {@code deleted} before {@code updated}
+ * and pass {@code nextToken} as {@code since} on the following call.
+ */
+@Data
+public class ChangeFeedResponse {
+    private final List<Users> updated;
+    private final List<Long> deleted;
+    private final String nextToken;
+    private final boolean hasMore;
+}
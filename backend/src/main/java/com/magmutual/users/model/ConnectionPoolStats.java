@@ -0,0 +1,18 @@
+package com.magmutual.users.model;
+
+import lombok.Data;
+
+/**
+ * The size, usage and queue of one database connection pool. {@code waiting} counts the threads blocked
+ * for a connection, which fail once they have waited {@code connectionTimeoutMs}.
+ */
+@Data
+public class ConnectionPoolStats {
+    private final String name;
+    private final int maximumPoolSize;
+    private final long connectionTimeoutMs;
+    private final int active;
+    private final int idle;
+    private final int waiting;
+    private final int total;
+}
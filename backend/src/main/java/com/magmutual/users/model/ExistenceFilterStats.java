@@ -0,0 +1,30 @@
+package com.magmutual.users.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * The state of the in-memory existence filter of user ids and emails. A check answered by the filter alone
+ * is a definite miss; any other check went on to the database, and a false positive is one the database
+ * then did not find.
+ */
+@Data
+public class ExistenceFilterStats {
+    private final boolean ready;
+    private final long capacity;
+    private final long idInsertions;
+    private final long emailInsertions;
+    private final long bitsPerFilter;
+    private final int hashFunctions;
+    private final double expectedFalsePositiveRate;
+    private final long checks;
+    private final long definiteMisses;
+    private final long databaseLookups;
+    private final long falsePositives;
+    private final double observedFalsePositiveRate;
+    private final long rebuilds;
+    private final Instant lastRebuildAt;
+    private final long lastRebuildMillis;
+    private final long lastRebuildRows;
+}
@@ -0,0 +1,17 @@
+package com.magmutual.users.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.magmutual.users.constants.ImportMode;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportResult {
+    private final ImportMode mode;
+    private final long processed;
+    private final Long inserted;
+    private final Long updated;
+    private final Long unchanged;
+    private final long rejected;
+    private final String errorReportId;
+}
@@ -0,0 +1,15 @@
+package com.magmutual.users.model;
+
+import lombok.Data;
+
+/**
+ * A problem with one value of a CSV row that kept the row from being imported.
+ */
+@Data
+public class ImportRowError {
+    private final long record;
+    private final String id;
+    private final String field;
+    private final String value;
+    private final String message;
+}
@@ -6,4 +6,5 @@ import lombok.Data;
 public class JwtResponse {
 
     private final String token;
+    private final String refreshToken;
 }
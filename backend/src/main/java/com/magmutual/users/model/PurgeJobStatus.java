@@ -0,0 +1,31 @@
+package com.magmutual.users.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.sql.Date;
+import java.time.Instant;
+
+/**
+ * The progress of a delete-by-filter job. {@code estimatedTotal} is the number of matching users counted
+ * when the job started; users written while it runs may change how many are actually deleted.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PurgeJobStatus {
+
+    public enum State { QUEUED, RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    private final String jobId;
+    private final State state;
+    private final Date startDate;
+    private final Date endDate;
+    private final String profession;
+    private final Long estimatedTotal;
+    private final long deleted;
+    private final long chunks;
+    private final Instant createdAt;
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final String error;
+}
@@ -0,0 +1,21 @@
+package com.magmutual.users.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * The state of the circuit breaker in front of user reads. While {@code open} is true, reads are answered
+ * from the stored responses or rejected, and only retries reach the database.
+ */
+@Data
+public class ReadFallbackStats {
+    private final boolean open;
+    private final int consecutiveFailures;
+    private final int poolWaiters;
+    private final int storedResponses;
+    private final long servedStale;
+    private final long rejected;
+    private final long timesOpened;
+    private final Instant lastOpenedAt;
+}
@@ -0,0 +1,21 @@
+package com.magmutual.users.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * The state of a Flight Recorder recording started through the diagnostics API. The recording file can
+ * be downloaded once the state is {@code STOPPED}.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RecordingStatus {
+    private final long recordingId;
+    private final String state;
+    private final Instant startedAt;
+    private final long durationSeconds;
+    private final long maxSizeBytes;
+    private final Long fileSizeBytes;
+}
@@ -0,0 +1,9 @@
+package com.magmutual.users.model;
+
+import lombok.Data;
+
+@Data
+public class RefreshTokenRequest {
+
+    private String refreshToken;
+}
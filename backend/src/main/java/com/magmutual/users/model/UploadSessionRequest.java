@@ -0,0 +1,14 @@
+package com.magmutual.users.model;
+
+import lombok.Data;
+
+/**
+ * Opens a chunked upload. {@code chunkSize} defaults to the server's preferred size; {@code totalSize},
+ * when given, is checked on commit.
+ */
+@Data
+public class UploadSessionRequest {
+    private String mode;
+    private Integer chunkSize;
+    private Long totalSize;
+}
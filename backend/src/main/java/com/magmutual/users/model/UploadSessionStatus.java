@@ -0,0 +1,20 @@
+package com.magmutual.users.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.magmutual.users.constants.ImportMode;
+import lombok.Data;
+
+/**
+ * The state of a chunked upload. A client that lost its connection resumes by sending chunk
+ * {@code nextChunk}; every chunk before it has been acknowledged and is on disk.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UploadSessionStatus {
+    private final String uploadId;
+    private final ImportMode mode;
+    private final int chunkSize;
+    private final Long totalSize;
+    private final int nextChunk;
+    private final long bytesReceived;
+}
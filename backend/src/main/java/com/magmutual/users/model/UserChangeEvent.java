@@ -0,0 +1,40 @@
+package com.magmutual.users.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.magmutual.users.entity.Users;
+import lombok.Data;
+
+/**
+ * A change to the users table as pushed to subscribed clients. Upserts carry the row so clients can
+ * update in place; IMPORT, PURGE and RESYNC tell clients to refetch what they are showing.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserChangeEvent {
+
+    public enum Type { UPSERT, DELETE, IMPORT, PURGE, RESYNC }
+
+    private final Type type;
+    private final Long id;
+    private final Users user;
+
+    public static UserChangeEvent upsert(Users user) {
+        return new UserChangeEvent(Type.UPSERT, user.getId(), user);
+    }
+
+    public static UserChangeEvent delete(Long id) {
+        return new UserChangeEvent(Type.DELETE, id, null);
+    }
+
+    public static UserChangeEvent imported() {
+        return new UserChangeEvent(Type.IMPORT, null, null);
+    }
+
+    public static UserChangeEvent purged() {
+        return new UserChangeEvent(Type.PURGE, null, null);
+    }
+
+    public static UserChangeEvent resync() {
+        return new UserChangeEvent(Type.RESYNC, null, null);
+    }
+}
@@ -0,0 +1,11 @@
+package com.magmutual.users.model;
+
+import lombok.Data;
+
+/**
+ * Whether a user with the requested id or email exists.
+ */
+@Data
+public class UserExistsResponse {
+    private final boolean exists;
+}
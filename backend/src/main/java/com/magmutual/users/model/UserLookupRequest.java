@@ -0,0 +1,13 @@
+package com.magmutual.users.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The ids of the users to fetch in one call.
+ */
+@Data
+public class UserLookupRequest {
+    private List<Long> ids;
+}
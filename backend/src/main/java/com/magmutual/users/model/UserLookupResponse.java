@@ -0,0 +1,15 @@
+package com.magmutual.users.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The users found for a lookup, in the order of the requested ids, with {@code null} at the position of
+ * every id that has no user. {@code missing} lists those ids once each.
+ */
+@Data
+public class UserLookupResponse {
+    private final List<?> users;
+    private final List<Long> missing;
+}
@@ -0,0 +1,55 @@
+package com.magmutual.users.repository;
+
+import com.magmutual.users.entity.UserAuditRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.SqlArrayValue;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Appends audit records to the user audit log.
+ */
+@Repository
+public class UserAuditRepository {
+
+    private static final String INSERT =
+            "INSERT INTO user_audit_log (action, userid, actor, occurredat, changedfields, details) "
+                    + "SELECT * FROM unnest(?::varchar[], ?::bigint[], ?::varchar[], ?::timestamp[], ?::varchar[], ?::varchar[])";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts the given records with a single multi-row statement.
+     *
+     * @param records the records to append
+     * @return the number of rows inserted
+     */
+    public int insert(List<UserAuditRecord> records) {
+        int size = records.size();
+        Object[] actions = new Object[size];
+        Object[] userIds = new Object[size];
+        Object[] actors = new Object[size];
+        Object[] occurredAt = new Object[size];
+        Object[] changedFields = new Object[size];
+        Object[] details = new Object[size];
+        for (int i = 0; i < size; i++) {
+            UserAuditRecord record = records.get(i);
+            actions[i] = record.getAction().name();
+            userIds[i] = record.getUserId();
+            actors[i] = record.getActor();
+            occurredAt[i] = record.getOccurredAt();
+            changedFields[i] = record.getChangedFields();
+            details[i] = record.getDetails();
+        }
+        return jdbcTemplate.update(INSERT,
+                new SqlArrayValue("varchar", actions),
+                new SqlArrayValue("bigint", userIds),
+                new SqlArrayValue("varchar", actors),
+                new SqlArrayValue("timestamp", occurredAt),
+                new SqlArrayValue("varchar", changedFields),
+                new SqlArrayValue("varchar", details));
+    }
+}
@@ -0,0 +1,223 @@
+package com.magmutual.users.repository;
+
+import com.magmutual.users.constants.UserField;
+import com.magmutual.users.entity.Users;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.SqlArrayValue;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Native bulk operations on the users table that would cost one statement per row through JPA.
+ */
+@Repository
+public class UserBulkRepository {
+
+    private static final String SELECT_FINGERPRINTS =
+            "SELECT id, fingerprint FROM users WHERE id = ANY (?)";
+
+    /**
+     * Updates the existing ids whose fingerprint differs and inserts the missing ones in one statement, stamped
+     * by the database as {@link Users#getLastModified()} is. The users table is partitioned by datecreated, so
+     * its key is (id, datecreated) and ON CONFLICT (id) is not available; both parts see the same snapshot, so an id is either updated or inserted. An id that a
+     * concurrent transaction inserts after that snapshot is caught by the id claim on insert, which fails the
+     * statement instead of adding a second row.
+     */
+    private static final String UPSERT =
+            "WITH incoming AS (SELECT * FROM unnest(?::bigint[], ?::varchar[], ?::varchar[], ?::varchar[], ?::int[], ?::timestamp[], ?::int[], ?::int[], ?::bigint[]) "
+                    + "AS t (id, firstname, lastname, email, profession_id, datecreated, country_id, city_id, fingerprint)), "
+                    + "updated AS (UPDATE users SET firstname = i.firstname, lastname = i.lastname, email = i.email, "
+                    + "profession_id = i.profession_id, datecreated = i.datecreated, country_id = i.country_id, city_id = i.city_id, "
+                    + "lastmodified = now(), fingerprint = i.fingerprint "
+                    + "FROM incoming i WHERE users.id = i.id AND users.fingerprint IS DISTINCT FROM i.fingerprint RETURNING 1), "
+                    + "inserted AS (INSERT INTO users (id, firstname, lastname, email, profession_id, datecreated, country_id, city_id, lastmodified, fingerprint) "
+                    + "SELECT i.id, i.firstname, i.lastname, i.email, i.profession_id, i.datecreated, i.country_id, i.city_id, now(), i.fingerprint "
+                    + "FROM incoming i WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.id = i.id) RETURNING 1) "
+                    + "SELECT (SELECT count(*) FROM updated) + (SELECT count(*) FROM inserted)";
+
+    /**
+     * Deletes the next chunk of matching users in key order, leaves a tombstone for each and returns the number
+     * deleted with the key of the last row of the chunk. The filter conditions are substituted for %s.
+     */
+    private static final String DELETE_CHUNK =
+            "WITH doomed AS (SELECT id, datecreated FROM users WHERE %s ORDER BY datecreated, id LIMIT ?), "
+                    + "deleted AS (DELETE FROM users u USING doomed d WHERE u.id = d.id AND u.datecreated = d.datecreated RETURNING u.id), "
+                    + "tombstones AS (INSERT INTO user_tombstones (id, deletedat) SELECT id, now() FROM deleted "
+                    + "ON CONFLICT (id) DO UPDATE SET deletedat = EXCLUDED.deletedat) "
+                    + "SELECT (SELECT count(*) FROM deleted), d.datecreated, d.id FROM doomed d ORDER BY d.datecreated DESC, d.id DESC LIMIT 1";
+
+    private static final String COUNT_MATCHING = "SELECT count(*) FROM users WHERE %s";
+
+    private static final String SCAN_IDS_AND_EMAILS = "SELECT id, email FROM users";
+    private static final int SCAN_FETCH_SIZE = 10_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserDictionary userDictionary;
+
+    /**
+     * Loads the stored content fingerprints for the given ids in a single query.
+     * Ids without a row are absent from the result; rows written before fingerprints existed map to null.
+     *
+     * @param ids the user ids
+     * @return the stored fingerprint per id
+     */
+    public Map<Long, Long> findFingerprints(Collection<Long> ids) {
+        Map<Long, Long> fingerprints = new HashMap<>(ids.size() * 2);
+        jdbcTemplate.query(SELECT_FINGERPRINTS, rs -> {
+            long fingerprint = rs.getLong(2);
+            fingerprints.put(rs.getLong(1), rs.wasNull() ? null : fingerprint);
+        }, new SqlArrayValue("bigint", ids.toArray()));
+        return fingerprints;
+    }
+
+    /**
+     * Inserts or updates the given users with a single multi-row statement. Each user must already
+     * carry its fingerprint; rows whose stored fingerprint matches are left untouched. New professions,
+     * countries and cities are added to the dictionary first, one statement per field.
+     *
+     * @param users the users to upsert
+     * @return the number of rows written
+     */
+    public int upsert(List<Users> users) {
+        int size = users.size();
+        Object[] ids = new Object[size];
+        Object[] firstnames = new Object[size];
+        Object[] lastnames = new Object[size];
+        Object[] emails = new Object[size];
+        Object[] professions = new Object[size];
+        Object[] datesCreated = new Object[size];
+        Object[] countries = new Object[size];
+        Object[] cities = new Object[size];
+        Object[] fingerprints = new Object[size];
+        Map<String, Integer> professionIds = userDictionary.idsOf(UserField.PROFESSION, users.stream().map(Users::getProfession).toList());
+        Map<String, Integer> countryIds = userDictionary.idsOf(UserField.COUNTRY, users.stream().map(Users::getCountry).toList());
+        Map<String, Integer> cityIds = userDictionary.idsOf(UserField.CITY, users.stream().map(Users::getCity).toList());
+        for (int i = 0; i < size; i++) {
+            Users user = users.get(i);
+            ids[i] = user.getId();
+            firstnames[i] = user.getFirstname();
+            lastnames[i] = user.getLastname();
+            emails[i] = user.getEmail();
+            professions[i] = professionIds.get(user.getProfession());
+            datesCreated[i] = user.getDateCreated();
+            countries[i] = countryIds.get(user.getCountry());
+            cities[i] = cityIds.get(user.getCity());
+            fingerprints[i] = user.getFingerprint();
+        }
+        return jdbcTemplate.queryForObject(UPSERT, Integer.class,
+                new SqlArrayValue("bigint", ids),
+                new SqlArrayValue("varchar", firstnames),
+                new SqlArrayValue("varchar", lastnames),
+                new SqlArrayValue("varchar", emails),
+                new SqlArrayValue("integer", professions),
+                new SqlArrayValue("timestamp", datesCreated),
+                new SqlArrayValue("integer", countries),
+                new SqlArrayValue("integer", cities),
+                new SqlArrayValue("bigint", fingerprints));
+    }
+
+    /**
+     * Streams the id and email of every user. The rows are fetched in batches rather than all at once, which
+     * PostgreSQL only does inside a transaction, so callers must run this in one.
+     *
+     * @param consumer receives the id and email of each user
+     */
+    public void scanIdsAndEmails(BiConsumer<Long, String> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SCAN_IDS_AND_EMAILS);
+            statement.setFetchSize(SCAN_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getLong(1), rs.getString(2)));
+    }
+
+    /**
+     * Counts the users matching a delete-by-filter. Every filter is optional.
+     *
+     * @param startDate the first creation date to match, or null
+     * @param endDate the last creation date to match, or null
+     * @param profession the profession to match, or null
+     * @return the number of matching users
+     */
+    public long countMatching(Date startDate, Date endDate, String profession) {
+        List<Object> args = new ArrayList<>();
+        String conditions = filterConditions(startDate, endDate, profession, null, null, args);
+        return jdbcTemplate.queryForObject(COUNT_MATCHING.formatted(conditions), Long.class, args.toArray());
+    }
+
+    /**
+     * Deletes up to {@code limit} matching users that come after the given key in (datecreated, id) order, in a
+     * single statement and so a single short transaction, and leaves a tombstone for each so the change feed
+     * reports the deletes. Walking the key range with the last key of the previous chunk keeps each chunk an
+     * index range scan that does not revisit the dead rows of earlier chunks.
+     *
+     * @param startDate the first creation date to match, or null
+     * @param endDate the last creation date to match, or null
+     * @param profession the profession to match, or null
+     * @param after the key of the last row of the previous chunk, or null for the first chunk
+     * @param limit the maximum number of users to delete
+     * @return the number deleted and the key to continue after, or null if no user is left to delete
+     */
+    public DeletedChunk deleteChunk(Date startDate, Date endDate, String profession, DeletedChunk after, int limit) {
+        List<Object> args = new ArrayList<>();
+        String conditions = filterConditions(startDate, endDate, profession,
+                after != null ? after.lastDateCreated() : null, after != null ? after.lastId() : null, args);
+        args.add(limit);
+        List<DeletedChunk> chunk = jdbcTemplate.query(DELETE_CHUNK.formatted(conditions),
+                (rs, row) -> new DeletedChunk(rs.getInt(1), rs.getTimestamp(2), rs.getLong(3)), args.toArray());
+        return chunk.isEmpty() ? null : chunk.get(0);
+    }
+
+    /**
+     * Builds the WHERE conditions of a delete-by-filter and collects their arguments. The end date is
+     * inclusive, whatever the time of day of the stored creation dates. A profession that is not in the
+     * dictionary matches no user.
+     */
+    private String filterConditions(Date startDate, Date endDate, String profession, Timestamp afterDateCreated, Long afterId, List<Object> args) {
+        List<String> conditions = new ArrayList<>();
+        if (startDate != null) {
+            conditions.add("datecreated >= ?");
+            args.add(new Timestamp(startDate.getTime()));
+        }
+        if (endDate != null) {
+            conditions.add("datecreated < ?");
+            args.add(Timestamp.valueOf(endDate.toLocalDate().plusDays(1).atStartOfDay()));
+        }
+        if (profession != null) {
+            Integer professionId = userDictionary.find(UserField.PROFESSION, profession);
+            conditions.add(professionId != null ? "profession_id = ?" : "false");
+            if (professionId != null) {
+                args.add(professionId);
+            }
+        }
+        if (afterDateCreated != null) {
+            conditions.add("(datecreated, id) > (?, ?)");
+            args.add(afterDateCreated);
+            args.add(afterId);
+        }
+        return conditions.isEmpty() ? "true" : String.join(" AND ", conditions);
+    }
+
+    /**
+     * The outcome of one delete-by-filter chunk.
+     *
+     * @param deleted the number of users deleted, which can be lower than the chunk size if other writers got there first
+     * @param lastDateCreated the creation date of the last user of the chunk
+     * @param lastId the id of the last user of the chunk
+     */
+    public record DeletedChunk(int deleted, Timestamp lastDateCreated, long lastId) {
+    }
+}
@@ -0,0 +1,263 @@
+package com.magmutual.users.repository;
+
+import com.magmutual.users.constants.UserField;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.SqlArrayValue;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process cache of the user_dictionary table, which stores each distinct profession, country and city once
+ * so users rows can hold a 4-byte id instead of the string. Ids resolve to one shared string instance per
+ * value, so loaded users do not each carry their own copy.
+ *
+ * <p>The whole dictionary is loaded on first use; values and ids added since, by this or another instance,
+ * are looked up one at a time when first seen. Every statement runs on the caller's connection, so a value
+ * is added in the same transaction as the users that refer to it and no second connection is taken while
+ * the caller holds one. Entries read by a transaction that added values may not be committed yet, so they
+ * are only visible to that transaction until it commits, and forgotten if it rolls back. Entries are never
+ * removed, which keeps the cache consistent without invalidation, and the number of distinct values of
+ * these fields stays small.
+ */
+@Repository
+public class UserDictionary {
+
+    /**
+     * The user fields stored by reference.
+     */
+    public static final Set<UserField> FIELDS = EnumSet.of(UserField.PROFESSION, UserField.COUNTRY, UserField.CITY);
+
+    private static final String SELECT_ALL = "SELECT id, field, value FROM user_dictionary";
+    private static final String SELECT_BY_ID = "SELECT id, field, value FROM user_dictionary WHERE id = ?";
+    private static final String SELECT_BY_VALUES = "SELECT id, field, value FROM user_dictionary WHERE field = ? AND value = ANY (?)";
+    private static final String INSERT_VALUES =
+            "INSERT INTO user_dictionary (field, value) SELECT ?, v FROM unnest(?::varchar[]) AS v ON CONFLICT (field, value) DO NOTHING";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Entries entries = new Entries();
+    private volatile boolean loaded;
+
+    private final Object pendingEntriesKey = new Object();
+
+    /**
+     * @param fieldName the name of a user field, as used in JSON and sorting
+     * @return whether the field is stored by reference
+     */
+    public static boolean isDictionaryField(String fieldName) {
+        return FIELDS.stream().anyMatch(field -> field.getFieldName().equals(fieldName));
+    }
+
+    /**
+     * Finds the id of a value without adding it, for filters: a value that is not in the dictionary matches
+     * no user.
+     *
+     * @param field the field
+     * @param value the value, or null
+     * @return the id, or null if the value is null or not in the dictionary
+     */
+    public Integer find(UserField field, String value) {
+        if (value == null) {
+            return null;
+        }
+        Integer id = cached(field, value);
+        if (id == null) {
+            id = select(field, Set.of(value)).get(value);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of a value, adding the value to the dictionary if it is new.
+     *
+     * @param field the field
+     * @param value the value, or null
+     * @return the id, or null if the value is null
+     */
+    public Integer idOf(UserField field, String value) {
+        if (value == null) {
+            return null;
+        }
+        Integer id = cached(field, value);
+        return id != null ? id : idsOf(field, Set.of(value)).get(value);
+    }
+
+    /**
+     * Returns the ids of the given values, adding the uncached ones to the dictionary with a single
+     * insert that skips the values already there, such as those added by another instance since the
+     * dictionary was loaded, followed by a single select of their ids.
+     *
+     * @param field the field
+     * @param fieldValues the values; nulls are ignored
+     * @return the id of every non-null value
+     */
+    public Map<String, Integer> idsOf(UserField field, Collection<String> fieldValues) {
+        Map<String, Integer> result = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String value : fieldValues) {
+            if (value == null || result.containsKey(value)) {
+                continue;
+            }
+            Integer id = cached(field, value);
+            if (id != null) {
+                result.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        if (!missing.isEmpty()) {
+            insert(field, missing);
+            result.putAll(select(field, missing));
+        }
+        return result;
+    }
+
+    /**
+     * Resolves an id to its value.
+     *
+     * @param id the id, or null
+     * @return the shared instance of the value, or null if the id is null
+     * @throws IllegalStateException if there is no such entry
+     */
+    public String valueOf(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        load();
+        String value = lookUp(id);
+        if (value == null) {
+            query(SELECT_BY_ID, id);
+            value = lookUp(id);
+        }
+        if (value == null) {
+            throw new IllegalStateException("No user dictionary entry " + id);
+        }
+        return value;
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public int size() {
+        return entries.values.size();
+    }
+
+    private Integer cached(UserField field, String value) {
+        load();
+        return lookUp(field, value);
+    }
+
+    private Integer lookUp(UserField field, String value) {
+        Integer id = entries.ids.get(field).get(value);
+        Entries pending = pendingEntries(false);
+        return id == null && pending != null ? pending.ids.get(field).get(value) : id;
+    }
+
+    private String lookUp(int id) {
+        String value = entries.values.get(id);
+        Entries pending = pendingEntries(false);
+        return value == null && pending != null ? pending.values.get(id) : value;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                query(SELECT_ALL);
+                loaded = true;
+            }
+        }
+    }
+
+    private Map<String, Integer> select(UserField field, Set<String> fieldValues) {
+        Map<String, Integer> found = new HashMap<>();
+        query(SELECT_BY_VALUES, field.name(), new SqlArrayValue("varchar", fieldValues.toArray()));
+        for (String value : fieldValues) {
+            Integer id = lookUp(field, value);
+            if (id != null) {
+                found.put(value, id);
+            }
+        }
+        return found;
+    }
+
+    private void insert(UserField field, Set<String> fieldValues) {
+        pendingEntries(true);
+        jdbcTemplate.update(INSERT_VALUES, field.name(), new SqlArrayValue("varchar", fieldValues.toArray()));
+    }
+
+    /**
+     * Runs a query returning entries on the caller's connection and caches every entry it returns, only for
+     * the current transaction if it added values.
+     */
+    private void query(String sql, Object... args) {
+        Entries pending = pendingEntries(false);
+        Entries target = pending != null ? pending : entries;
+        jdbcTemplate.query(sql, rs -> {
+            target.add(rs.getInt(1), UserField.valueOf(rs.getString(2)), rs.getString(3));
+        }, args);
+    }
+
+    /**
+     * Returns the entries read by the current transaction since it added values, which are cached once it
+     * commits and forgotten if it rolls back.
+     *
+     * @param create whether to start collecting them if the transaction has not added values yet
+     * @return the entries read by the current transaction, or null outside of one or if it added no values
+     */
+    private Entries pendingEntries(boolean create) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Entries pending = (Entries) TransactionSynchronizationManager.getResource(pendingEntriesKey);
+        if (pending == null && create) {
+            Entries added = new Entries();
+            TransactionSynchronizationManager.bindResource(pendingEntriesKey, added);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    added.ids.forEach((field, fieldIds) -> fieldIds.forEach((value, id) -> entries.add(id, field, value)));
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingEntriesKey);
+                }
+            });
+            pending = added;
+        }
+        return pending;
+    }
+
+    /**
+     * Entries by field and value and by id. Each value is kept as one shared instance.
+     */
+    private static class Entries {
+
+        private final Map<UserField, Map<String, Integer>> ids = new EnumMap<>(UserField.class);
+        private final Map<Integer, String> values = new ConcurrentHashMap<>();
+
+        private Entries() {
+            FIELDS.forEach(field -> ids.put(field, new ConcurrentHashMap<>()));
+        }
+
+        private void add(int id, UserField field, String value) {
+            String canonical = values.putIfAbsent(id, value);
+            ids.get(field).putIfAbsent(canonical != null ? canonical : value, id);
+        }
+    }
+}
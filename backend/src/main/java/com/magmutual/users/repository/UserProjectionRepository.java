@@ -0,0 +1,190 @@
+package com.magmutual.users.repository;
+
+import com.magmutual.users.constants.UserField;
+import com.magmutual.users.entity.Users;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Queries that select only some of the user columns, for callers that do not need the whole row. Rows are
+ * returned as maps from field name to value, in {@link UserField} order, holding the same value types as the
+ * {@link Users} entity so they serialize the same way.
+ */
+@Repository
+public class UserProjectionRepository {
+
+    /**
+     * The database function resolving a dictionary id to its value, created by
+     * {@link com.magmutual.users.service.UserDictionaryMigration}.
+     */
+    public static final String DICTIONARY_VALUE_FUNCTION = "user_dictionary_value";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Finds a page of users, selecting only the given fields, with the same optional filters as
+     * {@link UserRepository}'s finders. The count query is skipped when the page shows it is not needed.
+     * Dictionary fields are sorted by their values.
+     *
+     * @param fields the fields to select
+     * @param startDate the start of the creation date range, or null
+     * @param endDate the end of the creation date range, or null
+     * @param profession the profession, which must be in the {@link UserDictionary}, or null
+     * @param pageable the page and sort
+     * @return the page of rows
+     */
+    public Page<Map<String, Object>> findFields(Set<UserField> fields, Date startDate, Date endDate, String profession, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Users> root = query.from(Users.class);
+        select(query, root, fields);
+        query.where(filters(cb, root, startDate, endDate, profession));
+        query.orderBy(orders(pageable.getSort(), root, cb));
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize());
+        List<Map<String, Object>> content = toRows(typedQuery.getResultList(), fields);
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> {
+            CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+            Root<Users> countRoot = countQuery.from(Users.class);
+            countQuery.select(cb.count(countRoot)).where(filters(cb, countRoot, startDate, endDate, profession));
+            return entityManager.createQuery(countQuery).getSingleResult();
+        });
+    }
+
+    /**
+     * Finds a page of whole users with the same optional filters as {@link UserRepository}'s finders, for
+     * sorts those finders cannot express: sorting by a dictionary field there would order by the ids of the
+     * values rather than by the values.
+     *
+     * @param startDate the start of the creation date range, or null
+     * @param endDate the end of the creation date range, or null
+     * @param profession the profession, which must be in the {@link UserDictionary}, or null
+     * @param pageable the page and sort
+     * @return the page of users
+     */
+    public Page<Users> findUsers(Date startDate, Date endDate, String profession, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Users> query = cb.createQuery(Users.class);
+        Root<Users> root = query.from(Users.class);
+        query.select(root).where(filters(cb, root, startDate, endDate, profession));
+        query.orderBy(orders(pageable.getSort(), root, cb));
+        List<Users> content = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> {
+            CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+            Root<Users> countRoot = countQuery.from(Users.class);
+            countQuery.select(cb.count(countRoot)).where(filters(cb, countRoot, startDate, endDate, profession));
+            return entityManager.createQuery(countQuery).getSingleResult();
+        });
+    }
+
+    /**
+     * Finds a user by id, selecting only the given fields.
+     *
+     * @param id the user id
+     * @param fields the fields to select
+     * @return the row, if the user exists
+     */
+    public Optional<Map<String, Object>> findFieldsById(Long id, Set<UserField> fields) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Users> root = query.from(Users.class);
+        select(query, root, fields);
+        query.where(cb.equal(root.get(UserField.ID.getFieldName()), id));
+        return toRows(entityManager.createQuery(query).getResultList(), fields).stream().findFirst();
+    }
+
+    /**
+     * Finds the users with the given ids in a single query, selecting only the given fields.
+     *
+     * @param ids the user ids
+     * @param fields the fields to select, which must include the id
+     * @return the rows of the users that exist, in no particular order
+     */
+    public List<Map<String, Object>> findFieldsByIds(Collection<Long> ids, Set<UserField> fields) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Users> root = query.from(Users.class);
+        select(query, root, fields);
+        query.where(root.get(UserField.ID.getFieldName()).in(ids));
+        return toRows(entityManager.createQuery(query).getResultList(), fields);
+    }
+
+    private static void select(CriteriaQuery<Tuple> query, Root<Users> root, Set<UserField> fields) {
+        query.multiselect(fields.stream()
+                .<Selection<?>>map(field -> root.get(field.getFieldName()).alias(field.getFieldName()))
+                .toList());
+    }
+
+    /**
+     * Translates a sort, ordering the dictionary fields by their values through the user_dictionary_value
+     * database function. No index covers that order, so such sorts read every matching row.
+     */
+    private static List<Order> orders(Sort sort, Root<Users> root, CriteriaBuilder cb) {
+        List<Order> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            if (UserDictionary.isDictionaryField(order.getProperty())) {
+                Expression<String> value = cb.function(DICTIONARY_VALUE_FUNCTION, String.class, root.get(order.getProperty()));
+                orders.add(order.isAscending() ? cb.asc(value) : cb.desc(value));
+            } else {
+                orders.addAll(QueryUtils.toOrders(Sort.by(order), root, cb));
+            }
+        }
+        return orders;
+    }
+
+    private static Predicate[] filters(CriteriaBuilder cb, Root<Users> root, Date startDate, Date endDate, String profession) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (startDate != null && endDate != null) {
+            predicates.add(cb.between(root.get(UserField.DATE_CREATED.getFieldName()), startDate, endDate));
+        }
+        if (profession != null) {
+            predicates.add(cb.equal(root.get(UserField.PROFESSION.getFieldName()), profession));
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    private static List<Map<String, Object>> toRows(List<Tuple> tuples, Set<UserField> fields) {
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Map<String, Object> row = new LinkedHashMap<>(fields.size() * 2);
+            for (UserField field : fields) {
+                row.put(field.getFieldName(), tuple.get(field.getFieldName()));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -2,12 +2,20 @@ package com.magmutual.users.repository;
 
 
 import com.magmutual.users.entity.Users;
+import com.magmutual.users.service.UserChangeTracking;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
 import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 
 public interface UserRepository extends JpaRepository<Users, String>, PagingAndSortingRepository<Users, String> {
 
@@ -16,4 +24,50 @@ public interface UserRepository extends JpaRepository<Users, String>, PagingAndS
     Page<Users> findByProfession(String profession, Pageable pageable);
 
     Page<Users> findByDateCreatedBetweenAndProfession(Date startDate, Date endDate, String profession, Pageable pageable);
+
+    List<Users> findByIdIn(Collection<Long> ids);
+
+    @Query("select count(u) > 0 from Users u where lower(u.email) = lower(:email)")
+    boolean existsByEmailIgnoreCase(@Param("email") String email);
+
+    /**
+     * Returns the start of the oldest transaction that is writing users or tombstones right now, found by the
+     * write lock {@link UserChangeTracking} makes them take, and the start of this statement, which comes
+     * before any stamp a writer that does not hold the lock yet can write. Must run in a statement of its own,
+     * before the change queries take their snapshot.
+     *
+     * @return the change feed watermark
+     */
+    @Query(value = "select (select min(a.xact_start) from pg_locks l join pg_stat_activity a on a.pid = l.pid "
+            + "where l.locktype = 'advisory' and l.database = (select oid from pg_database where datname = current_database()) "
+            + "and l.classid = " + UserChangeTracking.WRITE_LOCK_CLASS + " and l.objid = " + UserChangeTracking.WRITE_LOCK_OBJECT + " "
+            + "and l.objsubid = 2 and l.granted) as oldestWrite, statement_timestamp() as now", nativeQuery = true)
+    ChangeWatermark findChangeWatermark();
+
+    @Query("select u from Users u where (u.lastModified > :since or (u.lastModified = :since and u.id > :sinceId)) and u.lastModified < :until order by u.lastModified, u.id")
+    List<Users> findChangesSince(@Param("since") Timestamp since, @Param("sinceId") Long sinceId, @Param("until") Timestamp until, Pageable pageable);
+
+    @Modifying
+    @Query("delete from Users u where u.id = :id")
+    int deleteByIdWithoutLoading(@Param("id") Long id);
+
+    @Modifying
+    @Query("update Users u set u.lastModified = current_timestamp where u.lastModified is null")
+    int backfillLastModified();
+
+    /**
+     * The inputs of the change feed watermark, both on the database clock.
+     */
+    interface ChangeWatermark {
+
+        /**
+         * @return the start of the oldest open transaction writing users, or null if none is
+         */
+        Instant getOldestWrite();
+
+        /**
+         * @return the start of the statement that looked
+         */
+        Instant getNow();
+    }
 }
@@ -0,0 +1,26 @@
+package com.magmutual.users.repository;
+
+import com.magmutual.users.entity.UserTombstoneHorizon;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.sql.Timestamp;
+
+public interface UserTombstoneHorizonRepository extends JpaRepository<UserTombstoneHorizon, Integer> {
+
+    /**
+     * Moves the horizon forward to the given tombstone position, leaving it where it is if it is already past it.
+     *
+     * @param purgedThrough the deletion time of the newest purged tombstone
+     * @param purgedThroughId the id of the newest purged tombstone
+     * @return the number of rows written
+     */
+    @Modifying
+    @Query(value = "insert into user_tombstone_horizon (id, purgedthrough, purgedthroughid) values (1, :purgedThrough, :purgedThroughId) "
+            + "on conflict (id) do update set purgedthrough = excluded.purgedthrough, purgedthroughid = excluded.purgedthroughid "
+            + "where (user_tombstone_horizon.purgedthrough, user_tombstone_horizon.purgedthroughid) < (excluded.purgedthrough, excluded.purgedthroughid)",
+            nativeQuery = true)
+    int advance(@Param("purgedThrough") Timestamp purgedThrough, @Param("purgedThroughId") Long purgedThroughId);
+}
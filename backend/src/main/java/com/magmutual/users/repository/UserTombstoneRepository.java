@@ -0,0 +1,27 @@
+package com.magmutual.users.repository;
+
+import com.magmutual.users.entity.UserTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+public interface UserTombstoneRepository extends JpaRepository<UserTombstone, Long> {
+
+    @Query("select t from UserTombstone t where (t.deletedAt > :since or (t.deletedAt = :since and t.id > :sinceId)) and t.deletedAt < :until order by t.deletedAt, t.id")
+    List<UserTombstone> findChangesSince(@Param("since") Timestamp since, @Param("sinceId") Long sinceId, @Param("until") Timestamp until, Pageable pageable);
+
+    @Modifying
+    @Query(value = "insert into user_tombstones (id, deletedat) values (:id, now()) on conflict (id) do update set deletedat = excluded.deletedat", nativeQuery = true)
+    int upsert(@Param("id") Long id);
+
+    UserTombstone findFirstByDeletedAtBeforeOrderByDeletedAtDescIdDesc(Timestamp cutoff);
+
+    @Modifying
+    @Query("delete from UserTombstone t where t.deletedAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") Timestamp cutoff);
+}
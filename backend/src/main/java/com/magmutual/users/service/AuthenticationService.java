@@ -2,6 +2,7 @@ package com.magmutual.users.service;
 
 import com.magmutual.users.constants.ApplicationConstants;
 import com.magmutual.users.constants.UserRole;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,12 +15,15 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import java.util.List;
+import java.util.regex.Pattern;
 
 @Service
 public class AuthenticationService implements UserDetailsService {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthenticationService.class);
 
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("^\\$2[aby]?\\$\\d\\d\\$[./0-9A-Za-z]{53}$");
+
     @Value("${app.user.password}")
     private String userPassword;
 
@@ -28,6 +32,28 @@ public class AuthenticationService implements UserDetailsService {
 
     private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
 
+    private UserDetails userDetails;
+
+    private UserDetails adminDetails;
+
+    /**
+     * Hashes the configured credentials once at startup so that a login only pays for a single BCrypt match.
+     * Passwords that are already BCrypt hashes are used as-is.
+     */
+    @PostConstruct
+    public void init() {
+        userDetails = createUserDetails(UserRole.USER.getRole(), userPassword,
+                List.of(new SimpleGrantedAuthority(ApplicationConstants.GET_USERS)));
+        adminDetails = createUserDetails(UserRole.ADMIN.getRole(), adminPassword, List.of(
+                new SimpleGrantedAuthority(ApplicationConstants.GET_USERS),
+                new SimpleGrantedAuthority(ApplicationConstants.POST_USERS),
+                new SimpleGrantedAuthority(ApplicationConstants.PUT_USERS),
+                new SimpleGrantedAuthority(ApplicationConstants.DELETE_USERS),
+                new SimpleGrantedAuthority(ApplicationConstants.MANAGE_DIAGNOSTICS)
+        ));
+        logger.info("Precomputed credential hashes for built-in users");
+    }
+
     /**
      * Loads the user by username and returns UserDetails object.
      *
@@ -39,14 +65,9 @@ public class AuthenticationService implements UserDetailsService {
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
 
         if (UserRole.USER.getRole().equals(username)) {
-            return createUserDetails(username, userPassword, List.of(new SimpleGrantedAuthority(ApplicationConstants.GET_USERS)));
+            return copyOf(userDetails);
         } else if (UserRole.ADMIN.getRole().equals(username)) {
-            return createUserDetails(username, adminPassword, List.of(
-                    new SimpleGrantedAuthority(ApplicationConstants.GET_USERS),
-                    new SimpleGrantedAuthority(ApplicationConstants.POST_USERS),
-                    new SimpleGrantedAuthority(ApplicationConstants.PUT_USERS),
-                    new SimpleGrantedAuthority(ApplicationConstants.DELETE_USERS)
-            ));
+            return copyOf(adminDetails);
         } else {
             String errorMessage = "User not found with username: " + username;
             logger.error(errorMessage);
@@ -58,12 +79,23 @@ public class AuthenticationService implements UserDetailsService {
      * Creates a UserDetails object with encoded password and authorities.
      *
      * @param username   the username of the user
-     * @param password   the plain text password of the user
+     * @param password   the plain text or BCrypt encoded password of the user
      * @param authorities the authorities granted to the user
      * @return UserDetails object
      */
     private UserDetails createUserDetails(String username, String password, List<GrantedAuthority> authorities) {
-        String encodedPassword = passwordEncoder.encode(password);
+        String encodedPassword = BCRYPT_PATTERN.matcher(password).matches() ? password : passwordEncoder.encode(password);
         return new User(username, encodedPassword, authorities);
     }
+
+    /**
+     * Returns a fresh copy of the cached user details, since the authentication manager erases
+     * credentials on the principal it is handed after a successful login.
+     *
+     * @param details the cached user details
+     * @return a copy of the user details
+     */
+    private UserDetails copyOf(UserDetails details) {
+        return User.withUserDetails(details).build();
+    }
 }
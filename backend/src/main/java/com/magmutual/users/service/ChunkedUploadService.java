@@ -0,0 +1,372 @@
+package com.magmutual.users.service;
+
+import com.magmutual.users.config.WorkloadRoutingDataSource;
+import com.magmutual.users.constants.ImportMode;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.ImportResult;
+import com.magmutual.users.model.UploadSessionStatus;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Resumable CSV uploads: a client opens a session, sends numbered chunks in order, each with the
+ * SHA-256 of its bytes, and commits once all are acknowledged. Chunks are streamed from the request
+ * straight into a spool file, so neither the container nor the heap ever holds the whole file, and a
+ * broken transfer only repeats the chunk that was in flight. The import runs on commit, from the spool
+ * file, and the session is closed only once the import succeeds, so a failed import can be committed
+ * again without resending the chunks. Sessions live in memory and expire when idle; their spool files do
+ * not survive a restart.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private UserService userService;
+
+    @Value("${app.uploads.spool-dir:${java.io.tmpdir}/user-uploads}")
+    private Path spoolDir;
+
+    @Value("${app.uploads.default-chunk-size:8388608}")
+    private int defaultChunkSize;
+
+    @Value("${app.uploads.max-chunk-size:33554432}")
+    private int maxChunkSize;
+
+    @Value("${app.uploads.max-sessions:16}")
+    private int maxSessions;
+
+    @Value("${app.uploads.session-ttl-minutes:1440}")
+    private long sessionTtlMinutes;
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicInteger openSessions = new AtomicInteger();
+
+    /**
+     * Creates the spool directory and removes spool files left behind by a previous run.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(spoolDir);
+        try (var leftovers = Files.list(spoolDir)) {
+            for (Path leftover : leftovers.filter(path -> path.getFileName().toString().endsWith(".csv")).toList()) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    /**
+     * Opens an upload session backed by an empty spool file.
+     *
+     * @param mode the import mode to apply on commit
+     * @param chunkSize the size of every chunk but the last, or null for the default
+     * @param totalSize the expected file size, or null if unknown
+     * @return the new session
+     */
+    public UploadSessionStatus createSession(ImportMode mode, Integer chunkSize, Long totalSize) {
+        int size = chunkSize != null ? chunkSize : defaultChunkSize;
+        if (size <= 0 || size > maxChunkSize) {
+            throw new CustomException("Invalid chunk size", "chunkSize must be between 1 and " + maxChunkSize + " bytes", HttpStatus.BAD_REQUEST);
+        }
+        if (totalSize != null && totalSize <= 0) {
+            throw new CustomException("Invalid total size", "totalSize must be positive", HttpStatus.BAD_REQUEST);
+        }
+        if (openSessions.incrementAndGet() > maxSessions) {
+            openSessions.decrementAndGet();
+            throw new CustomException("Too many uploads in progress", "Commit or abort an open upload first", HttpStatus.TOO_MANY_REQUESTS);
+        }
+        String uploadId = UUID.randomUUID().toString();
+        Path spoolFile = spoolDir.resolve(uploadId + ".csv");
+        try {
+            Files.createFile(spoolFile);
+        } catch (IOException e) {
+            openSessions.decrementAndGet();
+            throw new UncheckedIOException("Failed to create spool file " + spoolFile, e);
+        }
+        UploadSession session = new UploadSession(uploadId, mode, size, totalSize, spoolFile);
+        sessions.put(uploadId, session);
+        logger.debug("Opened upload {} with chunk size {} and total size {}", uploadId, size, totalSize);
+        return session.status();
+    }
+
+    /**
+     * Returns the state of a session, including the chunk to resume from.
+     *
+     * @param uploadId the session id
+     * @return the session state
+     */
+    public UploadSessionStatus getStatus(String uploadId) {
+        UploadSession session = find(uploadId);
+        session.lock.lock();
+        try {
+            if (session.closed) {
+                throw notFound(uploadId);
+            }
+            return session.status();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a chunk to the spool file. The chunk must be the next expected one; resending an already
+     * acknowledged chunk with the same checksum is acknowledged again without writing, so a client that
+     * lost the response can simply retry. A chunk whose bytes do not match the checksum is discarded.
+     *
+     * @param uploadId the session id
+     * @param index the zero-based chunk number
+     * @param checksum the hex SHA-256 of the chunk
+     * @param body the chunk bytes
+     * @return the session state after the chunk
+     */
+    public UploadSessionStatus writeChunk(String uploadId, int index, String checksum, InputStream body) {
+        UploadSession session = lockOpen(uploadId);
+        try {
+            session.touch();
+            if (index < session.checksums.size()) {
+                if (!session.checksums.get(index).equalsIgnoreCase(checksum)) {
+                    throw new CustomException("Chunk already received", "Chunk " + index + " was acknowledged with a different checksum", HttpStatus.CONFLICT);
+                }
+                return session.status();
+            }
+            if (index != session.checksums.size()) {
+                throw new CustomException("Unexpected chunk", "Expected chunk " + session.checksums.size() + " but got " + index, HttpStatus.CONFLICT);
+            }
+            if (session.lastChunkReceived) {
+                throw new CustomException("Upload already complete", "The previous chunk was shorter than the chunk size, so it was the last one", HttpStatus.CONFLICT);
+            }
+            long offset = session.bytesReceived;
+            long written = spool(session, offset, checksum, body);
+            session.checksums.add(checksum.toLowerCase());
+            session.bytesReceived = offset + written;
+            session.lastChunkReceived = written < session.chunkSize;
+            return session.status();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Imports the spooled file and closes the session once the import succeeds. The session is held for
+     * the whole import, so chunks, aborts and other commits are turned away until it finishes. If the
+     * import fails, the session and its spool file are kept so the commit can be retried.
+     *
+     * @param uploadId the session id
+     * @return the outcome of the import
+     */
+    public ImportResult commit(String uploadId) {
+        UploadSession session = lockOpen(uploadId);
+        try {
+            if (session.bytesReceived == 0) {
+                throw new CustomException("Empty upload", "No chunks were received", HttpStatus.BAD_REQUEST);
+            }
+            if (session.totalSize != null && session.bytesReceived != session.totalSize) {
+                throw new CustomException("Incomplete upload", "Received " + session.bytesReceived + " of " + session.totalSize + " bytes", HttpStatus.BAD_REQUEST);
+            }
+            logger.info("Importing upload {} of {} bytes in {} chunks", uploadId, session.bytesReceived, session.checksums.size());
+            ImportResult result;
+            try {
+                result = WorkloadRoutingDataSource.callBulk(() -> userService.saveUsersFromCsv(session.spoolFile, session.mode));
+            } finally {
+                session.touch();
+            }
+            close(session);
+            return result;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Discards a session and its spooled chunks.
+     *
+     * @param uploadId the session id
+     */
+    public void abort(String uploadId) {
+        UploadSession session = lockOpen(uploadId);
+        try {
+            close(session);
+        } finally {
+            session.lock.unlock();
+        }
+        logger.debug("Aborted upload {}", uploadId);
+    }
+
+    /**
+     * Discards sessions that have been idle for longer than the session TTL.
+     */
+    @Scheduled(fixedDelayString = "${app.uploads.purge-interval-ms:600000}")
+    public void purgeExpiredSessions() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(sessionTtlMinutes);
+        for (UploadSession session : sessions.values()) {
+            if (session.lastActivity >= cutoff || !session.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (!session.closed && session.lastActivity < cutoff) {
+                    close(session);
+                    logger.info("Discarded idle upload {} after {} bytes", session.uploadId, session.bytesReceived);
+                }
+            } finally {
+                session.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Streams the request body into the spool file at the given offset while hashing it, then truncates
+     * the file after the chunk so bytes from an earlier interrupted attempt do not linger.
+     */
+    private long spool(UploadSession session, long offset, String checksum, InputStream body) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+        long written = 0;
+        boolean accepted = false;
+        try (FileChannel channel = FileChannel.open(session.spoolFile, StandardOpenOption.WRITE);
+             ReadableByteChannel in = Channels.newChannel(body)) {
+            try {
+                while (in.read(buffer) != -1) {
+                    buffer.flip();
+                    if (written + buffer.remaining() > session.chunkSize) {
+                        throw new CustomException("Chunk too large", "Chunks must not exceed " + session.chunkSize + " bytes", HttpStatus.PAYLOAD_TOO_LARGE);
+                    }
+                    digest.update(buffer.array(), 0, buffer.limit());
+                    while (buffer.hasRemaining()) {
+                        written += channel.write(buffer, offset + written);
+                    }
+                    buffer.clear();
+                }
+                if (written == 0) {
+                    throw new CustomException("Empty chunk", "A chunk must contain at least one byte", HttpStatus.BAD_REQUEST);
+                }
+                if (!HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(checksum)) {
+                    throw new CustomException("Checksum mismatch", "The SHA-256 of chunk " + session.checksums.size() + " does not match", HttpStatus.BAD_REQUEST);
+                }
+                channel.force(false);
+                accepted = true;
+            } finally {
+                channel.truncate(accepted ? offset + written : offset);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spool chunk of upload " + session.uploadId, e);
+        }
+        return written;
+    }
+
+    private UploadSession find(String uploadId) {
+        UploadSession session = sessions.get(uploadId);
+        if (session == null) {
+            throw notFound(uploadId);
+        }
+        return session;
+    }
+
+    /**
+     * Locks an open session without waiting; a session that is receiving a chunk or being imported is
+     * reported as a conflict, and one closed while we looked it up as not found.
+     */
+    private UploadSession lockOpen(String uploadId) {
+        UploadSession session = find(uploadId);
+        if (!session.lock.tryLock()) {
+            throw new CustomException("Upload busy", "Upload " + uploadId + " is receiving a chunk or being imported", HttpStatus.CONFLICT);
+        }
+        if (session.closed) {
+            session.lock.unlock();
+            throw notFound(uploadId);
+        }
+        return session;
+    }
+
+    /**
+     * Removes a session, frees its slot and deletes its spool file. Must be called with the session lock
+     * held, at most once per session.
+     */
+    private void close(UploadSession session) {
+        session.closed = true;
+        sessions.remove(session.uploadId, session);
+        openSessions.decrementAndGet();
+        deleteSpoolFile(session);
+    }
+
+    private static CustomException notFound(String uploadId) {
+        return new CustomException("Upload not found", "No open upload with id " + uploadId, HttpStatus.NOT_FOUND);
+    }
+
+    private static void deleteSpoolFile(UploadSession session) {
+        try {
+            Files.deleteIfExists(session.spoolFile);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spool file {}", session.spoolFile, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class UploadSession {
+        private final String uploadId;
+        private final ImportMode mode;
+        private final int chunkSize;
+        private final Long totalSize;
+        private final Path spoolFile;
+        private final List<String> checksums = new ArrayList<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private long bytesReceived;
+        private boolean lastChunkReceived;
+        private boolean closed;
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        private UploadSession(String uploadId, ImportMode mode, int chunkSize, Long totalSize, Path spoolFile) {
+            this.uploadId = uploadId;
+            this.mode = mode;
+            this.chunkSize = chunkSize;
+            this.totalSize = totalSize;
+            this.spoolFile = spoolFile;
+        }
+
+        private void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        private UploadSessionStatus status() {
+            return new UploadSessionStatus(uploadId, mode, chunkSize, totalSize, checksums.size(), bytesReceived);
+        }
+    }
+}
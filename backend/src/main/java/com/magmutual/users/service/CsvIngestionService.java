@@ -0,0 +1,741 @@
+package com.magmutual.users.service;
+
+import com.magmutual.users.constants.ApplicationConstants;
+import com.magmutual.users.constants.UserField;
+import com.magmutual.users.entity.Users;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.ImportRowError;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parses user CSV files on all cores. The file is memory-mapped and cut into segments of about
+ * {@code app.import.segment-size} bytes at record boundaries. Finding those boundaries needs no serial scan:
+ * every segment counts its quotes and notes its first line break under both possible quote states, and a
+ * prefix pass over the quote parities picks the line break that really ends a record. The segments are then
+ * parsed and validated on a fork-join pool, a bounded window ahead of the consumer, and handed out in file
+ * order, so the import writes the same rows in the same order as a serial parse would.
+ *
+ * <p>The format is the one the commons-csv import accepted: a header row matched case-insensitively,
+ * comma separated values that are trimmed, RFC 4180 quoting and blank lines skipped. Quotes are only
+ * expected around whole values; a stray quote inside an unquoted value can misplace a segment boundary.
+ *
+ * <p>Every value of a row is validated before the row is handed out, but rows are handed out while later
+ * segments are still being parsed, so an import writes the rows before a bad one before that one is found.
+ * A row with a problem is reported with its record number and skipped, so one bad row no longer fails the
+ * whole import.
+ */
+@Service
+public class CsvIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvIngestionService.class);
+
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+    private static final String INVALID_HEADER = "Invalid CSV header";
+    private static final int MAX_VALUE_LENGTH = 255;
+    private static final Set<UserField> REQUIRED_FIELDS = EnumSet.of(UserField.FIRSTNAME, UserField.LASTNAME, UserField.EMAIL, UserField.DATE_CREATED);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM-dd").withResolverStyle(ResolverStyle.STRICT);
+    private static final AtomicInteger WORKER_THREADS = new AtomicInteger();
+
+    @Value("${app.import.parallelism:0}")
+    private int parallelism;
+
+    @Value("${app.import.segment-size:1048576}")
+    private int segmentSize;
+
+    private ForkJoinPool pool;
+
+    /**
+     * Starts the parsing pool, sized to the number of cores unless a parallelism is configured.
+     */
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("csv-ingest-" + WORKER_THREADS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        logger.info("Configuring CSV ingestion with {} threads and {} byte segments", threads, segmentSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Opens a CSV file and parses it in parallel, leaving blank ids null.
+     *
+     * @param file the CSV file
+     * @param rejected receives a problem of a rejected row; a row can have several
+     * @return the valid users in file order, with a null id where the row left it blank; the stream must be
+     *         closed to release the file
+     * @throws CustomException if the header is invalid or a column is missing
+     * @see #parse(Path, UserIdAllocator, Consumer)
+     */
+    public Stream<Users> parse(Path file, Consumer<ImportRowError> rejected) {
+        return parse(file, null, rejected);
+    }
+
+    /**
+     * Opens a CSV file and parses it in parallel. The header is checked and the segment boundaries found
+     * before this returns; rows are parsed and validated ahead of the consumer and come out in file order.
+     * Rows that fail validation, including repeats of an id seen earlier in the file, are left out of the
+     * stream and passed to the error consumer instead, in file order and on the consuming thread.
+     *
+     * <p>With an allocator, ids are settled in file order as rows are handed out: a supplied id is reserved
+     * and a blank one is generated, and a generated id counts as seen, so a later row that supplies the same
+     * id is rejected like any other repeat instead of overwriting the generated user.
+     *
+     * @param file the CSV file
+     * @param idAllocator reserves supplied ids and generates the blank ones, or null to leave them blank
+     * @param rejected receives a problem of a rejected row; a row can have several
+     * @return the valid users in file order; the stream must be closed to release the file
+     * @throws CustomException if the header is invalid or a column is missing
+     */
+    public Stream<Users> parse(Path file, UserIdAllocator idAllocator, Consumer<ImportRowError> rejected) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            long size = channel.size();
+            RecordReader headerReader = new RecordReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_HEADER_BYTES)));
+            headerReader.skipByteOrderMark();
+            List<String> header = new ArrayList<>();
+            try {
+                if (!headerReader.next(header)) {
+                    channel.close();
+                    return Stream.empty();
+                }
+            } catch (IllegalArgumentException e) {
+                throw new CustomException(INVALID_HEADER, e.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+            if (!headerReader.endsRecord() && size > MAX_HEADER_BYTES) {
+                throw new CustomException(INVALID_HEADER, "The header row is longer than " + MAX_HEADER_BYTES + " bytes", HttpStatus.BAD_REQUEST);
+            }
+            int[] columns = resolveColumns(header);
+            List<Long> segmentStarts = findSegmentStarts(channel, headerReader.position(), size);
+            SegmentIterator segments = new SegmentIterator(channel, columns, segmentStarts, size, idAllocator, rejected);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(segments, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(segments::close);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException("Failed to read CSV file " + file, e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Maps every user field to its column in the header.
+     *
+     * @param header the header values
+     * @return the column index of each user field, by ordinal
+     */
+    private static int[] resolveColumns(List<String> header) {
+        List<String> names = header.stream().map(name -> name.toLowerCase(Locale.ROOT)).toList();
+        int[] columns = new int[UserField.values().length];
+        for (UserField field : UserField.values()) {
+            int column = names.indexOf(field.getFieldName().toLowerCase(Locale.ROOT));
+            if (column < 0) {
+                throw new CustomException(INVALID_HEADER, "Missing column: " + field.getFieldName(), HttpStatus.BAD_REQUEST);
+            }
+            columns[field.ordinal()] = column;
+        }
+        return columns;
+    }
+
+    /**
+     * Splits the data part of the file into segments that start at record boundaries. Each fixed-size range
+     * is scanned in parallel for its quote parity and its first line break after an even and after an odd
+     * number of quotes; knowing whether the range starts inside a quoted value then tells which of the two
+     * ends a record.
+     *
+     * @param channel the file
+     * @param dataStart the offset of the first record after the header
+     * @param size the file size
+     * @return the start offsets of the segments, in order
+     */
+    private List<Long> findSegmentStarts(FileChannel channel, long dataStart, long size) {
+        List<Long> starts = new ArrayList<>();
+        if (dataStart >= size) {
+            return starts;
+        }
+        List<Callable<long[]>> scans = new ArrayList<>();
+        for (long from = dataStart; from < size; from += segmentSize) {
+            long rangeStart = from;
+            long rangeEnd = Math.min(from + segmentSize, size);
+            scans.add(() -> scanRange(channel, rangeStart, rangeEnd));
+        }
+        starts.add(dataStart);
+        boolean inQuotes = false;
+        List<long[]> ranges = invokeAll(scans);
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            if (i > 0) {
+                long lineBreak = inQuotes ? range[2] : range[1];
+                if (lineBreak >= 0 && lineBreak + 1 < size) {
+                    starts.add(lineBreak + 1);
+                }
+            }
+            inQuotes ^= range[0] == 1;
+        }
+        return starts;
+    }
+
+    /**
+     * Scans a byte range for quotes and line breaks.
+     *
+     * @return the quote count parity, the offset of the first line break preceded by an even number of
+     *         quotes in the range and the offset of the first one preceded by an odd number, or -1 if none
+     */
+    private static long[] scanRange(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        int quotes = 0;
+        long evenLineBreak = -1;
+        long oddLineBreak = -1;
+        for (int i = 0, limit = buffer.limit(); i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == QUOTE) {
+                quotes++;
+            } else if (b == LF) {
+                if ((quotes & 1) == 0 && evenLineBreak < 0) {
+                    evenLineBreak = from + i;
+                } else if ((quotes & 1) == 1 && oddLineBreak < 0) {
+                    oddLineBreak = from + i;
+                }
+            }
+        }
+        return new long[]{quotes & 1, evenLineBreak, oddLineBreak};
+    }
+
+    /**
+     * Parses and validates the records of one segment. A malformed record is rejected and parsing resumes on
+     * the next line.
+     */
+    private static SegmentResult parseSegment(FileChannel channel, int[] columns, long from, long to) throws IOException {
+        RecordReader reader = new RecordReader(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from));
+        int required = Arrays.stream(columns).max().orElse(0) + 1;
+        Map<String, Timestamp> parsedDates = new HashMap<>();
+        List<Users> users = new ArrayList<>();
+        List<Integer> userRecords = new ArrayList<>();
+        List<RowProblem> problems = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        int records = 0;
+        while (true) {
+            try {
+                if (!reader.next(values)) {
+                    break;
+                }
+            } catch (IllegalArgumentException e) {
+                problems.add(new RowProblem(records++, null, null, null, e.getMessage()));
+                reader.skipLine();
+                continue;
+            }
+            if (values.size() == 1 && values.get(0).isEmpty()) {
+                continue;
+            }
+            Users user = toUser(values, columns, required, parsedDates, records, problems);
+            if (user != null) {
+                users.add(user);
+                userRecords.add(records);
+            }
+            records++;
+        }
+        return new SegmentResult(users, userRecords, problems, records);
+    }
+
+    /**
+     * Maps the values of a record to a Users entity, checking every value and noting each problem. Creation
+     * dates repeat a lot within a segment, so each distinct one is only parsed once.
+     *
+     * @return the user, or null if the record has a problem
+     */
+    private static Users toUser(List<String> values, int[] columns, int required, Map<String, Timestamp> parsedDates,
+                                int record, List<RowProblem> problems) {
+        if (values.size() < required) {
+            problems.add(new RowProblem(record, null, null, null, "Expected " + required + " values but found " + values.size()));
+            return null;
+        }
+        String id = values.get(columns[UserField.ID.ordinal()]);
+        boolean valid = true;
+        for (UserField field : UserField.values()) {
+            String value = values.get(columns[field.ordinal()]);
+            String problem = validate(field, value, parsedDates);
+            if (problem != null) {
+                problems.add(new RowProblem(record, id, field.getFieldName(), value, problem));
+                valid = false;
+            }
+        }
+        if (!valid) {
+            return null;
+        }
+        Users user = new Users();
+        user.setId(id.isEmpty() ? null : Long.parseLong(id));
+        user.setFirstname(values.get(columns[UserField.FIRSTNAME.ordinal()]));
+        user.setLastname(values.get(columns[UserField.LASTNAME.ordinal()]));
+        user.setEmail(values.get(columns[UserField.EMAIL.ordinal()]));
+        user.setProfession(values.get(columns[UserField.PROFESSION.ordinal()]));
+        user.setDateCreated(new Timestamp(parsedDates.get(values.get(columns[UserField.DATE_CREATED.ordinal()])).getTime()));
+        user.setCountry(values.get(columns[UserField.COUNTRY.ordinal()]));
+        user.setCity(values.get(columns[UserField.CITY.ordinal()]));
+        return user;
+    }
+
+    /**
+     * Checks one value of a row. Valid creation dates are parsed into the cache on the way.
+     *
+     * @return what is wrong with the value, or null if it is valid
+     */
+    private static String validate(UserField field, String value, Map<String, Timestamp> parsedDates) {
+        if (value.isEmpty()) {
+            return REQUIRED_FIELDS.contains(field) ? "Value is required" : null;
+        }
+        if (value.length() > MAX_VALUE_LENGTH) {
+            return "Value is longer than " + MAX_VALUE_LENGTH + " characters";
+        }
+        switch (field) {
+            case ID -> {
+                try {
+                    if (Long.parseLong(value) <= 0) {
+                        return "Id must be a positive number";
+                    }
+                } catch (NumberFormatException e) {
+                    return "Id must be a number";
+                }
+            }
+            case EMAIL -> {
+                if (!isEmail(value)) {
+                    return "Not a valid email address";
+                }
+            }
+            case DATE_CREATED -> {
+                if (!parsedDates.containsKey(value)) {
+                    try {
+                        parsedDates.put(value, Timestamp.valueOf(LocalDate.parse(value, DATE_FORMAT).atStartOfDay()));
+                    } catch (DateTimeParseException e) {
+                        return "Not a valid " + ApplicationConstants.DATE_FORMAT + " date";
+                    }
+                }
+            }
+            default -> {
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks for a single @ with a non-empty local part and a dotted domain, and no whitespace.
+     */
+    private static boolean isEmail(String value) {
+        int at = value.indexOf('@');
+        if (at <= 0 || at != value.lastIndexOf('@')) {
+            return false;
+        }
+        int dot = value.lastIndexOf('.');
+        if (dot < at + 2 || dot == value.length() - 1) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isWhitespace(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        for (Future<T> future : pool.invokeAll(tasks)) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomException("CSV parsing interrupted", "The import was interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw new UncheckedIOException(cause);
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close CSV file", e);
+        }
+    }
+
+    /**
+     * The valid users of a segment with their record index in the segment, the problems of the rejected
+     * records and the number of records in the segment.
+     */
+    private record SegmentResult(List<Users> users, List<Integer> userRecords, List<RowProblem> problems, int records) {
+    }
+
+    /**
+     * A problem with a record, numbered within its segment.
+     */
+    private record RowProblem(int record, String id, String field, String value, String message) {
+    }
+
+    /**
+     * Hands out the users segment by segment in file order, keeping a bounded number of segments parsing
+     * ahead so memory stays flat however large the file is. Record numbers and duplicate ids can only be
+     * resolved in file order, so both are handled here as each segment is taken.
+     */
+    private final class SegmentIterator implements Iterator<Users> {
+
+        private final FileChannel channel;
+        private final int[] columns;
+        private final List<Long> starts;
+        private final long size;
+        private final UserIdAllocator idAllocator;
+        private final Consumer<ImportRowError> rejected;
+        private final int window = pool.getParallelism() + 2;
+        private final Deque<Future<SegmentResult>> inFlight = new ArrayDeque<>();
+        private final IdSet seenIds = new IdSet();
+        private final IdSet generatedIds = new IdSet();
+        private Iterator<Users> current = Collections.emptyIterator();
+        private int nextSegment;
+        private long recordsBefore;
+
+        private SegmentIterator(FileChannel channel, int[] columns, List<Long> starts, long size, UserIdAllocator idAllocator,
+                                Consumer<ImportRowError> rejected) {
+            this.channel = channel;
+            this.columns = columns;
+            this.starts = starts;
+            this.size = size;
+            this.idAllocator = idAllocator;
+            this.rejected = rejected;
+            submitAhead();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (inFlight.isEmpty()) {
+                    return false;
+                }
+                SegmentResult result = await(inFlight.poll());
+                submitAhead();
+                current = accept(result).iterator();
+                recordsBefore += result.records();
+            }
+            return true;
+        }
+
+        @Override
+        public Users next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        /**
+         * Settles the ids of the users of a segment, drops the users whose id already appeared earlier in the
+         * file, supplied or generated, or is too large to reserve, and reports the rejected records of the
+         * segment in order.
+         */
+        private List<Users> accept(SegmentResult result) {
+            List<RowProblem> problems = new ArrayList<>(result.problems());
+            List<Users> accepted = new ArrayList<>(result.users().size());
+            for (int i = 0; i < result.users().size(); i++) {
+                Users user = result.users().get(i);
+                if (user.getId() == null) {
+                    if (idAllocator != null) {
+                        user.setId(idAllocator.next());
+                        user.setNewUser(true);
+                        seenIds.add(user.getId());
+                        generatedIds.add(user.getId());
+                    }
+                    accepted.add(user);
+                } else if (!seenIds.contains(user.getId())) {
+                    if (idAllocator != null) {
+                        try {
+                            idAllocator.reserveThrough(user.getId());
+                        } catch (CustomException e) {
+                            problems.add(new RowProblem(result.userRecords().get(i), String.valueOf(user.getId()),
+                                    UserField.ID.getFieldName(), String.valueOf(user.getId()), e.getDetails()));
+                            continue;
+                        }
+                    }
+                    seenIds.add(user.getId());
+                    accepted.add(user);
+                } else {
+                    String problem = generatedIds.contains(user.getId())
+                            ? "Duplicate id, it was generated for an earlier row without an id"
+                            : "Duplicate id, the first row with this id is imported";
+                    problems.add(new RowProblem(result.userRecords().get(i), String.valueOf(user.getId()),
+                            UserField.ID.getFieldName(), String.valueOf(user.getId()), problem));
+                }
+            }
+            problems.sort(Comparator.comparingInt(RowProblem::record));
+            for (RowProblem problem : problems) {
+                rejected.accept(new ImportRowError(recordsBefore + problem.record() + 1, problem.id(), problem.field(), problem.value(), problem.message()));
+            }
+            return accepted;
+        }
+
+        private void submitAhead() {
+            while (inFlight.size() < window && nextSegment < starts.size()) {
+                long from = starts.get(nextSegment);
+                long to = ++nextSegment < starts.size() ? starts.get(nextSegment) : size;
+                inFlight.add(pool.submit(() -> parseSegment(channel, columns, from, to)));
+            }
+        }
+
+        private void close() {
+            inFlight.forEach(future -> future.cancel(true));
+            inFlight.clear();
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * An open-addressing set of positive ids. Every row passes through it on the consuming thread, so it
+     * avoids boxing; 0 marks a free slot, which is safe since ids are validated to be positive.
+     */
+    private static final class IdSet {
+
+        private long[] slots = new long[1 << 16];
+        private int size;
+
+        /**
+         * @return true if the id is in the set
+         */
+        private boolean contains(long id) {
+            int mask = slots.length - 1;
+            int slot = hash(id) & mask;
+            while (slots[slot] != 0) {
+                if (slots[slot] == id) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        /**
+         * @return true if the id was not in the set yet
+         */
+        private boolean add(long id) {
+            if (size * 2 >= slots.length) {
+                grow();
+            }
+            int mask = slots.length - 1;
+            int slot = hash(id) & mask;
+            while (slots[slot] != 0) {
+                if (slots[slot] == id) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+            size++;
+            return true;
+        }
+
+        private void grow() {
+            long[] previous = slots;
+            slots = new long[previous.length * 2];
+            int mask = slots.length - 1;
+            for (long id : previous) {
+                if (id != 0) {
+                    int slot = hash(id) & mask;
+                    while (slots[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    slots[slot] = id;
+                }
+            }
+        }
+
+        private static int hash(long id) {
+            long mixed = id * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+    }
+
+    /**
+     * Reads RFC 4180 records from a buffer into trimmed, unescaped values.
+     */
+    private static final class RecordReader {
+
+        private final ByteBuffer buffer;
+        private final int limit;
+        private int position;
+        private byte[] scratch = new byte[256];
+
+        private RecordReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.limit = buffer.limit();
+        }
+
+        private int position() {
+            return position;
+        }
+
+        private boolean endsRecord() {
+            return position > 0 && buffer.get(position - 1) == LF;
+        }
+
+        private void skipByteOrderMark() {
+            if (limit >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+                position = 3;
+            }
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @param values cleared and filled with the values of the record
+         * @return false if the buffer is exhausted
+         * @throws IllegalArgumentException if a quoted value is malformed
+         */
+        private boolean next(List<String> values) {
+            values.clear();
+            if (position >= limit) {
+                return false;
+            }
+            while (true) {
+                int length = 0;
+                if (position < limit && buffer.get(position) == QUOTE) {
+                    position++;
+                    while (true) {
+                        if (position >= limit) {
+                            throw new IllegalArgumentException("Unterminated quoted value");
+                        }
+                        byte b = buffer.get(position++);
+                        if (b == QUOTE) {
+                            if (position < limit && buffer.get(position) == QUOTE) {
+                                position++;
+                            } else {
+                                break;
+                            }
+                        }
+                        length = append(length, b);
+                    }
+                    while (position < limit && !isDelimiter(buffer.get(position))) {
+                        if ((buffer.get(position) & 0xFF) > ' ') {
+                            throw new IllegalArgumentException("Unexpected character after a quoted value");
+                        }
+                        position++;
+                    }
+                } else {
+                    while (position < limit && !isDelimiter(buffer.get(position))) {
+                        length = append(length, buffer.get(position++));
+                    }
+                }
+                values.add(trimmed(length));
+                if (position >= limit) {
+                    return true;
+                }
+                byte delimiter = buffer.get(position++);
+                if (delimiter == CR && position < limit && buffer.get(position) == LF) {
+                    position++;
+                }
+                if (delimiter != COMMA) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Moves past the end of the current line, to resume after a malformed record.
+         */
+        private void skipLine() {
+            while (position < limit && buffer.get(position++) != LF) {
+                // skip
+            }
+        }
+
+        private static boolean isDelimiter(byte b) {
+            return b == COMMA || b == LF || b == CR;
+        }
+
+        private int append(int length, byte b) {
+            if (length == scratch.length) {
+                scratch = Arrays.copyOf(scratch, length * 2);
+            }
+            scratch[length] = b;
+            return length + 1;
+        }
+
+        private String trimmed(int length) {
+            int start = 0;
+            int end = length;
+            while (start < end && (scratch[start] & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (scratch[end - 1] & 0xFF) <= ' ') {
+                end--;
+            }
+            return new String(scratch, start, end - start, StandardCharsets.UTF_8);
+        }
+    }
+}
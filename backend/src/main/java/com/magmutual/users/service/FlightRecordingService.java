@@ -0,0 +1,196 @@
+package com.magmutual.users.service;
+
+import com.magmutual.users.diagnostics.RequestEvent;
+import com.magmutual.users.diagnostics.RequestPhaseEvent;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.RecordingStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Runs on-demand Java Flight Recorder recordings of the application, including the request and request
+ * phase events, so a latency spike can be broken down into token parsing, user details, queries and
+ * serialization. Only one recording exists at a time, and it is bounded in both duration and size:
+ * it stops by itself at the end of its duration and is written to the recording directory, where it
+ * stays until the next recording is started.
+ */
+@Service
+public class FlightRecordingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecordingService.class);
+
+    @Value("${app.diagnostics.recording.dir:${java.io.tmpdir}/user-recordings}")
+    private Path recordingDir;
+
+    @Value("${app.diagnostics.recording.settings:profile}")
+    private String settings;
+
+    @Value("${app.diagnostics.recording.max-duration-seconds:600}")
+    private long maxDurationSeconds;
+
+    @Value("${app.diagnostics.recording.max-size-mb:256}")
+    private long maxSizeMb;
+
+    private Recording recording;
+
+    /**
+     * Creates the recording directory.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(recordingDir);
+    }
+
+    /**
+     * Stops a running recording and removes its file.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        discard();
+    }
+
+    /**
+     * Starts a recording, replacing the previous one and its file.
+     *
+     * @param durationSeconds how long to record before the recording stops by itself
+     * @return the state of the new recording
+     * @throws CustomException if the duration is out of bounds or a recording is already running
+     */
+    public synchronized RecordingStatus start(long durationSeconds) {
+        if (durationSeconds < 1 || durationSeconds > maxDurationSeconds) {
+            throw new CustomException("Invalid duration", "duration must be between 1 and " + maxDurationSeconds + " seconds", HttpStatus.BAD_REQUEST);
+        }
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new CustomException("Recording in progress", "Stop recording " + recording.getId() + " first", HttpStatus.CONFLICT);
+        }
+        discard();
+
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings);
+        } catch (IOException | ParseException e) {
+            logger.error("Failed to load Flight Recorder settings {}", settings, e);
+            throw new CustomException("Recording failed", "Flight Recorder settings " + settings + " could not be loaded", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        Recording newRecording = new Recording(configuration);
+        newRecording.setName("users-api");
+        newRecording.enable(RequestEvent.class).withoutThreshold();
+        newRecording.enable(RequestPhaseEvent.class).withoutThreshold();
+        newRecording.setToDisk(true);
+        newRecording.setMaxSize(maxSizeMb * 1024 * 1024);
+        newRecording.setDuration(Duration.ofSeconds(durationSeconds));
+        try {
+            newRecording.setDestination(recordingDir.resolve("recording-" + newRecording.getId() + ".jfr"));
+        } catch (IOException e) {
+            newRecording.close();
+            throw new UncheckedIOException("Failed to set the recording destination in " + recordingDir, e);
+        }
+        newRecording.start();
+        recording = newRecording;
+        logger.info("Started Flight Recorder recording {} for {} seconds with settings {}", newRecording.getId(), durationSeconds, settings);
+        return status(newRecording);
+    }
+
+    /**
+     * Returns the state of a recording.
+     *
+     * @param recordingId the recording id
+     * @return the recording state
+     */
+    public synchronized RecordingStatus getStatus(long recordingId) {
+        return status(find(recordingId));
+    }
+
+    /**
+     * Stops a recording before the end of its duration and writes it to its file.
+     *
+     * @param recordingId the recording id
+     * @return the recording state
+     */
+    public synchronized RecordingStatus stop(long recordingId) {
+        Recording found = find(recordingId);
+        if (found.getState() == RecordingState.RUNNING) {
+            found.stop();
+            logger.info("Stopped Flight Recorder recording {}", recordingId);
+        }
+        return status(found);
+    }
+
+    /**
+     * Returns the file of a stopped recording.
+     *
+     * @param recordingId the recording id
+     * @return the recording file
+     * @throws CustomException if the recording is still running
+     */
+    public synchronized Path getFile(long recordingId) {
+        Recording found = find(recordingId);
+        if (!isFinished(found)) {
+            throw new CustomException("Recording in progress", "Recording " + recordingId + " has not stopped yet", HttpStatus.CONFLICT);
+        }
+        return found.getDestination();
+    }
+
+    private Recording find(long recordingId) {
+        if (recording == null || recording.getId() != recordingId) {
+            throw new CustomException("Recording not found", "No recording with id " + recordingId, HttpStatus.NOT_FOUND);
+        }
+        return recording;
+    }
+
+    private RecordingStatus status(Recording found) {
+        Long fileSize = null;
+        if (isFinished(found)) {
+            try {
+                fileSize = Files.size(found.getDestination());
+            } catch (IOException e) {
+                logger.warn("Failed to read the size of recording file {}", found.getDestination(), e);
+            }
+        }
+        return new RecordingStatus(found.getId(), isFinished(found) ? RecordingState.STOPPED.name() : found.getState().name(), found.getStartTime(),
+                found.getDuration().toSeconds(), found.getMaxSize(), fileSize);
+    }
+
+    /**
+     * A recording with a destination is written and closed as soon as it stops, whether it was stopped
+     * through the API or reached the end of its duration.
+     *
+     * @param found the recording
+     * @return true if the recording has been written to its file
+     */
+    private static boolean isFinished(Recording found) {
+        return found.getState() == RecordingState.STOPPED || found.getState() == RecordingState.CLOSED;
+    }
+
+    /**
+     * Closes the current recording and removes its file.
+     */
+    private void discard() {
+        if (recording == null) {
+            return;
+        }
+        Path file = recording.getDestination();
+        recording.close();
+        recording = null;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete recording file {}", file, e);
+        }
+    }
+}
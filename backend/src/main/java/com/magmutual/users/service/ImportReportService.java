@@ -0,0 +1,155 @@
+package com.magmutual.users.service;
+
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.ImportRowError;
+import jakarta.annotation.PostConstruct;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the per-row error reports of CSV imports as CSV files, so the rows an import rejected can be
+ * downloaded, fixed and uploaded again on their own. A report file is only created once an import rejects
+ * its first row, and reports are removed after the retention period.
+ */
+@Service
+public class ImportReportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportReportService.class);
+
+    private static final Pattern REPORT_ID_PATTERN = Pattern.compile("^[0-9a-f]{8}(-[0-9a-f]{4}){3}-[0-9a-f]{12}$");
+    private static final String[] HEADER = {"record", "id", "field", "value", "message"};
+
+    @Value("${app.import.report-dir:${java.io.tmpdir}/user-import-reports}")
+    private Path reportDir;
+
+    @Value("${app.import.report-retention-minutes:1440}")
+    private long reportRetentionMinutes;
+
+    /**
+     * Creates the report directory.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(reportDir);
+    }
+
+    /**
+     * Starts the error report of an import.
+     *
+     * @return the report, which must be closed once the import is done
+     */
+    public Report newReport() {
+        return new Report(UUID.randomUUID().toString());
+    }
+
+    /**
+     * Finds the file of an error report.
+     *
+     * @param reportId the report id returned with the import result
+     * @return the report file
+     * @throws CustomException if there is no such report
+     */
+    public Path find(String reportId) {
+        Path file = REPORT_ID_PATTERN.matcher(reportId).matches() ? reportDir.resolve(reportId + ".csv") : null;
+        if (file == null || !Files.exists(file)) {
+            throw new CustomException("Import report not found", "No import report with id " + reportId, HttpStatus.NOT_FOUND);
+        }
+        return file;
+    }
+
+    /**
+     * Removes reports older than the retention period.
+     */
+    @Scheduled(fixedDelayString = "${app.import.report-purge-interval-ms:600000}")
+    public void purgeExpiredReports() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(reportRetentionMinutes);
+        try (var reports = Files.list(reportDir)) {
+            for (Path report : reports.toList()) {
+                if (Files.getLastModifiedTime(report).toMillis() < cutoff) {
+                    Files.deleteIfExists(report);
+                    logger.debug("Removed expired import report {}", report.getFileName());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to purge import reports in {}", reportDir, e);
+        }
+    }
+
+    /**
+     * The error report of one import, written as rows are rejected. Rows are counted once however many of
+     * their values are invalid.
+     */
+    public final class Report implements AutoCloseable {
+
+        private final String id;
+        private CSVPrinter printer;
+        private long rejectedRows;
+        private long lastRecord;
+
+        private Report(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Adds a problem to the report.
+         *
+         * @param error the problem, reported in record order
+         */
+        public void add(ImportRowError error) {
+            try {
+                if (printer == null) {
+                    printer = new CSVPrinter(Files.newBufferedWriter(reportDir.resolve(id + ".csv"), StandardCharsets.UTF_8),
+                            CSVFormat.DEFAULT.builder().setHeader(HEADER).build());
+                }
+                printer.printRecord(error.getRecord(), error.getId(), error.getField(), error.getValue(), error.getMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write import report " + id, e);
+            }
+            if (error.getRecord() != lastRecord) {
+                rejectedRows++;
+                lastRecord = error.getRecord();
+            }
+        }
+
+        /**
+         * @return the number of rejected rows
+         */
+        public long getRejectedRows() {
+            return rejectedRows;
+        }
+
+        /**
+         * @return the report id, or null if no row was rejected and there is nothing to download
+         */
+        public String getId() {
+            return printer != null ? id : null;
+        }
+
+        @Override
+        public void close() {
+            if (printer == null) {
+                return;
+            }
+            try {
+                printer.close(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write import report " + id, e);
+            }
+        }
+    }
+}
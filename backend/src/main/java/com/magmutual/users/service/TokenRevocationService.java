@@ -0,0 +1,67 @@
+package com.magmutual.users.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    /**
+     * Revoked refresh token ids mapped to the epoch millis at which the token would have expired anyway.
+     * Entries are dropped once that moment passes, so the map only holds tokens that could still be replayed.
+     */
+    private final Map<UUID, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    /**
+     * Revokes a refresh token until its natural expiry.
+     *
+     * @param tokenId the refresh token id (jti claim)
+     * @param expiresAtMillis the expiry of the token in epoch millis
+     */
+    public void revoke(String tokenId, long expiresAtMillis) {
+        revokedTokens.put(UUID.fromString(tokenId), expiresAtMillis);
+        logger.debug("Revoked refresh token {}", tokenId);
+    }
+
+    /**
+     * Revokes a refresh token only if it has not been revoked already.
+     *
+     * @param tokenId the refresh token id (jti claim)
+     * @param expiresAtMillis the expiry of the token in epoch millis
+     * @return true if this call revoked the token, false if it was already revoked
+     */
+    public boolean revokeIfActive(String tokenId, long expiresAtMillis) {
+        return revokedTokens.putIfAbsent(UUID.fromString(tokenId), expiresAtMillis) == null;
+    }
+
+    /**
+     * Drops revocation entries whose tokens have expired.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        int before = revokedTokens.size();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt < now);
+        int purged = before - revokedTokens.size();
+        if (purged > 0) {
+            logger.debug("Purged {} expired refresh token revocations", purged);
+        }
+    }
+
+    /**
+     * Returns the number of tracked revocations.
+     *
+     * @return the number of revoked tokens that have not expired yet
+     */
+    public int size() {
+        return revokedTokens.size();
+    }
+}
@@ -0,0 +1,255 @@
+package com.magmutual.users.service;
+
+import com.magmutual.users.config.WorkloadRoutingDataSource;
+import com.magmutual.users.constants.AuditAction;
+import com.magmutual.users.entity.UserAuditRecord;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.AuditTrailStats;
+import com.magmutual.users.repository.UserAuditRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Audit trail of user changes, written off the request path. Each change takes a slot of a bounded buffer
+ * of {@code app.audit.capacity} records and, once its transaction commits, queues its record there; a
+ * background writer drains the queue in batches of up to {@code app.audit.batch-size} records, one
+ * multi-row insert each, through the bulk connection pool. A rolled back change gives its slot back
+ * without writing anything.
+ *
+ * <p>The writer frees slots only once their records are stored, and retries a failed batch until it is, so
+ * no record is dropped while the database is down. When the buffer is full, a change waits up to
+ * {@code app.audit.max-wait-ms} for a slot and is then rejected with 503 and rolled back, so changes slow
+ * down or fail visibly instead of going unaudited. Records still buffered at shutdown are written for up to
+ * {@code app.audit.shutdown-timeout-ms}; any left after that are logged as lost.
+ */
+@Service
+public class UserAuditTrail {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserAuditTrail.class);
+
+    private static final String SYSTEM_ACTOR = "system";
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    @Autowired
+    private UserAuditRepository userAuditRepository;
+
+    @Value("${app.audit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.audit.capacity:65536}")
+    private int capacity;
+
+    @Value("${app.audit.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.audit.max-wait-ms:100}")
+    private long maxWaitMs;
+
+    @Value("${app.audit.retry-delay-ms:1000}")
+    private long retryDelayMs;
+
+    @Value("${app.audit.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private Semaphore slots;
+    private BlockingQueue<UserAuditRecord> queue;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-audit-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean stopping;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private volatile Instant lastFlushAt;
+
+    /**
+     * Allocates the buffer and starts the writer.
+     */
+    @PostConstruct
+    public void init() {
+        slots = new Semaphore(capacity);
+        queue = new ArrayBlockingQueue<>(capacity);
+        if (enabled) {
+            writer.execute(this::drain);
+        }
+    }
+
+    /**
+     * Stops the writer once the buffered records are written or the shutdown timeout has passed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records a change made by the current user. Inside a transaction the record is queued when it commits
+     * and dropped when it rolls back; outside one it is queued at once.
+     *
+     * @param action what was done
+     * @param userId the changed user, or null for an import
+     * @param changedFields the names of the fields that were set or changed, or null
+     * @param details a summary of the change, or null
+     * @throws CustomException with 503 if the buffer stays full for the maximum wait
+     */
+    public void record(AuditAction action, Long userId, List<String> changedFields, String details) {
+        record(currentActor(), action, userId, changedFields, details);
+    }
+
+    /**
+     * Records a change made on behalf of the given actor, such as by a background job the actor started.
+     *
+     * @param actor who the change is attributed to
+     * @param action what was done
+     * @param userId the changed user, or null for an import or a purge
+     * @param changedFields the names of the fields that were set or changed, or null
+     * @param details a summary of the change, or null
+     * @throws CustomException with 503 if the buffer stays full for the maximum wait
+     */
+    public void record(String actor, AuditAction action, Long userId, List<String> changedFields, String details) {
+        if (!enabled) {
+            return;
+        }
+        UserAuditRecord record = new UserAuditRecord(action, userId, actor, new Timestamp(System.currentTimeMillis()),
+                changedFields == null || changedFields.isEmpty() ? null : String.join(",", changedFields), details);
+        acquireSlot();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            queue.add(record);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    queue.add(record);
+                } else {
+                    slots.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the fill of the buffer and the progress of the writer
+     */
+    public AuditTrailStats getStats() {
+        return new AuditTrailStats(
+                capacity,
+                capacity - slots.availablePermits(),
+                queue.size(),
+                written.get(),
+                batches.get(),
+                rejected.get(),
+                failedFlushes.get(),
+                lastFlushAt);
+    }
+
+    /**
+     * Takes a buffer slot, waiting for the writer to free one if the buffer is full.
+     */
+    private void acquireSlot() {
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire() || slots.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.incrementAndGet();
+            logger.warn("Audit trail buffer of {} records is full, rejecting the change", capacity);
+            throw new CustomException("Service temporarily unavailable", "The audit trail is backlogged, retry shortly", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * Writes the queued records batch by batch until shutdown.
+     */
+    private void drain() {
+        List<UserAuditRecord> batch = new ArrayList<>(batchSize);
+        try {
+            while (!stopping || !queue.isEmpty()) {
+                UserAuditRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+                slots.release(batch.size());
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            int lost = batch.size() + queue.size();
+            if (lost > 0) {
+                logger.error("Shutting down with {} audit records not written", lost);
+            }
+        }
+    }
+
+    /**
+     * Inserts a batch, retrying with a growing delay until it is stored.
+     */
+    private void write(List<UserAuditRecord> batch) throws InterruptedException {
+        long delay = retryDelayMs;
+        while (true) {
+            try {
+                WorkloadRoutingDataSource.runBulk(() -> userAuditRepository.insert(batch));
+                written.addAndGet(batch.size());
+                batches.incrementAndGet();
+                lastFlushAt = Instant.now();
+                return;
+            } catch (RuntimeException e) {
+                failedFlushes.incrementAndGet();
+                logger.warn("Failed to write {} audit records, retrying in {} ms", batch.size(), delay, e);
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    /**
+     * @return the name of the authenticated user of the current thread, or the system actor
+     */
+    public static String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.isAuthenticated() ? authentication.getName() : SYSTEM_ACTOR;
+    }
+}
@@ -0,0 +1,191 @@
+package com.magmutual.users.service;
+
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.UserChangeEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes user change events to Server-Sent Events subscribers.
+ * Events committed within one coalescing window are merged per user id in a single long-lived map that a
+ * flush drains key by key, so an event committed while a flush runs lands in this window or the next one
+ * and is never lost. Each subscriber has a
+ * bounded queue of pending batches; a subscriber that falls behind gets a single RESYNC event instead
+ * of an unbounded backlog.
+ */
+@Service
+public class UserChangePublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserChangePublisher.class);
+
+    private static final String EVENT_NAME = "users";
+    private static final Long IMPORT_KEY = Long.MIN_VALUE;
+    private static final Long PURGE_KEY = Long.MIN_VALUE + 1;
+    private static final AtomicInteger SENDER_THREADS = new AtomicInteger();
+
+    @Value("${app.events.max-subscribers:200}")
+    private int maxSubscribers;
+
+    @Value("${app.events.subscriber-queue-capacity:16}")
+    private int subscriberQueueCapacity;
+
+    @Value("${app.events.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    private final Map<Long, UserChangeEvent> pending = new ConcurrentHashMap<>();
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService sender = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "user-events-" + SENDER_THREADS.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Registers a new subscriber.
+     *
+     * @return the emitter streaming events to the subscriber
+     * @throws CustomException if the subscriber limit is reached
+     */
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            logger.warn("Rejecting change event subscription, {} subscribers connected", subscribers.size());
+            throw new CustomException("Too many subscribers", "Change event subscriber limit reached", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, subscriberQueueCapacity);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        logger.debug("Change event subscriber connected, {} subscribers", subscribers.size());
+        return emitter;
+    }
+
+    /**
+     * Queues a change for the next coalescing window once the surrounding transaction commits.
+     * A later change to the same user replaces an earlier one.
+     *
+     * @param event the change event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChange(UserChangeEvent event) {
+        pending.put(event.getId() != null ? event.getId()
+                : event.getType() == UserChangeEvent.Type.PURGE ? PURGE_KEY : IMPORT_KEY, event);
+    }
+
+    /**
+     * Flushes the events of the current coalescing window to every subscriber. Each pending event is
+     * removed by its key, so one replaced after it was removed stays pending for the next window.
+     */
+    @Scheduled(fixedDelayString = "${app.events.coalesce-window-ms:250}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<UserChangeEvent> window = new ArrayList<>(pending.size());
+        for (Long key : pending.keySet()) {
+            UserChangeEvent event = pending.remove(key);
+            if (event != null) {
+                window.add(event);
+            }
+        }
+        if (window.isEmpty() || subscribers.isEmpty()) {
+            return;
+        }
+        List<UserChangeEvent> batch = List.copyOf(window);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(batch);
+        }
+    }
+
+    /**
+     * Sends a comment to every subscriber so that dead connections are detected and proxies keep the stream open.
+     */
+    @Scheduled(fixedDelayString = "${app.events.heartbeat-ms:30000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(List.of());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        sender.shutdownNow();
+    }
+
+    /**
+     * A connected client with its own bounded queue of pending batches, drained by at most one sender thread at a time.
+     */
+    private class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Queue<List<UserChangeEvent>> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, int capacity) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void offer(List<UserChangeEvent> batch) {
+            if (!queue.offer(batch)) {
+                logger.debug("Change event subscriber fell behind, replacing backlog with resync");
+                queue.clear();
+                queue.offer(List.of(UserChangeEvent.resync()));
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                List<UserChangeEvent> batch;
+                while ((batch = queue.poll()) != null) {
+                    if (batch.isEmpty()) {
+                        emitter.send(SseEmitter.event().comment("keepalive"));
+                    } else {
+                        emitter.send(SseEmitter.event().name(EVENT_NAME).data(new ArrayList<>(batch)));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Dropping change event subscriber: {}", e.getMessage());
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            if (!queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.magmutual.users.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Installs the triggers the change feed relies on to tell which changes an open transaction may still commit.
+ * Every statement that inserts or updates users or tombstones first takes a shared transaction-level
+ * advisory lock, so the transactions that write them can be found in {@code pg_locks} while they are open,
+ * and every row it writes is stamped with the clock time after that lock was taken. A transaction that does
+ * not hold the lock when the feed looks therefore stamps nothing earlier than that look, and one that holds
+ * it stamps nothing earlier than its own start. Transactions that do not write users, such as reports,
+ * sessions left idle or other applications on the same database, do not hold the feed back.
+ *
+ * <p>An update only restamps a user when the writer changed {@code lastmodified}, so maintenance that only
+ * touches internal columns does not send every row through the feed again.
+ */
+@Service
+@DependsOn({"entityManagerFactory", "userPartitionService"})
+public class UserChangeTracking {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserChangeTracking.class);
+
+    /**
+     * The advisory lock key pair reserved for marking transactions that write users, as (classid, objid).
+     */
+    public static final int WRITE_LOCK_CLASS = 1_970_500_001;
+    public static final int WRITE_LOCK_OBJECT = 1;
+
+    private static final List<String> FUNCTIONS = List.of(
+            "CREATE OR REPLACE FUNCTION users_mark_write() RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN "
+                    + "PERFORM pg_advisory_xact_lock_shared(" + WRITE_LOCK_CLASS + ", " + WRITE_LOCK_OBJECT + "); "
+                    + "RETURN NULL; END $$",
+            "CREATE OR REPLACE FUNCTION users_stamp_change() RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN "
+                    + "IF TG_OP = 'INSERT' OR NEW.lastmodified IS DISTINCT FROM OLD.lastmodified THEN "
+                    + "NEW.lastmodified := clock_timestamp(); END IF; "
+                    + "RETURN NEW; END $$",
+            "CREATE OR REPLACE FUNCTION user_tombstones_stamp_change() RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN "
+                    + "NEW.deletedat := clock_timestamp(); "
+                    + "RETURN NEW; END $$");
+
+    private static final List<String> TRIGGERS = List.of(
+            "CREATE OR REPLACE TRIGGER users_mark_write BEFORE INSERT OR UPDATE ON users "
+                    + "FOR EACH STATEMENT EXECUTE FUNCTION users_mark_write()",
+            "CREATE OR REPLACE TRIGGER users_stamp_change BEFORE INSERT OR UPDATE ON users "
+                    + "FOR EACH ROW EXECUTE FUNCTION users_stamp_change()",
+            "CREATE OR REPLACE TRIGGER user_tombstones_mark_write BEFORE INSERT OR UPDATE ON user_tombstones "
+                    + "FOR EACH STATEMENT EXECUTE FUNCTION users_mark_write()",
+            "CREATE OR REPLACE TRIGGER user_tombstones_stamp_change BEFORE INSERT OR UPDATE ON user_tombstones "
+                    + "FOR EACH ROW EXECUTE FUNCTION user_tombstones_stamp_change()");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.changes.install-triggers:true}")
+    private boolean installTriggers;
+
+    /**
+     * Creates or replaces the functions and triggers, in one transaction so concurrent starts do not race.
+     */
+    @PostConstruct
+    public void init() {
+        if (!installTriggers) {
+            logger.info("Change tracking triggers are not installed");
+            return;
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + WRITE_LOCK_CLASS + ", 0)");
+            FUNCTIONS.forEach(jdbcTemplate::execute);
+            TRIGGERS.forEach(jdbcTemplate::execute);
+        });
+        logger.info("Installed change tracking triggers on users and user_tombstones");
+    }
+}
@@ -0,0 +1,202 @@
+package com.magmutual.users.service;
+
+import com.magmutual.users.constants.UserField;
+import com.magmutual.users.repository.UserDictionary;
+import com.magmutual.users.repository.UserProjectionRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Moves users written before profession, country and city were stored by reference onto the
+ * {@link UserDictionary}, and keeps the database function that sorts by the values of those fields.
+ *
+ * <p>The move is split in two steps so that instances of the previous version can keep running while it
+ * happens. The expand step runs on every startup: it adds the id columns, before {@link UserPartitionService}
+ * indexes them, and fills in the ids of rows that still only have the strings, such as rows written by an old
+ * instance. The old string columns are left in place, and once the users table has its final shape a trigger
+ * keeps both kinds of column in step on every write: a row written by a new instance gets the strings of its
+ * ids, and a row written by an old instance gets the ids of its strings, so each version reads what the other
+ * wrote. The contract step, enabled with {@code app.dictionary-migration.contract} once no old instance is
+ * left, drops the trigger and the string columns. Neither step rewrites the table; the space of the dropped
+ * columns is only given back by a {@code VACUUM FULL} run by hand.
+ *
+ * <p>{@code app.dictionary-migration.enabled=false} skips both steps, so the context can be refreshed without
+ * a database, as the class-data sharing training run of the image does.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class UserDictionaryMigration implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDictionaryMigration.class);
+
+    private static final String TABLE = "users";
+    private static final String CREATE_VALUE_FUNCTION =
+            "CREATE OR REPLACE FUNCTION " + UserProjectionRepository.DICTIONARY_VALUE_FUNCTION + "(integer) RETURNS varchar "
+                    + "LANGUAGE sql STABLE PARALLEL SAFE AS 'SELECT value FROM user_dictionary WHERE id = $1'";
+    private static final String SYNC_TRIGGER = "users_sync_dictionary_columns";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.dictionary-migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.dictionary-migration.contract:false}")
+    private boolean contract;
+
+    private List<String> oldColumns = List.of();
+
+    /**
+     * Runs the expand step and, when enabled, the contract step.
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            logger.info("User dictionary migration is disabled");
+            return;
+        }
+        oldColumns = expand();
+        if (contract && !oldColumns.isEmpty()) {
+            contract(oldColumns);
+            oldColumns = List.of();
+        }
+    }
+
+    /**
+     * Keeps the old string columns in step with the ids once {@link UserPartitionService} is done with the
+     * users table, which it may have recreated, and before any request is served.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (enabled && !oldColumns.isEmpty()) {
+            keepInSync(oldColumns);
+        }
+    }
+
+    /**
+     * Adds the id columns and the sort function if missing and fills in the ids of rows that only have the
+     * strings of the old columns that are still there.
+     *
+     * @return the old string columns that are still there
+     */
+    public List<String> expand() {
+        List<String> columns = UserDictionary.FIELDS.stream().map(UserField::getFieldName).toList();
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " " + columns.stream()
+                .map(column -> "ADD COLUMN IF NOT EXISTS " + column + "_id integer")
+                .collect(Collectors.joining(", ")));
+        jdbcTemplate.execute(CREATE_VALUE_FUNCTION);
+        List<String> oldColumns = jdbcTemplate.queryForList(
+                "SELECT column_name FROM information_schema.columns WHERE table_schema = current_schema() AND table_name = '" + TABLE + "' "
+                        + "AND column_name IN (" + columns.stream().map(column -> "'" + column + "'").collect(Collectors.joining(", ")) + ")", String.class);
+        if (!oldColumns.isEmpty()) {
+            long start = System.currentTimeMillis();
+            int rows = new TransactionTemplate(transactionManager).execute(status -> backfill(oldColumns));
+            logger.info("Filled in the dictionary ids of {} users from the {} columns in {} ms",
+                    rows, oldColumns, System.currentTimeMillis() - start);
+        }
+        return oldColumns;
+    }
+
+    /**
+     * Installs the trigger that writes the old string columns and the id columns together, and fills in the
+     * strings of rows written by new instances before it was there and the ids of rows written by old
+     * instances since the expand step. Writers are held off until the trigger is in place, so no row is
+     * written in between.
+     *
+     * @param oldColumns the old string columns that are still there
+     */
+    public void keepInSync(List<String> oldColumns) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE " + TABLE + " IN SHARE ROW EXCLUSIVE MODE");
+            jdbcTemplate.execute("CREATE OR REPLACE FUNCTION " + SYNC_TRIGGER + "() RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN "
+                    + oldColumns.stream().map(UserDictionaryMigration::syncColumn).collect(Collectors.joining())
+                    + "RETURN NEW; END $$");
+            jdbcTemplate.execute("CREATE OR REPLACE TRIGGER " + SYNC_TRIGGER + " BEFORE INSERT OR UPDATE ON " + TABLE
+                    + " FOR EACH ROW EXECUTE FUNCTION " + SYNC_TRIGGER + "()");
+            backfill(oldColumns);
+            jdbcTemplate.update("UPDATE " + TABLE + " u SET " + oldColumns.stream()
+                    .map(column -> column + " = coalesce(u." + column + ", " + UserProjectionRepository.DICTIONARY_VALUE_FUNCTION + "(u." + column + "_id))")
+                    .collect(Collectors.joining(", "))
+                    + " WHERE " + oldColumns.stream()
+                    .map(column -> "(u." + column + " IS NULL AND u." + column + "_id IS NOT NULL)")
+                    .collect(Collectors.joining(" OR ")));
+        });
+        logger.info("Keeping the users {} columns in step with their dictionary ids until the contract step", oldColumns);
+    }
+
+    /**
+     * Fills in the ids of the rows written since the expand step and drops the sync trigger and the old string
+     * columns, in a single transaction.
+     *
+     * @param oldColumns the old string columns that are still there
+     */
+    public void contract(List<String> oldColumns) {
+        logger.info("Dropping the users {} columns that moved onto the user dictionary", oldColumns);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + SYNC_TRIGGER + " ON " + TABLE);
+            jdbcTemplate.execute("DROP FUNCTION IF EXISTS " + SYNC_TRIGGER + "()");
+            backfill(oldColumns);
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " " + oldColumns.stream()
+                    .map(column -> "DROP COLUMN " + column)
+                    .collect(Collectors.joining(", ")));
+        });
+        logger.info("Dropped the users {} columns; run VACUUM (FULL, ANALYZE) {} in a quiet period to give back their space",
+                oldColumns, TABLE);
+    }
+
+    /**
+     * Copies the distinct strings of the old columns into the dictionary and sets the ids of the rows that
+     * have a string but no id yet.
+     *
+     * @param oldColumns the old string columns
+     * @return the number of rows updated
+     */
+    private int backfill(List<String> oldColumns) {
+        for (String column : oldColumns) {
+            jdbcTemplate.update("INSERT INTO user_dictionary (field, value) SELECT DISTINCT ?, " + column + " FROM " + TABLE + " "
+                    + "WHERE " + column + " IS NOT NULL AND " + column + "_id IS NULL ON CONFLICT (field, value) DO NOTHING", fieldOf(column));
+        }
+        return jdbcTemplate.update("UPDATE " + TABLE + " u SET " + oldColumns.stream()
+                .map(column -> column + "_id = coalesce(u." + column + "_id, (SELECT d.id FROM user_dictionary d "
+                        + "WHERE d.field = '" + fieldOf(column) + "' AND d.value = u." + column + "))")
+                .collect(Collectors.joining(", "))
+                + " WHERE " + oldColumns.stream()
+                .map(column -> "(u." + column + "_id IS NULL AND u." + column + " IS NOT NULL)")
+                .collect(Collectors.joining(" OR ")));
+    }
+
+    /**
+     * Returns the part of the sync trigger for one old column: a changed id sets the string, which is how new
+     * instances write, and otherwise a new or changed string sets the id, adding the string to the dictionary
+     * if needed, which is how old instances write.
+     */
+    private static String syncColumn(String column) {
+        String field = fieldOf(column);
+        return "IF NEW." + column + "_id IS DISTINCT FROM OLD." + column + "_id THEN "
+                + "NEW." + column + " := " + UserProjectionRepository.DICTIONARY_VALUE_FUNCTION + "(NEW." + column + "_id); "
+                + "ELSIF TG_OP = 'INSERT' OR NEW." + column + " IS DISTINCT FROM OLD." + column + " THEN "
+                + "IF NEW." + column + " IS NOT NULL THEN INSERT INTO user_dictionary (field, value) VALUES ('" + field + "', NEW." + column + ") "
+                + "ON CONFLICT (field, value) DO NOTHING; END IF; "
+                + "NEW." + column + "_id := (SELECT id FROM user_dictionary WHERE field = '" + field + "' AND value = NEW." + column + "); "
+                + "END IF; ";
+    }
+
+    private static String fieldOf(String column) {
+        return UserDictionary.FIELDS.stream().filter(field -> field.getFieldName().equals(column)).findFirst().orElseThrow().name();
+    }
+}
@@ -0,0 +1,305 @@
+package com.magmutual.users.service;
+
+import com.magmutual.users.config.WorkloadRoutingDataSource;
+import com.magmutual.users.entity.Users;
+import com.magmutual.users.model.ExistenceFilterStats;
+import com.magmutual.users.repository.UserBulkRepository;
+import com.magmutual.users.utils.BloomFilter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom filters of the existing user ids and normalized emails, so existence checks can skip the database
+ * when the answer is a definite no. The filters are built from a streaming scan of the table once the
+ * application is ready, and every write path adds the users it writes. Deleted users cannot be taken out
+ * of a Bloom filter, so the filters are rebuilt periodically and whenever they outgrow their capacity.
+ * Until the first build completes every check is a possible hit and goes to the database.
+ *
+ * <p>Users must be added inside the transaction that writes them. A rebuild waits for the transactions
+ * that were writing when it started, so none of their rows can miss both its scan and its filters.
+ *
+ * <p>The filters are per instance: users written by another instance only reach them at the next rebuild.
+ * A definite miss can therefore be wrong for a user another instance just wrote. Reads accept that, but a
+ * write that trusted a wrong miss would insert the id instead of updating it and fail on the id claim, so
+ * writes only skip their existence lookup when {@code app.existence-filter.skip-write-checks} is set, which
+ * is only safe when a single instance writes users.
+ */
+@Service
+public class UserExistenceFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserExistenceFilter.class);
+
+    private static final int CAPACITY_HEADROOM = 2;
+    private static final long WRITER_POLL_MS = 50;
+
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.existence-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.existence-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${app.existence-filter.min-capacity:100000}")
+    private long minCapacity;
+
+    @Value("${app.existence-filter.skip-write-checks:false}")
+    private boolean skipWriteChecks;
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-existence-filter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    private final Object writerLock = new Object();
+    private final Map<Object, Long> activeWriters = new ConcurrentHashMap<>();
+    private long writerSequence;
+
+    private volatile Filters current;
+    private volatile Filters building;
+
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong definiteMisses = new AtomicLong();
+    private final AtomicLong databaseLookups = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private volatile Instant lastRebuildAt;
+    private volatile long lastRebuildMillis;
+    private volatile long lastRebuildRows;
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * Builds the filters in the background once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        requestRebuild();
+    }
+
+    /**
+     * Rebuilds the filters periodically, dropping the users deleted since the last build.
+     */
+    @Scheduled(fixedDelayString = "${app.existence-filter.rebuild-interval-ms:21600000}",
+            initialDelayString = "${app.existence-filter.rebuild-interval-ms:21600000}")
+    public void scheduledRebuild() {
+        requestRebuild();
+    }
+
+    /**
+     * Queues a rebuild on the background thread, unless one is already queued.
+     */
+    public void requestRebuild() {
+        if (enabled && rebuildPending.compareAndSet(false, true)) {
+            rebuildExecutor.execute(() -> {
+                rebuildPending.set(false);
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    logger.error("Failed to rebuild the user existence filter", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Checks whether a user with this id might exist.
+     *
+     * @param id the user id
+     * @return false if no user has the id, true if one might and the database must be asked
+     */
+    public boolean mightContainId(long id) {
+        Filters filters = current;
+        return check(filters == null || filters.ids().mightContain(id));
+    }
+
+    /**
+     * Checks whether a user with this id might exist before a write relies on the answer. Unless write checks
+     * may be skipped, every id is a possible hit, so the write looks it up in the database.
+     *
+     * @param id the user id
+     * @return false if no user has the id and writes may trust the filter, true if the database must be asked
+     */
+    public boolean mightContainIdBeforeWrite(long id) {
+        return !skipWriteChecks || mightContainId(id);
+    }
+
+    /**
+     * Checks whether a user with this email, compared case-insensitively, might exist.
+     *
+     * @param email the email
+     * @return false if no user has the email, true if one might and the database must be asked
+     */
+    public boolean mightContainEmail(String email) {
+        Filters filters = current;
+        return check(filters == null || filters.emails().mightContain(BloomFilter.hash(normalizeEmail(email))));
+    }
+
+    /**
+     * Records the outcome of a database lookup made after a possible hit, for the false positive rate.
+     *
+     * @param found whether the database found the user
+     */
+    public void recordLookup(boolean found) {
+        databaseLookups.incrementAndGet();
+        if (!found) {
+            falsePositives.incrementAndGet();
+        }
+    }
+
+    /**
+     * Adds a user that is being written. Must be called inside the writing transaction.
+     *
+     * @param user the user
+     */
+    public void add(Users user) {
+        if (!enabled) {
+            return;
+        }
+        registerWriter();
+        long emailKey = user.getEmail() != null ? BloomFilter.hash(normalizeEmail(user.getEmail())) : 0;
+        for (Filters filters : new Filters[]{current, building}) {
+            if (filters != null) {
+                filters.ids().put(user.getId());
+                if (user.getEmail() != null) {
+                    filters.emails().put(emailKey);
+                }
+            }
+        }
+        Filters filters = current;
+        if (filters != null && filters.ids().getInsertions() > filters.ids().getCapacity()) {
+            requestRebuild();
+        }
+    }
+
+    /**
+     * Builds new filters from a scan of the table and swaps them in. Writers that registered before the
+     * rebuild started are waited for, so their rows are either committed before the scan or added to the
+     * new filters. Rebuilds run one at a time, scanning through the bulk connection pool.
+     */
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        long capacity = Math.max(minCapacity, WorkloadRoutingDataSource.callBulk(() -> userBulkRepository.countMatching(null, null, null)) * CAPACITY_HEADROOM);
+        long barrier;
+        synchronized (writerLock) {
+            building = new Filters(new BloomFilter(capacity, falsePositiveRate), new BloomFilter(capacity, falsePositiveRate));
+            barrier = writerSequence;
+        }
+        try {
+            while (activeWriters.values().stream().anyMatch(sequence -> sequence <= barrier)) {
+                Thread.sleep(WRITER_POLL_MS);
+            }
+            Filters filters = building;
+            AtomicLong rows = new AtomicLong();
+            TransactionTemplate scan = new TransactionTemplate(transactionManager);
+            scan.setReadOnly(true);
+            WorkloadRoutingDataSource.runBulk(() -> scan.executeWithoutResult(status -> userBulkRepository.scanIdsAndEmails((id, email) -> {
+                filters.ids().put(id);
+                if (email != null) {
+                    filters.emails().put(BloomFilter.hash(normalizeEmail(email)));
+                }
+                rows.incrementAndGet();
+            })));
+            current = filters;
+            rebuilds.incrementAndGet();
+            lastRebuildAt = Instant.now();
+            lastRebuildMillis = (System.nanoTime() - started) / 1_000_000;
+            lastRebuildRows = rows.get();
+            logger.info("Rebuilt the user existence filter from {} users in {} ms", lastRebuildRows, lastRebuildMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            building = null;
+        }
+    }
+
+    /**
+     * @return the size, fill and hit rates of the filters and when they were last rebuilt
+     */
+    public ExistenceFilterStats getStats() {
+        Filters filters = current;
+        long lookups = databaseLookups.get();
+        return new ExistenceFilterStats(
+                filters != null,
+                filters != null ? filters.ids().getCapacity() : 0,
+                filters != null ? filters.ids().getInsertions() : 0,
+                filters != null ? filters.emails().getInsertions() : 0,
+                filters != null ? filters.ids().getBits() : 0,
+                filters != null ? filters.ids().getHashFunctions() : 0,
+                filters != null ? filters.ids().expectedFalsePositiveRate() : 0,
+                checks.get(),
+                definiteMisses.get(),
+                lookups,
+                falsePositives.get(),
+                lookups > 0 ? (double) falsePositives.get() / lookups : 0,
+                rebuilds.get(),
+                lastRebuildAt,
+                lastRebuildMillis,
+                lastRebuildRows);
+    }
+
+    private boolean check(boolean mightContain) {
+        checks.incrementAndGet();
+        if (!mightContain) {
+            definiteMisses.incrementAndGet();
+        }
+        return mightContain;
+    }
+
+    /**
+     * Registers the current transaction as a writer until it completes, the first time it adds a user.
+     */
+    private void registerWriter() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        Object writer = new Object();
+        TransactionSynchronizationManager.bindResource(this, writer);
+        synchronized (writerLock) {
+            activeWriters.put(writer, ++writerSequence);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                activeWriters.remove(writer);
+                TransactionSynchronizationManager.unbindResourceIfPossible(UserExistenceFilter.this);
+            }
+        });
+    }
+
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Filters(BloomFilter ids, BloomFilter emails) {
+    }
+}
@@ -0,0 +1,109 @@
+package com.magmutual.users.service;
+
+import com.magmutual.users.exception.CustomException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Hands out user ids from the {@code users_id_seq} sequence with a pooled allocator: the sequence steps by
+ * the allocation size, so each {@code nextval} reserves a whole block of ids that are then assigned in
+ * memory, and thousands of inserts cost one sequence round trip.
+ *
+ * <p>Clients may still supply their own ids. Every such id is reserved, which moves the sequence past it
+ * and makes this instance skip it if it falls in the block being handed out. An id supplied on one
+ * instance can still fall in a block another instance already holds, so clients that bring their own ids
+ * should stay below the generated ones, as an import of existing data does.
+ *
+ * <p>The sequence is set up on first use rather than at startup, so the context can be refreshed without a
+ * database, as the class-data sharing training run of the image does.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class UserIdAllocator {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserIdAllocator.class);
+
+    private static final String SEQUENCE = "users_id_seq";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.users.id-allocation-size:1000}")
+    private int allocationSize;
+
+    private long nextId;
+    private long blockEnd;
+    private long reservedThrough;
+    private long sequenceFloor;
+    private boolean initialized;
+
+    /**
+     * Creates the sequence, steps it by the allocation size, which must be the same on every instance, and
+     * moves it past the ids already in the table. Runs once, before the first id is allocated or reserved.
+     */
+    private void init() {
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE + " INCREMENT BY " + allocationSize);
+        jdbcTemplate.execute("ALTER SEQUENCE " + SEQUENCE + " INCREMENT BY " + allocationSize);
+        Long maxId = jdbcTemplate.queryForObject("SELECT max(id) FROM users", Long.class);
+        initialized = true;
+        if (maxId != null) {
+            reserveThrough(maxId);
+        }
+        logger.info("User ids are allocated from {} in blocks of {}", SEQUENCE, allocationSize);
+    }
+
+    /**
+     * Allocates a new user id.
+     *
+     * @return an id no other user has or will be given
+     */
+    public synchronized long next() {
+        if (!initialized) {
+            init();
+        }
+        while (true) {
+            nextId = Math.max(nextId, reservedThrough + 1);
+            if (nextId < blockEnd) {
+                return nextId++;
+            }
+            nextId = jdbcTemplate.queryForObject("SELECT nextval('" + SEQUENCE + "')", Long.class);
+            blockEnd = nextId + allocationSize;
+            sequenceFloor = Math.max(sequenceFloor, blockEnd - 1);
+        }
+    }
+
+    /**
+     * Reserves an id supplied by a client, so it is never generated. Only an id the sequence may still
+     * return costs a database round trip, which moves the sequence a block beyond it, so ascending ids
+     * such as those of an import only reach the database once per block.
+     *
+     * @param id the supplied id
+     * @throws CustomException if the id is too large to leave a block of ids above it
+     */
+    public synchronized void reserveThrough(long id) {
+        if (!initialized) {
+            init();
+        }
+        if (id <= reservedThrough) {
+            return;
+        }
+        long floor;
+        try {
+            floor = Math.addExact(id, allocationSize);
+        } catch (ArithmeticException e) {
+            throw new CustomException("Invalid id", "Id must not be above " + (Long.MAX_VALUE - allocationSize), HttpStatus.BAD_REQUEST);
+        }
+        reservedThrough = id;
+        if (id > sequenceFloor) {
+            sequenceFloor = floor;
+            jdbcTemplate.queryForList("SELECT setval('" + SEQUENCE + "', ?) FROM " + SEQUENCE + " WHERE last_value < ?",
+                    sequenceFloor, sequenceFloor);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.magmutual.users.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Year;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the users table range-partitioned by {@code datecreated}, one partition per year, so date range
+ * filters only scan the years they cover. Hibernate creates the table as a plain one, so it is converted
+ * in place on first startup; partitions for the coming years are created ahead of time and any other year
+ * is created on demand before rows for it are written. There is deliberately no default partition, so
+ * adding a year never has to move rows out of it.
+ *
+ * <p>A partition created on demand joins the caller's transaction: creating it takes an exclusive lock on the
+ * users table, which a separate transaction could not get while the caller holds any lock on it. The year is
+ * only cached once that transaction commits, so a rollback that drops the partition again is not mistaken
+ * for an existing one.
+ *
+ * <p>A partitioned table can only enforce keys that include the partition column, so the key of users is
+ * (id, datecreated) and the id alone is no longer unique. A trigger claims every inserted id in the
+ * {@code user_ids} table, whose primary key is the id, and releases it when the row is deleted; moving a row
+ * to another partition deletes and inserts it, so the claim follows it. A second insert of an id waits for
+ * the first to commit and then fails with a unique violation, in whichever transaction it runs.
+ */
+@Service
+@DependsOn({"entityManagerFactory", "userDictionaryMigration"})
+public class UserPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPartitionService.class);
+
+    private static final String TABLE = "users";
+    private static final String PARTITION_PREFIX = "users_y";
+    private static final List<String> INDEXES = List.of(
+            "CREATE INDEX IF NOT EXISTS idx_users_lastmodified_id ON " + TABLE + " (lastmodified, id)",
+            "CREATE INDEX IF NOT EXISTS idx_users_datecreated ON " + TABLE + " (datecreated)",
+            "CREATE INDEX IF NOT EXISTS idx_users_professionid_datecreated ON " + TABLE + " (profession_id, datecreated)",
+            "CREATE INDEX IF NOT EXISTS idx_users_email_lower ON " + TABLE + " (lower(email))");
+    private static final String ID_TABLE = "user_ids";
+    private static final String CLAIM_ID_TRIGGER = "users_claim_id";
+    private static final String CLAIM_ID_FUNCTION =
+            "CREATE OR REPLACE FUNCTION " + CLAIM_ID_TRIGGER + "() RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN "
+                    + "IF TG_OP = 'INSERT' THEN INSERT INTO " + ID_TABLE + " (id) VALUES (NEW.id); "
+                    + "ELSE DELETE FROM " + ID_TABLE + " WHERE id = OLD.id; END IF; "
+                    + "RETURN NULL; END $$";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.partitions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.partitions.precreate-years:2}")
+    private int precreateYears;
+
+    @Value("${app.partitions.detach-after-years:0}")
+    private int detachAfterYears;
+
+    private final Set<Integer> partitionYears = ConcurrentHashMap.newKeySet();
+
+    private final Object pendingYearsKey = new Object();
+
+    /**
+     * Converts the users table to a partitioned one if needed, creates its indexes and makes sure the
+     * upcoming years exist. Indexes created on the partitioned table cascade to every partition.
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            logger.info("Users table partitioning is disabled");
+            return;
+        }
+        if (!isPartitioned()) {
+            convertToPartitioned();
+        }
+        INDEXES.forEach(jdbcTemplate::execute);
+        enforceUniqueIds();
+        partitionYears.addAll(jdbcTemplate.queryForList(
+                "SELECT substring(c.relname FROM '^" + PARTITION_PREFIX + "([0-9]+)$')::int FROM pg_inherits i "
+                        + "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = '" + TABLE + "'::regclass "
+                        + "AND c.relname ~ '^" + PARTITION_PREFIX + "[0-9]+$'", Integer.class));
+        maintainPartitions();
+    }
+
+    /**
+     * Creates the partitions for the current and upcoming years and, when a retention is configured,
+     * detaches the partitions that fell out of it.
+     */
+    @Scheduled(cron = "${app.partitions.maintenance-cron:0 30 3 * * *}")
+    public void maintainPartitions() {
+        if (!enabled) {
+            return;
+        }
+        int currentYear = Year.now().getValue();
+        for (int year = currentYear; year <= currentYear + precreateYears; year++) {
+            ensurePartition(year);
+        }
+        if (detachAfterYears > 0) {
+            for (int year : new TreeSet<>(partitionYears)) {
+                if (year < currentYear - detachAfterYears) {
+                    detachPartition(year);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes sure a partition exists for every given creation date, so the rows can be written.
+     *
+     * @param dates the creation dates of the rows about to be written; nulls are ignored
+     */
+    public void ensurePartitionsFor(Collection<? extends Date> dates) {
+        if (!enabled) {
+            return;
+        }
+        Set<Integer> years = new TreeSet<>();
+        for (Date date : dates) {
+            if (date != null) {
+                years.add(yearOf(date));
+            }
+        }
+        years.forEach(this::ensurePartition);
+    }
+
+    /**
+     * Makes sure a partition exists for the given creation date.
+     *
+     * @param date the creation date of the row about to be written; null is ignored
+     */
+    public void ensurePartitionFor(Date date) {
+        if (enabled && date != null) {
+            ensurePartition(yearOf(date));
+        }
+    }
+
+    /**
+     * Detaches the partition of the given year. The rows stay in a standalone table of the same name,
+     * which can be dumped and dropped, or attached again; detaching is a catalog-only change. Archived
+     * users are not reported as deleted by the change feed.
+     *
+     * @param year the year to detach
+     * @return the name of the detached table
+     */
+    public synchronized String detachPartition(int year) {
+        String partition = PARTITION_PREFIX + year;
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + partition);
+        partitionYears.remove(year);
+        logger.info("Detached users partition {} for archiving", partition);
+        return partition;
+    }
+
+    private void ensurePartition(int year) {
+        if (partitionYears.contains(year)) {
+            return;
+        }
+        Set<Integer> pendingYears = pendingYears();
+        if (pendingYears != null && pendingYears.contains(year)) {
+            return;
+        }
+        synchronized (this) {
+            if (partitionYears.contains(year)) {
+                return;
+            }
+            jdbcTemplate.execute(createPartitionSql(year));
+            if (pendingYears != null) {
+                pendingYears.add(year);
+            } else {
+                partitionYears.add(year);
+            }
+            logger.info("Created users partition for {}", year);
+        }
+    }
+
+    /**
+     * Returns the years whose partitions the current transaction created, which are cached once it commits
+     * and forgotten if it rolls back.
+     *
+     * @return the years created by the current transaction, or null outside of one
+     */
+    @SuppressWarnings("unchecked")
+    private Set<Integer> pendingYears() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Set<Integer> pendingYears = (Set<Integer>) TransactionSynchronizationManager.getResource(pendingYearsKey);
+        if (pendingYears == null) {
+            Set<Integer> years = new TreeSet<>();
+            TransactionSynchronizationManager.bindResource(pendingYearsKey, years);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    partitionYears.addAll(years);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingYearsKey);
+                }
+            });
+            pendingYears = years;
+        }
+        return pendingYears;
+    }
+
+    private boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT relkind = 'p' FROM pg_class WHERE oid = '" + TABLE + "'::regclass", Boolean.class));
+    }
+
+    /**
+     * Moves the rows of the plain users table into a new partitioned one in a single transaction.
+     * The primary key becomes (id, datecreated) because a partitioned table can only enforce keys that
+     * include the partition column; the secondary indexes are recreated on the new table.
+     */
+    private void convertToPartitioned() {
+        logger.info("Converting the users table to a table partitioned by datecreated");
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<String> indexDefinitions = jdbcTemplate.queryForList(
+                    "SELECT indexdef FROM pg_indexes WHERE schemaname = current_schema() AND tablename = '" + TABLE + "' "
+                            + "AND indexname NOT IN (SELECT conname FROM pg_constraint WHERE conrelid = '" + TABLE + "'::regclass)", String.class);
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + TABLE + "_unpartitioned");
+            jdbcTemplate.execute("UPDATE " + TABLE + "_unpartitioned SET datecreated = coalesce(lastmodified, now()) WHERE datecreated IS NULL");
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + TABLE + "_unpartitioned INCLUDING DEFAULTS) PARTITION BY RANGE (datecreated)");
+            List<Integer> years = jdbcTemplate.queryForList(
+                    "SELECT DISTINCT extract(YEAR FROM datecreated)::int FROM " + TABLE + "_unpartitioned", Integer.class);
+            for (int year : years) {
+                jdbcTemplate.execute(createPartitionSql(year));
+            }
+            int rows = jdbcTemplate.update("INSERT INTO " + TABLE + " SELECT * FROM " + TABLE + "_unpartitioned");
+            jdbcTemplate.execute("DROP TABLE " + TABLE + "_unpartitioned");
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT " + TABLE + "_pkey PRIMARY KEY (id, datecreated)");
+            indexDefinitions.forEach(jdbcTemplate::execute);
+            logger.info("Moved {} users into {} yearly partitions", rows, years.size());
+        });
+    }
+
+    /**
+     * Installs the trigger that claims every user id in the id table, and claims the ids of the existing
+     * users, in one transaction that holds off writers so no insert slips in between. Ids that are already
+     * duplicated cannot be claimed twice; they are logged so they can be cleaned up.
+     */
+    private void enforceUniqueIds() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE " + TABLE + " IN SHARE ROW EXCLUSIVE MODE");
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM pg_trigger WHERE tgrelid = '"
+                    + TABLE + "'::regclass AND tgname = '" + CLAIM_ID_TRIGGER + "')", Boolean.class))) {
+                return;
+            }
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + ID_TABLE + " (id bigint PRIMARY KEY)");
+            jdbcTemplate.execute(CLAIM_ID_FUNCTION);
+            jdbcTemplate.execute("CREATE TRIGGER " + CLAIM_ID_TRIGGER + " AFTER INSERT OR DELETE ON " + TABLE
+                    + " FOR EACH ROW EXECUTE FUNCTION " + CLAIM_ID_TRIGGER + "()");
+            int claimed = jdbcTemplate.update("INSERT INTO " + ID_TABLE + " (id) SELECT id FROM " + TABLE + " ON CONFLICT (id) DO NOTHING");
+            Long duplicated = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM (SELECT id FROM " + TABLE + " GROUP BY id HAVING count(*) > 1) d", Long.class);
+            if (duplicated != null && duplicated > 0) {
+                logger.warn("{} user ids are already used by more than one row and must be cleaned up by hand", duplicated);
+            }
+            logger.info("Enforcing unique user ids, claimed {} existing ids", claimed);
+        });
+    }
+
+    private static String createPartitionSql(int year) {
+        return "CREATE TABLE IF NOT EXISTS " + PARTITION_PREFIX + year + " PARTITION OF " + TABLE
+                + " FOR VALUES FROM ('" + year + "-01-01') TO ('" + (year + 1) + "-01-01')";
+    }
+
+    private static int yearOf(Date date) {
+        return new Timestamp(date.getTime()).toLocalDateTime().getYear();
+    }
+}
@@ -0,0 +1,284 @@
+package com.magmutual.users.service;
+
+import com.magmutual.users.config.WorkloadRoutingDataSource;
+import com.magmutual.users.constants.AuditAction;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.PurgeJobStatus;
+import com.magmutual.users.model.UserChangeEvent;
+import com.magmutual.users.repository.UserBulkRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes every user matching the list filters (creation date range and profession) as a background job,
+ * for retention purges that would otherwise take one request per user. A job deletes in chunks of
+ * {@code app.purge.chunk-size} users in creation date order, each chunk a single statement that also writes
+ * the tombstones, so every transaction is short and locks few rows. Between chunks the job pauses for at
+ * least {@code app.purge.pause-ms} and long enough to keep its share of the time under
+ * {@code app.purge.duty-cycle}, so interactive requests keep their latency while it runs. Jobs run one at a
+ * time on a dedicated thread with connections from the bulk pool, live in memory and are forgotten after the
+ * retention period.
+ *
+ * <p>A job is audited as a whole rather than per user: a delete record without a user id is written when it
+ * is queued, attributed to the caller, and another when it finishes, attributed to the same caller, with the
+ * number of users it deleted.
+ */
+@Service
+public class UserPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPurgeService.class);
+
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private UserAuditTrail userAuditTrail;
+
+    @Value("${app.purge.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.purge.pause-ms:50}")
+    private long pauseMs;
+
+    @Value("${app.purge.duty-cycle:0.5}")
+    private double dutyCycle;
+
+    @Value("${app.purge.max-queued-jobs:8}")
+    private int maxQueuedJobs;
+
+    @Value("${app.purge.job-retention-minutes:1440}")
+    private long jobRetentionMinutes;
+
+    private final Map<String, PurgeJob> jobs = new ConcurrentHashMap<>();
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Interrupts the running job; its current chunk either commits or rolls back as a whole.
+     */
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Queues a job deleting every user matching the filters. At least one filter is required, so that a
+     * request without parameters cannot empty the table.
+     *
+     * @param startDate the first creation date to delete, or null
+     * @param endDate the last creation date to delete, inclusive, or null
+     * @param profession the profession to delete, or null
+     * @return the state of the new job
+     * @throws CustomException if no filter is given, the dates are reversed, too many jobs are queued or the
+     *         audit trail is backlogged
+     */
+    public PurgeJobStatus submit(Date startDate, Date endDate, String profession) {
+        if (startDate == null && endDate == null && profession == null) {
+            throw new CustomException("Missing filter", "At least one of startDate, endDate or profession is required", HttpStatus.BAD_REQUEST);
+        }
+        if (startDate != null && endDate != null && endDate.before(startDate)) {
+            throw new CustomException("Invalid date range", "endDate cannot be before startDate", HttpStatus.BAD_REQUEST);
+        }
+        long active = jobs.values().stream().filter(job -> !job.isFinished()).count();
+        if (active >= maxQueuedJobs) {
+            throw new CustomException("Too many purge jobs", "Wait for or cancel a queued purge job first", HttpStatus.TOO_MANY_REQUESTS);
+        }
+        PurgeJob job = new PurgeJob(UUID.randomUUID().toString(), startDate, endDate, profession, UserAuditTrail.currentActor());
+        userAuditTrail.record(job.actor, AuditAction.DELETE, null, null, summary(job, PurgeJobStatus.State.QUEUED));
+        job.future = worker.submit(() -> WorkloadRoutingDataSource.runBulk(() -> run(job)));
+        jobs.put(job.jobId, job);
+        logger.info("Queued purge job {} for startDate={}, endDate={}, profession={}", job.jobId, startDate, endDate, profession);
+        return job.status();
+    }
+
+    /**
+     * Returns the progress of a job.
+     *
+     * @param jobId the job id
+     * @return the job state
+     */
+    public PurgeJobStatus getStatus(String jobId) {
+        return find(jobId).status();
+    }
+
+    /**
+     * Cancels a job. A queued job never starts; a running one stops after its current chunk, and the users
+     * deleted so far stay deleted.
+     *
+     * @param jobId the job id
+     * @return the job state
+     */
+    public PurgeJobStatus cancel(String jobId) {
+        PurgeJob job = find(jobId);
+        job.cancelRequested = true;
+        synchronized (job) {
+            if (job.state == PurgeJobStatus.State.QUEUED) {
+                job.future.cancel(false);
+                finish(job, PurgeJobStatus.State.CANCELLED, null);
+            }
+        }
+        return job.status();
+    }
+
+    /**
+     * Forgets finished jobs older than the retention period.
+     */
+    @Scheduled(fixedDelayString = "${app.purge.purge-interval-ms:600000}")
+    public void purgeFinishedJobs() {
+        Instant cutoff = Instant.now().minusMillis(TimeUnit.MINUTES.toMillis(jobRetentionMinutes));
+        jobs.values().removeIf(job -> job.isFinished() && job.finishedAt.isBefore(cutoff));
+    }
+
+    /**
+     * Deletes the matching users chunk by chunk until none is left or the job is cancelled.
+     */
+    private void run(PurgeJob job) {
+        synchronized (job) {
+            if (job.state != PurgeJobStatus.State.QUEUED) {
+                return;
+            }
+            job.state = PurgeJobStatus.State.RUNNING;
+            job.startedAt = Instant.now();
+        }
+        try {
+            job.estimatedTotal = userBulkRepository.countMatching(job.startDate, job.endDate, job.profession);
+            logger.info("Purge job {} started, {} users match", job.jobId, job.estimatedTotal);
+            UserBulkRepository.DeletedChunk last = null;
+            while (!job.cancelRequested) {
+                long start = System.nanoTime();
+                UserBulkRepository.DeletedChunk chunk = userBulkRepository.deleteChunk(job.startDate, job.endDate, job.profession,
+                        last, chunkSize);
+                if (chunk == null) {
+                    break;
+                }
+                job.deleted += chunk.deleted();
+                job.chunks++;
+                last = chunk;
+                throttle(System.nanoTime() - start);
+            }
+            finish(job, job.cancelRequested ? PurgeJobStatus.State.CANCELLED : PurgeJobStatus.State.COMPLETED, null);
+            logger.info("Purge job {} {} after deleting {} users in {} chunks", job.jobId, job.state, job.deleted, job.chunks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(job, PurgeJobStatus.State.CANCELLED, "Interrupted by shutdown");
+        } catch (RuntimeException e) {
+            logger.error("Purge job {} failed after deleting {} users", job.jobId, job.deleted, e);
+            finish(job, PurgeJobStatus.State.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Audits the outcome of a job, tells subscribers to refetch once if it deleted anything, and marks it
+     * finished. The users are already deleted, so a backlogged audit trail cannot undo the job; the record
+     * is then logged instead.
+     */
+    private void finish(PurgeJob job, PurgeJobStatus.State finalState, String message) {
+        String summary = summary(job, finalState);
+        try {
+            userAuditTrail.record(job.actor, AuditAction.DELETE, null, null, summary);
+        } catch (CustomException e) {
+            logger.error("Could not audit purge {} by {}: {}", summary, job.actor, e.getDetails());
+        }
+        if (job.deleted > 0) {
+            eventPublisher.publishEvent(UserChangeEvent.purged());
+        }
+        job.finish(finalState, message);
+    }
+
+    private static String summary(PurgeJob job, PurgeJobStatus.State state) {
+        StringBuilder summary = new StringBuilder("purge job=").append(job.jobId)
+                .append(", state=").append(state.name().toLowerCase())
+                .append(", startDate=").append(job.startDate)
+                .append(", endDate=").append(job.endDate)
+                .append(", profession=").append(job.profession);
+        if (state != PurgeJobStatus.State.QUEUED) {
+            summary.append(", deleted=").append(job.deleted);
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Pauses after a chunk for at least the configured pause, and long enough that the job is busy for no
+     * more than the duty cycle.
+     *
+     * @param chunkNanos how long the chunk took
+     */
+    private void throttle(long chunkNanos) throws InterruptedException {
+        long busyMs = TimeUnit.NANOSECONDS.toMillis(chunkNanos);
+        long pause = Math.max(pauseMs, (long) (busyMs * (1 - dutyCycle) / dutyCycle));
+        Thread.sleep(pause);
+    }
+
+    private PurgeJob find(String jobId) {
+        PurgeJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new CustomException("Purge job not found", "No purge job with id " + jobId, HttpStatus.NOT_FOUND);
+        }
+        return job;
+    }
+
+    private static final class PurgeJob {
+        private final String jobId;
+        private final Date startDate;
+        private final Date endDate;
+        private final String profession;
+        private final String actor;
+        private final Instant createdAt = Instant.now();
+        private Future<?> future;
+        private volatile PurgeJobStatus.State state = PurgeJobStatus.State.QUEUED;
+        private volatile boolean cancelRequested;
+        private volatile Long estimatedTotal;
+        private volatile long deleted;
+        private volatile long chunks;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        private PurgeJob(String jobId, Date startDate, Date endDate, String profession, String actor) {
+            this.jobId = jobId;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.profession = profession;
+            this.actor = actor;
+        }
+
+        private synchronized void finish(PurgeJobStatus.State finalState, String message) {
+            error = message;
+            finishedAt = Instant.now();
+            state = finalState;
+        }
+
+        private boolean isFinished() {
+            return finishedAt != null;
+        }
+
+        private PurgeJobStatus status() {
+            return new PurgeJobStatus(jobId, state, startDate, endDate, profession, estimatedTotal, deleted, chunks,
+                    createdAt, startedAt, finishedAt, error);
+        }
+    }
+}
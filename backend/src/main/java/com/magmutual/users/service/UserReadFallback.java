@@ -0,0 +1,301 @@
+package com.magmutual.users.service;
+
+import com.magmutual.users.config.WorkloadRoutingDataSource;
+import com.magmutual.users.constants.Workload;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.ReadFallbackStats;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Keeps reads of users answering while the database is slow. The last good response of every read is kept
+ * in a bounded least-recently-used store, and a circuit breaker watches the reads: it opens after
+ * {@code failure-threshold} reads in a row were slower than {@code slow-query-ms} or failed to reach the
+ * database, or as soon as more than {@code max-pool-waiters} threads wait for a connection.
+ *
+ * <p>While the circuit is open, reads do not touch the database. A read with a stored response gets it
+ * back marked stale, and one read at a time, at most every {@code open-ms}, is retried: in the background
+ * when a stale response was served, or inline when there is none. A fast retry closes the circuit. Any
+ * other read is rejected with 503 at once instead of queueing for a connection.
+ */
+@Service
+public class UserReadFallback {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserReadFallback.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${app.read-fallback.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.read-fallback.slow-query-ms:1000}")
+    private long slowQueryMs;
+
+    @Value("${app.read-fallback.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${app.read-fallback.max-pool-waiters:5}")
+    private int maxPoolWaiters;
+
+    @Value("${app.read-fallback.open-ms:5000}")
+    private long openMs;
+
+    @Value("${app.read-fallback.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${app.read-fallback.max-entry-rows:500}")
+    private int maxEntryRows;
+
+    @Value("${app.read-fallback.max-stale-ms:600000}")
+    private long maxStaleMs;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-read-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private HikariDataSource pool;
+
+    private volatile boolean open;
+    private volatile long nextRetryAt;
+    private final AtomicBoolean retrying = new AtomicBoolean();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private final AtomicLong servedStale = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timesOpened = new AtomicLong();
+    private volatile Instant lastOpenedAt;
+
+    /**
+     * Finds the connection pool, whose queue of waiting threads is watched: the interactive pool when bulk work
+     * has its own, or the only pool if the data source is Hikari's.
+     */
+    @PostConstruct
+    public void init() {
+        WorkloadRoutingDataSource routing = WorkloadRoutingDataSource.from(dataSource);
+        if (routing != null) {
+            pool = routing.getPool(Workload.INTERACTIVE);
+            return;
+        }
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(HikariDataSource.class)) {
+                pool = dataSource.unwrap(HikariDataSource.class);
+            }
+        } catch (SQLException e) {
+            logger.warn("Cannot watch the connection pool, only slow reads will open the circuit", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs a read through the circuit breaker.
+     *
+     * @param key identifies the read, such as its endpoint and parameters
+     * @param query runs the read against the database
+     * @return the result of the query, or the stored result of an earlier run, marked stale
+     * @throws CustomException with 503 when the circuit is open and nothing is stored for the key
+     */
+    public <T> Read<T> read(String key, Supplier<T> query) {
+        if (!enabled) {
+            return new Read<>(query.get(), false, 0);
+        }
+        if (!open && poolSaturated()) {
+            logger.warn("{} threads wait for a database connection", pool.getHikariPoolMXBean().getThreadsAwaitingConnection());
+            openCircuit();
+        }
+        if (open) {
+            Read<T> stale = stale(key);
+            boolean retry = System.currentTimeMillis() >= nextRetryAt && retrying.compareAndSet(false, true);
+            if (stale != null) {
+                if (retry) {
+                    refreshExecutor.execute(() -> {
+                        try {
+                            query(key, query);
+                        } catch (RuntimeException e) {
+                            logger.debug("Background refresh of {} failed", key, e);
+                        } finally {
+                            retrying.set(false);
+                        }
+                    });
+                }
+                return stale;
+            }
+            if (!retry) {
+                rejected.incrementAndGet();
+                throw new CustomException("Service temporarily unavailable", "The database is not responding, retry shortly", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            try {
+                return new Read<>(query(key, query), false, 0);
+            } finally {
+                retrying.set(false);
+            }
+        }
+        try {
+            return new Read<>(query(key, query), false, 0);
+        } catch (RuntimeException e) {
+            Read<T> stale = isDatabaseUnavailable(e) ? stale(key) : null;
+            if (stale == null) {
+                throw e;
+            }
+            return stale;
+        }
+    }
+
+    /**
+     * @return the state of the circuit and the store
+     */
+    public ReadFallbackStats getStats() {
+        int entryCount;
+        synchronized (entries) {
+            entryCount = entries.size();
+        }
+        HikariPoolMXBean poolBean = pool != null ? pool.getHikariPoolMXBean() : null;
+        return new ReadFallbackStats(
+                open,
+                consecutiveFailures.get(),
+                poolBean != null ? poolBean.getThreadsAwaitingConnection() : 0,
+                entryCount,
+                servedStale.get(),
+                rejected.get(),
+                timesOpened.get(),
+                lastOpenedAt);
+    }
+
+    /**
+     * Runs the query, stores its result and reports its latency or failure to the circuit.
+     */
+    private <T> T query(String key, Supplier<T> query) {
+        long started = System.nanoTime();
+        T value;
+        try {
+            value = query.get();
+        } catch (RuntimeException e) {
+            if (isDatabaseUnavailable(e)) {
+                recordFailure();
+            }
+            throw e;
+        }
+        store(key, value);
+        if ((System.nanoTime() - started) / 1_000_000 > slowQueryMs) {
+            recordFailure();
+        } else {
+            recordSuccess();
+        }
+        return value;
+    }
+
+    private void store(String key, Object value) {
+        long rows = value instanceof Page<?> page ? page.getNumberOfElements() : 1;
+        boolean storable = value != null && rows <= maxEntryRows && !(value instanceof Optional<?> optional && optional.isEmpty());
+        synchronized (entries) {
+            if (storable) {
+                entries.put(key, new Entry(value, System.currentTimeMillis()));
+            } else {
+                entries.remove(key);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Read<T> stale(String key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        long age = entry != null ? System.currentTimeMillis() - entry.storedAt() : 0;
+        if (entry == null || age > maxStaleMs) {
+            return null;
+        }
+        servedStale.incrementAndGet();
+        return new Read<>((T) entry.value(), true, age / 1000);
+    }
+
+    private void recordSuccess() {
+        consecutiveFailures.set(0);
+        if (open) {
+            open = false;
+            logger.info("Database reads are fast again, closing the read circuit");
+        }
+    }
+
+    private void recordFailure() {
+        if (open) {
+            nextRetryAt = System.currentTimeMillis() + openMs;
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            logger.warn("{} slow or failed database reads in a row", consecutiveFailures.get());
+            openCircuit();
+        }
+    }
+
+    private synchronized void openCircuit() {
+        if (!open) {
+            nextRetryAt = System.currentTimeMillis() + openMs;
+            open = true;
+            timesOpened.incrementAndGet();
+            lastOpenedAt = Instant.now();
+            logger.warn("Opening the read circuit, serving stored responses for {} ms", openMs);
+        }
+    }
+
+    private boolean poolSaturated() {
+        HikariPoolMXBean poolBean = pool != null ? pool.getHikariPoolMXBean() : null;
+        return poolBean != null && poolBean.getThreadsAwaitingConnection() > maxPoolWaiters;
+    }
+
+    private static boolean isDatabaseUnavailable(RuntimeException e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException || e instanceof CannotCreateTransactionException;
+    }
+
+    private record Entry(Object value, long storedAt) {
+    }
+
+    /**
+     * The result of a read.
+     *
+     * @param value the result
+     * @param stale whether it was stored earlier instead of read now
+     * @param ageSeconds how long ago a stale result was read
+     */
+    public record Read<T>(T value, boolean stale, long ageSeconds) {
+    }
+}
@@ -1,35 +1,67 @@
 package com.magmutual.users.service;
 
 import com.magmutual.users.constants.ApplicationConstants;
+import com.magmutual.users.constants.AuditAction;
+import com.magmutual.users.constants.ImportMode;
 import com.magmutual.users.constants.UserField;
+import com.magmutual.users.diagnostics.RequestPhaseEvent;
+import com.magmutual.users.entity.UserTombstone;
+import com.magmutual.users.entity.UserTombstoneHorizon;
 import com.magmutual.users.entity.Users;
 import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.ChangeFeedResponse;
+import com.magmutual.users.model.ImportResult;
+import com.magmutual.users.model.UserChangeEvent;
+import com.magmutual.users.model.UserLookupResponse;
 import com.magmutual.users.model.UserRequest;
+import com.magmutual.users.repository.UserBulkRepository;
+import com.magmutual.users.repository.UserDictionary;
+import com.magmutual.users.repository.UserProjectionRepository;
 import com.magmutual.users.repository.UserRepository;
+import com.magmutual.users.repository.UserTombstoneHorizonRepository;
+import com.magmutual.users.repository.UserTombstoneRepository;
+import com.magmutual.users.utils.ChangeTokenUtil;
 import com.magmutual.users.utils.DateUtil;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
+import com.magmutual.users.utils.FingerprintUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @Service
 public class UserService {
@@ -39,15 +71,120 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserTombstoneRepository userTombstoneRepository;
+
+    @Autowired
+    private UserTombstoneHorizonRepository userTombstoneHorizonRepository;
+
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+
+    @Autowired
+    private UserProjectionRepository userProjectionRepository;
+
+    @Autowired
+    private UserDictionary userDictionary;
+
+    @Autowired
+    private UserPartitionService userPartitionService;
+
+    @Autowired
+    private CsvIngestionService csvIngestionService;
+
+    @Autowired
+    private UserIdAllocator userIdAllocator;
+
+    @Autowired
+    private UserExistenceFilter userExistenceFilter;
+
+    @Autowired
+    private ImportReportService importReportService;
+
+    @Autowired
+    private UserAuditTrail userAuditTrail;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.import.batch-size:1000}")
+    private int importBatchSize;
+
+
+    @Value("${app.changes.tombstone-retention-days:30}")
+    private long tombstoneRetentionDays;
+
+    @Value("${app.changes.max-watermark-lag-ms:600000}")
+    private long maxWatermarkLagMs;
+
     /**
      * Fetches a user by ID.
      *
      * @param id the user ID
      * @return an Optional containing the user if found
      */
+    @Transactional(readOnly = true)
     public Optional<Users> getUserById(String id) {
         logger.debug("Fetching user with id: {}", id);
-        return userRepository.findById(id);
+        RequestPhaseEvent query = RequestPhaseEvent.start(RequestPhaseEvent.QUERY, "getUserById");
+        Optional<Users> user = userRepository.findById(id);
+        query.finish(user.isPresent() ? 1 : 0);
+        return user;
+    }
+
+    /**
+     * Fetches only the given fields of a user by ID.
+     *
+     * @param id the user ID
+     * @param fields the fields to select
+     * @return an Optional containing the selected fields of the user if found
+     */
+    @Transactional(readOnly = true)
+    public Optional<Map<String, Object>> getUserFieldsById(String id, Set<UserField> fields) {
+        logger.debug("Fetching fields {} of user with id: {}", fields, id);
+        RequestPhaseEvent query = RequestPhaseEvent.start(RequestPhaseEvent.QUERY, "getUserFieldsById");
+        Optional<Map<String, Object>> user = userProjectionRepository.findFieldsById(Long.valueOf(id), fields);
+        query.finish(user.isPresent() ? 1 : 0);
+        return user;
+    }
+
+    /**
+     * Fetches the users with the given ids in a single query.
+     *
+     * @param ids the user IDs, in the order the results are wanted
+     * @param fields the fields to select, or null for whole users
+     * @return the users in the order of the ids, with null and an entry in the missing list for every id without a user
+     */
+    @Transactional(readOnly = true)
+    public UserLookupResponse getUsersByIds(List<Long> ids, Set<UserField> fields) {
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        logger.debug("Fetching {} users by id", distinctIds.size());
+        RequestPhaseEvent query = RequestPhaseEvent.start(RequestPhaseEvent.QUERY, "getUsersByIds");
+        Map<Long, Object> found = new HashMap<>(distinctIds.size() * 2);
+        if (fields == null) {
+            for (Users user : userRepository.findByIdIn(distinctIds)) {
+                found.put(user.getId(), user);
+            }
+        } else {
+            for (Map<String, Object> row : userProjectionRepository.findFieldsByIds(distinctIds, fields)) {
+                found.put((Long) row.get(UserField.ID.getFieldName()), row);
+            }
+        }
+        query.finish(found.size());
+
+        List<Object> users = new ArrayList<>(ids.size());
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : ids) {
+            Object user = found.get(id);
+            users.add(user);
+            if (user == null) {
+                missing.add(id);
+            }
+        }
+        return new UserLookupResponse(users, new ArrayList<>(missing));
     }
 
     /**
@@ -57,13 +194,22 @@ public class UserService {
      * @param userRequest the user data to update
      * @return the updated user
      */
+    @Transactional
     public Users updateUser(String id, UserRequest userRequest) {
         Optional<Users> userOptional = userRepository.findById(id);
         if (userOptional.isPresent()) {
             Users user = userOptional.get();
+            Users requested = new Users();
+            mapUserRequestToUser(requested, userRequest);
+            List<String> changedFields = changedFields(user, requested);
             mapUserRequestToUser(user, userRequest);
             logger.debug("Updating user with id: {}", id);
-            return userRepository.save(user);
+            userPartitionService.ensurePartitionFor(user.getDateCreated());
+            Users savedUser = userRepository.save(user);
+            userExistenceFilter.add(savedUser);
+            userAuditTrail.record(AuditAction.UPDATE, savedUser.getId(), changedFields, null);
+            eventPublisher.publishEvent(UserChangeEvent.upsert(savedUser));
+            return savedUser;
         } else {
             String errorMessage = ApplicationConstants.USER_NOT_FOUND + ": " + id;
             logger.error(errorMessage);
@@ -72,14 +218,23 @@ public class UserService {
     }
 
     /**
-     * Deletes a user by ID.
+     * Deletes a user by ID and leaves a tombstone for the change feed. The user is deleted without loading it
+     * first, and the tombstone is upserted without looking it up.
      *
      * @param id the user ID
      */
+    @Transactional
     public void deleteUser(String id) {
         logger.debug("Deleting user with id: {}", id);
         try {
-            userRepository.deleteById(id);
+            Long userId = Long.valueOf(id);
+            if (userRepository.deleteByIdWithoutLoading(userId) > 0) {
+                userTombstoneRepository.upsert(userId);
+                userAuditTrail.record(AuditAction.DELETE, userId, null, null);
+                eventPublisher.publishEvent(UserChangeEvent.delete(userId));
+            }
+        } catch (CustomException e) {
+            throw e;
         } catch (Exception e) {
             String errorMessage = ApplicationConstants.USER_DELETION_FAILED + ": " + id;
             logger.error(errorMessage, e);
@@ -88,7 +243,8 @@ public class UserService {
     }
 
     /**
-     * Fetches a paginated list of users with filters and sorting options.
+     * Fetches a paginated list of users with filters and sorting options. A profession that is not in the
+     * dictionary matches no user, so it is answered without a query.
      *
      * @param offset the page offset
      * @param limit the page limit
@@ -99,60 +255,465 @@ public class UserService {
      * @param profession the profession filter
      * @return a paginated list of users
      */
+    @Transactional(readOnly = true)
     public Page<Users> getUsers(int offset, int limit, String sortBy, String sortDirection, Date startDate, Date endDate, String profession) {
         logger.debug("Fetching users with filters: offset={}, limit={}, sortBy={}, sortDirection={}, startDate={}, endDate={}, profession={}", offset, limit, sortBy, sortDirection, startDate, endDate, profession);
         Sort sort = Sort.by(Sort.Direction.fromString(sortDirection.toUpperCase()), sortBy);
         Pageable pageable = PageRequest.of(offset / limit, limit, sort);
 
-        if (startDate != null && endDate != null && profession != null) {
-            return userRepository.findByDateCreatedBetweenAndProfession(startDate, endDate, profession, pageable);
+        if (isUnknownProfession(profession)) {
+            return Page.empty(pageable);
+        }
+        RequestPhaseEvent query = RequestPhaseEvent.start(RequestPhaseEvent.QUERY, "getUsers");
+        Page<Users> users;
+        if (UserDictionary.isDictionaryField(sortBy)) {
+            users = userProjectionRepository.findUsers(startDate, endDate, profession, pageable);
+        } else if (startDate != null && endDate != null && profession != null) {
+            users = userRepository.findByDateCreatedBetweenAndProfession(startDate, endDate, profession, pageable);
         } else if (startDate != null && endDate != null) {
-            return userRepository.findByDateCreatedBetween(startDate, endDate, pageable);
+            users = userRepository.findByDateCreatedBetween(startDate, endDate, pageable);
         } else if (profession != null) {
-            return userRepository.findByProfession(profession, pageable);
+            users = userRepository.findByProfession(profession, pageable);
         } else {
-            return userRepository.findAll(pageable);
+            users = userRepository.findAll(pageable);
+        }
+        query.finish(users.getNumberOfElements());
+        return users;
+    }
+
+    /**
+     * Fetches a paginated list of users with the same filters and sorting options as
+     * {@link #getUsers(int, int, String, String, Date, Date, String)}, selecting only the given fields.
+     *
+     * @param offset the page offset
+     * @param limit the page limit
+     * @param sortBy the field to sort by
+     * @param sortDirection the sort direction
+     * @param startDate the start date filter
+     * @param endDate the end date filter
+     * @param profession the profession filter
+     * @param fields the fields to select
+     * @return a paginated list of the selected fields of the users
+     */
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> getUserFields(int offset, int limit, String sortBy, String sortDirection, Date startDate, Date endDate, String profession, Set<UserField> fields) {
+        logger.debug("Fetching fields {} of users with filters: offset={}, limit={}, sortBy={}, sortDirection={}, startDate={}, endDate={}, profession={}", fields, offset, limit, sortBy, sortDirection, startDate, endDate, profession);
+        Sort sort = Sort.by(Sort.Direction.fromString(sortDirection.toUpperCase()), sortBy);
+        Pageable pageable = PageRequest.of(offset / limit, limit, sort);
+
+        if (isUnknownProfession(profession)) {
+            return Page.empty(pageable);
         }
+        RequestPhaseEvent query = RequestPhaseEvent.start(RequestPhaseEvent.QUERY, "getUserFields");
+        Page<Map<String, Object>> users = userProjectionRepository.findFields(fields, startDate, endDate, profession, pageable);
+        query.finish(users.getNumberOfElements());
+        return users;
     }
 
     /**
-     * Adds a new user.
+     * Fetches the users inserted, updated or deleted since the given change token, oldest first.
+     * Rows are stamped by the database after their transaction has marked itself as writing users (see
+     * {@link UserChangeTracking}), so changes stamped at or after the start of the oldest such transaction
+     * still open are held back: that transaction may yet commit rows stamped earlier than changes already
+     * committed, and a client that moved past them would never see those rows. Transactions that do not
+     * write users do not hold the feed back. A writer open for longer than the maximum watermark lag only
+     * holds it back that far, trading its early rows for a feed that keeps moving; a long import is still
+     * announced by its import event.
+     *
+     * <p>A token from before the newest purged tombstone may have missed deletes that are no longer tracked,
+     * and is answered with 410 Gone. The purge horizon is read after the change queries, so a purge that
+     * commits in between is not missed.
+     *
+     * @param since the change token returned by the previous call, or null to start from the beginning
+     * @param limit the maximum number of changes to return
+     * @return the changes and the token to resume from
+     */
+    @Transactional(readOnly = true)
+    public ChangeFeedResponse getChangesSince(String since, int limit) {
+        ChangeTokenUtil.ChangeToken token = ChangeTokenUtil.decode(since);
+        UserRepository.ChangeWatermark watermark = userRepository.findChangeWatermark();
+        Instant heldBackTo = watermark.getNow();
+        if (watermark.getOldestWrite() != null) {
+            Instant floor = watermark.getNow().minusMillis(maxWatermarkLagMs);
+            if (watermark.getOldestWrite().isBefore(floor)) {
+                logger.warn("A transaction writing users has been open since {}, not holding the change feed back beyond {}", watermark.getOldestWrite(), floor);
+                heldBackTo = floor;
+            } else {
+                heldBackTo = watermark.getOldestWrite();
+            }
+        }
+        Timestamp until = Timestamp.from(heldBackTo);
+        logger.debug("Fetching changes since {} until {} with limit {}", token, until, limit);
+
+        Pageable batch = PageRequest.of(0, limit + 1);
+        RequestPhaseEvent query = RequestPhaseEvent.start(RequestPhaseEvent.QUERY, "getChangesSince");
+        List<Users> changedUsers = userRepository.findChangesSince(token.timestamp(), token.id(), until, batch);
+        List<UserTombstone> tombstones = userTombstoneRepository.findChangesSince(token.timestamp(), token.id(), until, batch);
+        query.finish(changedUsers.size() + tombstones.size());
+        if (token != ChangeTokenUtil.INITIAL) {
+            userTombstoneHorizonRepository.findById(UserTombstoneHorizon.ID).ifPresent(horizon -> {
+                if (isBefore(token.timestamp(), token.id(), horizon.getPurgedThrough(), horizon.getPurgedThroughId())) {
+                    throw new CustomException("Change token expired", "Deletes older than " + tombstoneRetentionDays + " days are no longer tracked, a full resync is required", HttpStatus.GONE);
+                }
+            });
+        }
+
+        List<Users> updated = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        ChangeTokenUtil.ChangeToken last = token;
+        int userIndex = 0;
+        int tombstoneIndex = 0;
+        while (updated.size() + deleted.size() < limit && (userIndex < changedUsers.size() || tombstoneIndex < tombstones.size())) {
+            Users user = userIndex < changedUsers.size() ? changedUsers.get(userIndex) : null;
+            UserTombstone tombstone = tombstoneIndex < tombstones.size() ? tombstones.get(tombstoneIndex) : null;
+            if (tombstone == null || (user != null && isBefore(user.getLastModified(), user.getId(), tombstone.getDeletedAt(), tombstone.getId()))) {
+                updated.add(user);
+                last = new ChangeTokenUtil.ChangeToken(user.getLastModified(), user.getId());
+                userIndex++;
+            } else {
+                deleted.add(tombstone.getId());
+                last = new ChangeTokenUtil.ChangeToken(tombstone.getDeletedAt(), tombstone.getId());
+                tombstoneIndex++;
+            }
+        }
+        boolean hasMore = userIndex < changedUsers.size() || tombstoneIndex < tombstones.size();
+        return new ChangeFeedResponse(updated, deleted, ChangeTokenUtil.encode(last), hasMore);
+    }
+
+    /**
+     * Stamps rows that predate change tracking so they are included in the change feed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillLastModified() {
+        int updated = userRepository.backfillLastModified();
+        if (updated > 0) {
+            logger.info("Backfilled last modified marker on {} users", updated);
+        }
+    }
+
+    /**
+     * Drops tombstones older than the retention period, first moving the purge horizon up to the newest of
+     * them so that change tokens from before it are turned away.
+     */
+    @Scheduled(cron = "${app.changes.tombstone-purge-cron:0 0 3 * * *}")
+    @Transactional
+    public void purgeTombstones() {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(tombstoneRetentionDays));
+        UserTombstone newest = userTombstoneRepository.findFirstByDeletedAtBeforeOrderByDeletedAtDescIdDesc(cutoff);
+        if (newest == null) {
+            return;
+        }
+        userTombstoneHorizonRepository.advance(newest.getDeletedAt(), newest.getId());
+        int purged = userTombstoneRepository.deleteOlderThan(cutoff);
+        logger.info("Purged {} user tombstones older than {}", purged, cutoff);
+    }
+
+    /**
+     * Adds a new user. Without an id in the request the user gets a generated one and is inserted straight
+     * away. A supplied id is kept after checking that no user has it yet, so the usual conflict is reported
+     * without a failed insert. When writes may trust the existence filter, it answers that check for most
+     * new ids, so only an id it might contain is looked up. A concurrent insert of the same id can still pass
+     * the check; the id claim taken with the insert (see {@link UserPartitionService}) then fails it, and it
+     * is reported as the same conflict.
      *
      * @param userRequest the user data to add
      * @return the added user
      */
+    @Transactional
     public Users addUser(UserRequest userRequest) {
-        if (userRepository.existsById(String.valueOf(userRequest.getId()))) {
-            logger.error("User with id {} already exists", userRequest.getId());
-            throw new CustomException("User already exists with id: " + userRequest.getId(), "Conflict", HttpStatus.CONFLICT);
+        if (userRequest.getId() != null) {
+            if (userExistenceFilter.mightContainIdBeforeWrite(userRequest.getId()) && userExists(userRequest.getId())) {
+                logger.error("User with id {} already exists", userRequest.getId());
+                throw new CustomException("User already exists with id: " + userRequest.getId(), "Conflict", HttpStatus.CONFLICT);
+            }
+            userIdAllocator.reserveThrough(userRequest.getId());
         }
         Users user = new Users();
         mapUserRequestToUser(user, userRequest);
+        if (user.getId() == null) {
+            user.setId(userIdAllocator.next());
+        }
+        user.setNewUser(true);
         logger.debug("Adding new user with id: {}", user.getId());
-        return userRepository.save(user);
+        userPartitionService.ensurePartitionFor(user.getDateCreated());
+        Users savedUser;
+        try {
+            savedUser = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            logger.error("User with id {} was added concurrently", user.getId());
+            throw new CustomException("User already exists with id: " + user.getId(), "Conflict", HttpStatus.CONFLICT);
+        }
+        userExistenceFilter.add(savedUser);
+        userAuditTrail.record(AuditAction.CREATE, savedUser.getId(), changedFields(new Users(), savedUser), null);
+        eventPublisher.publishEvent(UserChangeEvent.upsert(savedUser));
+        return savedUser;
+    }
+
+    /**
+     * Checks whether a user with the given id or email exists. The existence filter answers a definite no
+     * without a query; only a possible hit is looked up. Emails are compared case-insensitively.
+     *
+     * @param id the user id, or null to check the email
+     * @param email the email, used when no id is given
+     * @return whether such a user exists
+     */
+    public boolean exists(Long id, String email) {
+        if (id != null) {
+            return userExistenceFilter.mightContainId(id) && userExists(id);
+        }
+        if (!userExistenceFilter.mightContainEmail(email)) {
+            return false;
+        }
+        boolean found = userRepository.existsByEmailIgnoreCase(email.trim());
+        userExistenceFilter.recordLookup(found);
+        return found;
     }
 
     /**
-     * Saves users from a CSV file.
+     * Saves users from a CSV file. The upload is spooled to a temporary file so it can be parsed in parallel.
      *
      * @param file the CSV file
+     * @param mode how rows are written
+     * @return the outcome of the import
      */
     @Transactional
-    public void saveUsersFromCsv(MultipartFile file) {
-        try (BufferedReader fileReader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8));
-             CSVParser csvParser = new CSVParser(fileReader, CSVFormat.DEFAULT.withFirstRecordAsHeader().withIgnoreHeaderCase().withTrim())) {
-
-            for (CSVRecord csvRecord : csvParser) {
-                Users user = new Users();
-                mapCsvRecordToUser(user, csvRecord);
-                userRepository.save(user);
-            }
-            logger.debug("Successfully parsed and saved users from CSV file");
+    public ImportResult saveUsersFromCsv(MultipartFile file, ImportMode mode) {
+        Path spoolFile = null;
+        try {
+            spoolFile = Files.createTempFile("users-import-", ".csv");
+            file.transferTo(spoolFile);
+            return saveUsersFromCsv(spoolFile, mode);
         } catch (IOException e) {
             String errorMessage = ApplicationConstants.CSV_PARSE_ERROR;
             logger.error(errorMessage, e);
             throw new CustomException("CSV parsing failed", errorMessage, HttpStatus.INTERNAL_SERVER_ERROR);
+        } finally {
+            deleteQuietly(spoolFile);
+        }
+    }
+
+    /**
+     * Saves users from a CSV file on disk, such as a committed chunked upload. The file is parsed in parallel
+     * while the rows are written in file order on the calling thread, inside its transaction. Invalid rows are
+     * skipped and listed in an error report; the valid ones are saved.
+     *
+     * @param file the CSV file
+     * @param mode how rows are written
+     * @return the outcome of the import, with the id of the error report if rows were rejected
+     */
+    @Transactional
+    public ImportResult saveUsersFromCsv(Path file, ImportMode mode) {
+        RequestPhaseEvent importPhase = RequestPhaseEvent.start(RequestPhaseEvent.IMPORT, mode.name().toLowerCase());
+        try (ImportReportService.Report report = importReportService.newReport();
+             Stream<Users> users = csvIngestionService.parse(file, userIdAllocator, report::add)) {
+            ImportResult result = mode == ImportMode.DIFF ? diffImport(users.iterator(), report) : mergeImport(users.iterator(), report);
+            importPhase.finish(result.getProcessed());
+            userAuditTrail.record(AuditAction.IMPORT, null, null, importSummary(result));
+            if (result.getRejected() > 0) {
+                logger.info("CSV import rejected {} rows, see error report {}", result.getRejected(), result.getErrorReportId());
+            }
+            eventPublisher.publishEvent(UserChangeEvent.imported());
+            logger.debug("Successfully parsed and saved users from CSV file: {}", result);
+            return result;
+        } catch (UncheckedIOException e) {
+            String errorMessage = ApplicationConstants.CSV_PARSE_ERROR;
+            logger.error(errorMessage, e);
+            throw new CustomException("CSV parsing failed", errorMessage, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Saves every parsed user through JPA. Users the parser gave a generated id, or, when writes may trust the
+     * existence filter, with an id it has never seen, are inserted without looking them up. The persistence
+     * context is flushed and cleared every import batch, so memory stays flat however large the file is.
+     *
+     * @param users the parsed users in file order
+     * @param report the error report of the rejected rows
+     * @return the outcome of the import
+     */
+    private ImportResult mergeImport(Iterator<Users> users, ImportReportService.Report report) {
+        long processed = 0;
+        while (users.hasNext()) {
+            Users user = users.next();
+            if (!userExistenceFilter.mightContainIdBeforeWrite(user.getId())) {
+                user.setNewUser(true);
+            }
+            userPartitionService.ensurePartitionFor(user.getDateCreated());
+            userRepository.save(user);
+            userExistenceFilter.add(user);
+            if (++processed % importBatchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        return new ImportResult(ImportMode.MERGE, processed, null, null, null, report.getRejectedRows(), report.getId());
+    }
+
+    /**
+     * Compares every parsed user's content fingerprint with the stored one, batch by batch, and bulk
+     * upserts only the rows that are new or changed. The parser rejects a repeated id into the error report,
+     * including a supplied id it already generated for an earlier row, so every row here has its own id and
+     * is counted exactly once as inserted, updated or unchanged.
+     *
+     * @param users the parsed users in file order
+     * @param report the error report of the rejected rows
+     * @return the outcome of the import
+     */
+    private ImportResult diffImport(Iterator<Users> users, ImportReportService.Report report) {
+        long processed = 0;
+        long[] counts = new long[3];
+        Map<Long, Users> batch = new LinkedHashMap<>();
+        while (users.hasNext()) {
+            Users user = users.next();
+            user.setFingerprint(FingerprintUtil.of(user));
+            if (batch.putIfAbsent(user.getId(), user) != null) {
+                throw new IllegalStateException("Id " + user.getId() + " reached the import twice");
+            }
+            processed++;
+            if (batch.size() >= importBatchSize) {
+                writeChangedRows(batch, counts);
+                batch.clear();
+            }
         }
+        if (!batch.isEmpty()) {
+            writeChangedRows(batch, counts);
+        }
+        return new ImportResult(ImportMode.DIFF, processed, counts[0], counts[1], counts[2], report.getRejectedRows(), report.getId());
+    }
+
+    /**
+     * Classifies a batch of users against their stored fingerprints and upserts the new and changed ones.
+     * Only the ids the existence filter might contain before a write have their fingerprints looked up; the
+     * others are new.
+     *
+     * @param batch the users keyed by id
+     * @param counts the running inserted, updated and unchanged counts
+     */
+    private void writeChangedRows(Map<Long, Users> batch, long[] counts) {
+        Set<Long> candidateIds = new LinkedHashSet<>();
+        for (Long id : batch.keySet()) {
+            if (userExistenceFilter.mightContainIdBeforeWrite(id)) {
+                candidateIds.add(id);
+            }
+        }
+        Map<Long, Long> storedFingerprints = candidateIds.isEmpty() ? Map.of() : userBulkRepository.findFingerprints(candidateIds);
+        for (Long id : candidateIds) {
+            userExistenceFilter.recordLookup(storedFingerprints.containsKey(id));
+        }
+        List<Users> changed = new ArrayList<>();
+        for (Users user : batch.values()) {
+            if (!storedFingerprints.containsKey(user.getId())) {
+                counts[0]++;
+                changed.add(user);
+            } else if (!user.getFingerprint().equals(storedFingerprints.get(user.getId()))) {
+                counts[1]++;
+                changed.add(user);
+            } else {
+                counts[2]++;
+            }
+        }
+        if (!changed.isEmpty()) {
+            userPartitionService.ensurePartitionsFor(changed.stream().map(Users::getDateCreated).toList());
+            userBulkRepository.upsert(changed);
+            changed.forEach(userExistenceFilter::add);
+        }
+        logger.debug("Import batch of {} rows: {} written", batch.size(), changed.size());
+    }
+
+    /**
+     * Looks up a user id the existence filter might contain, recording whether it was a false positive.
+     *
+     * @param id the user id
+     * @return whether a user has the id
+     */
+    private boolean userExists(long id) {
+        boolean found = userRepository.existsById(String.valueOf(id));
+        userExistenceFilter.recordLookup(found);
+        return found;
+    }
+
+    /**
+     * Checks a profession filter against the dictionary without adding it, since querying by a value adds it.
+     *
+     * @param profession the profession filter, or null
+     * @return whether the filter is set to a profession no user has ever had
+     */
+    private boolean isUnknownProfession(String profession) {
+        return profession != null && userDictionary.find(UserField.PROFESSION, profession) == null;
+    }
+
+    /**
+     * Removes a temporary import file, logging instead of failing if it cannot be removed.
+     *
+     * @param file the file, or null if it was never created
+     */
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete temporary import file {}", file, e);
+        }
+    }
+
+    /**
+     * Compares two change feed positions.
+     *
+     * @param timestamp the modification time of the first change
+     * @param id the id of the first change
+     * @param otherTimestamp the modification time of the second change
+     * @param otherId the id of the second change
+     * @return true if the first change comes before the second one
+     */
+    private static boolean isBefore(Timestamp timestamp, Long id, Timestamp otherTimestamp, Long otherId) {
+        int comparison = timestamp.compareTo(otherTimestamp);
+        return comparison < 0 || (comparison == 0 && id < otherId);
+    }
+
+    /**
+     * Lists the fields whose value differs between two versions of a user, by their CSV header names. The
+     * id is left out.
+     *
+     * @param before the stored user, or an empty one for a new user
+     * @param after the user as requested or saved
+     * @return the names of the changed fields
+     */
+    private static List<String> changedFields(Users before, Users after) {
+        List<String> changed = new ArrayList<>();
+        addIfChanged(changed, UserField.FIRSTNAME, before.getFirstname(), after.getFirstname());
+        addIfChanged(changed, UserField.LASTNAME, before.getLastname(), after.getLastname());
+        addIfChanged(changed, UserField.EMAIL, before.getEmail(), after.getEmail());
+        addIfChanged(changed, UserField.PROFESSION, before.getProfession(), after.getProfession());
+        addIfChanged(changed, UserField.DATE_CREATED, before.getDateCreated(), after.getDateCreated());
+        addIfChanged(changed, UserField.COUNTRY, before.getCountry(), after.getCountry());
+        addIfChanged(changed, UserField.CITY, before.getCity(), after.getCity());
+        return changed;
+    }
+
+    private static void addIfChanged(List<String> changed, UserField field, Object before, Object after) {
+        if (!Objects.equals(before, after)) {
+            changed.add(field.getFieldName());
+        }
+    }
+
+    /**
+     * Summarizes an import for the audit trail.
+     *
+     * @param result the outcome of the import
+     * @return the mode and row counts of the import
+     */
+    private static String importSummary(ImportResult result) {
+        StringBuilder summary = new StringBuilder("mode=").append(result.getMode().name().toLowerCase())
+                .append(", processed=").append(result.getProcessed());
+        if (result.getInserted() != null) {
+            summary.append(", inserted=").append(result.getInserted())
+                    .append(", updated=").append(result.getUpdated())
+                    .append(", unchanged=").append(result.getUnchanged());
+        }
+        return summary.append(", rejected=").append(result.getRejected()).toString();
     }
 
     /**
@@ -171,21 +732,4 @@ public class UserService {
         user.setCountry(userRequest.getCountry());
         user.setCity(userRequest.getCity());
     }
-
-    /**
-     * Maps a CSVRecord object to a Users entity.
-     *
-     * @param csvRecord the CSVRecord object
-     * @param user the Users entity
-     */
-    private void mapCsvRecordToUser(Users user, CSVRecord csvRecord) {
-        user.setId(Long.parseLong(csvRecord.get(UserField.ID.getFieldName())));
-        user.setFirstname(csvRecord.get(UserField.FIRSTNAME.getFieldName()));
-        user.setLastname(csvRecord.get(UserField.LASTNAME.getFieldName()));
-        user.setEmail(csvRecord.get(UserField.EMAIL.getFieldName()));
-        user.setProfession(csvRecord.get(UserField.PROFESSION.getFieldName()));
-        user.setDateCreated(DateUtil.convertStringToDate(csvRecord.get(UserField.DATE_CREATED.getFieldName())));
-        user.setCountry(csvRecord.get(UserField.COUNTRY.getFieldName()));
-        user.setCity(csvRecord.get(UserField.CITY.getFieldName()));
-    }
 }
@@ -0,0 +1,177 @@
+package com.magmutual.users.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.magmutual.users.constants.ApplicationConstants;
+import com.magmutual.users.utils.JwtUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warms up the JIT before the instance reports ready. Application runners run after the web server has
+ * started but before Spring Boot marks the application as accepting traffic, so this runner sends read-only
+ * requests to the instance's own port: a synthetic access token goes through {@code JwtRequestFilter},
+ * the list and detail endpoints query the database, and Jackson serializes the results. Until it finishes,
+ * {@code GET /api/health/readiness} reports the instance as refusing traffic.
+ *
+ * <p>The stage stops after {@code app.warm-up.iterations} passes over the requests or
+ * {@code app.warm-up.max-duration-ms}, whichever comes first. Failed requests are logged and do not hold
+ * back readiness.
+ */
+@Service
+public class WarmUpService implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmUpService.class);
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.warm-up.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.warm-up.iterations:500}")
+    private int iterations;
+
+    @Value("${app.warm-up.concurrency:4}")
+    private int concurrency;
+
+    @Value("${app.warm-up.max-duration-ms:60000}")
+    private long maxDurationMs;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!enabled || iterations <= 0) {
+            return;
+        }
+        if (!(applicationContext instanceof WebServerApplicationContext context) || context.getWebServer() == null) {
+            logger.info("No web server is running, skipping the warm-up");
+            return;
+        }
+        warmUp("http://localhost:" + context.getWebServer().getPort());
+    }
+
+    /**
+     * Runs the warm-up requests against the given base URL.
+     *
+     * @param baseUrl the URL of this instance
+     */
+    private void warmUp(String baseUrl) throws InterruptedException {
+        long started = System.nanoTime();
+        long deadline = started + Duration.ofMillis(maxDurationMs).toNanos();
+        String token = jwtUtil.generateToken(authenticationService.loadUserByUsername(ApplicationConstants.USER_ROLE));
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+        List<URI> requests = requests(client, baseUrl, token);
+
+        AtomicLong sent = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        int workers = Math.max(1, Math.min(concurrency, iterations));
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int worker = 0; worker < workers; worker++) {
+                int passes = iterations / workers + (worker < iterations % workers ? 1 : 0);
+                futures.add(executor.submit(() -> {
+                    for (int pass = 0; pass < passes && System.nanoTime() < deadline && !Thread.currentThread().isInterrupted(); pass++) {
+                        for (URI uri : requests) {
+                            sent.incrementAndGet();
+                            if (send(client, uri, token) == null) {
+                                failed.incrementAndGet();
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            logger.warn("Warm-up stopped early", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info("Warm-up sent {} requests ({} failed) in {} ms", sent.get(), failed.get(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Builds the requests of one pass: pages of users with different sorts, filters and fields, and the
+     * details of a user from the first page.
+     */
+    private List<URI> requests(HttpClient client, String baseUrl, String token) {
+        List<URI> requests = new ArrayList<>(List.of(
+                URI.create(baseUrl + "/api/users?limit=10"),
+                URI.create(baseUrl + "/api/users?limit=25&sortBy=lastname&sortDirection=desc"),
+                URI.create(baseUrl + "/api/users?limit=10&profession=doctor"),
+                URI.create(baseUrl + "/api/users?limit=10&fields=firstname,lastname,email")));
+        String firstPage = send(client, requests.get(0), token);
+        JsonNode users = null;
+        try {
+            users = firstPage != null ? objectMapper.readTree(firstPage).path("content") : null;
+        } catch (IOException e) {
+            logger.debug("Cannot read the first page of users", e);
+        }
+        if (users != null && users.size() > 0) {
+            long id = users.get(0).path("id").asLong();
+            requests.add(URI.create(baseUrl + "/api/users/" + id));
+            requests.add(URI.create(baseUrl + "/api/users/" + id + "?fields=email,profession"));
+        }
+        return requests;
+    }
+
+    /**
+     * Sends a warm-up request.
+     *
+     * @return the response body, or null if the request failed
+     */
+    private String send(HttpClient client, URI uri, String token) {
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri)
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                    .timeout(Duration.ofSeconds(10))
+                    .GET().build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 200) {
+                return response.body();
+            }
+            logger.debug("Warm-up request {} returned {}", uri, response.statusCode());
+        } catch (IOException e) {
+            logger.debug("Warm-up request {} failed", uri, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,134 @@
+package com.magmutual.users.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over 64-bit keys that threads can add to and query concurrently. It answers whether a key
+ * might have been added: a miss is definite, a hit is only likely. The bit positions come from double
+ * hashing of one mixed 64-bit hash, so callers hash their values to a long first, with {@link #hash(String)}
+ * for strings.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashFunctions;
+    private final long capacity;
+    private final AtomicLong insertions = new AtomicLong();
+
+    /**
+     * Sizes a filter for the expected number of keys and false positive rate.
+     *
+     * @param capacity the number of keys the filter is sized for
+     * @param falsePositiveRate the false positive rate at that number of keys, between 0 and 1
+     */
+    public BloomFilter(long capacity, double falsePositiveRate) {
+        this.capacity = Math.max(capacity, 1);
+        long optimalBits = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.words = new AtomicLongArray((int) Math.max(1, (optimalBits + 63) / 64));
+        this.bits = words.length() * 64L;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bits / this.capacity * Math.log(2)));
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key the key
+     */
+    public void put(long key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+        insertions.incrementAndGet();
+    }
+
+    /**
+     * Checks whether a key might have been added.
+     *
+     * @param key the key
+     * @return false if the key was definitely never added
+     */
+    public boolean mightContain(long key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the expected false positive rate for the keys added so far
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashFunctions * (double) insertions.get() / bits), hashFunctions);
+    }
+
+    /**
+     * @return the number of keys added, counting repeats
+     */
+    public long getInsertions() {
+        return insertions.get();
+    }
+
+    /**
+     * @return the number of keys the filter is sized for
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the size of the filter in bits
+     */
+    public long getBits() {
+        return bits;
+    }
+
+    /**
+     * @return the number of bits set per key
+     */
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    /**
+     * Hashes a string to a 64-bit key with FNV-1a.
+     *
+     * @param value the string
+     * @return its key
+     */
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Spreads the bits of a key, so sequential ids land far apart (the finalizer of MurmurHash3).
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,50 @@
+package com.magmutual.users.utils;
+
+import com.magmutual.users.exception.CustomException;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+public class ChangeTokenUtil {
+
+    /**
+     * Position in the change feed: the modification time and id of the last change a client has seen.
+     */
+    public record ChangeToken(Timestamp timestamp, Long id) {
+    }
+
+    public static final ChangeToken INITIAL = new ChangeToken(new Timestamp(0L), Long.MIN_VALUE);
+
+    /**
+     * Encodes a change feed position into an opaque token.
+     *
+     * @param token the change feed position
+     * @return the encoded token
+     */
+    public static String encode(ChangeToken token) {
+        String raw = token.timestamp().getTime() + ":" + token.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes an opaque token into a change feed position. A missing token means the start of the feed.
+     *
+     * @param token the encoded token
+     * @return the change feed position
+     * @throws CustomException if the token is malformed
+     */
+    public static ChangeToken decode(String token) {
+        if (token == null || token.isBlank()) {
+            return INITIAL;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new ChangeToken(new Timestamp(Long.parseLong(raw.substring(0, separator))), Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new CustomException("Invalid change token", "The provided change token is malformed: " + token, HttpStatus.BAD_REQUEST);
+        }
+    }
+}
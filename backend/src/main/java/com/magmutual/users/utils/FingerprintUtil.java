@@ -0,0 +1,41 @@
+package com.magmutual.users.utils;
+
+import com.magmutual.users.entity.Users;
+
+public class FingerprintUtil {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final char FIELD_SEPARATOR = '\u001f';
+    private static final char NULL_MARKER = '\u0000';
+
+    /**
+     * Computes a 64-bit FNV-1a fingerprint of the user's content fields, used to detect whether an
+     * imported row differs from the stored one without comparing every column.
+     *
+     * @param user the user
+     * @return the content fingerprint
+     */
+    public static long of(Users user) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = mix(hash, user.getFirstname());
+        hash = mix(hash, user.getLastname());
+        hash = mix(hash, user.getEmail());
+        hash = mix(hash, user.getProfession());
+        hash = mix(hash, user.getDateCreated() != null ? Long.toString(user.getDateCreated().getTime()) : null);
+        hash = mix(hash, user.getCountry());
+        hash = mix(hash, user.getCity());
+        return hash;
+    }
+
+    private static long mix(long hash, String value) {
+        if (value == null) {
+            hash = (hash ^ NULL_MARKER) * FNV_PRIME;
+        } else {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return (hash ^ FIELD_SEPARATOR) * FNV_PRIME;
+    }
+}
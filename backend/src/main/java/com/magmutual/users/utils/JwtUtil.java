@@ -1,8 +1,12 @@
 package com.magmutual.users.utils;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.UnsupportedJwtException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -13,6 +17,7 @@ import org.slf4j.LoggerFactory;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -21,12 +26,18 @@ public class JwtUtil {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtUtil.class);
 
+    public static final String TOKEN_TYPE_CLAIM = "type";
+    public static final String REFRESH_TOKEN_TYPE = "refresh";
+
     @Value("${jwt.secret}")
     private String secret;
 
     @Value("${jwt.expiration}")
     private long expiration;
 
+    @Value("${jwt.refresh-expiration}")
+    private long refreshExpiration;
+
     /**
      * Extracts the username from the JWT token.
      *
@@ -61,10 +72,13 @@ public class JwtUtil {
     }
 
     /**
-     * Extracts all claims from the JWT token.
+     * Extracts all claims from the JWT token. The jjwt exceptions are passed on unwrapped so that callers
+     * can tell an expired token, which the client may refresh, from an invalid one.
      *
      * @param token the JWT token
      * @return the claims
+     * @throws ExpiredJwtException if the token has expired
+     * @throws JwtException if the token is malformed, unsigned or carries a wrong signature
      */
     public Claims extractAllClaims(String token) {
         try {
@@ -72,22 +86,18 @@ public class JwtUtil {
                     .setSigningKey(secret)
                     .parseClaimsJws(token)
                     .getBody();
-        } catch (Exception e) {
+        } catch (ExpiredJwtException e) {
+            logger.debug("Token has expired: {}", e.getMessage());
+            throw e;
+        } catch (JwtException e) {
             logger.error("Failed to extract claims from token", e);
-            throw new RuntimeException("Failed to extract claims from token", e);
+            throw e;
+        } catch (IllegalArgumentException e) {
+            logger.error("Failed to extract claims from token", e);
+            throw new MalformedJwtException("Token is empty", e);
         }
     }
 
-    /**
-     * Checks if the token is expired.
-     *
-     * @param token the JWT token
-     * @return true if the token is expired, false otherwise
-     */
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
     /**
      * Generates a new JWT token for the given user details.
      *
@@ -98,7 +108,43 @@ public class JwtUtil {
         Map<String, Object> claims = new HashMap<>();
         claims.put("authorities", userDetails.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority).collect(Collectors.toList()));
-        return createToken(claims, userDetails.getUsername());
+        return createToken(claims, userDetails.getUsername(), expiration);
+    }
+
+    /**
+     * Generates a new long-lived refresh token for the given user details.
+     * The refresh token carries no authorities and a unique id so that it can be revoked.
+     *
+     * @param userDetails the user details
+     * @return the refresh token
+     */
+    public String generateRefreshToken(UserDetails userDetails) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(TOKEN_TYPE_CLAIM, REFRESH_TOKEN_TYPE);
+        return Jwts.builder()
+                .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
+                .setSubject(userDetails.getUsername())
+                .setIssuedAt(new Date(System.currentTimeMillis()))
+                .setExpiration(new Date(System.currentTimeMillis() + refreshExpiration * 1000))
+                .signWith(SignatureAlgorithm.HS256, secret)
+                .compact();
+    }
+
+    /**
+     * Verifies the signature and expiry of a refresh token and returns its claims.
+     *
+     * @param token the refresh token
+     * @return the claims of the refresh token
+     * @throws JwtException if the token is invalid, expired or not a refresh token
+     */
+    public Claims extractRefreshClaims(String token) {
+        Claims claims = extractAllClaims(token);
+        if (!REFRESH_TOKEN_TYPE.equals(claims.get(TOKEN_TYPE_CLAIM)) || claims.getId() == null) {
+            logger.error("Token is not a refresh token");
+            throw new UnsupportedJwtException("Token is not a refresh token");
+        }
+        return claims;
     }
 
     /**
@@ -106,27 +152,30 @@ public class JwtUtil {
      *
      * @param claims the claims to include in the token
      * @param subject the subject of the token
+     * @param validitySeconds the lifetime of the token in seconds
      * @return the JWT token
      */
-    private String createToken(Map<String, Object> claims, String subject) {
+    private String createToken(Map<String, Object> claims, String subject, long validitySeconds) {
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration * 1000))
+                .setExpiration(new Date(System.currentTimeMillis() + validitySeconds * 1000))
                 .signWith(SignatureAlgorithm.HS256, secret)
                 .compact();
     }
 
     /**
-     * Validates the JWT token.
+     * Validates the JWT token. Refresh tokens are never accepted as access tokens.
      *
      * @param token the JWT token
      * @param userDetails the user details
      * @return true if the token is valid, false otherwise
      */
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final Claims claims = extractAllClaims(token);
+        return (claims.getSubject().equals(userDetails.getUsername())
+                && !claims.getExpiration().before(new Date())
+                && !REFRESH_TOKEN_TYPE.equals(claims.get(TOKEN_TYPE_CLAIM)));
     }
 }
@@ -0,0 +1,306 @@
+package com.magmutual.users;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.magmutual.users.controller.AuthenticationController;
+import com.magmutual.users.exception.GlobalExceptionHandler;
+import com.magmutual.users.filter.JwtRequestFilter;
+import com.magmutual.users.service.AuthenticationService;
+import com.magmutual.users.service.TokenRevocationService;
+import com.magmutual.users.utils.JwtUtil;
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Runs the access token filter in front of the authentication endpoints and a probe endpoint that echoes the
+ * authenticated user, covering the asynchronous login, the expired token, refresh and retry round trip the
+ * frontend relies on.
+ */
+class AuthenticationControllerTest {
+
+    private static final String SECRET = "test_secret";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private JwtUtil jwtUtil;
+
+    private TokenRevocationService tokenRevocationService;
+
+    private UserDetails userDetails;
+
+    private AuthenticationManager authenticationManager;
+
+    private ExecutorService loginExecutor;
+
+    private AuthenticationController authenticationController;
+
+    private MockMvc mockMvc;
+
+    @RestController
+    static class ProbeController {
+
+        @GetMapping("/api/probe")
+        String whoAmI() {
+            return SecurityContextHolder.getContext().getAuthentication() != null
+                    ? SecurityContextHolder.getContext().getAuthentication().getName()
+                    : "anonymous";
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = jwtUtil(900L);
+        tokenRevocationService = new TokenRevocationService();
+        userDetails = new User("admin", "password", List.of(new SimpleGrantedAuthority("GET_USERS")));
+
+        AuthenticationService authenticationService = mock(AuthenticationService.class);
+        when(authenticationService.loadUserByUsername(anyString())).thenReturn(userDetails);
+
+        authenticationManager = mock(AuthenticationManager.class);
+        loginExecutor = Executors.newSingleThreadExecutor();
+
+        authenticationController = new AuthenticationController();
+        ReflectionTestUtils.setField(authenticationController, "authenticationManager", authenticationManager);
+        ReflectionTestUtils.setField(authenticationController, "loginExecutor", loginExecutor);
+        ReflectionTestUtils.setField(authenticationController, "loginTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(authenticationController, "authenticationService", authenticationService);
+        ReflectionTestUtils.setField(authenticationController, "tokenRevocationService", tokenRevocationService);
+        ReflectionTestUtils.setField(authenticationController, "jwtUtil", jwtUtil);
+
+        JwtRequestFilter jwtRequestFilter = new JwtRequestFilter();
+        ReflectionTestUtils.setField(jwtRequestFilter, "authenticationService", authenticationService);
+        ReflectionTestUtils.setField(jwtRequestFilter, "jwtUtil", jwtUtil);
+
+        Filter clearContext = (request, response, chain) -> {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        };
+        SecurityContextHolder.clearContext();
+        mockMvc = MockMvcBuilders.standaloneSetup(authenticationController, new ProbeController())
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .addFilters(clearContext, jwtRequestFilter)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loginExecutor.shutdownNow();
+    }
+
+    @Test
+    void testLoginIsAnsweredAfterTheExecutorVerifiesThePassword() throws Exception {
+        when(authenticationManager.authenticate(any()))
+                .thenReturn(new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+
+        MvcResult pending = mockMvc.perform(post("/api/auth/authenticate").contentType(MediaType.APPLICATION_JSON)
+                        .content(loginBody("admin", "password")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals("admin", jwtUtil.extractUsername(objectMapper.readTree(body).get("token").asText()));
+    }
+
+    @Test
+    void testLoginWithWrongPasswordIsUnauthorized() throws Exception {
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("Bad credentials"));
+
+        MvcResult pending = mockMvc.perform(post("/api/auth/authenticate").contentType(MediaType.APPLICATION_JSON)
+                        .content(loginBody("admin", "wrong")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message").value("Invalid username or password"));
+    }
+
+    @Test
+    void testLoginIsRejectedWhenTheExecutorIsSaturated() throws Exception {
+        loginExecutor.shutdown();
+
+        mockMvc.perform(post("/api/auth/authenticate").contentType(MediaType.APPLICATION_JSON)
+                        .content(loginBody("admin", "password")))
+                .andExpect(status().isServiceUnavailable());
+        verify(authenticationManager, never()).authenticate(any());
+    }
+
+    @Test
+    void testLoginStillQueuedAtTheTimeoutIsNotVerified() throws Exception {
+        ReflectionTestUtils.setField(authenticationController, "loginTimeoutMs", 50L);
+        CountDownLatch release = new CountDownLatch(1);
+        loginExecutor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        MvcResult pending = mockMvc.perform(post("/api/auth/authenticate").contentType(MediaType.APPLICATION_JSON)
+                        .content(loginBody("admin", "password")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isServiceUnavailable());
+        release.countDown();
+        loginExecutor.shutdown();
+        assertTrue(loginExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        verify(authenticationManager, never()).authenticate(any());
+    }
+
+    @Test
+    void testExpiredAccessTokenIsRefreshedAndRetried() throws Exception {
+        String expiredToken = jwtUtil(-60L).generateToken(userDetails);
+        String refreshToken = jwtUtil.generateRefreshToken(userDetails);
+
+        mockMvc.perform(get("/api/probe").header("Authorization", "Bearer " + expiredToken))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message").value("Token has expired"));
+
+        JsonNode refreshed = refresh(refreshToken);
+        assertNotEquals(refreshToken, refreshed.get("refreshToken").asText());
+
+        mockMvc.perform(get("/api/probe").header("Authorization", "Bearer " + refreshed.get("token").asText()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("admin"));
+    }
+
+    @Test
+    void testTamperedAccessTokenIsUnauthorized() throws Exception {
+        String token = jwtUtil.generateToken(userDetails);
+
+        mockMvc.perform(get("/api/probe").header("Authorization", "Bearer " + token + "x"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message").value("Token is invalid"));
+    }
+
+    @Test
+    void testRefreshTokenCannotBeReplayed() throws Exception {
+        String refreshToken = jwtUtil.generateRefreshToken(userDetails);
+
+        refresh(refreshToken);
+
+        mockMvc.perform(post("/api/auth/refresh").contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(refreshToken)))
+                .andExpect(status().isUnauthorized());
+        assertEquals(1, tokenRevocationService.size());
+    }
+
+    @Test
+    void testRefreshRejectsAccessToken() throws Exception {
+        String accessToken = jwtUtil.generateToken(userDetails);
+
+        mockMvc.perform(post("/api/auth/refresh").contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(accessToken)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testRefreshRejectsExpiredRefreshToken() throws Exception {
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", -60L);
+        String refreshToken = jwtUtil.generateRefreshToken(userDetails);
+
+        mockMvc.perform(post("/api/auth/refresh").contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(refreshToken)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testLogoutRevokesRefreshToken() throws Exception {
+        String refreshToken = jwtUtil.generateRefreshToken(userDetails);
+
+        mockMvc.perform(post("/api/auth/logout").contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(refreshToken)))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(post("/api/auth/refresh").contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(refreshToken)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testLogoutRejectsInvalidToken() throws Exception {
+        mockMvc.perform(post("/api/auth/logout").contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody("not-a-token")))
+                .andExpect(status().isUnauthorized());
+        assertEquals(0, tokenRevocationService.size());
+    }
+
+    @Test
+    void testPurgeDropsExpiredRevocations() {
+        tokenRevocationService.revoke("00000000-0000-0000-0000-000000000001", System.currentTimeMillis() - 1000);
+        tokenRevocationService.revoke("00000000-0000-0000-0000-000000000002", System.currentTimeMillis() + 60_000);
+
+        tokenRevocationService.purgeExpired();
+
+        assertEquals(1, tokenRevocationService.size());
+        assertFalse(tokenRevocationService.revokeIfActive("00000000-0000-0000-0000-000000000002", System.currentTimeMillis() + 60_000));
+        assertTrue(tokenRevocationService.revokeIfActive("00000000-0000-0000-0000-000000000001", System.currentTimeMillis() + 60_000));
+    }
+
+    private JsonNode refresh(String refreshToken) throws Exception {
+        String body = mockMvc.perform(post("/api/auth/refresh").contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshBody(refreshToken)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private String loginBody(String username, String password) throws Exception {
+        return objectMapper.writeValueAsString(Map.of("username", username, "password", password));
+    }
+
+    private String refreshBody(String refreshToken) throws Exception {
+        return objectMapper.writeValueAsString(Map.of("refreshToken", refreshToken));
+    }
+
+    private static JwtUtil jwtUtil(long expiration) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", expiration);
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", 86400L);
+        return jwtUtil;
+    }
+}
@@ -0,0 +1,57 @@
+package com.magmutual.users;
+
+import com.magmutual.users.service.AuthenticationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthenticationServiceTest {
+
+    private AuthenticationService authenticationService;
+
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+
+    @BeforeEach
+    void setUp() {
+        authenticationService = new AuthenticationService();
+        ReflectionTestUtils.setField(authenticationService, "userPassword", "userpassword");
+        ReflectionTestUtils.setField(authenticationService, "adminPassword", passwordEncoder.encode("adminpassword"));
+        authenticationService.init();
+    }
+
+    @Test
+    void testLoadUserByUsernameReusesPrecomputedHash() {
+        UserDetails first = authenticationService.loadUserByUsername("user");
+        UserDetails second = authenticationService.loadUserByUsername("user");
+
+        assertEquals(first.getPassword(), second.getPassword());
+        assertTrue(passwordEncoder.matches("userpassword", first.getPassword()));
+    }
+
+    @Test
+    void testLoadUserByUsernameAcceptsPreHashedPassword() {
+        UserDetails admin = authenticationService.loadUserByUsername("admin");
+
+        assertTrue(passwordEncoder.matches("adminpassword", admin.getPassword()));
+        assertEquals(5, admin.getAuthorities().size());
+    }
+
+    @Test
+    void testErasedCredentialsDoNotLeakIntoCache() {
+        UserDetails details = authenticationService.loadUserByUsername("user");
+        ((CredentialsContainer) details).eraseCredentials();
+
+        assertNotNull(authenticationService.loadUserByUsername("user").getPassword());
+    }
+
+    @Test
+    void testLoadUnknownUser() {
+        assertThrows(UsernameNotFoundException.class, () -> authenticationService.loadUserByUsername("unknown"));
+    }
+}
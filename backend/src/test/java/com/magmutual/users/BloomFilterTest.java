@@ -0,0 +1,47 @@
+package com.magmutual.users;
+
+import com.magmutual.users.utils.BloomFilter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void testAddedKeysAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.put(id);
+        }
+        for (long id = 1; id <= 10_000; id++) {
+            assertTrue(filter.mightContain(id), "missed " + id);
+        }
+        assertEquals(10_000, filter.getInsertions());
+    }
+
+    @Test
+    void testFalsePositiveRateStaysNearTargetAtCapacity() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.put(id);
+        }
+        int falsePositives = 0;
+        for (long id = 1_000_001; id <= 1_100_000; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        double rate = falsePositives / 100_000.0;
+        assertTrue(rate < 0.02, "false positive rate " + rate);
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.005);
+    }
+
+    @Test
+    void testStringKeysAreHashedConsistently() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.put(BloomFilter.hash("john.doe@example.com"));
+
+        assertTrue(filter.mightContain(BloomFilter.hash("john.doe@example.com")));
+        assertNotEquals(BloomFilter.hash("john.doe@example.com"), BloomFilter.hash("jane.doe@example.com"));
+    }
+}
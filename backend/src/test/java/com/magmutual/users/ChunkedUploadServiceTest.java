@@ -0,0 +1,252 @@
+package com.magmutual.users;
+
+import com.magmutual.users.constants.ImportMode;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.ImportResult;
+import com.magmutual.users.model.UploadSessionStatus;
+import com.magmutual.users.service.ChunkedUploadService;
+import com.magmutual.users.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkedUploadServiceTest {
+
+    private static final String CSV = "id,firstname,lastname,email,profession,dateCreated,country,city\n"
+            + "1,Ann,Lee,ann@example.com,doctor,2021-01-01,\"Virgin Islands, British\",Road Town\n";
+
+    @Mock
+    private UserService userService;
+
+    @InjectMocks
+    private ChunkedUploadService chunkedUploadService;
+
+    @TempDir
+    private Path spoolDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(chunkedUploadService, "spoolDir", spoolDir);
+        ReflectionTestUtils.setField(chunkedUploadService, "defaultChunkSize", 32);
+        ReflectionTestUtils.setField(chunkedUploadService, "maxChunkSize", 1024);
+        ReflectionTestUtils.setField(chunkedUploadService, "maxSessions", 4);
+        ReflectionTestUtils.setField(chunkedUploadService, "sessionTtlMinutes", 60L);
+        chunkedUploadService.init();
+    }
+
+    @Test
+    void testChunksAreImportedOnCommit() throws Exception {
+        byte[] content = CSV.getBytes(StandardCharsets.UTF_8);
+        UploadSessionStatus session = chunkedUploadService.createSession(ImportMode.DIFF, null, (long) content.length);
+        sendAll(session.getUploadId(), content, 32);
+
+        AtomicReference<String> imported = new AtomicReference<>();
+        ImportResult result = new ImportResult(ImportMode.DIFF, 1, 1L, 0L, 0L, 0, null);
+        when(userService.saveUsersFromCsv(any(Path.class), eq(ImportMode.DIFF))).thenAnswer(invocation -> {
+            imported.set(Files.readString(invocation.<Path>getArgument(0)));
+            return result;
+        });
+
+        assertSame(result, chunkedUploadService.commit(session.getUploadId()));
+        assertEquals(CSV, imported.get());
+        assertEquals(0, Files.list(spoolDir).count());
+        assertStatus(HttpStatus.NOT_FOUND, () -> chunkedUploadService.getStatus(session.getUploadId()));
+    }
+
+    @Test
+    void testCorruptChunkIsDiscardedAndCanBeResent() throws Exception {
+        UploadSessionStatus session = chunkedUploadService.createSession(ImportMode.MERGE, 4, null);
+        String uploadId = session.getUploadId();
+        chunkedUploadService.writeChunk(uploadId, 0, sha256("abcd"), stream("abcd"));
+
+        assertStatus(HttpStatus.BAD_REQUEST, () -> chunkedUploadService.writeChunk(uploadId, 1, sha256("efgh"), stream("efXX")));
+
+        UploadSessionStatus status = chunkedUploadService.getStatus(uploadId);
+        assertEquals(1, status.getNextChunk());
+        assertEquals(4, status.getBytesReceived());
+        assertEquals(4, Files.size(spoolDir.resolve(uploadId + ".csv")));
+
+        status = chunkedUploadService.writeChunk(uploadId, 1, sha256("efgh"), stream("efgh"));
+        assertEquals(2, status.getNextChunk());
+        assertEquals("abcdefgh", Files.readString(spoolDir.resolve(uploadId + ".csv")));
+    }
+
+    @Test
+    void testAcknowledgedChunkCanBeRetried() throws Exception {
+        String uploadId = chunkedUploadService.createSession(ImportMode.MERGE, 4, null).getUploadId();
+        chunkedUploadService.writeChunk(uploadId, 0, sha256("abcd"), stream("abcd"));
+
+        UploadSessionStatus status = chunkedUploadService.writeChunk(uploadId, 0, sha256("abcd"), stream("abcd"));
+
+        assertEquals(1, status.getNextChunk());
+        assertEquals(4, status.getBytesReceived());
+        assertStatus(HttpStatus.CONFLICT, () -> chunkedUploadService.writeChunk(uploadId, 0, sha256("zzzz"), stream("zzzz")));
+    }
+
+    @Test
+    void testOutOfOrderAndOversizedChunksAreRejected() throws Exception {
+        String uploadId = chunkedUploadService.createSession(ImportMode.MERGE, 4, null).getUploadId();
+
+        assertStatus(HttpStatus.CONFLICT, () -> chunkedUploadService.writeChunk(uploadId, 1, sha256("abcd"), stream("abcd")));
+        assertStatus(HttpStatus.PAYLOAD_TOO_LARGE, () -> chunkedUploadService.writeChunk(uploadId, 0, sha256("abcde"), stream("abcde")));
+        assertEquals(0, chunkedUploadService.getStatus(uploadId).getBytesReceived());
+    }
+
+    @Test
+    void testIncompleteUploadCannotBeCommitted() throws Exception {
+        String uploadId = chunkedUploadService.createSession(ImportMode.MERGE, 4, 8L).getUploadId();
+        chunkedUploadService.writeChunk(uploadId, 0, sha256("abcd"), stream("abcd"));
+
+        assertStatus(HttpStatus.BAD_REQUEST, () -> chunkedUploadService.commit(uploadId));
+        assertEquals(1, chunkedUploadService.getStatus(uploadId).getNextChunk());
+    }
+
+    @Test
+    void testAbortRemovesSpoolFile() {
+        String uploadId = chunkedUploadService.createSession(ImportMode.MERGE, null, null).getUploadId();
+
+        chunkedUploadService.abort(uploadId);
+
+        assertFalse(Files.exists(spoolDir.resolve(uploadId + ".csv")));
+        assertStatus(HttpStatus.NOT_FOUND, () -> chunkedUploadService.abort(uploadId));
+    }
+
+    @Test
+    void testFailedImportKeepsSessionForRetry() throws Exception {
+        String uploadId = chunkedUploadService.createSession(ImportMode.MERGE, 4, 4L).getUploadId();
+        chunkedUploadService.writeChunk(uploadId, 0, sha256("abcd"), stream("abcd"));
+        ImportResult result = new ImportResult(ImportMode.MERGE, 1, 1L, 0L, 0L, 0, null);
+        when(userService.saveUsersFromCsv(any(Path.class), eq(ImportMode.MERGE)))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(result);
+
+        assertThrows(IllegalStateException.class, () -> chunkedUploadService.commit(uploadId));
+        assertEquals("abcd", Files.readString(spoolDir.resolve(uploadId + ".csv")));
+        assertEquals(1, chunkedUploadService.getStatus(uploadId).getNextChunk());
+
+        assertSame(result, chunkedUploadService.commit(uploadId));
+        assertFalse(Files.exists(spoolDir.resolve(uploadId + ".csv")));
+        assertStatus(HttpStatus.NOT_FOUND, () -> chunkedUploadService.commit(uploadId));
+    }
+
+    @Test
+    void testUploadBeingImportedIsBusy() throws Exception {
+        String uploadId = chunkedUploadService.createSession(ImportMode.MERGE, 4, null).getUploadId();
+        chunkedUploadService.writeChunk(uploadId, 0, sha256("ab"), stream("ab"));
+        ImportResult result = new ImportResult(ImportMode.MERGE, 1, 1L, 0L, 0L, 0, null);
+        when(userService.saveUsersFromCsv(any(Path.class), eq(ImportMode.MERGE))).thenAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> {
+                assertStatus(HttpStatus.CONFLICT, () -> chunkedUploadService.commit(uploadId));
+                assertStatus(HttpStatus.CONFLICT, () -> chunkedUploadService.abort(uploadId));
+            }).get(10, TimeUnit.SECONDS);
+            return result;
+        });
+
+        assertSame(result, chunkedUploadService.commit(uploadId));
+        assertStatus(HttpStatus.NOT_FOUND, () -> chunkedUploadService.abort(uploadId));
+    }
+
+    @Test
+    void testSessionLimitHoldsUnderConcurrentCreates() throws Exception {
+        int attempts = 32;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        try {
+            List<Future<?>> creates = new ArrayList<>();
+            for (int i = 0; i < attempts; i++) {
+                creates.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        chunkedUploadService.createSession(ImportMode.MERGE, null, null);
+                        opened.incrementAndGet();
+                    } catch (CustomException e) {
+                        assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatus());
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> create : creates) {
+                create.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(4, opened.get());
+        assertEquals(attempts - 4, rejected.get());
+        assertEquals(4, Files.list(spoolDir).count());
+    }
+
+    @Test
+    void testIdleSessionsExpireAndFreeTheirSlots() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            chunkedUploadService.createSession(ImportMode.MERGE, null, null);
+        }
+        assertStatus(HttpStatus.TOO_MANY_REQUESTS, () -> chunkedUploadService.createSession(ImportMode.MERGE, null, null));
+
+        ReflectionTestUtils.setField(chunkedUploadService, "sessionTtlMinutes", -1L);
+        chunkedUploadService.purgeExpiredSessions();
+        ReflectionTestUtils.setField(chunkedUploadService, "sessionTtlMinutes", 60L);
+
+        assertEquals(0, Files.list(spoolDir).count());
+        for (int i = 0; i < 4; i++) {
+            chunkedUploadService.createSession(ImportMode.MERGE, null, null);
+        }
+    }
+
+    private void sendAll(String uploadId, byte[] content, int chunkSize) throws Exception {
+        for (int index = 0, offset = 0; offset < content.length; index++, offset += chunkSize) {
+            byte[] chunk = Arrays.copyOfRange(content, offset, Math.min(content.length, offset + chunkSize));
+            chunkedUploadService.writeChunk(uploadId, index, HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(chunk)), new ByteArrayInputStream(chunk));
+        }
+    }
+
+    private static void assertStatus(HttpStatus status, Executable executable) {
+        CustomException exception = assertThrows(CustomException.class, executable);
+        assertEquals(status, exception.getStatus());
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(String content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,124 @@
+package com.magmutual.users;
+
+import com.magmutual.users.constants.UserField;
+import com.magmutual.users.entity.Users;
+import com.magmutual.users.loadtest.SyntheticUserGenerator;
+import com.magmutual.users.service.CsvIngestionService;
+import com.magmutual.users.utils.DateUtil;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the parallel CSV ingestion engine with the single-threaded commons-csv parse it replaced, on a
+ * generated file, at 1, 2, 4, ... threads up to the number of cores. Only parsing and mapping to users is
+ * timed, not the database writes. Run with {@code mvn test -Pbenchmark -Dbenchmark.csv-rows=1000000}.
+ */
+@Tag("benchmark")
+class CsvIngestionBenchmark {
+
+    private static final long ROWS = Long.getLong("benchmark.csv-rows", 1_000_000L);
+    private static final int RUNS = 3;
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvIngestionBenchmark.class);
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void compareWithCommonsCsv() throws Exception {
+        Path file = tempDir.resolve("users.csv");
+        new SyntheticUserGenerator(42).writeFile(file, ROWS);
+        double megabytes = Files.size(file) / (1024.0 * 1024.0);
+        logger.info("CSV ingestion benchmark: {} rows, {} MB", ROWS, String.format("%.1f", megabytes));
+
+        double baseline = bestOf(() -> parseWithCommonsCsv(file));
+        report("commons-csv", megabytes, baseline, baseline);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads = threads < cores ? Math.min(threads * 2, cores) : cores + 1) {
+            CsvIngestionService csvIngestionService = new CsvIngestionService();
+            ReflectionTestUtils.setField(csvIngestionService, "parallelism", threads);
+            ReflectionTestUtils.setField(csvIngestionService, "segmentSize", 1024 * 1024);
+            csvIngestionService.init();
+            try {
+                double seconds = bestOf(() -> parseInParallel(csvIngestionService, file));
+                report("parallel, " + threads + " threads", megabytes, seconds, baseline);
+            } finally {
+                csvIngestionService.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Runs a parse a few times after a warm-up run and returns the fastest time in seconds.
+     */
+    private static double bestOf(Callable<Long> parse) throws Exception {
+        assertEquals(ROWS, parse.call());
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            assertEquals(ROWS, parse.call());
+            best = Math.min(best, (System.nanoTime() - start) / 1_000_000_000.0);
+        }
+        return best;
+    }
+
+    private static void report(String name, double megabytes, double seconds, double baseline) {
+        logger.info(String.format("%-22s %8.3f s %10.0f rows/s %8.1f MB/s %6.2fx",
+                name, seconds, ROWS / seconds, megabytes / seconds, baseline / seconds));
+    }
+
+    private static long parseInParallel(CsvIngestionService csvIngestionService, Path file) {
+        try (Stream<Users> users = csvIngestionService.parse(file, error -> { })) {
+            return users.count();
+        }
+    }
+
+    /**
+     * The import's previous parse path: a buffered reader into commons-csv, mapping each record on the way.
+     */
+    private static long parseWithCommonsCsv(Path file) throws IOException {
+        long rows = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8));
+             CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).setIgnoreHeaderCase(true).setTrim(true).build())) {
+            List<Users> batch = new ArrayList<>();
+            for (CSVRecord record : parser) {
+                Users user = new Users();
+                user.setId(Long.parseLong(record.get(UserField.ID.getFieldName())));
+                user.setFirstname(record.get(UserField.FIRSTNAME.getFieldName()));
+                user.setLastname(record.get(UserField.LASTNAME.getFieldName()));
+                user.setEmail(record.get(UserField.EMAIL.getFieldName()));
+                user.setProfession(record.get(UserField.PROFESSION.getFieldName()));
+                user.setDateCreated(DateUtil.convertStringToDate(record.get(UserField.DATE_CREATED.getFieldName())));
+                user.setCountry(record.get(UserField.COUNTRY.getFieldName()));
+                user.setCity(record.get(UserField.CITY.getFieldName()));
+                batch.add(user);
+                if (batch.size() == 1000) {
+                    batch.clear();
+                }
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,178 @@
+package com.magmutual.users;
+
+import com.magmutual.users.entity.Users;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.ImportRowError;
+import com.magmutual.users.service.CsvIngestionService;
+import com.magmutual.users.utils.DateUtil;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvIngestionServiceTest {
+
+    private static final String HEADER = "id,firstname,lastname,email,profession,dateCreated,country,city";
+
+    private final CsvIngestionService csvIngestionService = new CsvIngestionService();
+
+    @TempDir
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(csvIngestionService, "parallelism", 4);
+        ReflectionTestUtils.setField(csvIngestionService, "segmentSize", 97);
+        csvIngestionService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        csvIngestionService.shutdown();
+    }
+
+    @Test
+    void testParseMatchesCommonsCsvAcrossSegmentBoundaries() throws IOException {
+        StringBuilder csv = new StringBuilder("\uFEFFCity, ID ,FirstName,lastname,email,profession,datecreated,country\n");
+        for (int i = 1; i <= 500; i++) {
+            String lineBreak = i % 2 == 0 ? "\r\n" : "\n";
+            String city = switch (i % 5) {
+                case 0 -> "\"Washington, D.C.\"";
+                case 1 -> "\"The \"\"Big\"\" Apple\"";
+                case 2 -> "\"Line one" + lineBreak + "line two\"";
+                default -> "  Austin ";
+            };
+            csv.append(city).append(',').append(i).append(",First").append(i).append(",Last,user").append(i)
+                    .append("@example.com,doctor,2023-01-").append(String.format("%02d", i % 28 + 1)).append(",USA").append(lineBreak);
+            if (i % 50 == 0) {
+                csv.append(lineBreak);
+            }
+        }
+        Path file = write(csv.toString());
+
+        List<ImportRowError> errors = new ArrayList<>();
+        List<Users> parsed;
+        try (Stream<Users> users = csvIngestionService.parse(file, errors::add)) {
+            parsed = users.toList();
+        }
+
+        assertEquals(List.of(), errors);
+        assertEquals(500, parsed.size());
+        assertEquals(parseWithCommonsCsv(file), parsed);
+        assertEquals("The \"Big\" Apple", parsed.get(0).getCity());
+        assertEquals("Line one\r\nline two", parsed.get(1).getCity());
+        assertEquals("Austin", parsed.get(2).getCity());
+        assertEquals("Washington, D.C.", parsed.get(4).getCity());
+    }
+
+    @Test
+    void testInvalidRowsAreReportedInFileOrderAndSkipped() throws IOException {
+        StringBuilder csv = new StringBuilder(HEADER).append('\n');
+        for (int i = 1; i <= 300; i++) {
+            String row = switch (i) {
+                case 40 -> "abc,John,Doe,john@example.com,doctor,2023-01-01,USA,Boston";
+                case 120 -> "120,,Doe,not-an-email,doctor,2023-02-30,USA,Boston";
+                case 200 -> "7,John,Doe,john@example.com,doctor,2023-01-01,USA,Boston";
+                case 250 -> "250,John,Doe";
+                case 280 -> "280,\"John\"x,Doe,john@example.com,doctor,2023-01-01,USA,Boston";
+                default -> i + ",John,Doe,john@example.com,doctor,2023-01-01,USA,Boston";
+            };
+            csv.append(row).append('\n');
+        }
+        Path file = write(csv.toString());
+
+        List<ImportRowError> errors = new ArrayList<>();
+        List<Users> parsed;
+        try (Stream<Users> users = csvIngestionService.parse(file, errors::add)) {
+            parsed = users.toList();
+        }
+
+        assertEquals(295, parsed.size());
+        assertEquals(List.of(
+                new ImportRowError(40, "abc", "id", "abc", "Id must be a number"),
+                new ImportRowError(120, "120", "firstname", "", "Value is required"),
+                new ImportRowError(120, "120", "email", "not-an-email", "Not a valid email address"),
+                new ImportRowError(120, "120", "dateCreated", "2023-02-30", "Not a valid yyyy-MM-dd date"),
+                new ImportRowError(200, "7", "id", "7", "Duplicate id, the first row with this id is imported"),
+                new ImportRowError(250, null, null, null, "Expected 8 values but found 3"),
+                new ImportRowError(280, null, null, null, "Unexpected character after a quoted value")), errors);
+        assertEquals(281L, parsed.get(parsed.size() - 20).getId());
+    }
+
+    @Test
+    void testRowsWithoutIdAreKeptForGeneratedIds() throws IOException {
+        Path file = write(HEADER + "\n"
+                + ",John,Doe,john@example.com,doctor,2023-01-01,USA,Boston\n"
+                + ",Jane,Doe,jane@example.com,doctor,2023-01-02,USA,Boston\n"
+                + "5,Jim,Doe,jim@example.com,doctor,2023-01-03,USA,Boston\n");
+
+        List<ImportRowError> errors = new ArrayList<>();
+        try (Stream<Users> users = csvIngestionService.parse(file, errors::add)) {
+            assertEquals(Arrays.asList(null, null, 5L), users.map(Users::getId).toList());
+        }
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    void testMissingColumnIsRejected() throws IOException {
+        Path file = write("id,firstname,lastname,email,profession,dateCreated,country\n1,John,Doe,john@example.com,doctor,2023-01-01,USA\n");
+
+        CustomException exception = assertThrows(CustomException.class, () -> csvIngestionService.parse(file, error -> { }));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        assertEquals("Missing column: city", exception.getDetails());
+    }
+
+    @Test
+    void testEmptyAndHeaderOnlyFilesHaveNoRows() throws IOException {
+        try (Stream<Users> users = csvIngestionService.parse(write(""), error -> { })) {
+            assertEquals(0, users.count());
+        }
+        try (Stream<Users> users = csvIngestionService.parse(write(HEADER + "\n"), error -> { })) {
+            assertEquals(0, users.count());
+        }
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = Files.createTempFile(tempDir, "users", ".csv");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static List<Users> parseWithCommonsCsv(Path file) throws IOException {
+        List<Users> users = new ArrayList<>();
+        try (Reader reader = new StringReader(Files.readString(file).replace("\uFEFF", ""));
+             CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).setIgnoreHeaderCase(true).setTrim(true).build())) {
+            for (CSVRecord record : parser) {
+                Users user = new Users();
+                user.setId(Long.parseLong(record.get("id")));
+                user.setFirstname(record.get("firstname"));
+                user.setLastname(record.get("lastname"));
+                user.setEmail(record.get("email"));
+                user.setProfession(record.get("profession"));
+                user.setDateCreated(DateUtil.convertStringToDate(record.get("dateCreated")));
+                user.setCountry(record.get("country"));
+                user.setCity(record.get("city"));
+                users.add(user);
+            }
+        }
+        return users;
+    }
+}
@@ -0,0 +1,68 @@
+package com.magmutual.users;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Starts one embedded PostgreSQL server per test JVM and points the application datasource at it.
+ * Set {@code -Dtest.jdbc-url} (with {@code test.jdbc-username} and {@code test.jdbc-password}) to run
+ * against an existing database instead. PostgreSQL refuses to run as root, so embedded runs need an
+ * unprivileged user.
+ */
+public final class EmbeddedPostgresSupport {
+
+    private static EmbeddedPostgres postgres;
+
+    private EmbeddedPostgresSupport() {
+    }
+
+    /**
+     * Whether a test database can be provided, for use with {@code @EnabledIf}: either an external one is
+     * configured or the embedded server can start because the tests are not running as root.
+     *
+     * @return true if {@link #register} will provide a working database
+     */
+    public static boolean isAvailable() {
+        return System.getProperty("test.jdbc-url") != null || !"root".equals(System.getProperty("user.name"));
+    }
+
+    /**
+     * Registers the datasource properties of the shared test database.
+     *
+     * @param registry the dynamic property registry of the test context
+     */
+    public static void register(DynamicPropertyRegistry registry) {
+        String jdbcUrl = System.getProperty("test.jdbc-url");
+        if (jdbcUrl != null) {
+            registry.add("spring.datasource.url", () -> jdbcUrl);
+            registry.add("spring.datasource.username", () -> System.getProperty("test.jdbc-username", "postgres"));
+            registry.add("spring.datasource.password", () -> System.getProperty("test.jdbc-password", ""));
+            return;
+        }
+        EmbeddedPostgres server = start();
+        registry.add("spring.datasource.url", () -> server.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    private static synchronized EmbeddedPostgres start() {
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.builder().start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to start embedded PostgreSQL", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    postgres.close();
+                } catch (IOException ignored) {
+                    // the JVM is exiting anyway
+                }
+            }));
+        }
+        return postgres;
+    }
+}
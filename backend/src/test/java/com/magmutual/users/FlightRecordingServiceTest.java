@@ -0,0 +1,90 @@
+package com.magmutual.users;
+
+import com.magmutual.users.diagnostics.RequestPhaseEvent;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.RecordingStatus;
+import com.magmutual.users.service.FlightRecordingService;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecordingServiceTest {
+
+    private final FlightRecordingService flightRecordingService = new FlightRecordingService();
+
+    @TempDir
+    private Path recordingDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(flightRecordingService, "recordingDir", recordingDir);
+        ReflectionTestUtils.setField(flightRecordingService, "settings", "default");
+        ReflectionTestUtils.setField(flightRecordingService, "maxDurationSeconds", 60L);
+        ReflectionTestUtils.setField(flightRecordingService, "maxSizeMb", 16L);
+        flightRecordingService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        flightRecordingService.shutdown();
+    }
+
+    @Test
+    void testRecordingCapturesRequestPhases() throws Exception {
+        RecordingStatus started = flightRecordingService.start(30);
+        assertEquals("RUNNING", started.getState());
+        assertEquals(30, started.getDurationSeconds());
+        assertEquals(16L * 1024 * 1024, started.getMaxSizeBytes());
+        assertThrows(CustomException.class, () -> flightRecordingService.getFile(started.getRecordingId()));
+
+        RequestPhaseEvent query = RequestPhaseEvent.start(RequestPhaseEvent.QUERY, "getUsers");
+        query.finish(25);
+
+        RecordingStatus stopped = flightRecordingService.stop(started.getRecordingId());
+        assertEquals("STOPPED", stopped.getState());
+        Path file = flightRecordingService.getFile(started.getRecordingId());
+        assertEquals(Files.size(file), stopped.getFileSizeBytes());
+
+        List<RecordedEvent> phases = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("com.magmutual.users.RequestPhase"))
+                .toList();
+        assertEquals(1, phases.size());
+        assertEquals(RequestPhaseEvent.QUERY, phases.get(0).getString("phase"));
+        assertEquals("getUsers", phases.get(0).getString("operation"));
+        assertEquals(25, phases.get(0).getLong("rows"));
+    }
+
+    @Test
+    void testOnlyOneRecordingRunsAndTheNextReplacesItsFile() throws Exception {
+        RecordingStatus first = flightRecordingService.start(30);
+        CustomException running = assertThrows(CustomException.class, () -> flightRecordingService.start(30));
+        assertEquals(HttpStatus.CONFLICT, running.getStatus());
+
+        flightRecordingService.stop(first.getRecordingId());
+        Path firstFile = flightRecordingService.getFile(first.getRecordingId());
+        RecordingStatus second = flightRecordingService.start(30);
+
+        assertFalse(Files.exists(firstFile));
+        CustomException gone = assertThrows(CustomException.class, () -> flightRecordingService.getStatus(first.getRecordingId()));
+        assertEquals(HttpStatus.NOT_FOUND, gone.getStatus());
+        assertEquals("RUNNING", flightRecordingService.getStatus(second.getRecordingId()).getState());
+    }
+
+    @Test
+    void testDurationIsBounded() {
+        CustomException tooLong = assertThrows(CustomException.class, () -> flightRecordingService.start(61));
+        assertEquals(HttpStatus.BAD_REQUEST, tooLong.getStatus());
+        assertThrows(CustomException.class, () -> flightRecordingService.start(0));
+    }
+}
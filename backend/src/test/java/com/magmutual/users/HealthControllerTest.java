@@ -0,0 +1,63 @@
+package com.magmutual.users;
+
+import com.magmutual.users.controller.HealthController;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.LivenessState;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class HealthControllerTest {
+
+    @Mock
+    private ApplicationAvailability applicationAvailability;
+
+    @InjectMocks
+    private HealthController healthController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(healthController).build();
+    }
+
+    @Test
+    void testReadinessRefusesTrafficWhileWarmingUp() throws Exception {
+        when(applicationAvailability.getReadinessState()).thenReturn(ReadinessState.REFUSING_TRAFFIC);
+
+        mockMvc.perform(get("/api/health/readiness"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.state").value("REFUSING_TRAFFIC"));
+    }
+
+    @Test
+    void testReadinessAcceptsTrafficOnceReady() throws Exception {
+        when(applicationAvailability.getReadinessState()).thenReturn(ReadinessState.ACCEPTING_TRAFFIC);
+
+        mockMvc.perform(get("/api/health/readiness"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("ACCEPTING_TRAFFIC"));
+    }
+
+    @Test
+    void testLivenessIsReportedSeparately() throws Exception {
+        when(applicationAvailability.getLivenessState()).thenReturn(LivenessState.CORRECT);
+
+        mockMvc.perform(get("/api/health/liveness"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("CORRECT"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.magmutual.users;
+
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.ImportRowError;
+import com.magmutual.users.service.ImportReportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportReportServiceTest {
+
+    private final ImportReportService importReportService = new ImportReportService();
+
+    @TempDir
+    private Path reportDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(importReportService, "reportDir", reportDir);
+        ReflectionTestUtils.setField(importReportService, "reportRetentionMinutes", 60L);
+        importReportService.init();
+    }
+
+    @Test
+    void testReportCountsRowsOnceAndIsDownloadable() throws Exception {
+        ImportReportService.Report report = importReportService.newReport();
+        report.add(new ImportRowError(3, "3", "email", "x", "Not a valid email address"));
+        report.add(new ImportRowError(3, "3", "dateCreated", "", "Value is required"));
+        report.add(new ImportRowError(9, null, null, null, "Expected 8 values but found 2"));
+        report.close();
+
+        assertEquals(2, report.getRejectedRows());
+        assertEquals(List.of(
+                "record,id,field,value,message",
+                "3,3,email,x,Not a valid email address",
+                "3,3,dateCreated,,Value is required",
+                "9,,,,Expected 8 values but found 2"), Files.readAllLines(importReportService.find(report.getId())));
+    }
+
+    @Test
+    void testCleanImportHasNoReport() {
+        try (ImportReportService.Report report = importReportService.newReport()) {
+            assertNull(report.getId());
+            assertEquals(0, report.getRejectedRows());
+        }
+    }
+
+    @Test
+    void testUnknownOrMalformedReportIsNotFound() {
+        CustomException exception = assertThrows(CustomException.class, () -> importReportService.find("../application"));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+        assertThrows(CustomException.class, () -> importReportService.find("0b0d2a57-5a43-4a4c-9d39-7c1e0e6c1f3e"));
+    }
+
+    @Test
+    void testExpiredReportsArePurged() throws Exception {
+        ImportReportService.Report report = importReportService.newReport();
+        report.add(new ImportRowError(1, "1", "id", "1", "Duplicate id, the first row with this id is imported"));
+        report.close();
+        Path file = importReportService.find(report.getId());
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 2 * 60 * 60 * 1000L));
+
+        importReportService.purgeExpiredReports();
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,60 @@
+package com.magmutual.users;
+
+import com.magmutual.users.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    private JwtUtil jwtUtil;
+
+    private UserDetails userDetails;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "test_secret");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 900L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", 86400L);
+        userDetails = new User("admin", "password", List.of(new SimpleGrantedAuthority("GET_USERS")));
+    }
+
+    @Test
+    void testAccessTokenIsValid() {
+        String token = jwtUtil.generateToken(userDetails);
+
+        assertTrue(jwtUtil.validateToken(token, userDetails));
+    }
+
+    @Test
+    void testRefreshTokenIsNotAcceptedAsAccessToken() {
+        String refreshToken = jwtUtil.generateRefreshToken(userDetails);
+
+        assertFalse(jwtUtil.validateToken(refreshToken, userDetails));
+    }
+
+    @Test
+    void testExtractRefreshClaims() {
+        String refreshToken = jwtUtil.generateRefreshToken(userDetails);
+
+        Claims claims = jwtUtil.extractRefreshClaims(refreshToken);
+        assertEquals("admin", claims.getSubject());
+        assertNotNull(claims.getId());
+    }
+
+    @Test
+    void testAccessTokenIsNotAcceptedAsRefreshToken() {
+        String token = jwtUtil.generateToken(userDetails);
+
+        assertThrows(RuntimeException.class, () -> jwtUtil.extractRefreshClaims(token));
+    }
+}
@@ -0,0 +1,148 @@
+package com.magmutual.users;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.magmutual.users.controller.AuthenticationController;
+import com.magmutual.users.exception.GlobalExceptionHandler;
+import com.magmutual.users.service.AuthenticationService;
+import com.magmutual.users.utils.JwtUtil;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Measures logins per second through the login endpoint, that is the controller handing the password check
+ * to the login executor and writing the tokens once it completes, against a baseline of the same
+ * authentication manager called directly from the client threads. The executor gets one thread per client
+ * thread so both runs have the same hashing capacity and the difference is what the endpoint path costs.
+ * A BCrypt hash at the default strength takes roughly 80 ms, so each thread should manage about 12 logins/s;
+ * the test fails when the endpoint drops below a floor per thread (default 5, catching a raised hashing
+ * strength or a lock that serializes logins) or below a share of the baseline (default 0.8, catching
+ * overhead added on the endpoint path). Run with {@code mvn test -Pbenchmark}, and override the limits with
+ * {@code -Dbenchmark.min-logins-per-second-per-thread} and {@code -Dbenchmark.min-endpoint-to-baseline-ratio}.
+ */
+@Tag("benchmark")
+class LoginThroughputBenchmark {
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int LOGINS_PER_THREAD = 20;
+    private static final int MIN_LOGINS_PER_SECOND_PER_THREAD = Integer.getInteger("benchmark.min-logins-per-second-per-thread", 5);
+    private static final double MIN_ENDPOINT_TO_BASELINE_RATIO =
+            Double.parseDouble(System.getProperty("benchmark.min-endpoint-to-baseline-ratio", "0.8"));
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginThroughputBenchmark.class);
+
+    /**
+     * One login as a client sees it.
+     */
+    private interface Login {
+        void run() throws Exception;
+    }
+
+    @Test
+    void measureLoginThroughput() throws Exception {
+        AuthenticationService authenticationService = new AuthenticationService();
+        ReflectionTestUtils.setField(authenticationService, "userPassword", "userpassword");
+        ReflectionTestUtils.setField(authenticationService, "adminPassword", "adminpassword");
+        authenticationService.init();
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(new BCryptPasswordEncoder());
+        provider.setUserDetailsService(authenticationService);
+        AuthenticationManager authenticationManager = new ProviderManager(provider);
+
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "benchmark_secret");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 900L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", 86400L);
+
+        ExecutorService loginExecutor = Executors.newFixedThreadPool(THREADS);
+        AuthenticationController authenticationController = new AuthenticationController();
+        ReflectionTestUtils.setField(authenticationController, "authenticationManager", authenticationManager);
+        ReflectionTestUtils.setField(authenticationController, "authenticationService", authenticationService);
+        ReflectionTestUtils.setField(authenticationController, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(authenticationController, "loginExecutor", loginExecutor);
+        ReflectionTestUtils.setField(authenticationController, "loginTimeoutMs", 60_000L);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(authenticationController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        String body = new ObjectMapper().writeValueAsString(Map.of("username", "admin", "password", "adminpassword"));
+
+        Login direct = () -> authenticationManager.authenticate(new UsernamePasswordAuthenticationToken("admin", "adminpassword"));
+        Login endpoint = () -> {
+            MvcResult pending = mockMvc.perform(post("/api/auth/authenticate").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(pending)).andExpect(status().isOk());
+        };
+
+        try {
+            // warm up the JIT on both paths before timing
+            for (int i = 0; i < 10; i++) {
+                direct.run();
+                endpoint.run();
+            }
+
+            double baseline = loginsPerSecond(direct);
+            double measured = loginsPerSecond(endpoint);
+
+            double floor = (double) THREADS * MIN_LOGINS_PER_SECOND_PER_THREAD;
+            double ratio = measured / baseline;
+
+            logger.info("Login throughput: endpoint {} logins/s, direct baseline {} logins/s, ratio {} ({} threads, {} logins per run, floor {} logins/s)",
+                    String.format("%.1f", measured), String.format("%.1f", baseline), String.format("%.2f", ratio),
+                    THREADS, THREADS * LOGINS_PER_THREAD, floor);
+            assertTrue(measured >= floor,
+                    String.format("Login throughput of %.1f logins/s is below the floor of %.1f logins/s", measured, floor));
+            assertTrue(ratio >= MIN_ENDPOINT_TO_BASELINE_RATIO,
+                    String.format("Login endpoint reaches %.2f of the direct baseline, below %.2f", ratio, MIN_ENDPOINT_TO_BASELINE_RATIO));
+        } finally {
+            loginExecutor.shutdown();
+        }
+    }
+
+    private static double loginsPerSecond(Login login) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(clients.submit(() -> {
+                    for (int i = 0; i < LOGINS_PER_THREAD; i++) {
+                        login.run();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            return THREADS * LOGINS_PER_THREAD / seconds;
+        } finally {
+            clients.shutdown();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.magmutual.users;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.magmutual.users.controller.UserController;
+import com.magmutual.users.diagnostics.HandlerPhaseInterceptor;
+import com.magmutual.users.diagnostics.HandlerPhaseResponseAdvice;
+import com.magmutual.users.diagnostics.RequestPhaseEvent;
+import com.magmutual.users.diagnostics.TimedJackson2HttpMessageConverter;
+import com.magmutual.users.entity.Users;
+import com.magmutual.users.filter.JwtRequestFilter;
+import com.magmutual.users.model.ChangeFeedResponse;
+import com.magmutual.users.model.UserRequest;
+import com.magmutual.users.service.AuthenticationService;
+import com.magmutual.users.service.UserReadFallback;
+import com.magmutual.users.service.UserService;
+import com.magmutual.users.utils.JwtUtil;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static com.magmutual.users.utils.DateUtil.convertStringToDate;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Reports the bytes allocated per request for each endpoint, through the JWT filter, the controller and
+ * Jackson, and fails when an endpoint goes over its budget, so that an allocation regression is caught
+ * in the build. The service is mocked, so the numbers cover the web layer only, including MockMvc's own
+ * request and response objects. Budgets leave headroom over the measured values; lower them when an
+ * optimization lands.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class RequestAllocationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestAllocationTest.class);
+
+    private static final int WARMUP_REQUESTS = Integer.getInteger("allocation.warmup-requests", 300);
+    private static final int MEASURED_REQUESTS = Integer.getInteger("allocation.measured-requests", 300);
+
+    private static final String USER_JSON = "{ \"id\": 1, \"firstname\": \"John\", \"lastname\": \"Doe\", \"email\": \"john.doe@example.com\", \"profession\": \"Developer\", \"dateCreated\": \"2023-01-01\", \"country\": \"USA\", \"city\": \"New York\" }";
+
+    @Mock
+    private UserService userService;
+
+    @InjectMocks
+    private UserController userController;
+
+    private MockMvc mockMvc;
+
+    private String token;
+
+    @TempDir
+    private Path recordingDir;
+
+    @BeforeEach
+    void setUp() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "test_secret");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 900L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", 86400L);
+        AuthenticationService authenticationService = new AuthenticationService();
+        ReflectionTestUtils.setField(authenticationService, "userPassword", "userpassword");
+        ReflectionTestUtils.setField(authenticationService, "adminPassword", "adminpassword");
+        authenticationService.init();
+        JwtRequestFilter jwtRequestFilter = new JwtRequestFilter();
+        ReflectionTestUtils.setField(jwtRequestFilter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(jwtRequestFilter, "authenticationService", authenticationService);
+        token = jwtUtil.generateToken(authenticationService.loadUserByUsername("admin"));
+
+        ReflectionTestUtils.setField(userController, "maxChangeBatchSize", 1000);
+        UserReadFallback userReadFallback = new UserReadFallback();
+        ReflectionTestUtils.setField(userReadFallback, "enabled", true);
+        ReflectionTestUtils.setField(userReadFallback, "slowQueryMs", 1000L);
+        ReflectionTestUtils.setField(userReadFallback, "failureThreshold", 3);
+        ReflectionTestUtils.setField(userReadFallback, "maxEntries", 1000);
+        ReflectionTestUtils.setField(userReadFallback, "maxEntryRows", 500);
+        ReflectionTestUtils.setField(userController, "userReadFallback", userReadFallback);
+
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        mockMvc = MockMvcBuilders.standaloneSetup(userController)
+                .setMessageConverters(new TimedJackson2HttpMessageConverter(objectMapper))
+                .setControllerAdvice(new HandlerPhaseResponseAdvice())
+                .addInterceptors(new HandlerPhaseInterceptor())
+                .addFilters(jwtRequestFilter)
+                .build();
+
+        List<Users> users = LongStream.rangeClosed(1, 10).mapToObj(RequestAllocationTest::user).toList();
+        when(userService.getUsers(anyInt(), anyInt(), anyString(), anyString(), any(), any(), any()))
+                .thenReturn(new PageImpl<>(users, PageRequest.of(0, 10), 1000));
+        when(userService.getUserById(anyString())).thenReturn(Optional.of(users.get(0)));
+        when(userService.getChangesSince(any(), anyInt())).thenReturn(new ChangeFeedResponse(users, List.of(11L), "token", true));
+        when(userService.addUser(any(UserRequest.class))).thenReturn(users.get(0));
+    }
+
+    @Test
+    void testAllocatedBytesPerRequestStayWithinBudget() throws Exception {
+        Map<String, RequestBuilder> endpoints = new LinkedHashMap<>();
+        endpoints.put("GET /api/users", authorized(get("/api/users").param("limit", "10")));
+        endpoints.put("GET /api/users/{id}", authorized(get("/api/users/{id}", "1")));
+        endpoints.put("GET /api/users/changes", authorized(get("/api/users/changes").param("limit", "10")));
+        endpoints.put("POST /api/users", authorized(post("/api/users").contentType(MediaType.APPLICATION_JSON).content(USER_JSON)));
+        Map<String, Long> budgets = Map.of(
+                "GET /api/users", 150_000L,
+                "GET /api/users/{id}", 130_000L,
+                "GET /api/users/changes", 135_000L,
+                "POST /api/users", 135_000L);
+
+        for (Map.Entry<String, RequestBuilder> endpoint : endpoints.entrySet()) {
+            long bytes = allocatedBytesPerRequest(endpoint.getValue());
+            long budget = budgets.get(endpoint.getKey());
+            logger.info("{}: {} bytes allocated per request, budget {}", endpoint.getKey(), bytes, budget);
+            assertTrue(bytes <= budget, endpoint.getKey() + " allocates " + bytes + " bytes per request, over its budget of " + budget);
+        }
+    }
+
+    @Test
+    void testRequestPhasesAreRecorded() throws Exception {
+        Path file = recordingDir.resolve("request.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(RequestPhaseEvent.class).withoutThreshold();
+            recording.start();
+            perform(authorized(get("/api/users").param("limit", "10")));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        Map<String, Long> rowsByPhase = new LinkedHashMap<>();
+        RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("com.magmutual.users.RequestPhase"))
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+                .forEach(event -> rowsByPhase.put(event.getString("phase"), event.getLong("rows")));
+        assertEquals(List.of(RequestPhaseEvent.TOKEN_PARSE, RequestPhaseEvent.USER_DETAILS, RequestPhaseEvent.TOKEN_VALIDATE,
+                RequestPhaseEvent.HANDLER, RequestPhaseEvent.SERIALIZATION), List.copyOf(rowsByPhase.keySet()));
+        assertEquals(10L, rowsByPhase.get(RequestPhaseEvent.HANDLER));
+        assertEquals(10L, rowsByPhase.get(RequestPhaseEvent.SERIALIZATION));
+    }
+
+    /**
+     * Warms the endpoint up, then returns the average bytes the test thread allocates per request.
+     */
+    private long allocatedBytesPerRequest(RequestBuilder request) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            perform(request);
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            perform(request);
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED_REQUESTS;
+    }
+
+    private void perform(RequestBuilder request) throws Exception {
+        try {
+            mockMvc.perform(request).andExpect(status().isOk());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private RequestBuilder authorized(org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder request) {
+        return request.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
+
+    private static Users user(long id) {
+        Users user = new Users();
+        user.setId(id);
+        user.setFirstname("John");
+        user.setLastname("Doe");
+        user.setEmail("john.doe" + id + "@example.com");
+        user.setProfession("Developer");
+        user.setDateCreated(convertStringToDate("2023-01-01"));
+        user.setCountry("USA");
+        user.setCity("New York");
+        return user;
+    }
+}
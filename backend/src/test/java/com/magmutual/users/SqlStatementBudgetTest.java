@@ -0,0 +1,372 @@
+package com.magmutual.users;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.magmutual.users.constants.UserField;
+import com.magmutual.users.repository.UserDictionary;
+import com.magmutual.users.service.UserExistenceFilter;
+import com.magmutual.users.service.UserIdAllocator;
+import com.magmutual.users.service.UserPartitionService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Date;
+import java.time.Year;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the SQL statements each endpoint of {@code UserController} and {@code AuthenticationController} runs
+ * for one request and holds it to a budget, so an extra lookup before a delete, a merge SELECT or a stray
+ * count fails the build instead of slipping through. A failure lists the statements that ran.
+ *
+ * <p>Runs against an embedded PostgreSQL; skipped when none can be started (see {@link EmbeddedPostgresSupport}).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(SqlStatementRecorder.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIf("com.magmutual.users.EmbeddedPostgresSupport#isAvailable")
+class SqlStatementBudgetTest {
+
+    private static final String PROFESSION = "statement-budget";
+    private static final long FIRST_ID = 9_300_001L;
+    private static final long SUPPLIED_ID_RANGE = 1000;
+    private static final String CSV_HEADER = "id,firstname,lastname,email,profession,dateCreated,country,city\n";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserPartitionService userPartitionService;
+
+    @Autowired
+    private UserIdAllocator userIdAllocator;
+
+    @Autowired
+    private UserExistenceFilter userExistenceFilter;
+
+    @Autowired
+    private UserDictionary userDictionary;
+
+    private final String dateCreated = Year.now() + "-02-03";
+    private String accessToken;
+    private String refreshToken;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+    }
+
+    /**
+     * Logs in and seeds a few users. The partition of the seeded year is created, the dictionary entries of
+     * the seeded values added and the existence filter built over the seeded users up front, so no request
+     * pays for any of them.
+     */
+    @BeforeAll
+    void setUp() throws Exception {
+        cleanUp();
+        userPartitionService.ensurePartitionFor(Date.valueOf(dateCreated));
+        Integer professionId = userDictionary.idOf(UserField.PROFESSION, PROFESSION);
+        Integer countryId = userDictionary.idOf(UserField.COUNTRY, "USA");
+        Integer cityId = userDictionary.idOf(UserField.CITY, "Boston");
+        for (long id = FIRST_ID; id < FIRST_ID + 10; id++) {
+            jdbcTemplate.update("INSERT INTO users (id, firstname, lastname, email, profession_id, datecreated, country_id, city_id, lastmodified, fingerprint) "
+                    + "VALUES (?, 'Jane', 'Doe', 'jane.doe@example.com', ?, ?, ?, ?, now(), 0)", id, professionId, Date.valueOf(dateCreated), countryId, cityId);
+        }
+        userExistenceFilter.rebuild();
+        JsonNode tokens = json(login());
+        accessToken = tokens.get("token").asText();
+        refreshToken = tokens.get("refreshToken").asText();
+    }
+
+    /**
+     * Reserves every id the tests supply and takes a block of generated ids above them, so no request pays
+     * for a sequence round trip, whichever tests ran before.
+     */
+    @BeforeEach
+    void reserveIds() {
+        userIdAllocator.reserveThrough(FIRST_ID + SUPPLIED_ID_RANGE);
+        userIdAllocator.next();
+    }
+
+    @AfterAll
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM users WHERE profession_id = ?", userDictionary.idOf(UserField.PROFESSION, PROFESSION));
+        jdbcTemplate.update("DELETE FROM user_tombstones WHERE id BETWEEN ? AND ?", FIRST_ID, FIRST_ID + SUPPLIED_ID_RANGE);
+    }
+
+    @Test
+    void testAuthenticateRunsNoStatements() throws Exception {
+        SqlStatementRecorder.start();
+        List<String> statements;
+        try {
+            assertEquals(200, login().getResponse().getStatus());
+        } finally {
+            statements = SqlStatementRecorder.stop();
+        }
+        assertBudget("POST /api/auth/authenticate", statements, 0, 0, 0, 0);
+    }
+
+    @Test
+    void testRefreshAndLogoutRunNoStatements() throws Exception {
+        JsonNode tokens = json(login());
+        String body = "{\"refreshToken\":\"" + tokens.get("refreshToken").asText() + "\"}";
+        MvcResult refreshed = mockMvc.perform(post("/api/auth/refresh").contentType(MediaType.APPLICATION_JSON).content(body)).andReturn();
+
+        SqlStatementRecorder.start();
+        mockMvc.perform(post("/api/auth/refresh").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"refreshToken\":\"" + json(refreshed).get("refreshToken").asText() + "\"}")).andExpect(status().isOk());
+        assertBudget("POST /api/auth/refresh", SqlStatementRecorder.stop(), 0, 0, 0, 0);
+
+        List<String> statements = perform(post("/api/auth/logout").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"refreshToken\":\"" + refreshToken + "\"}"), status().isNoContent());
+        assertBudget("POST /api/auth/logout", statements, 0, 0, 0, 0);
+    }
+
+    @Test
+    void testListRunsOneSelectAndAtMostOneCount() throws Exception {
+        assertBudget("GET /api/users", perform(authorized(get("/api/users")), status().isOk()), 2, 0, 0, 0);
+        assertBudget("GET /api/users filtered", perform(authorized(get("/api/users")
+                .param("profession", PROFESSION).param("startDate", dateCreated).param("endDate", dateCreated)), status().isOk()), 2, 0, 0, 0);
+        assertBudget("GET /api/users with fields", perform(authorized(get("/api/users")
+                .param("profession", PROFESSION).param("fields", "firstname,email")), status().isOk()), 2, 0, 0, 0);
+    }
+
+    @Test
+    void testGetByIdRunsOneSelect() throws Exception {
+        assertBudget("GET /api/users/{id}", perform(authorized(get("/api/users/" + FIRST_ID)), status().isOk()), 1, 0, 0, 0);
+        assertBudget("GET /api/users/{id} with fields", perform(authorized(get("/api/users/" + FIRST_ID)
+                .param("fields", "lastname")), status().isOk()), 1, 0, 0, 0);
+    }
+
+    @Test
+    void testLookupRunsOneSelect() throws Exception {
+        List<String> statements = perform(authorized(post("/api/users/lookup").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[" + FIRST_ID + "," + (FIRST_ID + 1) + ",1]}")), status().isOk());
+        assertBudget("POST /api/users/lookup", statements, 1, 0, 0, 0);
+    }
+
+    @Test
+    void testChangesRunTheWatermarkAndOneSelectPerTable() throws Exception {
+        assertBudget("GET /api/users/changes", perform(authorized(get("/api/users/changes").param("limit", "5")), status().isOk()), 3, 0, 0, 0);
+    }
+
+    @Test
+    void testSubscribingToEventsRunsNoStatements() throws Exception {
+        assertBudget("GET /api/users/events", perform(authorized(get("/api/users/events")), request().asyncStarted()), 0, 0, 0, 0);
+    }
+
+    @Test
+    void testExistsRunsNoStatementsForADefiniteMiss() throws Exception {
+        List<String> statements = perform(authorized(get("/api/users/exists").param("id", String.valueOf(FIRST_ID + 900))), status().isOk());
+        assertBudget("GET /api/users/exists?id", statements, 0, 0, 0, 0);
+    }
+
+    @Test
+    void testExistsRunsOneSelectForAPossibleHit() throws Exception {
+        List<String> statements = perform(authorized(get("/api/users/exists").param("email", "Jane.Doe@example.com")), status().isOk());
+        assertBudget("GET /api/users/exists?email", statements, 1, 0, 0, 0);
+    }
+
+    @Test
+    void testCreateWithGeneratedIdRunsOneInsert() throws Exception {
+        List<String> statements = perform(authorized(post("/api/users").contentType(MediaType.APPLICATION_JSON)
+                .content(userJson(null, "Generated"))), status().isOk());
+        assertBudget("POST /api/users", statements, 0, 1, 0, 0);
+    }
+
+    @Test
+    void testCreateWithNewSuppliedIdRunsOneSelectAndOneInsert() throws Exception {
+        List<String> statements = perform(authorized(post("/api/users").contentType(MediaType.APPLICATION_JSON)
+                .content(userJson(FIRST_ID + 100, "Supplied"))), status().isOk());
+        assertBudget("POST /api/users with id", statements, 1, 1, 0, 0);
+    }
+
+    @Test
+    void testCreateWithNewSuppliedIdRunsOneInsertWhenWritesTrustTheFilter() throws Exception {
+        ReflectionTestUtils.setField(userExistenceFilter, "skipWriteChecks", true);
+        try {
+            List<String> statements = perform(authorized(post("/api/users").contentType(MediaType.APPLICATION_JSON)
+                    .content(userJson(FIRST_ID + 101, "Trusted"))), status().isOk());
+            assertBudget("POST /api/users with id and skip-write-checks", statements, 0, 1, 0, 0);
+        } finally {
+            ReflectionTestUtils.setField(userExistenceFilter, "skipWriteChecks", false);
+        }
+    }
+
+    @Test
+    void testUpdateRunsOneSelectAndOneUpdate() throws Exception {
+        List<String> statements = perform(authorized(put("/api/users/" + (FIRST_ID + 2)).contentType(MediaType.APPLICATION_JSON)
+                .content(userJson(FIRST_ID + 2, "Updated"))), status().isOk());
+        assertBudget("PUT /api/users/{id}", statements, 1, 0, 1, 0);
+    }
+
+    @Test
+    void testDeleteRunsOneDeleteAndOneTombstoneWrite() throws Exception {
+        List<String> statements = perform(authorized(delete("/api/users/" + (FIRST_ID + 3))), status().is2xxSuccessful());
+        assertBudget("DELETE /api/users/{id}", statements, 0, 1, 0, 1);
+    }
+
+    @Test
+    void testDiffUploadOfNewUsersRunsOneLookupAndOneUpsertPerBatch() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv", csv(FIRST_ID + 200, 3));
+        List<String> statements = perform(authorized(multipart("/api/users/upload").file(file).param("mode", "diff")), status().isOk());
+        assertBudget("POST /api/users/upload?mode=diff", statements, 1, 0, 0, 0, 1);
+    }
+
+    @Test
+    void testMergeUploadOfNewUsersRunsOneSelectAndOneInsertPerRow() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv", csv(FIRST_ID + 300, 3));
+        List<String> statements = perform(authorized(multipart("/api/users/upload").file(file)), status().isOk());
+        assertBudget("POST /api/users/upload", statements, 3, 3, 0, 0);
+    }
+
+    @Test
+    void testChunkedUploadOnlyRunsStatementsOnCommit() throws Exception {
+        byte[] content = csv(FIRST_ID + 400, 2);
+        List<String> statements = perform(authorized(post("/api/users/uploads").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"mode\":\"diff\",\"totalSize\":" + content.length + "}")), status().isCreated());
+        assertBudget("POST /api/users/uploads", statements, 0, 0, 0, 0);
+        String uploadId = json(mockMvc.perform(authorized(post("/api/users/uploads").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"mode\":\"diff\",\"totalSize\":" + content.length + "}"))).andReturn()).get("uploadId").asText();
+
+        String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertBudget("PUT /api/users/uploads/{id}/chunks/{index}", perform(authorized(put("/api/users/uploads/" + uploadId + "/chunks/0")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM).header("X-Chunk-SHA256", checksum).content(content)), status().isOk()), 0, 0, 0, 0);
+        assertBudget("GET /api/users/uploads/{id}", perform(authorized(get("/api/users/uploads/" + uploadId)), status().isOk()), 0, 0, 0, 0);
+        assertBudget("POST /api/users/uploads/{id}/commit", perform(authorized(post("/api/users/uploads/" + uploadId + "/commit")),
+                status().isOk()), 1, 0, 0, 0, 1);
+
+        String abandonedId = json(mockMvc.perform(authorized(post("/api/users/uploads").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"mode\":\"merge\"}"))).andReturn()).get("uploadId").asText();
+        assertBudget("DELETE /api/users/uploads/{id}", perform(authorized(delete("/api/users/uploads/" + abandonedId)), status().isNoContent()), 0, 0, 0, 0);
+    }
+
+    @Test
+    void testImportReportDownloadRunsNoStatements() throws Exception {
+        byte[] content = (CSV_HEADER + (FIRST_ID + 500) + ",Jane,Doe,not-an-email," + PROFESSION + "," + dateCreated + ",USA,Boston\n").getBytes(StandardCharsets.UTF_8);
+        MvcResult upload = mockMvc.perform(authorized(multipart("/api/users/upload").file(new MockMultipartFile("file", "users.csv", "text/csv", content))))
+                .andExpect(status().isOk()).andReturn();
+        String reportId = json(upload).get("errorReportId").asText();
+        assertBudget("GET /api/users/import-reports/{id}", perform(authorized(get("/api/users/import-reports/" + reportId)), status().isOk()), 0, 0, 0, 0);
+    }
+
+    @Test
+    void testPurgeJobRequestsRunNoStatements() throws Exception {
+        List<String> statements = perform(authorized(post("/api/users/purge-jobs").param("profession", PROFESSION + "-none")), status().isAccepted());
+        assertBudget("POST /api/users/purge-jobs", statements, 0, 0, 0, 0);
+        String jobId = json(mockMvc.perform(authorized(post("/api/users/purge-jobs").param("profession", PROFESSION + "-none"))).andReturn()).get("jobId").asText();
+        assertBudget("GET /api/users/purge-jobs/{id}", perform(authorized(get("/api/users/purge-jobs/" + jobId)), status().isOk()), 0, 0, 0, 0);
+        assertBudget("DELETE /api/users/purge-jobs/{id}", perform(authorized(delete("/api/users/purge-jobs/" + jobId)), status().isOk()), 0, 0, 0, 0);
+    }
+
+    private MockHttpServletRequestBuilder authorized(MockHttpServletRequestBuilder request) {
+        return request.header("Authorization", "Bearer " + accessToken)
+                .cookie(new Cookie("XSRF-TOKEN", "budget"))
+                .header("X-XSRF-TOKEN", "budget");
+    }
+
+    private List<String> perform(MockHttpServletRequestBuilder request, ResultMatcher expectedStatus) throws Exception {
+        SqlStatementRecorder.start();
+        try {
+            mockMvc.perform(request).andExpect(expectedStatus);
+        } finally {
+            return SqlStatementRecorder.stop();
+        }
+    }
+
+    /**
+     * Logs in as the admin, waiting for the login executor to verify the password before the response is
+     * written.
+     */
+    private MvcResult login() throws Exception {
+        MvcResult pending = mockMvc.perform(post("/api/auth/authenticate").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"admin\",\"password\":\"adminpassword\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(pending)).andReturn();
+    }
+
+    private JsonNode json(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private String userJson(Long id, String lastname) {
+        return "{" + (id != null ? "\"id\":" + id + "," : "") + "\"firstname\":\"Jane\",\"lastname\":\"" + lastname
+                + "\",\"email\":\"jane.doe@example.com\",\"profession\":\"" + PROFESSION + "\",\"dateCreated\":\"" + dateCreated
+                + "\",\"country\":\"USA\",\"city\":\"Boston\"}";
+    }
+
+    private byte[] csv(long firstId, int rows) {
+        StringBuilder csv = new StringBuilder(CSV_HEADER);
+        for (long id = firstId; id < firstId + rows; id++) {
+            csv.append(id).append(",Jane,Doe,jane.doe@example.com,").append(PROFESSION).append(',').append(dateCreated).append(",USA,Boston\n");
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertBudget(String endpoint, List<String> statements, int selects, int inserts, int updates, int deletes) {
+        assertBudget(endpoint, statements, selects, inserts, updates, deletes, 0);
+    }
+
+    /**
+     * Fails when the statements of a request exceed the budget of any kind, or include a kind without
+     * one. The bulk upsert starts with common table expressions and counts as {@code with}.
+     */
+    private static void assertBudget(String endpoint, List<String> statements, int selects, int inserts, int updates, int deletes, int withs) {
+        Map<String, Integer> budget = Map.of("select", selects, "insert", inserts, "update", updates, "delete", deletes, "with", withs);
+        Map<String, Integer> counts = new TreeMap<>();
+        for (String sql : statements) {
+            counts.merge(SqlStatementRecorder.kindOf(sql), 1, Integer::sum);
+        }
+        boolean exceeded = counts.entrySet().stream().anyMatch(count -> count.getValue() > budget.getOrDefault(count.getKey(), 0));
+        if (exceeded) {
+            StringBuilder message = new StringBuilder(endpoint).append(" ran ").append(counts).append(", budget is ").append(new TreeMap<>(budget)).append(':');
+            for (int i = 0; i < statements.size(); i++) {
+                message.append("\n  ").append(i + 1).append(". ").append(statements.get(i));
+            }
+            fail(message.toString());
+        }
+    }
+}
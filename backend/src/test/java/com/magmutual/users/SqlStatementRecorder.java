@@ -0,0 +1,124 @@
+package com.magmutual.users;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Records the SQL statements run through the application's {@link DataSource}. Importing it into a test
+ * context wraps the data source, and {@link #start()} / {@link #stop()} bracket the statements of one
+ * request. Only statements run on the recording thread are kept, so work handed to another thread, such as
+ * a purge job, is not counted against the request.
+ */
+public class SqlStatementRecorder implements BeanPostProcessor {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private static final ThreadLocal<List<String>> recorded = new ThreadLocal<>();
+
+    /**
+     * Starts recording the statements of the current thread.
+     */
+    public static void start() {
+        recorded.set(new ArrayList<>());
+    }
+
+    /**
+     * Stops recording.
+     *
+     * @return the statements run since {@link #start()}, in order
+     */
+    public static List<String> stop() {
+        List<String> statements = recorded.get();
+        recorded.remove();
+        return statements != null ? statements : List.of();
+    }
+
+    /**
+     * The kind of a statement: the first keyword of its SQL, such as select, insert, update, delete or, for
+     * a statement that starts with common table expressions, with.
+     *
+     * @param sql the statement
+     * @return the keyword in lower case
+     */
+    public static String kindOf(String sql) {
+        String normalized = sql.strip().toLowerCase(Locale.ROOT);
+        int end = 0;
+        while (end < normalized.length() && Character.isLetter(normalized.charAt(end))) {
+            end++;
+        }
+        return normalized.substring(0, end);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            return proxy(DataSource.class, dataSource, (target, method, args) -> {
+                Object result = method.invoke(target, args);
+                return result instanceof Connection connection ? wrap(connection) : result;
+            });
+        }
+        return bean;
+    }
+
+    private static Connection wrap(Connection connection) {
+        return proxy(Connection.class, connection, (target, method, args) -> {
+            Object result = method.invoke(target, args);
+            if (result instanceof CallableStatement statement) {
+                return wrap(CallableStatement.class, statement, (String) args[0]);
+            }
+            if (result instanceof PreparedStatement statement) {
+                return wrap(PreparedStatement.class, statement, (String) args[0]);
+            }
+            if (result instanceof Statement statement) {
+                return wrap(Statement.class, statement, null);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Wraps a statement so each execution is recorded, with the SQL it was prepared with or, for a plain
+     * statement, the SQL passed to execute.
+     */
+    private static <S extends Statement> S wrap(Class<S> type, S statement, String preparedSql) {
+        return proxy(type, statement, (target, method, args) -> {
+            if (EXECUTE_METHODS.contains(method.getName())) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+                List<String> statements = recorded.get();
+                if (statements != null && sql != null) {
+                    statements.add(sql);
+                }
+            }
+            return method.invoke(target, args);
+        });
+    }
+
+    private interface Invoker<T> {
+        Object invoke(T target, Method method, Object[] args) throws Throwable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Invoker<T> invoker) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            try {
+                return invoker.invoke(target, method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (T) Proxy.newProxyInstance(SqlStatementRecorder.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,154 @@
+package com.magmutual.users;
+
+import com.magmutual.users.constants.AuditAction;
+import com.magmutual.users.entity.UserAuditRecord;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.repository.UserAuditRepository;
+import com.magmutual.users.service.UserAuditTrail;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class UserAuditTrailTest {
+
+    private UserAuditRepository userAuditRepository;
+    private UserAuditTrail userAuditTrail;
+    private final List<UserAuditRecord> written = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        userAuditRepository = mock(UserAuditRepository.class);
+        userAuditTrail = new UserAuditTrail();
+        ReflectionTestUtils.setField(userAuditTrail, "userAuditRepository", userAuditRepository);
+        ReflectionTestUtils.setField(userAuditTrail, "enabled", true);
+        ReflectionTestUtils.setField(userAuditTrail, "capacity", 4);
+        ReflectionTestUtils.setField(userAuditTrail, "batchSize", 3);
+        ReflectionTestUtils.setField(userAuditTrail, "maxWaitMs", 50L);
+        ReflectionTestUtils.setField(userAuditTrail, "retryDelayMs", 10L);
+        ReflectionTestUtils.setField(userAuditTrail, "shutdownTimeoutMs", 5000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userAuditTrail.shutdown();
+        SecurityContextHolder.clearContext();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testRecordsAreWrittenInBatchesWithTheActor() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        when(userAuditRepository.insert(anyList())).thenAnswer(invocation -> {
+            List<UserAuditRecord> batch = invocation.getArgument(0);
+            release.await(5, TimeUnit.SECONDS);
+            batchSizes.add(batch.size());
+            written.addAll(batch);
+            return batch.size();
+        });
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("admin", null, List.of()));
+        userAuditTrail.init();
+
+        userAuditTrail.record(AuditAction.CREATE, 1L, List.of("firstname", "email"), null);
+        waitFor(() -> userAuditTrail.getStats().getQueued() == 0);
+        userAuditTrail.record(AuditAction.UPDATE, 1L, List.of("email"), null);
+        userAuditTrail.record(AuditAction.DELETE, 2L, null, null);
+        userAuditTrail.record(AuditAction.IMPORT, null, null, "mode=merge, processed=10, rejected=0");
+        release.countDown();
+        waitFor(() -> written.size() == 4);
+
+        assertEquals(List.of(1, 3), batchSizes);
+        assertEquals("admin", written.get(0).getActor());
+        assertEquals("firstname,email", written.get(0).getChangedFields());
+        assertNull(written.get(2).getChangedFields());
+        waitFor(() -> userAuditTrail.getStats().getReserved() == 0);
+        assertEquals(2, userAuditTrail.getStats().getBatches());
+    }
+
+    @Test
+    void testFullBufferRejectsChangesWithServiceUnavailable() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(userAuditRepository.insert(anyList())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 0;
+        });
+        userAuditTrail.init();
+
+        for (int i = 0; i < 4; i++) {
+            userAuditTrail.record(AuditAction.DELETE, (long) i, null, null);
+        }
+        CustomException exception = assertThrows(CustomException.class, () -> userAuditTrail.record(AuditAction.DELETE, 9L, null, null));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+        assertEquals(1, userAuditTrail.getStats().getRejected());
+
+        release.countDown();
+        waitFor(() -> userAuditTrail.getStats().getReserved() == 0);
+        userAuditTrail.record(AuditAction.DELETE, 9L, null, null);
+    }
+
+    @Test
+    void testFailedBatchesAreRetriedUntilWritten() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        when(userAuditRepository.insert(anyList())).thenAnswer(invocation -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new DataAccessResourceFailureException("database down");
+            }
+            List<UserAuditRecord> batch = invocation.getArgument(0);
+            written.addAll(batch);
+            return batch.size();
+        });
+        userAuditTrail.init();
+
+        userAuditTrail.record(AuditAction.DELETE, 1L, null, null);
+        waitFor(() -> written.size() == 1);
+
+        assertEquals(2, userAuditTrail.getStats().getFailedFlushes());
+        assertEquals(1, userAuditTrail.getStats().getWritten());
+        assertEquals("system", written.get(0).getActor());
+    }
+
+    @Test
+    void testRolledBackChangesAreNotWritten() throws Exception {
+        userAuditTrail.init();
+        TransactionSynchronizationManager.initSynchronization();
+
+        userAuditTrail.record(AuditAction.DELETE, 1L, null, null);
+        assertEquals(1, userAuditTrail.getStats().getReserved());
+        assertEquals(0, userAuditTrail.getStats().getQueued());
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertEquals(0, userAuditTrail.getStats().getReserved());
+        Thread.sleep(200);
+        verifyNoInteractions(userAuditRepository);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
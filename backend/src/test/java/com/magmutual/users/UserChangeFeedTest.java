@@ -0,0 +1,137 @@
+package com.magmutual.users;
+
+import com.magmutual.users.entity.Users;
+import com.magmutual.users.model.ChangeFeedResponse;
+import com.magmutual.users.model.UserRequest;
+import com.magmutual.users.service.UserService;
+import com.magmutual.users.utils.ChangeTokenUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against an embedded PostgreSQL; skipped when none can be started (see {@link EmbeddedPostgresSupport}).
+ */
+@SpringBootTest
+@EnabledIf("com.magmutual.users.EmbeddedPostgresSupport#isAvailable")
+class UserChangeFeedTest {
+
+    private static final long LATE_ID = 9_100_011L;
+    private static final long EARLY_ID = 9_100_012L;
+    private static final long READ_ID = 9_100_018L;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM users WHERE id IN (?, ?, ?)", LATE_ID, EARLY_ID, READ_ID);
+    }
+
+    @Test
+    void testChangeCommittedLateIsNotSkipped() throws Exception {
+        userService.addUser(request(LATE_ID, "Late"));
+        Timestamp start = jdbcTemplate.queryForObject("SELECT now()", Timestamp.class);
+        String since = ChangeTokenUtil.encode(new ChangeTokenUtil.ChangeToken(start, Long.MAX_VALUE));
+
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Void> lateWrite = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    jdbcTemplate.update("UPDATE users SET firstname = 'Committed late', lastmodified = now() WHERE id = ?", LATE_ID);
+                    written.countDown();
+                    try {
+                        assertTrue(commit.await(30, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        try {
+            assertTrue(written.await(30, TimeUnit.SECONDS));
+            Thread.sleep(1_200);
+            userService.addUser(request(EARLY_ID, "Committed early"));
+            Thread.sleep(1_200);
+
+            ChangeFeedResponse held = userService.getChangesSince(since, 100);
+            assertTrue(held.getUpdated().stream().noneMatch(user -> user.getId() == EARLY_ID),
+                    "A change stamped after an open transaction started was handed out");
+            since = held.getNextToken();
+        } finally {
+            commit.countDown();
+            lateWrite.get(30, TimeUnit.SECONDS);
+        }
+
+        ChangeFeedResponse changes = userService.getChangesSince(since, 100);
+        Users late = changes.getUpdated().stream().filter(user -> user.getId() == LATE_ID).findFirst().orElseThrow();
+        assertEquals("Committed late", late.getFirstname());
+        assertTrue(changes.getUpdated().stream().anyMatch(user -> user.getId() == EARLY_ID));
+    }
+
+    @Test
+    void testOpenReadOnlyTransactionDoesNotHoldChangesBack() throws Exception {
+        Timestamp start = jdbcTemplate.queryForObject("SELECT now()", Timestamp.class);
+        String since = ChangeTokenUtil.encode(new ChangeTokenUtil.ChangeToken(start, Long.MAX_VALUE));
+
+        CountDownLatch read = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<Void> openRead = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    jdbcTemplate.queryForObject("SELECT count(*) FROM users", Long.class);
+                    read.countDown();
+                    try {
+                        assertTrue(finish.await(30, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        try {
+            assertTrue(read.await(30, TimeUnit.SECONDS));
+            userService.addUser(request(READ_ID, "Written while a read is open"));
+
+            ChangeFeedResponse changes = userService.getChangesSince(since, 100);
+            assertTrue(changes.getUpdated().stream().anyMatch(user -> user.getId() == READ_ID),
+                    "An open transaction that writes no users held the feed back");
+        } finally {
+            finish.countDown();
+            openRead.get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static UserRequest request(long id, String firstname) {
+        UserRequest request = new UserRequest();
+        request.setId(id);
+        request.setFirstname(firstname);
+        request.setLastname("Feed");
+        request.setEmail("feed" + id + "@example.com");
+        request.setProfession("doctor");
+        request.setDateCreated("2024-05-06");
+        request.setCountry("USA");
+        request.setCity("Denver");
+        return request;
+    }
+}
@@ -0,0 +1,159 @@
+package com.magmutual.users;
+
+import com.magmutual.users.entity.Users;
+import com.magmutual.users.model.UserChangeEvent;
+import com.magmutual.users.service.UserChangePublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Drives the publisher with a sender that only runs its drains when the test says so, and reads what each
+ * subscriber was sent from the emitter, which buffers sends until a response is attached.
+ */
+class UserChangePublisherTest {
+
+    private UserChangePublisher userChangePublisher;
+
+    private final List<Runnable> drains = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userChangePublisher = new UserChangePublisher();
+        ReflectionTestUtils.setField(userChangePublisher, "maxSubscribers", 10);
+        ReflectionTestUtils.setField(userChangePublisher, "subscriberQueueCapacity", 2);
+        ReflectionTestUtils.setField(userChangePublisher, "emitterTimeoutMs", 60_000L);
+        ExecutorService sender = mock(ExecutorService.class);
+        doAnswer(invocation -> drains.add(invocation.getArgument(0))).when(sender).execute(any(Runnable.class));
+        ReflectionTestUtils.setField(userChangePublisher, "sender", sender);
+    }
+
+    @Test
+    void testChangesToOneUserAreCoalescedWithinAWindow() {
+        SseEmitter emitter = userChangePublisher.subscribe();
+
+        userChangePublisher.onUserChange(UserChangeEvent.upsert(user(1L, "first")));
+        userChangePublisher.onUserChange(UserChangeEvent.upsert(user(1L, "second")));
+        userChangePublisher.onUserChange(UserChangeEvent.delete(2L));
+        userChangePublisher.flush();
+        runDrains();
+
+        List<List<UserChangeEvent>> batches = sent(emitter);
+        assertEquals(1, batches.size());
+        List<UserChangeEvent> batch = batches.get(0);
+        assertEquals(2, batch.size());
+        UserChangeEvent upsert = batch.stream().filter(event -> event.getId() == 1L).findFirst().orElseThrow();
+        assertEquals("second", upsert.getUser().getFirstname());
+        assertTrue(batch.stream().anyMatch(event -> event.getType() == UserChangeEvent.Type.DELETE && event.getId() == 2L));
+    }
+
+    @Test
+    void testSubscriberThatFallsBehindGetsResync() {
+        SseEmitter emitter = userChangePublisher.subscribe();
+
+        for (long id = 1; id <= 3; id++) {
+            userChangePublisher.onUserChange(UserChangeEvent.delete(id));
+            userChangePublisher.flush();
+        }
+        runDrains();
+
+        List<List<UserChangeEvent>> batches = sent(emitter);
+        assertEquals(1, batches.size());
+        assertEquals(List.of(UserChangeEvent.resync()), batches.get(0));
+    }
+
+    @Test
+    void testNoChangeIsLostWhilePublishingConcurrentlyWithFlushes() throws Exception {
+        ReflectionTestUtils.setField(userChangePublisher, "subscriberQueueCapacity", 1_000_000);
+        SseEmitter emitter = userChangePublisher.subscribe();
+        int publishers = 4;
+        int changesPerPublisher = 50_000;
+
+        ExecutorService pool = Executors.newFixedThreadPool(publishers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch published = new CountDownLatch(publishers);
+        AtomicBoolean flushing = new AtomicBoolean(true);
+        try {
+            for (int p = 0; p < publishers; p++) {
+                long firstId = (long) p * changesPerPublisher;
+                pool.execute(() -> {
+                    try {
+                        start.await();
+                        for (long id = firstId; id < firstId + changesPerPublisher; id++) {
+                            userChangePublisher.onUserChange(UserChangeEvent.delete(id));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        published.countDown();
+                    }
+                });
+            }
+            pool.execute(() -> {
+                while (flushing.get()) {
+                    userChangePublisher.flush();
+                }
+            });
+            start.countDown();
+            assertTrue(published.await(30, TimeUnit.SECONDS));
+        } finally {
+            flushing.set(false);
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        }
+        userChangePublisher.flush();
+        runDrains();
+
+        Set<Long> delivered = new HashSet<>();
+        for (List<UserChangeEvent> batch : sent(emitter)) {
+            for (UserChangeEvent event : batch) {
+                assertTrue(delivered.add(event.getId()), "Delivered twice: " + event.getId());
+            }
+        }
+        assertEquals(publishers * changesPerPublisher, delivered.size());
+    }
+
+    private void runDrains() {
+        while (!drains.isEmpty()) {
+            drains.remove(0).run();
+        }
+    }
+
+    /**
+     * Returns the batches sent to an emitter that has no response attached, in the order they were sent.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<List<UserChangeEvent>> sent(SseEmitter emitter) {
+        Set<SseEmitter.DataWithMediaType> sends = (Set<SseEmitter.DataWithMediaType>) ReflectionTestUtils.getField(emitter, "earlySendAttempts");
+        List<List<UserChangeEvent>> batches = new ArrayList<>();
+        for (SseEmitter.DataWithMediaType send : sends) {
+            if (send.getData() instanceof List<?> batch) {
+                batches.add((List<UserChangeEvent>) batch);
+            }
+        }
+        return batches;
+    }
+
+    private static Users user(long id, String firstname) {
+        Users user = new Users();
+        user.setId(id);
+        user.setFirstname(firstname);
+        return user;
+    }
+}
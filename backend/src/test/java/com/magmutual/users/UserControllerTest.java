@@ -1,8 +1,12 @@
 package com.magmutual.users;
 
+import com.magmutual.users.constants.UserField;
 import com.magmutual.users.controller.UserController;
+import com.magmutual.users.exception.GlobalExceptionHandler;
 import com.magmutual.users.entity.Users;
+import com.magmutual.users.model.UserLookupResponse;
 import com.magmutual.users.model.UserRequest;
+import com.magmutual.users.service.UserReadFallback;
 import com.magmutual.users.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,14 +15,25 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static com.magmutual.users.utils.DateUtil.convertStringToDate;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -42,7 +57,10 @@ class UserControllerTest {
 
     @BeforeEach
     void setUp() {
-        mockMvc = MockMvcBuilders.standaloneSetup(userController).build();
+        ReflectionTestUtils.setField(userController, "userReadFallback", new UserReadFallback());
+        mockMvc = MockMvcBuilders.standaloneSetup(userController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
 
         user = new Users();
         user.setId(1L);
@@ -74,6 +92,64 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.id").value(user.getId()));
     }
 
+    @Test
+    void testGetUsersWithFieldsReturnsOnlyThoseFields() throws Exception {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", 1L);
+        row.put("email", "john.doe@example.com");
+        when(userService.getUserFields(eq(0), eq(10), eq("id"), eq("asc"), isNull(), isNull(), isNull(),
+                eq(EnumSet.of(UserField.ID, UserField.EMAIL)))).thenReturn(new PageImpl<>(List.of(row), PageRequest.of(0, 10), 1));
+
+        mockMvc.perform(get("/api/users").param("fields", "EMAIL, id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(1))
+                .andExpect(jsonPath("$.content[0].email").value("john.doe@example.com"))
+                .andExpect(jsonPath("$.content[0].firstname").doesNotExist());
+    }
+
+    @Test
+    void testGetUserByIdWithFieldsAlwaysIncludesId() throws Exception {
+        when(userService.getUserFieldsById("1", EnumSet.of(UserField.ID, UserField.FIRSTNAME)))
+                .thenReturn(Optional.of(Map.of("id", 1L, "firstname", "John")));
+
+        mockMvc.perform(get("/api/users/{id}", "1").param("fields", "firstname"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstname").value("John"))
+                .andExpect(jsonPath("$.lastname").doesNotExist());
+    }
+
+    @Test
+    void testUnknownFieldIsRejected() throws Exception {
+        mockMvc.perform(get("/api/users/{id}", "1").param("fields", "id,password"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void testLookupUsersRejectsTooManyIds() throws Exception {
+        ReflectionTestUtils.setField(userController, "maxLookupIds", 2);
+
+        mockMvc.perform(post("/api/users/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{ \"ids\": [1, 2, 3] }"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void testLookupUsersReturnsMisses() throws Exception {
+        ReflectionTestUtils.setField(userController, "maxLookupIds", 2);
+        when(userService.getUsersByIds(List.of(1L, 9L), null)).thenReturn(new UserLookupResponse(Arrays.asList(user, null), List.of(9L)));
+
+        mockMvc.perform(post("/api/users/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{ \"ids\": [1, 9] }"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].id").value(1))
+                .andExpect(jsonPath("$.users[1]").doesNotExist())
+                .andExpect(jsonPath("$.missing[0]").value(9));
+    }
+
     @Test
     void testCreateUser() throws Exception {
         when(userService.addUser(any(UserRequest.class))).thenReturn(user);
@@ -0,0 +1,199 @@
+package com.magmutual.users;
+
+import com.magmutual.users.constants.UserField;
+import com.magmutual.users.entity.Users;
+import com.magmutual.users.model.UserRequest;
+import com.magmutual.users.repository.UserBulkRepository;
+import com.magmutual.users.repository.UserDictionary;
+import com.magmutual.users.repository.UserRepository;
+import com.magmutual.users.service.UserDictionaryMigration;
+import com.magmutual.users.service.UserService;
+import com.magmutual.users.utils.DateUtil;
+import com.magmutual.users.utils.FingerprintUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against an embedded PostgreSQL; skipped when none can be started (see {@link EmbeddedPostgresSupport}).
+ */
+@SpringBootTest
+@EnabledIf("com.magmutual.users.EmbeddedPostgresSupport#isAvailable")
+class UserDictionaryTest {
+
+    @Autowired
+    private UserDictionary userDictionary;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+
+    @Autowired
+    private UserDictionaryMigration userDictionaryMigration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM users WHERE id BETWEEN 9100004 AND 9100010");
+    }
+
+    @Test
+    void testValuesAreStoredOnceAndSharedByLoadedUsers() {
+        userService.addUser(request(9_100_004L, "dictionary-shared", "Lisbon"));
+        userService.addUser(request(9_100_005L, "dictionary-shared", "Lisbon"));
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM user_dictionary WHERE field = 'PROFESSION' AND value = 'dictionary-shared'", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(DISTINCT profession_id) FROM users WHERE id IN (9100004, 9100005)", Integer.class));
+        List<Users> users = userRepository.findByIdIn(List.of(9_100_004L, 9_100_005L));
+        assertEquals(2, users.size());
+        assertEquals("dictionary-shared", users.get(0).getProfession());
+        assertSame(users.get(0).getProfession(), users.get(1).getProfession());
+        assertSame(users.get(0).getCity(), users.get(1).getCity());
+    }
+
+    @Test
+    void testFilteringByAnUnknownValueDoesNotAddIt() {
+        String profession = "dictionary-unknown-" + System.nanoTime();
+
+        assertTrue(userService.getUsers(0, 10, "id", "asc", null, null, profession).isEmpty());
+
+        assertNull(userDictionary.find(UserField.PROFESSION, profession));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM user_dictionary WHERE value = ?", Integer.class, profession));
+    }
+
+    @Test
+    void testValuesAddedByARolledBackTransactionAreForgotten() {
+        String profession = "dictionary-rolled-back-" + System.nanoTime();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Integer id = userDictionary.idOf(UserField.PROFESSION, profession);
+            assertNotNull(id);
+            assertEquals(id, userDictionary.find(UserField.PROFESSION, profession));
+            assertEquals(profession, userDictionary.valueOf(id));
+            status.setRollbackOnly();
+        });
+
+        assertNull(userDictionary.find(UserField.PROFESSION, profession));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM user_dictionary WHERE value = ?", Integer.class, profession));
+    }
+
+    @Test
+    void testValuesAddedByACommittedTransactionAreCached() {
+        String profession = "dictionary-committed-" + System.nanoTime();
+
+        Integer id = new TransactionTemplate(transactionManager).execute(status -> userDictionary.idOf(UserField.PROFESSION, profession));
+        int cached = userDictionary.size();
+        jdbcTemplate.update("DELETE FROM user_dictionary WHERE id = ?", id);
+        try {
+            assertEquals(id, userDictionary.find(UserField.PROFESSION, profession));
+            assertEquals(profession, userDictionary.valueOf(id));
+            assertEquals(cached, userDictionary.size());
+        } finally {
+            jdbcTemplate.update("INSERT INTO user_dictionary (id, field, value) VALUES (?, 'PROFESSION', ?)", id, profession);
+        }
+    }
+
+    @Test
+    void testSortingByADictionaryFieldSortsByValue() {
+        userService.addUser(request(9_100_006L, "dictionary-sorted", "Bern"));
+        userService.addUser(request(9_100_007L, "dictionary-sorted", "Aachen"));
+        userBulkRepository.upsert(List.of(user(9_100_008L, "dictionary-sorted", "Cairo")));
+
+        List<String> cities = userService.getUsers(0, 10, "city", "desc", null, null, "dictionary-sorted").stream().map(Users::getCity).toList();
+
+        assertEquals(List.of("Cairo", "Bern", "Aachen"), cities);
+    }
+
+    @Test
+    void testOldColumnsAreKeptInStepUntilTheContractStep() {
+        jdbcTemplate.execute("ALTER TABLE users ADD COLUMN IF NOT EXISTS profession varchar(255)");
+        try {
+            List<String> oldColumns = userDictionaryMigration.expand();
+            assertEquals(List.of("profession"), oldColumns);
+            userDictionaryMigration.keepInSync(oldColumns);
+
+            userService.addUser(request(9_100_010L, "dictionary-expand", "Oslo"));
+            assertEquals("dictionary-expand", oldProfession(9_100_010L));
+
+            jdbcTemplate.update("UPDATE users SET profession = 'dictionary-legacy' WHERE id = 9100010");
+            assertEquals("dictionary-legacy", userRepository.findByIdIn(List.of(9_100_010L)).get(0).getProfession());
+
+            jdbcTemplate.update("INSERT INTO users (id, firstname, lastname, email, profession, datecreated) "
+                    + "VALUES (9100009, 'Dict', 'Ionary', 'dict9100009@example.com', 'dictionary-old-instance', '2021-05-06')");
+            assertEquals("dictionary-old-instance", userRepository.findByIdIn(List.of(9_100_009L)).get(0).getProfession());
+
+            userDictionaryMigration.contract(oldColumns);
+
+            assertEquals(0, professionColumns());
+            assertEquals("dictionary-legacy", userRepository.findByIdIn(List.of(9_100_010L)).get(0).getProfession());
+            userService.addUser(request(9_100_008L, "dictionary-contracted", "Oslo"));
+        } finally {
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS users_sync_dictionary_columns ON users");
+            jdbcTemplate.execute("ALTER TABLE users DROP COLUMN IF EXISTS profession");
+        }
+    }
+
+    private String oldProfession(long id) {
+        return jdbcTemplate.queryForObject("SELECT profession FROM users WHERE id = ?", String.class, id);
+    }
+
+    private int professionColumns() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM information_schema.columns "
+                + "WHERE table_schema = current_schema() AND table_name = 'users' AND column_name = 'profession'", Integer.class);
+    }
+
+    private static UserRequest request(long id, String profession, String city) {
+        UserRequest request = new UserRequest();
+        request.setId(id);
+        request.setFirstname("Dict");
+        request.setLastname("Ionary");
+        request.setEmail("dict" + id + "@example.com");
+        request.setProfession(profession);
+        request.setDateCreated("2021-05-06");
+        request.setCountry("Portugal");
+        request.setCity(city);
+        return request;
+    }
+
+    private static Users user(long id, String profession, String city) {
+        Users user = new Users();
+        user.setId(id);
+        user.setFirstname("Dict");
+        user.setLastname("Ionary");
+        user.setEmail("dict" + id + "@example.com");
+        user.setProfession(profession);
+        user.setDateCreated(DateUtil.convertStringToDate("2021-05-06"));
+        user.setCountry("Portugal");
+        user.setCity(city);
+        user.setFingerprint(FingerprintUtil.of(user));
+        return user;
+    }
+}
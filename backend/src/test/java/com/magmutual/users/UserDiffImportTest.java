@@ -0,0 +1,75 @@
+package com.magmutual.users;
+
+import com.magmutual.users.constants.ImportMode;
+import com.magmutual.users.model.ImportResult;
+import com.magmutual.users.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs against an embedded PostgreSQL; skipped when none can be started (see {@link EmbeddedPostgresSupport}).
+ */
+@SpringBootTest
+@EnabledIf("com.magmutual.users.EmbeddedPostgresSupport#isAvailable")
+class UserDiffImportTest {
+
+    private static final String HEADER = "id,firstname,lastname,email,profession,dateCreated,country,city\n";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path tempDir;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM users WHERE id BETWEEN 9100013 AND 9100015");
+    }
+
+    @Test
+    void testDiffImportInsertsUpdatesSkipsAndReportsRepeatedIds() throws Exception {
+        ImportResult seeded = userService.saveUsersFromCsv(csv("seed.csv", HEADER
+                + "9100013,Ann,Lee,ann.lee@example.com,doctor,2024-05-06,USA,Denver\n"
+                + "9100014,Bob,Lee,bob.lee@example.com,doctor,2024-05-06,USA,Denver\n"), ImportMode.DIFF);
+        assertEquals(2L, seeded.getInserted());
+
+        ImportResult result = userService.saveUsersFromCsv(csv("diff.csv", HEADER
+                + "9100013,Ann,Lee,ann.lee@example.com,doctor,2024-05-06,USA,Denver\n"
+                + "9100014,Bob,Lee,bob.lee@example.com,doctor,2024-05-06,USA,Boston\n"
+                + "9100015,Cay,Lee,cay.lee@example.com,nurse,2024-05-06,USA,Denver\n"
+                + "9100015,Cat,Lee,cay.lee@example.com,nurse,2024-05-06,USA,Denver\n"), ImportMode.DIFF);
+
+        assertEquals(3, result.getProcessed());
+        assertEquals(1, result.getRejected());
+        assertEquals(1L, result.getInserted());
+        assertEquals(1L, result.getUpdated());
+        assertEquals(1L, result.getUnchanged());
+        assertEquals("Boston", userService.getUserById("9100014").orElseThrow().getCity());
+        assertEquals("Cay", userService.getUserById("9100015").orElseThrow().getFirstname());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM users WHERE id = 9100015", Integer.class));
+    }
+
+    private Path csv(String name, String content) throws Exception {
+        return Files.writeString(tempDir.resolve(name), content);
+    }
+}
@@ -0,0 +1,110 @@
+package com.magmutual.users;
+
+import com.magmutual.users.entity.Users;
+import com.magmutual.users.model.ExistenceFilterStats;
+import com.magmutual.users.repository.UserBulkRepository;
+import com.magmutual.users.service.UserExistenceFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserExistenceFilterTest {
+
+    @Mock
+    private UserBulkRepository userBulkRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private UserExistenceFilter userExistenceFilter;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(userExistenceFilter, "enabled", true);
+        ReflectionTestUtils.setField(userExistenceFilter, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(userExistenceFilter, "minCapacity", 1000L);
+    }
+
+    @Test
+    void testEverythingMightExistBeforeTheFirstBuild() {
+        assertTrue(userExistenceFilter.mightContainId(42L));
+        assertTrue(userExistenceFilter.mightContainEmail("someone@example.com"));
+        assertFalse(userExistenceFilter.getStats().isReady());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRebuildLoadsIdsAndNormalizedEmails() {
+        when(userBulkRepository.countMatching(null, null, null)).thenReturn(2L);
+        doAnswer(invocation -> {
+            BiConsumer<Long, String> consumer = invocation.getArgument(0);
+            consumer.accept(1L, "John.Doe@Example.com");
+            consumer.accept(2L, null);
+            return null;
+        }).when(userBulkRepository).scanIdsAndEmails(any(BiConsumer.class));
+
+        userExistenceFilter.rebuild();
+
+        assertTrue(userExistenceFilter.mightContainId(1L));
+        assertTrue(userExistenceFilter.mightContainId(2L));
+        assertFalse(userExistenceFilter.mightContainId(3L));
+        assertTrue(userExistenceFilter.mightContainEmail(" john.doe@example.COM "));
+        assertFalse(userExistenceFilter.mightContainEmail("jane.doe@example.com"));
+
+        ExistenceFilterStats stats = userExistenceFilter.getStats();
+        assertTrue(stats.isReady());
+        assertEquals(1000, stats.getCapacity());
+        assertEquals(2, stats.getIdInsertions());
+        assertEquals(1, stats.getEmailInsertions());
+        assertEquals(1, stats.getRebuilds());
+        assertEquals(2, stats.getLastRebuildRows());
+        assertEquals(5, stats.getChecks());
+        assertEquals(2, stats.getDefiniteMisses());
+    }
+
+    @Test
+    void testAddedUsersAreFoundAndFalsePositivesCounted() {
+        when(userBulkRepository.countMatching(null, null, null)).thenReturn(0L);
+        userExistenceFilter.rebuild();
+
+        Users user = new Users();
+        user.setId(7L);
+        user.setEmail("new@example.com");
+        userExistenceFilter.add(user);
+
+        assertTrue(userExistenceFilter.mightContainId(7L));
+        assertTrue(userExistenceFilter.mightContainEmail("NEW@example.com"));
+        userExistenceFilter.recordLookup(true);
+        userExistenceFilter.recordLookup(false);
+
+        ExistenceFilterStats stats = userExistenceFilter.getStats();
+        assertEquals(2, stats.getDatabaseLookups());
+        assertEquals(1, stats.getFalsePositives());
+        assertEquals(0.5, stats.getObservedFalsePositiveRate());
+    }
+
+    @Test
+    void testWritesOnlyTrustADefiniteMissWhenAllowed() {
+        when(userBulkRepository.countMatching(null, null, null)).thenReturn(0L);
+        userExistenceFilter.rebuild();
+
+        assertFalse(userExistenceFilter.mightContainId(9L));
+        assertTrue(userExistenceFilter.mightContainIdBeforeWrite(9L));
+
+        ReflectionTestUtils.setField(userExistenceFilter, "skipWriteChecks", true);
+        assertFalse(userExistenceFilter.mightContainIdBeforeWrite(9L));
+    }
+}
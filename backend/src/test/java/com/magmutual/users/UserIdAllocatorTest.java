@@ -0,0 +1,96 @@
+package com.magmutual.users;
+
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.service.UserIdAllocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserIdAllocatorTest {
+
+    private static final String NEXTVAL = "SELECT nextval('users_id_seq')";
+    private static final String MAX_ID = "SELECT max(id) FROM users";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private UserIdAllocator userIdAllocator;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(userIdAllocator, "allocationSize", 100);
+        lenient().when(jdbcTemplate.queryForObject(MAX_ID, Long.class)).thenReturn(null);
+    }
+
+    @Test
+    void testSequenceIsSetUpOnFirstUseOnly() {
+        when(jdbcTemplate.queryForObject(MAX_ID, Long.class)).thenReturn(250L);
+        when(jdbcTemplate.queryForObject(NEXTVAL, Long.class)).thenReturn(351L);
+        verifyNoInteractions(jdbcTemplate);
+
+        assertEquals(351L, userIdAllocator.next());
+        assertEquals(352L, userIdAllocator.next());
+        userIdAllocator.reserveThrough(300L);
+
+        verify(jdbcTemplate).execute("CREATE SEQUENCE IF NOT EXISTS users_id_seq INCREMENT BY 100");
+        verify(jdbcTemplate).queryForObject(MAX_ID, Long.class);
+        verify(jdbcTemplate).queryForList(anyString(), eq(350L), eq(350L));
+    }
+
+    @Test
+    void testIdsComeFromOneSequenceCallPerBlock() {
+        when(jdbcTemplate.queryForObject(NEXTVAL, Long.class)).thenReturn(1L, 101L);
+
+        for (long expected = 1; expected <= 150; expected++) {
+            assertEquals(expected, userIdAllocator.next());
+        }
+        verify(jdbcTemplate, times(2)).queryForObject(NEXTVAL, Long.class);
+    }
+
+    @Test
+    void testReservedIdsAreSkipped() {
+        when(jdbcTemplate.queryForObject(NEXTVAL, Long.class)).thenReturn(1L);
+        assertEquals(1L, userIdAllocator.next());
+
+        userIdAllocator.reserveThrough(40L);
+        userIdAllocator.reserveThrough(7L);
+        assertEquals(41L, userIdAllocator.next());
+        verify(jdbcTemplate, never()).queryForList(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void testIdsBeyondTheSequenceMoveItOnceABlock() {
+        when(jdbcTemplate.queryForObject(NEXTVAL, Long.class)).thenReturn(1601L);
+
+        for (long id = 1000; id <= 1150; id++) {
+            userIdAllocator.reserveThrough(id);
+        }
+        verify(jdbcTemplate).queryForList(anyString(), eq(1100L), eq(1100L));
+        verify(jdbcTemplate).queryForList(anyString(), eq(1201L), eq(1201L));
+        assertEquals(1601L, userIdAllocator.next());
+    }
+
+    @Test
+    void testIdTooLargeToLeaveABlockAboveIsRejected() {
+
+        CustomException exception = assertThrows(CustomException.class, () -> userIdAllocator.reserveThrough(Long.MAX_VALUE - 99));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        userIdAllocator.reserveThrough(Long.MAX_VALUE - 100);
+
+        verify(jdbcTemplate).queryForList(anyString(), eq(Long.MAX_VALUE), eq(Long.MAX_VALUE));
+    }
+}
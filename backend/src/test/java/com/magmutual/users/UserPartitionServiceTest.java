@@ -0,0 +1,240 @@
+package com.magmutual.users;
+
+import com.magmutual.users.constants.UserField;
+import com.magmutual.users.entity.Users;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.UserRequest;
+import com.magmutual.users.repository.UserBulkRepository;
+import com.magmutual.users.repository.UserDictionary;
+import com.magmutual.users.repository.UserRepository;
+import com.magmutual.users.service.UserPartitionService;
+import com.magmutual.users.service.UserService;
+import com.magmutual.users.utils.DateUtil;
+import com.magmutual.users.utils.FingerprintUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.Year;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against an embedded PostgreSQL; skipped when none can be started (see {@link EmbeddedPostgresSupport}).
+ */
+@SpringBootTest
+@EnabledIf("com.magmutual.users.EmbeddedPostgresSupport#isAvailable")
+class UserPartitionServiceTest {
+
+    @Autowired
+    private UserPartitionService userPartitionService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+
+    @Autowired
+    private UserDictionary userDictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+    }
+
+    @Test
+    void testTableIsPartitionedWithUpcomingYears() {
+        assertEquals("p", jdbcTemplate.queryForObject("SELECT relkind::text FROM pg_class WHERE oid = 'users'::regclass", String.class));
+        List<String> partitions = partitions();
+        int currentYear = Year.now().getValue();
+        for (int year = currentYear; year <= currentYear + 2; year++) {
+            assertTrue(partitions.contains("users_y" + year), "Missing partition for " + year + " in " + partitions);
+        }
+    }
+
+    @Test
+    void testPartitionIsCreatedOnDemand() {
+        userService.addUser(request(9_100_001L, "1987-03-04"));
+
+        assertTrue(partitions().contains("users_y1987"));
+        assertEquals(1, userRepository.findByDateCreatedBetween(Date.valueOf("1987-01-01"), Date.valueOf("1987-12-31"), PageRequest.of(0, 10)).getTotalElements());
+    }
+
+    @Test
+    void testDateRangeQueriesOnlyScanMatchingPartitions() {
+        userPartitionService.ensurePartitionsFor(List.of(Date.valueOf("1990-06-01"), Date.valueOf("1991-06-01")));
+
+        String plan = String.join("\n", jdbcTemplate.queryForList(
+                "EXPLAIN SELECT * FROM users WHERE datecreated BETWEEN ? AND ? AND profession_id = ?", String.class,
+                Date.valueOf("1990-01-01"), Date.valueOf("1990-12-31"), 1));
+
+        assertTrue(plan.contains("users_y1990"), plan);
+        assertFalse(plan.contains("users_y1991"), plan);
+    }
+
+    @Test
+    void testBulkUpsertMovesChangedRowsBetweenPartitions() {
+        Users user = user(9_100_002L, "1992-01-15");
+        userPartitionService.ensurePartitionFor(user.getDateCreated());
+        assertEquals(1, userBulkRepository.upsert(List.of(user)));
+        assertEquals(0, userBulkRepository.upsert(List.of(user)));
+
+        Users moved = user(9_100_002L, "1993-01-15");
+        userPartitionService.ensurePartitionFor(moved.getDateCreated());
+        assertEquals(1, userBulkRepository.upsert(List.of(moved)));
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM users WHERE id = 9100002", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM users_y1993 WHERE id = 9100002", Integer.class));
+    }
+
+    @Test
+    void testRolledBackPartitionIsCreatedAgain() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS users_y1975");
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            userPartitionService.ensurePartitionFor(Date.valueOf("1975-05-06"));
+            assertTrue(partitions().contains("users_y1975"));
+            status.setRollbackOnly();
+        });
+        assertFalse(partitions().contains("users_y1975"));
+
+        userService.addUser(request(9_100_009L, "1975-05-06"));
+
+        assertTrue(partitions().contains("users_y1975"));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM users_y1975 WHERE id = 9100009", Integer.class));
+    }
+
+    @Test
+    void testDetachedPartitionIsKeptAsStandaloneTable() {
+        userService.addUser(request(9_100_003L, "1980-07-01"));
+
+        assertEquals("users_y1980", userPartitionService.detachPartition(1980));
+
+        assertFalse(partitions().contains("users_y1980"));
+        assertEquals(0, userRepository.findByDateCreatedBetween(Date.valueOf("1980-01-01"), Date.valueOf("1980-12-31"), PageRequest.of(0, 10)).getTotalElements());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM users_y1980", Integer.class));
+    }
+
+    @Test
+    void testConcurrentAddsOfOneIdLeaveOneUser() throws Exception {
+        CompletableFuture<Void> second = whileFirstIsOpen(
+                () -> userService.addUser(request(9_100_016L, "1994-05-06")),
+                () -> userService.addUser(request(9_100_016L, "1995-05-06")));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> second.get(30, TimeUnit.SECONDS));
+        CustomException conflict = assertInstanceOf(CustomException.class, failure.getCause());
+        assertEquals(HttpStatus.CONFLICT, conflict.getStatus());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM users WHERE id = 9100016", Integer.class));
+        assertTrue(userService.getUserById("9100016").isPresent());
+    }
+
+    @Test
+    void testOverlappingBulkUpsertsLeaveOneUser() throws Exception {
+        Users first = user(9_100_017L, "1994-05-06");
+        Users second = user(9_100_017L, "1995-05-06");
+        userPartitionService.ensurePartitionsFor(List.of(first.getDateCreated(), second.getDateCreated()));
+        userDictionary.idOf(UserField.PROFESSION, first.getProfession());
+        userDictionary.idOf(UserField.COUNTRY, first.getCountry());
+        userDictionary.idOf(UserField.CITY, first.getCity());
+
+        CompletableFuture<Void> overlapping = whileFirstIsOpen(
+                () -> userBulkRepository.upsert(List.of(first)),
+                () -> userBulkRepository.upsert(List.of(second)));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> overlapping.get(30, TimeUnit.SECONDS));
+        assertInstanceOf(DataIntegrityViolationException.class, failure.getCause());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM users WHERE id = 9100017", Integer.class));
+    }
+
+    /**
+     * Runs the first write in a transaction that stays open until the second write, started in its own
+     * transaction on another thread, has had time to pass its existence check and reach the insert. Both
+     * writes see no row with the id, as two requests racing each other would.
+     *
+     * @return the outcome of the second write, once the first has committed
+     */
+    private CompletableFuture<Void> whileFirstIsOpen(Runnable firstWrite, Runnable secondWrite) throws Exception {
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    firstWrite.run();
+                    written.countDown();
+                    try {
+                        assertTrue(commit.await(30, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        CompletableFuture<Void> second;
+        try {
+            assertTrue(written.await(30, TimeUnit.SECONDS));
+            second = CompletableFuture.runAsync(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> secondWrite.run()));
+            Thread.sleep(500);
+            assertFalse(second.isDone(), "The second insert of an id did not wait for the first");
+        } finally {
+            commit.countDown();
+            first.get(30, TimeUnit.SECONDS);
+        }
+        return second;
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("SELECT inhrelid::regclass::text FROM pg_inherits WHERE inhparent = 'users'::regclass", String.class);
+    }
+
+    private static UserRequest request(long id, String dateCreated) {
+        UserRequest request = new UserRequest();
+        request.setId(id);
+        request.setFirstname("Part");
+        request.setLastname("Ition");
+        request.setEmail("part" + id + "@example.com");
+        request.setProfession("doctor");
+        request.setDateCreated(dateCreated);
+        request.setCountry("USA");
+        request.setCity("Atlanta");
+        return request;
+    }
+
+    private static Users user(long id, String dateCreated) {
+        Users user = new Users();
+        user.setId(id);
+        user.setFirstname("Part");
+        user.setLastname("Ition");
+        user.setEmail("part" + id + "@example.com");
+        user.setProfession("doctor");
+        user.setDateCreated(DateUtil.convertStringToDate(dateCreated));
+        user.setCountry("USA");
+        user.setCity("Atlanta");
+        user.setFingerprint(FingerprintUtil.of(user));
+        return user;
+    }
+}
@@ -0,0 +1,160 @@
+package com.magmutual.users;
+
+import com.magmutual.users.constants.AuditAction;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.PurgeJobStatus;
+import com.magmutual.users.model.UserChangeEvent;
+import com.magmutual.users.repository.UserBulkRepository;
+import com.magmutual.users.repository.UserBulkRepository.DeletedChunk;
+import com.magmutual.users.service.UserAuditTrail;
+import com.magmutual.users.service.UserPurgeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserPurgeServiceTest {
+
+    @Mock
+    private UserBulkRepository userBulkRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private UserAuditTrail userAuditTrail;
+
+    @InjectMocks
+    private UserPurgeService userPurgeService;
+
+    private final Date endDate = Date.valueOf("2020-12-31");
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(userPurgeService, "chunkSize", 2);
+        ReflectionTestUtils.setField(userPurgeService, "pauseMs", 0L);
+        ReflectionTestUtils.setField(userPurgeService, "dutyCycle", 1.0);
+        ReflectionTestUtils.setField(userPurgeService, "maxQueuedJobs", 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userPurgeService.shutdown();
+    }
+
+    @Test
+    void testJobDeletesChunkByChunkAfterTheLastKey() throws Exception {
+        DeletedChunk first = new DeletedChunk(2, Timestamp.valueOf("2019-01-01 00:00:00"), 7L);
+        DeletedChunk second = new DeletedChunk(1, Timestamp.valueOf("2020-06-01 00:00:00"), 3L);
+        when(userBulkRepository.countMatching(null, endDate, null)).thenReturn(3L);
+        when(userBulkRepository.deleteChunk(isNull(), eq(endDate), isNull(), isNull(), eq(2))).thenReturn(first);
+        when(userBulkRepository.deleteChunk(isNull(), eq(endDate), isNull(), eq(first), eq(2))).thenReturn(second);
+        when(userBulkRepository.deleteChunk(isNull(), eq(endDate), isNull(), eq(second), eq(2))).thenReturn(null);
+
+        PurgeJobStatus status = awaitFinished(userPurgeService.submit(null, endDate, null).getJobId());
+        assertEquals(PurgeJobStatus.State.COMPLETED, status.getState());
+        assertEquals(3L, status.getEstimatedTotal());
+        assertEquals(3, status.getDeleted());
+        assertEquals(2, status.getChunks());
+        verify(eventPublisher).publishEvent(UserChangeEvent.purged());
+        verify(eventPublisher, never()).publishEvent(UserChangeEvent.imported());
+    }
+
+    @Test
+    void testJobIsAuditedWhenQueuedAndWhenFinishedForTheCaller() throws Exception {
+        when(userBulkRepository.deleteChunk(any(), any(), any(), any(), anyInt()))
+                .thenReturn(new DeletedChunk(2, Timestamp.valueOf("2019-01-01 00:00:00"), 7L))
+                .thenReturn(null);
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("admin", null, "ROLE_ADMIN"));
+        String jobId;
+        try {
+            jobId = userPurgeService.submit(null, endDate, "worker").getJobId();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+
+        awaitFinished(jobId);
+        InOrder inOrder = inOrder(userAuditTrail);
+        inOrder.verify(userAuditTrail).record("admin", AuditAction.DELETE, null, null,
+                "purge job=" + jobId + ", state=queued, startDate=null, endDate=2020-12-31, profession=worker");
+        inOrder.verify(userAuditTrail).record("admin", AuditAction.DELETE, null, null,
+                "purge job=" + jobId + ", state=completed, startDate=null, endDate=2020-12-31, profession=worker, deleted=2");
+    }
+
+    @Test
+    void testJobIsNotQueuedWhenItCannotBeAudited() {
+        doThrow(new CustomException("Service temporarily unavailable", "The audit trail is backlogged, retry shortly", HttpStatus.SERVICE_UNAVAILABLE))
+                .when(userAuditTrail).record(any(), any(), any(), any(), any());
+
+        CustomException exception = assertThrows(CustomException.class, () -> userPurgeService.submit(null, endDate, null));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+        verifyNoInteractions(userBulkRepository);
+    }
+
+    @Test
+    void testCancelStopsAfterTheCurrentChunk() throws Exception {
+        CountDownLatch chunkStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userBulkRepository.deleteChunk(any(), any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+            chunkStarted.countDown();
+            release.await();
+            return new DeletedChunk(2, Timestamp.valueOf("2019-01-01 00:00:00"), 7L);
+        });
+
+        String jobId = userPurgeService.submit(null, null, "worker").getJobId();
+        assertTrue(chunkStarted.await(5, TimeUnit.SECONDS));
+        userPurgeService.cancel(jobId);
+        release.countDown();
+
+        PurgeJobStatus status = awaitFinished(jobId);
+        assertEquals(PurgeJobStatus.State.CANCELLED, status.getState());
+        assertEquals(2, status.getDeleted());
+        verify(userBulkRepository, times(1)).deleteChunk(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void testFailedChunkFailsTheJob() throws Exception {
+        when(userBulkRepository.deleteChunk(any(), any(), any(), any(), anyInt())).thenThrow(new IllegalStateException("connection lost"));
+
+        PurgeJobStatus status = awaitFinished(userPurgeService.submit(null, null, "worker").getJobId());
+        assertEquals(PurgeJobStatus.State.FAILED, status.getState());
+        assertEquals("connection lost", status.getError());
+    }
+
+    @Test
+    void testJobWithoutFilterIsRejected() {
+        CustomException exception = assertThrows(CustomException.class, () -> userPurgeService.submit(null, null, null));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        verifyNoInteractions(userBulkRepository);
+    }
+
+    private PurgeJobStatus awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        PurgeJobStatus status = userPurgeService.getStatus(jobId);
+        while (status.getFinishedAt() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = userPurgeService.getStatus(jobId);
+        }
+        assertNotNull(status.getFinishedAt(), "purge job did not finish");
+        return status;
+    }
+}
@@ -0,0 +1,131 @@
+package com.magmutual.users;
+
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.service.UserReadFallback;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserReadFallbackTest {
+
+    private UserReadFallback userReadFallback;
+
+    @BeforeEach
+    void setUp() {
+        userReadFallback = new UserReadFallback();
+        ReflectionTestUtils.setField(userReadFallback, "enabled", true);
+        ReflectionTestUtils.setField(userReadFallback, "slowQueryMs", 20L);
+        ReflectionTestUtils.setField(userReadFallback, "failureThreshold", 2);
+        ReflectionTestUtils.setField(userReadFallback, "openMs", 60_000L);
+        ReflectionTestUtils.setField(userReadFallback, "maxEntries", 2);
+        ReflectionTestUtils.setField(userReadFallback, "maxEntryRows", 500);
+        ReflectionTestUtils.setField(userReadFallback, "maxStaleMs", 60_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userReadFallback.shutdown();
+    }
+
+    @Test
+    void testFastReadsAreServedFresh() {
+        UserReadFallback.Read<String> read = userReadFallback.read("a", () -> "fresh");
+
+        assertEquals("fresh", read.value());
+        assertFalse(read.stale());
+        assertFalse(userReadFallback.getStats().isOpen());
+        assertEquals(1, userReadFallback.getStats().getStoredResponses());
+    }
+
+    @Test
+    void testSlowReadsOpenTheCircuitAndStoredResponsesAreServedStale() {
+        userReadFallback.read("a", () -> "first");
+        userReadFallback.read("a", slow("slow"));
+        userReadFallback.read("a", slow("slow"));
+        assertTrue(userReadFallback.getStats().isOpen());
+
+        AtomicInteger queries = new AtomicInteger();
+        UserReadFallback.Read<String> read = userReadFallback.read("a", () -> "never " + queries.incrementAndGet());
+        assertEquals("slow", read.value());
+        assertTrue(read.stale());
+        assertEquals(0, queries.get());
+        assertEquals(1, userReadFallback.getStats().getServedStale());
+    }
+
+    @Test
+    void testReadsWithoutStoredResponseAreRejectedWhileOpen() {
+        userReadFallback.read("a", slow("a"));
+        userReadFallback.read("a", slow("a"));
+
+        CustomException exception = assertThrows(CustomException.class, () -> userReadFallback.read("b", () -> "b"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+        assertEquals(1, userReadFallback.getStats().getRejected());
+    }
+
+    @Test
+    void testUnreachableDatabaseFallsBackToStoredResponse() {
+        userReadFallback.read("a", () -> "stored");
+
+        UserReadFallback.Read<String> read = userReadFallback.read("a", () -> {
+            throw new QueryTimeoutException("timeout");
+        });
+        assertEquals("stored", read.value());
+        assertTrue(read.stale());
+        assertThrows(QueryTimeoutException.class, () -> userReadFallback.read("b", () -> {
+            throw new QueryTimeoutException("timeout");
+        }));
+    }
+
+    @Test
+    void testOneBackgroundRetryClosesTheCircuitWhenFast() throws Exception {
+        ReflectionTestUtils.setField(userReadFallback, "openMs", 0L);
+        userReadFallback.read("a", slow("old"));
+        userReadFallback.read("a", slow("old"));
+        assertTrue(userReadFallback.getStats().isOpen());
+
+        CountDownLatch refreshed = new CountDownLatch(1);
+        UserReadFallback.Read<String> read = userReadFallback.read("a", () -> {
+            refreshed.countDown();
+            return "new";
+        });
+        assertEquals("old", read.value());
+        assertTrue(read.stale());
+        assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 100 && userReadFallback.getStats().isOpen(); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(userReadFallback.getStats().isOpen());
+        assertEquals("new", userReadFallback.read("a", () -> "new").value());
+    }
+
+    @Test
+    void testStoreKeepsOnlyTheMostRecentlyUsedResponses() {
+        userReadFallback.read("a", () -> "a");
+        userReadFallback.read("b", () -> "b");
+        userReadFallback.read("c", () -> "c");
+
+        assertEquals(2, userReadFallback.getStats().getStoredResponses());
+    }
+
+    private static Supplier<String> slow(String value) {
+        return () -> {
+            try {
+                Thread.sleep(40);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return value;
+        };
+    }
+}
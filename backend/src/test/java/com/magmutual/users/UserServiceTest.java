@@ -1,25 +1,67 @@
 package com.magmutual.users;
 
+import com.magmutual.users.constants.AuditAction;
+import com.magmutual.users.constants.ImportMode;
+import com.magmutual.users.entity.UserTombstone;
+import com.magmutual.users.entity.UserTombstoneHorizon;
 import com.magmutual.users.entity.Users;
+import com.magmutual.users.exception.CustomException;
+import com.magmutual.users.model.ChangeFeedResponse;
+import com.magmutual.users.model.ImportResult;
+import com.magmutual.users.model.UserChangeEvent;
+import com.magmutual.users.model.UserLookupResponse;
 import com.magmutual.users.model.UserRequest;
+import com.magmutual.users.constants.UserField;
+import com.magmutual.users.repository.UserBulkRepository;
+import com.magmutual.users.repository.UserDictionary;
+import com.magmutual.users.repository.UserProjectionRepository;
 import com.magmutual.users.repository.UserRepository;
+import com.magmutual.users.repository.UserTombstoneHorizonRepository;
+import com.magmutual.users.repository.UserTombstoneRepository;
+import com.magmutual.users.service.CsvIngestionService;
+import com.magmutual.users.service.ImportReportService;
+import com.magmutual.users.service.UserAuditTrail;
+import com.magmutual.users.service.UserExistenceFilter;
+import com.magmutual.users.service.UserIdAllocator;
+import com.magmutual.users.service.UserPartitionService;
 import com.magmutual.users.service.UserService;
+import com.magmutual.users.utils.ChangeTokenUtil;
 import com.magmutual.users.utils.DateUtil;
+import com.magmutual.users.utils.FingerprintUtil;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,14 +70,62 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserTombstoneRepository userTombstoneRepository;
+
+    @Mock
+    private UserTombstoneHorizonRepository userTombstoneHorizonRepository;
+
+    @Mock
+    private UserBulkRepository userBulkRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private UserProjectionRepository userProjectionRepository;
+
+    @Mock
+    private UserDictionary userDictionary;
+
+    @Mock
+    private UserPartitionService userPartitionService;
+
+    @Mock
+    private UserIdAllocator userIdAllocator;
+
+    @Mock
+    private UserExistenceFilter userExistenceFilter;
+
+    @Mock
+    private UserAuditTrail userAuditTrail;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private UserService userService;
 
+    private final CsvIngestionService csvIngestionService = new CsvIngestionService();
+
+    private final ImportReportService importReportService = new ImportReportService();
+
+    @TempDir
+    private Path reportDir;
+
     private Users user;
     private UserRequest userRequest;
 
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(csvIngestionService, "parallelism", 2);
+        ReflectionTestUtils.setField(csvIngestionService, "segmentSize", 64);
+        csvIngestionService.init();
+        ReflectionTestUtils.setField(userService, "csvIngestionService", csvIngestionService);
+        ReflectionTestUtils.setField(userService, "importBatchSize", 1000);
+        ReflectionTestUtils.setField(importReportService, "reportDir", reportDir);
+        ReflectionTestUtils.setField(userService, "importReportService", importReportService);
+
         user = new Users();
         user.setId(1L);
         user.setFirstname("John");
@@ -57,6 +147,11 @@ class UserServiceTest {
         userRequest.setCity("New York");
     }
 
+    @AfterEach
+    void tearDown() {
+        csvIngestionService.shutdown();
+    }
+
     @Test
     void testGetUserById() {
         when(userRepository.findById(anyString())).thenReturn(Optional.of(user));
@@ -75,12 +170,118 @@ class UserServiceTest {
         assertEquals(user, updatedUser);
     }
 
+    @Test
+    void testUpdateUserAuditsTheChangedFields() {
+        when(userRepository.findById(anyString())).thenReturn(Optional.of(user));
+        when(userRepository.save(any(Users.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        userRequest.setId(1L);
+        userRequest.setProfession("Architect");
+        userRequest.setCity("Boston");
+
+        userService.updateUser("1", userRequest);
+        verify(userAuditTrail).record(AuditAction.UPDATE, 1L, List.of("profession", "city"), null);
+    }
+
     @Test
     void testDeleteUser() {
-        doNothing().when(userRepository).deleteById(anyString());
+        when(userRepository.deleteByIdWithoutLoading(1L)).thenReturn(1);
 
         userService.deleteUser("1");
-        verify(userRepository, times(1)).deleteById("1");
+        verify(userRepository, times(1)).deleteByIdWithoutLoading(1L);
+        verify(userTombstoneRepository, times(1)).upsert(1L);
+        verify(eventPublisher).publishEvent(UserChangeEvent.delete(1L));
+        verify(userAuditTrail).record(AuditAction.DELETE, 1L, null, null);
+    }
+
+    @Test
+    void testDeleteMissingUserLeavesNoTombstone() {
+        userService.deleteUser("2");
+        verify(userTombstoneRepository, never()).upsert(any());
+        verify(eventPublisher, never()).publishEvent(any());
+        verifyNoInteractions(userAuditTrail);
+    }
+
+    @Test
+    void testGetChangesSinceMergesUpdatesAndDeletes() {
+        Users first = new Users();
+        first.setId(1L);
+        first.setLastModified(new Timestamp(1_000L));
+        Users third = new Users();
+        third.setId(3L);
+        third.setLastModified(new Timestamp(3_000L));
+        UserTombstone second = new UserTombstone(2L, new Timestamp(2_000L));
+
+        Timestamp watermark = new Timestamp(4_000L);
+        when(userRepository.findChangeWatermark()).thenReturn(watermark(null, watermark));
+        when(userRepository.findChangesSince(any(), any(), eq(watermark), any())).thenReturn(List.of(first, third));
+        when(userTombstoneRepository.findChangesSince(any(), any(), eq(watermark), any())).thenReturn(List.of(second));
+
+        ChangeFeedResponse changes = userService.getChangesSince(null, 2);
+        assertEquals(List.of(first), changes.getUpdated());
+        assertEquals(List.of(2L), changes.getDeleted());
+        assertTrue(changes.isHasMore());
+
+        ChangeTokenUtil.ChangeToken next = ChangeTokenUtil.decode(changes.getNextToken());
+        assertEquals(2_000L, next.timestamp().getTime());
+        assertEquals(2L, next.id());
+    }
+
+    @Test
+    void testOpenWriterHoldsChangesBackUpToTheMaxLag() {
+        ReflectionTestUtils.setField(userService, "maxWatermarkLagMs", 60_000L);
+        when(userRepository.findChangeWatermark()).thenReturn(watermark(new Timestamp(50_000L), new Timestamp(100_000L)));
+
+        userService.getChangesSince(null, 10);
+        verify(userRepository).findChangesSince(any(), any(), eq(new Timestamp(50_000L)), any());
+
+        when(userRepository.findChangeWatermark()).thenReturn(watermark(new Timestamp(10_000L), new Timestamp(100_000L)));
+
+        userService.getChangesSince(null, 10);
+        verify(userRepository).findChangesSince(any(), any(), eq(new Timestamp(40_000L)), any());
+    }
+
+    @Test
+    void testTokenIsOnlyExpiredBeforeThePurgeHorizon() {
+        when(userRepository.findChangeWatermark()).thenReturn(watermark(null, new Timestamp(System.currentTimeMillis())));
+        String quiet = ChangeTokenUtil.encode(new ChangeTokenUtil.ChangeToken(new Timestamp(1_000L), 5L));
+
+        assertTrue(userService.getChangesSince(quiet, 10).getUpdated().isEmpty());
+
+        UserTombstoneHorizon horizon = new UserTombstoneHorizon();
+        horizon.setId(UserTombstoneHorizon.ID);
+        horizon.setPurgedThrough(new Timestamp(1_000L));
+        horizon.setPurgedThroughId(5L);
+        when(userTombstoneHorizonRepository.findById(UserTombstoneHorizon.ID)).thenReturn(Optional.of(horizon));
+
+        assertTrue(userService.getChangesSince(quiet, 10).getDeleted().isEmpty());
+
+        horizon.setPurgedThroughId(6L);
+        CustomException exception = assertThrows(CustomException.class, () -> userService.getChangesSince(quiet, 10));
+        assertEquals(HttpStatus.GONE, exception.getStatus());
+    }
+
+    @Test
+    void testPurgeMovesTheHorizonToTheNewestPurgedTombstone() {
+        when(userTombstoneRepository.findFirstByDeletedAtBeforeOrderByDeletedAtDescIdDesc(any()))
+                .thenReturn(new UserTombstone(7L, new Timestamp(2_000L)));
+
+        userService.purgeTombstones();
+
+        InOrder inOrder = inOrder(userTombstoneHorizonRepository, userTombstoneRepository);
+        inOrder.verify(userTombstoneHorizonRepository).advance(new Timestamp(2_000L), 7L);
+        inOrder.verify(userTombstoneRepository).deleteOlderThan(any());
+    }
+
+    @Test
+    void testGetUsersByIdsKeepsRequestOrderAndListsMisses() {
+        Users second = new Users();
+        second.setId(2L);
+        when(userRepository.findByIdIn(any())).thenReturn(List.of(second, user));
+
+        UserLookupResponse result = userService.getUsersByIds(List.of(2L, 7L, 1L, 2L, 7L), null);
+        assertEquals(Arrays.asList(second, null, user, second, null), result.getUsers());
+        assertEquals(List.of(7L), result.getMissing());
+        verify(userRepository).findByIdIn(argThat(ids -> ids.size() == 3));
     }
 
     @Test
@@ -94,11 +295,242 @@ class UserServiceTest {
         assertEquals(1, result.getTotalElements());
     }
 
+    @Test
+    void testGetUsersWithUnknownProfessionRunsNoQuery() {
+        when(userDictionary.find(UserField.PROFESSION, "astronaut")).thenReturn(null);
+
+        Page<Users> result = userService.getUsers(0, 10, "id", "asc", null, null, "astronaut");
+
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(userRepository, userProjectionRepository);
+    }
+
+    @Test
+    void testGetUsersSortedByDictionaryFieldSortsByValue() {
+        Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "city"));
+        when(userDictionary.find(UserField.PROFESSION, "doctor")).thenReturn(3);
+        when(userProjectionRepository.findUsers(null, null, "doctor", pageable)).thenReturn(new PageImpl<>(List.of(user)));
+
+        Page<Users> result = userService.getUsers(0, 10, "city", "desc", null, null, "doctor");
+
+        assertEquals(List.of(user), result.getContent());
+        verifyNoInteractions(userRepository);
+    }
+
     @Test
     void testAddUser() {
-        when(userRepository.save(any(Users.class))).thenReturn(user);
+        when(userRepository.saveAndFlush(any(Users.class))).thenReturn(user);
 
         Users savedUser = userService.addUser(userRequest);
         assertEquals(user, savedUser);
+        verify(eventPublisher).publishEvent(UserChangeEvent.upsert(user));
+    }
+
+    @Test
+    void testAddUserWithoutIdInsertsWithGeneratedId() {
+        userRequest.setId(null);
+        when(userIdAllocator.next()).thenReturn(5001L);
+        when(userRepository.saveAndFlush(any(Users.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Users savedUser = userService.addUser(userRequest);
+        assertEquals(5001L, savedUser.getId());
+        assertTrue(savedUser.isNew());
+        verify(userRepository, never()).existsById(anyString());
+    }
+
+    @Test
+    void testAddUserWithIdReservesIt() {
+        when(userRepository.saveAndFlush(any(Users.class))).thenReturn(user);
+
+        userService.addUser(userRequest);
+        verify(userIdAllocator).reserveThrough(123L);
+        verify(userIdAllocator, never()).next();
+    }
+
+    @Test
+    void testAddUserWithIdTheFilterHasNotSeenSkipsExistenceQuery() {
+        when(userRepository.saveAndFlush(any(Users.class))).thenReturn(user);
+
+        userService.addUser(userRequest);
+        verify(userRepository, never()).existsById(anyString());
+        verify(userExistenceFilter).add(user);
+    }
+
+    @Test
+    void testAddUserRacingAnotherInsertOfTheIdConflicts() {
+        when(userRepository.saveAndFlush(any(Users.class))).thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint \"user_ids_pkey\""));
+
+        CustomException exception = assertThrows(CustomException.class, () -> userService.addUser(userRequest));
+        assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+        verify(userExistenceFilter, never()).add(any(Users.class));
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void testAddUserWithExistingIdConflicts() {
+        when(userExistenceFilter.mightContainIdBeforeWrite(123L)).thenReturn(true);
+        when(userRepository.existsById("123")).thenReturn(true);
+
+        CustomException exception = assertThrows(CustomException.class, () -> userService.addUser(userRequest));
+        assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+        verify(userExistenceFilter).recordLookup(true);
+        verify(userRepository, never()).saveAndFlush(any(Users.class));
+    }
+
+    @Test
+    void testExistsByEmailQueriesOnlyPossibleHits() {
+        when(userExistenceFilter.mightContainEmail("new@example.com")).thenReturn(false);
+        when(userExistenceFilter.mightContainEmail("John.Doe@example.com")).thenReturn(true);
+        when(userRepository.existsByEmailIgnoreCase("John.Doe@example.com")).thenReturn(true);
+
+        assertFalse(userService.exists(null, "new@example.com"));
+        assertTrue(userService.exists(null, "John.Doe@example.com"));
+        verify(userRepository).existsByEmailIgnoreCase(anyString());
+    }
+
+    @Test
+    void testDiffImportWritesOnlyNewAndChangedRows() {
+        ReflectionTestUtils.setField(userService, "importBatchSize", 1000);
+        String csv = "id,firstname,lastname,email,profession,dateCreated,country,city\n"
+                + "1,John,Doe,john.doe@example.com,Developer,2023-01-01,USA,New York\n"
+                + "2,Jane,Doe,jane.doe@example.com,Doctor,2023-01-02,USA,Boston\n"
+                + "3,Jim,Doe,jim.doe@example.com,Worker,2023-01-03,USA,Austin\n";
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8));
+
+        when(userExistenceFilter.mightContainIdBeforeWrite(anyLong())).thenAnswer(invocation -> (long) invocation.getArgument(0) != 3L);
+        when(userBulkRepository.findFingerprints(Set.of(1L, 2L))).thenReturn(Map.of(1L, FingerprintUtil.of(user), 2L, 0L));
+
+        ImportResult result = userService.saveUsersFromCsv(file, ImportMode.DIFF);
+        assertEquals(3, result.getProcessed());
+        assertEquals(1L, result.getInserted());
+        assertEquals(1L, result.getUpdated());
+        assertEquals(1L, result.getUnchanged());
+        verify(userBulkRepository).upsert(argThat(users -> users.size() == 2
+                && users.get(0).getId() == 2L && users.get(1).getId() == 3L));
+        verify(userRepository, never()).save(any(Users.class));
+        verify(userExistenceFilter, times(2)).add(any(Users.class));
+    }
+
+    @Test
+    void testDiffImportReportsRepeatedIdsAndCountsEveryRow() throws Exception {
+        ReflectionTestUtils.setField(userService, "importBatchSize", 1000);
+        String csv = "id,firstname,lastname,email,profession,dateCreated,country,city\n"
+                + "1,John,Doe,john.doe@example.com,Developer,2023-01-01,USA,New York\n"
+                + "2,Jane,Doe,jane.doe@example.com,Doctor,2023-01-02,USA,Boston\n"
+                + "1,Johnny,Doe,johnny.doe@example.com,Developer,2023-01-01,USA,New York\n";
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8));
+
+        when(userExistenceFilter.mightContainIdBeforeWrite(anyLong())).thenReturn(true);
+        when(userBulkRepository.findFingerprints(Set.of(1L, 2L))).thenReturn(Map.of(2L, 0L));
+
+        ImportResult result = userService.saveUsersFromCsv(file, ImportMode.DIFF);
+        assertEquals(2, result.getProcessed());
+        assertEquals(1, result.getRejected());
+        assertEquals(result.getProcessed(), result.getInserted() + result.getUpdated() + result.getUnchanged());
+        verify(userBulkRepository).upsert(argThat(users -> users.size() == 2 && users.get(0).getFirstname().equals("John")));
+
+        List<String> report = Files.readAllLines(importReportService.find(result.getErrorReportId()));
+        assertEquals(List.of("record,id,field,value,message", "3,1,id,1,\"Duplicate id, the first row with this id is imported\""), report);
+    }
+
+    @Test
+    void testImportRejectsASuppliedIdThatWasGeneratedForAnEarlierRow() throws Exception {
+        ReflectionTestUtils.setField(userService, "importBatchSize", 1000);
+        String csv = "id,firstname,lastname,email,profession,dateCreated,country,city\n"
+                + ",John,Doe,john.doe@example.com,Developer,2023-01-01,USA,New York\n"
+                + "5001,Jane,Doe,jane.doe@example.com,Doctor,2023-01-02,USA,Boston\n";
+        when(userIdAllocator.next()).thenReturn(5001L);
+
+        for (ImportMode mode : ImportMode.values()) {
+            MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8));
+
+            ImportResult result = userService.saveUsersFromCsv(file, mode);
+
+            assertEquals(1, result.getProcessed());
+            assertEquals(1, result.getRejected());
+            List<String> report = Files.readAllLines(importReportService.find(result.getErrorReportId()));
+            assertEquals(List.of("record,id,field,value,message",
+                    "2,5001,id,5001,\"Duplicate id, it was generated for an earlier row without an id\""), report);
+        }
+        verify(userBulkRepository).upsert(argThat(users -> users.size() == 1 && users.get(0).getFirstname().equals("John")));
+        verify(userRepository).save(argThat(user -> user.getFirstname().equals("John")));
+        verify(userIdAllocator, never()).reserveThrough(5001L);
+    }
+
+    @Test
+    void testImportRejectsASuppliedIdTooLargeToReserve() throws Exception {
+        ReflectionTestUtils.setField(userService, "importBatchSize", 1000);
+        String csv = "id,firstname,lastname,email,profession,dateCreated,country,city\n"
+                + "9223372036854775807,John,Doe,john.doe@example.com,Developer,2023-01-01,USA,New York\n"
+                + "5001,Jane,Doe,jane.doe@example.com,Doctor,2023-01-02,USA,Boston\n";
+        doThrow(new CustomException("Invalid id", "Id must not be above 9223372036854774807", HttpStatus.BAD_REQUEST))
+                .when(userIdAllocator).reserveThrough(Long.MAX_VALUE);
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8));
+
+        ImportResult result = userService.saveUsersFromCsv(file, ImportMode.DIFF);
+
+        assertEquals(1, result.getProcessed());
+        assertEquals(1, result.getRejected());
+        List<String> report = Files.readAllLines(importReportService.find(result.getErrorReportId()));
+        assertEquals(List.of("record,id,field,value,message",
+                "1,9223372036854775807,id,9223372036854775807,Id must not be above 9223372036854774807"), report);
+        verify(userBulkRepository).upsert(argThat(users -> users.size() == 1 && users.get(0).getFirstname().equals("Jane")));
+    }
+
+    @Test
+    void testMergeImportClearsThePersistenceContextEveryBatch() {
+        ReflectionTestUtils.setField(userService, "importBatchSize", 2);
+        String csv = "id,firstname,lastname,email,profession,dateCreated,country,city\n"
+                + "1,John,Doe,john.doe@example.com,Developer,2023-01-01,USA,New York\n"
+                + "2,Jane,Doe,jane.doe@example.com,Doctor,2023-01-02,USA,Boston\n"
+                + "3,Jim,Doe,jim.doe@example.com,Worker,2023-01-03,USA,Austin\n"
+                + "4,Joe,Doe,joe.doe@example.com,Worker,2023-01-04,USA,Austin\n"
+                + "5,Jen,Doe,jen.doe@example.com,Worker,2023-01-05,USA,Austin\n";
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8));
+
+        ImportResult result = userService.saveUsersFromCsv(file, ImportMode.MERGE);
+
+        assertEquals(5, result.getProcessed());
+        InOrder inOrder = inOrder(userRepository, entityManager);
+        inOrder.verify(userRepository, times(2)).save(any(Users.class));
+        inOrder.verify(entityManager).flush();
+        inOrder.verify(entityManager).clear();
+        inOrder.verify(userRepository, times(2)).save(any(Users.class));
+        inOrder.verify(entityManager).flush();
+        inOrder.verify(entityManager).clear();
+        inOrder.verify(userRepository).save(any(Users.class));
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    void testImportSavesValidRowsAndReportsInvalidOnes() throws Exception {
+        String csv = "id,firstname,lastname,email,profession,dateCreated,country,city\n"
+                + "1,John,Doe,john.doe@example.com,Developer,2023-01-01,USA,New York\n"
+                + "2,Jane,Doe,jane.doe@example.com,Doctor,2023-13-02,USA,Boston\n"
+                + "3,Jim,Doe,jim.doe@example.com,Worker,2023-01-03,USA,Austin\n";
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8));
+
+        ImportResult result = userService.saveUsersFromCsv(file, ImportMode.MERGE);
+        assertEquals(2, result.getProcessed());
+        assertEquals(1, result.getRejected());
+        verify(userRepository, times(2)).save(any(Users.class));
+
+        List<String> report = Files.readAllLines(importReportService.find(result.getErrorReportId()));
+        assertEquals(List.of("record,id,field,value,message", "2,2,dateCreated,2023-13-02,Not a valid yyyy-MM-dd date"), report);
+    }
+
+    private static UserRepository.ChangeWatermark watermark(Timestamp oldestWrite, Timestamp now) {
+        Instant oldestWriteInstant = oldestWrite == null ? null : oldestWrite.toInstant();
+        return new UserRepository.ChangeWatermark() {
+            @Override
+            public Instant getOldestWrite() {
+                return oldestWriteInstant;
+            }
+
+            @Override
+            public Instant getNow() {
+                return now.toInstant();
+            }
+        };
     }
 }
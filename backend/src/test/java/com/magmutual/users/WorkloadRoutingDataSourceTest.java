@@ -0,0 +1,96 @@
+package com.magmutual.users;
+
+import com.magmutual.users.config.WorkloadRoutingDataSource;
+import com.magmutual.users.constants.Workload;
+import com.magmutual.users.model.ConnectionPoolStats;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class WorkloadRoutingDataSourceTest {
+
+    private HikariDataSource interactive;
+    private HikariDataSource bulk;
+    private Connection interactiveConnection;
+    private Connection bulkConnection;
+    private WorkloadRoutingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        interactive = mock(HikariDataSource.class);
+        bulk = mock(HikariDataSource.class);
+        interactiveConnection = mock(Connection.class);
+        bulkConnection = mock(Connection.class);
+        when(interactive.getConnection()).thenReturn(interactiveConnection);
+        when(bulk.getConnection()).thenReturn(bulkConnection);
+        dataSource = new WorkloadRoutingDataSource(Map.of(Workload.INTERACTIVE, interactive, Workload.BULK, bulk));
+        dataSource.afterPropertiesSet();
+    }
+
+    @Test
+    void testConnectionsComeFromTheInteractivePoolByDefault() throws SQLException {
+        assertSame(interactiveConnection, dataSource.getConnection());
+        assertEquals(Workload.INTERACTIVE, WorkloadRoutingDataSource.currentWorkload());
+        verifyNoInteractions(bulk);
+    }
+
+    @Test
+    void testBulkWorkTakesConnectionsFromTheBulkPool() throws SQLException {
+        Connection connection = WorkloadRoutingDataSource.callBulk(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertSame(bulkConnection, connection);
+        assertSame(interactiveConnection, dataSource.getConnection());
+    }
+
+    @Test
+    void testWorkloadIsRestoredWhenBulkWorkFails() {
+        assertThrows(IllegalStateException.class, () -> WorkloadRoutingDataSource.runBulk(() -> {
+            WorkloadRoutingDataSource.runBulk(() -> assertEquals(Workload.BULK, WorkloadRoutingDataSource.currentWorkload()));
+            assertEquals(Workload.BULK, WorkloadRoutingDataSource.currentWorkload());
+            throw new IllegalStateException("failed");
+        }));
+
+        assertEquals(Workload.INTERACTIVE, WorkloadRoutingDataSource.currentWorkload());
+    }
+
+    @Test
+    void testStatsReportEveryPool() {
+        HikariPoolMXBean poolBean = mock(HikariPoolMXBean.class);
+        when(poolBean.getActiveConnections()).thenReturn(3);
+        when(poolBean.getThreadsAwaitingConnection()).thenReturn(2);
+        when(bulk.getHikariPoolMXBean()).thenReturn(poolBean);
+        when(bulk.getPoolName()).thenReturn("bulk");
+        when(bulk.getMaximumPoolSize()).thenReturn(3);
+        when(interactive.getPoolName()).thenReturn("interactive");
+
+        List<ConnectionPoolStats> stats = dataSource.getStats();
+
+        assertEquals(List.of("interactive", "bulk"), stats.stream().map(ConnectionPoolStats::getName).toList());
+        assertEquals(0, stats.get(0).getActive());
+        assertEquals(3, stats.get(1).getActive());
+        assertEquals(2, stats.get(1).getWaiting());
+        assertEquals(3, stats.get(1).getMaximumPoolSize());
+    }
+
+    @Test
+    void testRoutingDataSourceIsFoundBehindTheApplicationDataSource() {
+        assertSame(dataSource, WorkloadRoutingDataSource.from(dataSource));
+        assertSame(bulk, WorkloadRoutingDataSource.from(dataSource).getPool(Workload.BULK));
+        assertNull(WorkloadRoutingDataSource.from(new HikariDataSource()));
+    }
+}
@@ -0,0 +1,68 @@
+package com.magmutual.users.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.magmutual.users.EmbeddedPostgresSupport;
+import com.magmutual.users.constants.ApplicationConstants;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots the backend against a disposable Postgres and drives it with a weighted mix of list, filter,
+ * detail, create, update, delete and upload requests at a fixed arrival rate. Writes per-endpoint
+ * throughput and p50/p95/p99 latencies to a JSON report.
+ *
+ * <p>Run with {@code mvn test -Pload-test}. Tune with {@code -Dloadtest.rate}, {@code -Dloadtest.duration-seconds},
+ * {@code -Dloadtest.mix}, {@code -Dloadtest.max-in-flight} and {@code -Dloadtest.report}; point
+ * {@code -Dtest.jdbc-url} at an existing database to skip the embedded one.
+ */
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "jwt.expiration=86400")
+class ApiLoadTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${app.admin.password}")
+    private String adminPassword;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+    }
+
+    @Test
+    void runTrafficMix() throws Exception {
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "100"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(System.getProperty("loadtest.duration-seconds", "30")));
+        TrafficMix mix = TrafficMix.parse(System.getProperty("loadtest.mix", TrafficMix.DEFAULT));
+        int maxInFlight = Integer.parseInt(System.getProperty("loadtest.max-in-flight", "512"));
+        Path report = Path.of(System.getProperty("loadtest.report", "target/load-test-report.json"));
+
+        LoadGenerator generator = new LoadGenerator("http://localhost:" + port, maxInFlight);
+        generator.login(ApplicationConstants.ADMIN_ROLE, adminPassword);
+        generator.seed(new ClassPathResource("UserInformation[3][3].csv").getContentAsByteArray());
+
+        Map<String, Object> result = generator.run(mix, rate, duration);
+
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        String json = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(result);
+        Files.writeString(report, json);
+
+        assertTrue(((Number) result.get("completedRequests")).longValue() > 0, "No requests completed");
+        assertEquals(0, ((Number) result.get("unfinishedRequests")).intValue(), "Requests were still in flight after the drain timeout");
+    }
+}
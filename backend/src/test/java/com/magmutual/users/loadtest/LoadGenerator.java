@@ -0,0 +1,259 @@
+package com.magmutual.users.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.magmutual.users.loadtest.TrafficMix.Operation;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model HTTP load generator: requests are scheduled at a fixed arrival rate regardless of how fast
+ * earlier ones complete, and latency is measured from the scheduled send time so a stalled server is not
+ * hidden by the client slowing down. Requests are sent asynchronously, so thousands of concurrent clients
+ * share a handful of threads; {@code maxInFlight} caps them and requests beyond the cap are counted as dropped.
+ * Requests still in flight when the drain timeout after the run passes are reported as unfinished.
+ */
+public class LoadGenerator {
+
+    private static final String[] PROFESSIONS = {"developer", "doctor", "engineer", "worker", "firefighter", "police officer"};
+    private static final String CSV_HEADER = "id,firstname,lastname,email,profession,dateCreated,country,city\n";
+    private static final String BOUNDARY = "----loadtest-boundary";
+    private static final int UPLOAD_ROWS = 100;
+    private static final long DRAIN_TIMEOUT_SECONDS = 60;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client;
+    private final String baseUrl;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong nextUserId = new AtomicLong(10_000_000L);
+    private final Queue<Long> createdIds = new ConcurrentLinkedQueue<>();
+    /**
+     * Double-submit CSRF token sent as both cookie and header. Tracking the server-issued cookie instead
+     * would race, since the server reissues it on every response.
+     */
+    private final String csrfToken = UUID.randomUUID().toString();
+
+    private String token;
+    private long seedMinId;
+    private long seedMaxId;
+
+    public LoadGenerator(String baseUrl, int maxInFlight) {
+        this.baseUrl = baseUrl;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new LatencyRecorder());
+        }
+    }
+
+    /**
+     * Logs in and keeps the access token for subsequent requests.
+     *
+     * @param username the username
+     * @param password the password
+     */
+    public void login(String username, String password) throws IOException, InterruptedException {
+        String credentials = objectMapper.writeValueAsString(Map.of("username", username, "password", password));
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/authenticate"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed with status " + response.statusCode() + ": " + response.body());
+        }
+        token = objectMapper.readTree(response.body()).get("token").asText();
+
+    }
+
+    /**
+     * Uploads the seed data set and records the id range that read and update requests target.
+     *
+     * @param csv the seed CSV content
+     */
+    public void seed(byte[] csv) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(mutating("/api/users/upload?mode=diff")
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(csv)))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Seeding failed with status " + response.statusCode() + ": " + response.body());
+        }
+        seedMinId = Long.MAX_VALUE;
+        seedMaxId = Long.MIN_VALUE;
+        String[] lines = new String(csv, StandardCharsets.UTF_8).split("\n");
+        for (int i = 1; i < lines.length; i++) {
+            if (!lines[i].isBlank()) {
+                long id = Long.parseLong(lines[i].substring(0, lines[i].indexOf(',')).trim());
+                seedMinId = Math.min(seedMinId, id);
+                seedMaxId = Math.max(seedMaxId, id);
+            }
+        }
+    }
+
+    /**
+     * Drives the given traffic mix at a fixed arrival rate and summarizes the latencies per operation.
+     *
+     * @param mix the traffic mix
+     * @param ratePerSecond the target request rate
+     * @param duration how long to generate load
+     * @return the machine-readable summary
+     */
+    public Map<String, Object> run(TrafficMix mix, double ratePerSecond, Duration duration) throws InterruptedException {
+        long intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = mix.next();
+            if (!inFlight.tryAcquire()) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            send(operation, intended);
+        }
+        boolean drained = inFlight.tryAcquire(maxInFlight, DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        int unfinished = drained ? 0 : maxInFlight - inFlight.availablePermits();
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        if (drained) {
+            inFlight.release(maxInFlight);
+        }
+
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        long total = 0;
+        for (Operation operation : mix.getWeights().keySet()) {
+            Map<String, Object> summary = recorders.get(operation).summarize(elapsedSeconds);
+            total += ((Number) summary.get("requests")).longValue();
+            endpoints.put(operation.name().toLowerCase(), summary);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("targetRatePerSecond", ratePerSecond);
+        result.put("durationSeconds", duration.toSeconds());
+        result.put("mix", mix.getWeights());
+        result.put("maxInFlight", maxInFlight);
+        result.put("completedRequests", total);
+        result.put("droppedRequests", dropped.get());
+        result.put("unfinishedRequests", unfinished);
+        result.put("achievedRatePerSecond", Math.round(total / elapsedSeconds * 100.0) / 100.0);
+        result.put("endpoints", endpoints);
+        return result;
+    }
+
+    private void send(Operation operation, long intendedNanos) {
+        Long createdId = operation == Operation.CREATE ? nextUserId.incrementAndGet() : null;
+        HttpRequest request = buildRequest(operation, createdId);
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            boolean success = error == null && response.statusCode() < 400;
+            recorders.get(operation).record(System.nanoTime() - intendedNanos, success);
+            if (success && createdId != null) {
+                createdIds.add(createdId);
+            }
+            inFlight.release();
+        });
+    }
+
+    private HttpRequest buildRequest(Operation operation, Long createdId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case LIST:
+                return authorized("/api/users?offset=" + random.nextInt(0, 1000) + "&limit=10").GET().build();
+            case FILTER:
+                return authorized("/api/users?startDate=2020-01-01&endDate=2021-12-31&profession="
+                        + PROFESSIONS[random.nextInt(PROFESSIONS.length)].replace(" ", "%20")).GET().build();
+            case DETAIL:
+                return authorized("/api/users/" + randomSeedId()).GET().build();
+            case CREATE:
+                return mutating("/api/users")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(userJson(createdId)))
+                        .build();
+            case UPDATE:
+                long id = randomSeedId();
+                return mutating("/api/users/" + id)
+                        .header("Content-Type", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofString(userJson(id)))
+                        .build();
+            case DELETE:
+                Long deleteId = createdIds.poll();
+                return mutating("/api/users/" + (deleteId != null ? deleteId : nextUserId.incrementAndGet())).DELETE().build();
+            case UPLOAD:
+                return mutating("/api/users/upload?mode=diff")
+                        .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(multipartCsv(nextUserId.getAndAdd(UPLOAD_ROWS) + 1, UPLOAD_ROWS)))
+                        .build();
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    private long randomSeedId() {
+        return ThreadLocalRandom.current().nextLong(seedMinId, seedMaxId + 1);
+    }
+
+    private HttpRequest.Builder authorized(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private HttpRequest.Builder mutating(String path) {
+        return authorized(path)
+                .header("Cookie", "XSRF-TOKEN=" + csrfToken)
+                .header("X-XSRF-TOKEN", csrfToken);
+    }
+
+    private static String userJson(long id) {
+        int suffix = ThreadLocalRandom.current().nextInt(1_000_000);
+        return "{\"id\":" + id + ",\"firstname\":\"Load" + suffix + "\",\"lastname\":\"Test\",\"email\":\"load" + suffix
+                + "@example.com\",\"profession\":\"developer\",\"dateCreated\":\"2021-06-01\",\"country\":\"USA\",\"city\":\"Atlanta\"}";
+    }
+
+    private static byte[] multipartCsv(long firstId, int rows) {
+        StringBuilder csv = new StringBuilder(CSV_HEADER);
+        for (int i = 0; i < rows; i++) {
+            long id = firstId + i;
+            csv.append(id).append(",Bulk,User").append(i).append(",bulk").append(id).append("@example.com,worker,2021-01-01,")
+                    .append("\"Virgin Islands, British\",Road Town\n");
+        }
+        return multipart(csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] multipart(byte[] csv) {
+        byte[] head = ("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"users.csv\"\r\n"
+                + "Content-Type: text/csv\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[head.length + csv.length + tail.length];
+        System.arraycopy(head, 0, body, 0, head.length);
+        System.arraycopy(csv, 0, body, head.length, csv.length);
+        System.arraycopy(tail, 0, body, head.length + csv.length, tail.length);
+        return body;
+    }
+}
@@ -0,0 +1,170 @@
+package com.magmutual.users.loadtest;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Streams deterministic synthetic user CSVs of any size in the upload format. Names, countries and cities
+ * are drawn from the bundled sample file; professions, countries and cities follow a Zipf distribution so a
+ * few values dominate as in real data, and {@code dateCreated} grows with the id with some jitter, spread
+ * over {@link #FIRST_DATE} to {@link #LAST_DATE}. The same seed always produces the same bytes.
+ *
+ * <p>Run standalone to write a file: {@code SyntheticUserGenerator <rows> <output.csv> [seed]}.
+ */
+public class SyntheticUserGenerator {
+
+    public static final LocalDate FIRST_DATE = LocalDate.of(2015, 1, 1);
+    public static final LocalDate LAST_DATE = LocalDate.of(2024, 12, 31);
+
+    private static final String SAMPLE_RESOURCE = "/UserInformation[3][3].csv";
+    private static final String[] HEADER = {"id", "firstname", "lastname", "email", "profession", "dateCreated", "country", "city"};
+    private static final List<String> PROFESSIONS = List.of("police officer", "firefighter", "worker", "doctor", "developer",
+            "engineer", "nurse", "teacher", "accountant", "lawyer", "pharmacist", "architect");
+    private static final int DATE_JITTER_DAYS = 15;
+
+    private final long seed;
+    private final List<String> firstnames;
+    private final List<String> lastnames;
+    private final List<String> countries;
+    private final List<String> cities;
+
+    public SyntheticUserGenerator(long seed) {
+        this.seed = seed;
+        List<List<String>> columns = readSampleColumns();
+        this.firstnames = columns.get(0);
+        this.lastnames = columns.get(1);
+        this.countries = shuffled(columns.get(2), seed);
+        this.cities = shuffled(columns.get(3), seed + 1);
+    }
+
+    /**
+     * Writes the header and {@code rows} users with consecutive ids starting at {@code firstId}.
+     *
+     * @param out the destination
+     * @param firstId the id of the first row
+     * @param rows the number of rows
+     */
+    public void write(Appendable out, long firstId, long rows) throws IOException {
+        Random random = new Random(seed);
+        Zipf professionRank = new Zipf(PROFESSIONS.size(), 1.0);
+        Zipf countryRank = new Zipf(countries.size(), 1.1);
+        Zipf cityRank = new Zipf(cities.size(), 1.1);
+        long spanDays = LAST_DATE.toEpochDay() - FIRST_DATE.toEpochDay();
+
+        CSVPrinter printer = new CSVPrinter(out, CSVFormat.DEFAULT.builder().setHeader(HEADER).setRecordSeparator('\n').build());
+        for (long i = 0; i < rows; i++) {
+            long id = firstId + i;
+            String firstname = firstnames.get(random.nextInt(firstnames.size()));
+            String lastname = lastnames.get(random.nextInt(lastnames.size()));
+            long day = spanDays * i / Math.max(rows, 1) + random.nextInt(2 * DATE_JITTER_DAYS + 1) - DATE_JITTER_DAYS;
+            LocalDate dateCreated = FIRST_DATE.plusDays(Math.max(0, Math.min(spanDays, day)));
+            printer.printRecord(id, firstname, lastname, firstname + "." + lastname + id + "@example.com",
+                    PROFESSIONS.get(professionRank.sample(random)), dateCreated,
+                    countries.get(countryRank.sample(random)), cities.get(cityRank.sample(random)));
+        }
+        printer.flush();
+    }
+
+    /**
+     * Writes a synthetic CSV file.
+     *
+     * @param path the output file
+     * @param rows the number of rows
+     */
+    public void writeFile(Path path, long rows) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(writer, 1, rows);
+        }
+    }
+
+    /**
+     * The professions in rank order, most frequent first.
+     */
+    public static List<String> professions() {
+        return PROFESSIONS;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticUserGenerator <rows> <output.csv> [seed]");
+            System.exit(1);
+        }
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+        new SyntheticUserGenerator(seed).writeFile(Path.of(args[1]), Long.parseLong(args[0]));
+    }
+
+    private static List<List<String>> readSampleColumns() {
+        List<TreeSet<String>> values = List.of(new TreeSet<>(), new TreeSet<>(), new TreeSet<>(), new TreeSet<>());
+        String[] names = {"firstname", "lastname", "country", "city"};
+        try (Reader reader = new InputStreamReader(SyntheticUserGenerator.class.getResourceAsStream(SAMPLE_RESOURCE), StandardCharsets.UTF_8);
+             CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).setTrim(true).build())) {
+            for (CSVRecord record : parser) {
+                for (int i = 0; i < names.length; i++) {
+                    values.get(i).add(record.get(names[i]));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read " + SAMPLE_RESOURCE, e);
+        }
+        List<List<String>> columns = new ArrayList<>();
+        values.forEach(set -> columns.add(new ArrayList<>(set)));
+        return columns;
+    }
+
+    private static List<String> shuffled(List<String> values, long seed) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.shuffle(copy, new Random(seed));
+        return copy;
+    }
+
+    /**
+     * Samples ranks {@code 0..n-1} with probability proportional to {@code 1 / (rank + 1)^exponent}.
+     */
+    static final class Zipf {
+
+        private final double[] cumulative;
+
+        Zipf(int n, double exponent) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int rank = 0; rank < n; rank++) {
+                total += 1.0 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = total;
+            }
+            for (int rank = 0; rank < n; rank++) {
+                cumulative[rank] /= total;
+            }
+        }
+
+        int sample(Random random) {
+            double u = random.nextDouble();
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < u) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
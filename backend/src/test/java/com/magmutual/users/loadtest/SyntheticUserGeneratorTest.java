@@ -0,0 +1,58 @@
+package com.magmutual.users.loadtest;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyntheticUserGeneratorTest {
+
+    @Test
+    void sameSeedProducesSameOutput() throws Exception {
+        assertEquals(generate(7, 500), generate(7, 500));
+        assertFalse(generate(7, 500).equals(generate(8, 500)));
+    }
+
+    @Test
+    void outputParsesWithTheUploadFormatAndIsSkewed() throws Exception {
+        int rows = 20_000;
+        List<CSVRecord> records;
+        try (CSVParser parser = new CSVParser(new StringReader(generate(42, rows)),
+                CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).setIgnoreHeaderCase(true).setTrim(true).build())) {
+            records = parser.getRecords();
+        }
+
+        assertEquals(rows, records.size());
+        assertEquals("1", records.get(0).get("id"));
+        assertEquals(String.valueOf(rows), records.get(rows - 1).get("id"));
+        assertTrue(records.stream().anyMatch(record -> record.get("country").contains(",")), "Expected quoted countries");
+
+        Map<String, Integer> professions = new HashMap<>();
+        for (CSVRecord record : records) {
+            professions.merge(record.get("profession"), 1, Integer::sum);
+            LocalDate dateCreated = LocalDate.parse(record.get("dateCreated"));
+            assertFalse(dateCreated.isBefore(SyntheticUserGenerator.FIRST_DATE) || dateCreated.isAfter(SyntheticUserGenerator.LAST_DATE));
+        }
+        List<String> ranked = SyntheticUserGenerator.professions();
+        int most = professions.get(ranked.get(0));
+        int least = professions.get(ranked.get(ranked.size() - 1));
+        assertTrue(most > 5 * least, "Expected a Zipfian skew but got " + professions);
+        assertTrue(LocalDate.parse(records.get(0).get("dateCreated")).isBefore(LocalDate.parse(records.get(rows - 1).get("dateCreated"))));
+    }
+
+    private static String generate(long seed, int rows) throws Exception {
+        StringBuilder out = new StringBuilder();
+        new SyntheticUserGenerator(seed).write(out, 1, rows);
+        return out.toString();
+    }
+}
@@ -0,0 +1,157 @@
+package com.magmutual.users.loadtest;
+
+import com.magmutual.users.EmbeddedPostgresSupport;
+import com.magmutual.users.service.UserPartitionService;
+import com.magmutual.users.service.UserService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Loads a large synthetic data set and checks {@link UserService#getUsers} against latency budgets for
+ * filters, sorting and deep pages. Each query is warmed up, then the median of several runs is compared
+ * to its budget. Budgets are about twice the medians measured on a single-core machine; every page also
+ * runs an exact count, which dominates the unfiltered and broad queries. Queries with a date range only
+ * scan the partitions of the years they cover, so their budgets do not grow with the table.
+ *
+ * <p>Run with {@code mvn test -Pscale-test}. {@code -Dscale.rows} sets the data set size (default 1,000,000)
+ * and {@code -Dscale.budget-factor} scales all budgets for slower machines. Rows are only ever added, so
+ * pointing {@code -Dtest.jdbc-url} at an existing database reuses a previous load.
+ */
+@Tag("scale")
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UserQueryScaleTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserQueryScaleTest.class);
+    private static final long ROWS = Long.getLong("scale.rows", 1_000_000L);
+    private static final double BUDGET_FACTOR = Double.parseDouble(System.getProperty("scale.budget-factor", "1.0"));
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 9;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserPartitionService userPartitionService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+    }
+
+    @BeforeAll
+    void loadUsers() throws Exception {
+        long existing = jdbcTemplate.queryForObject("select count(*) from users", Long.class);
+        if (existing >= ROWS) {
+            logger.info("Reusing {} existing users", existing);
+            return;
+        }
+        long firstId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) + 1 from users", Long.class);
+        Path csv = Files.createTempFile("synthetic-users", ".csv");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+                new SyntheticUserGenerator(42L).write(writer, firstId, ROWS - existing);
+            }
+            for (int year = SyntheticUserGenerator.FIRST_DATE.getYear(); year <= SyntheticUserGenerator.LAST_DATE.getYear(); year++) {
+                userPartitionService.ensurePartitionFor(Date.valueOf(year + "-01-01"));
+            }
+            long start = System.nanoTime();
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+                 Reader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+                statement.execute("CREATE TEMPORARY TABLE users_staging (id bigint, firstname varchar, lastname varchar, email varchar, "
+                        + "profession varchar, datecreated timestamp, country varchar, city varchar)");
+                connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                        "COPY users_staging FROM STDIN WITH (FORMAT csv, HEADER true)", reader);
+                for (String column : List.of("profession", "country", "city")) {
+                    statement.execute("INSERT INTO user_dictionary (field, value) SELECT DISTINCT upper('" + column + "'), " + column
+                            + " FROM users_staging ON CONFLICT (field, value) DO NOTHING");
+                }
+                statement.execute("INSERT INTO users (id, firstname, lastname, email, profession_id, datecreated, country_id, city_id) "
+                        + "SELECT s.id, s.firstname, s.lastname, s.email, p.id, s.datecreated, c.id, t.id FROM users_staging s "
+                        + "JOIN user_dictionary p ON p.field = 'PROFESSION' AND p.value = s.profession "
+                        + "JOIN user_dictionary c ON c.field = 'COUNTRY' AND c.value = s.country "
+                        + "JOIN user_dictionary t ON t.field = 'CITY' AND t.value = s.city");
+                statement.execute("DROP TABLE users_staging");
+            }
+            jdbcTemplate.update("update users set lastmodified = now() where lastmodified is null");
+            jdbcTemplate.execute("vacuum analyze users");
+            logger.info("Loaded {} users in {} ms", ROWS - existing, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    static Stream<Arguments> queries() {
+        Date from = Date.valueOf("2019-01-01");
+        Date to = Date.valueOf("2019-12-31");
+        String common = SyntheticUserGenerator.professions().get(0);
+        String rare = SyntheticUserGenerator.professions().get(SyntheticUserGenerator.professions().size() - 1);
+        int deepOffset = (int) (ROWS - 20);
+        return Stream.of(
+                query("first page", 800, 0, "id", "asc", null, null, null),
+                query("date range", 200, 0, "id", "asc", from, to, null),
+                query("common profession", 1000, 0, "id", "asc", null, null, common),
+                query("rare profession", 150, 0, "id", "asc", null, null, rare),
+                query("date range and profession", 150, 0, "id", "asc", from, to, rare),
+                query("sort by lastname", 1500, 0, "lastname", "desc", null, null, null),
+                query("sort by country within profession", 1300, 0, "country", "asc", null, null, common),
+                query("deep page", 1200, deepOffset, "id", "asc", null, null, null),
+                query("deep page within date range", 150, 20_000, "dateCreated", "desc", from, to, null));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("queries")
+    void staysWithinBudget(String name, long budgetMs, int offset, String sortBy, String sortDirection, Date startDate, Date endDate, String profession) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            userService.getUsers(offset, 10, sortBy, sortDirection, startDate, endDate, profession);
+        }
+        long[] millis = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            userService.getUsers(offset, 10, sortBy, sortDirection, startDate, endDate, profession);
+            millis[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(millis);
+        long median = millis[MEASURED_RUNS / 2];
+        long budget = Math.round(budgetMs * BUDGET_FACTOR);
+        logger.info("{}: median {} ms, max {} ms, budget {} ms", name, median, millis[MEASURED_RUNS - 1], budget);
+        assertTrue(median <= budget, name + " took " + median + " ms, budget is " + budget + " ms");
+    }
+
+    private static Arguments query(String name, long budgetMs, int offset, String sortBy, String sortDirection, Date startDate, Date endDate, String profession) {
+        return Arguments.of(name, budgetMs, offset, sortBy, sortDirection, startDate, endDate, profession);
+    }
+}
@@ -19,14 +19,48 @@ instance.interceptors.request.use((config) => {
     return Promise.reject(error);
 });
 
+// Single in-flight refresh shared by every request that hits an expired access token,
+// including the user event stream which cannot go through this instance
+let refreshPromise = null;
+
+export const refreshAccessToken = () => {
+    if (!refreshPromise) {
+        const refreshToken = localStorage.getItem('refreshToken');
+        refreshPromise = axios.post(`${apiUrl}/api/auth/refresh`, { refreshToken }, { withCredentials: true })
+            .then((response) => {
+                localStorage.setItem('token', response.data.token);
+                localStorage.setItem('refreshToken', response.data.refreshToken);
+                window.dispatchEvent(new CustomEvent('auth:token-refreshed', { detail: response.data }));
+                return response.data.token;
+            })
+            .catch((error) => {
+                window.dispatchEvent(new CustomEvent('auth:logout'));
+                return Promise.reject(error);
+            })
+            .finally(() => {
+                refreshPromise = null;
+            });
+    }
+    return refreshPromise;
+};
+
 // Add a response interceptor to update the CSRF token in cookies after each response
+// and to transparently refresh an expired access token once before giving up
 instance.interceptors.response.use((response) => {
     const csrfToken = response.headers['x-xsrf-token'];
     if (csrfToken) {
         document.cookie = `XSRF-TOKEN=${csrfToken}; path=/;`;
     }
     return response;
-}, (error) => {
+}, async (error) => {
+    const config = error.config;
+    const isAuthCall = config?.url?.includes('/api/auth/');
+    if (error.response?.status === 401 && config && !config._retry && !isAuthCall && localStorage.getItem('refreshToken')) {
+        config._retry = true;
+        const token = await refreshAccessToken();
+        config.headers['Authorization'] = `Bearer ${token}`;
+        return instance(config);
+    }
     return Promise.reject(error);
 });
 
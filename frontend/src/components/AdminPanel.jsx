@@ -2,18 +2,55 @@ import React, { useContext, useState } from 'react';
 import axiosInstance from '../axios/axiosInstance';
 import { AuthContext } from '../context/AuthContext';
 import { useNavigate } from 'react-router-dom';
-import { Container, Box, Typography, Button, TextField, Dialog, DialogActions, DialogContent, DialogContentText, DialogTitle, Alert } from '@mui/material';
+import { Container, Box, Typography, Button, TextField, Dialog, DialogActions, DialogContent, DialogContentText, DialogTitle, Alert, LinearProgress } from '@mui/material';
 import { getCsrfToken } from '../utils/csrf';
+import { uploadInChunks } from '../utils/chunkedUpload';
+
+// Files above this size go through the resumable chunked upload instead of a single multipart request
+const CHUNKED_UPLOAD_THRESHOLD = 16 * 1024 * 1024;
+
 const AdminPanel = () => {
     const { auth } = useContext(AuthContext);
     const [file, setFile] = useState(null);
     const [open, setOpen] = useState(false);
     const [error, setError] = useState('');
+    const [progress, setProgress] = useState(null);
+    const [importResult, setImportResult] = useState(null);
     const navigate = useNavigate();
 
     const handleFileChange = (e) => {
         setFile(e.target.files[0]);
         setError(''); // Clear previous error message
+        setImportResult(null);
+    };
+
+    // Rejected rows do not fail the import; stay on the page so their report can be downloaded
+    const handleImported = (result) => {
+        if (result.rejected > 0) {
+            setImportResult(result);
+            return;
+        }
+        alert('File uploaded successfully.');
+        navigate('/home');
+    };
+
+    const handleDownloadReport = async () => {
+        try {
+            const apiUrl = import.meta.env.VITE_APP_API_URL;
+            const response = await axiosInstance.get(`${apiUrl}/api/users/import-reports/${importResult.errorReportId}`, {
+                headers: { Authorization: `Bearer ${auth.token}` },
+                responseType: 'blob',
+            });
+            const url = URL.createObjectURL(response.data);
+            const link = document.createElement('a');
+            link.href = url;
+            link.download = `import-errors-${importResult.errorReportId}.csv`;
+            link.click();
+            URL.revokeObjectURL(url);
+        } catch (error) {
+            console.error('Report download failed:', error);
+            setError('The error report could not be downloaded.');
+        }
     };
 
     const handleClickOpen = () => {
@@ -24,7 +61,24 @@ const AdminPanel = () => {
         setOpen(false);
     };
 
+    const handleChunkedUpload = async () => {
+        setOpen(false);
+        setProgress(0);
+        try {
+            const apiUrl = import.meta.env.VITE_APP_API_URL;
+            handleImported(await uploadInChunks(apiUrl, auth.token, file, { onProgress: setProgress }));
+        } catch (error) {
+            console.error('File upload failed:', error);
+            setError('File upload failed. Uploading the same file again resumes where it stopped.');
+        }
+        setProgress(null);
+    };
+
     const handleUpload = async () => {
+        if (file && file.size > CHUNKED_UPLOAD_THRESHOLD) {
+            await handleChunkedUpload();
+            return;
+        }
         const formData = new FormData();
         formData.append('file', file);
 
@@ -39,8 +93,7 @@ const AdminPanel = () => {
                 },
             });
             if (response.status === 200) {
-                alert('File uploaded successfully.');
-                navigate('/home');
+                handleImported(response.data);
             }
         } catch (error) {
             console.error('File upload failed:', error);
@@ -56,10 +109,22 @@ const AdminPanel = () => {
                     Admin Panel
                 </Typography>
                 {error && <Alert severity="error">{error}</Alert>}
+                {importResult && (
+                    <Alert severity="warning" action={
+                        <Button color="inherit" size="small" onClick={handleDownloadReport}>Download report</Button>
+                    }>
+                        Imported {importResult.processed} rows. {importResult.rejected} invalid rows were skipped.
+                    </Alert>
+                )}
                 <Box sx={{ display: 'flex', flexDirection: 'column', alignItems: 'center', gap: 2 }}>
                     <Typography variant="h6">Upload CSV:</Typography>
                     <TextField type="file" onChange={handleFileChange} />
-                    <Button variant="contained" onClick={handleClickOpen}>Upload</Button>
+                    <Button variant="contained" onClick={handleClickOpen} disabled={progress !== null}>Upload</Button>
+                    {progress !== null && (
+                        <Box sx={{ width: 300 }}>
+                            <LinearProgress variant="determinate" value={progress * 100} />
+                        </Box>
+                    )}
                 </Box>
             </Box>
 
@@ -1,8 +1,9 @@
-import React, { useContext, useState, useEffect } from 'react';
+import React, { useContext, useState, useEffect, useRef } from 'react';
 import { Container, Box, TextField, Typography } from '@mui/material';
 import axiosInstance from '../axios/axiosInstance';
 import { AuthContext } from '../context/AuthContext';
 import UserTable from './UserTable';
+import { subscribeToUserEvents } from '../utils/userEvents';
 
 const Home = () => {
     const { auth } = useContext(AuthContext);
@@ -19,6 +20,39 @@ const Home = () => {
         }
     }, [filters, pagination.offset, pagination.limit, searchId, auth.token]);
 
+    // Keep handles on the latest fetch and rows so the long-lived event subscription never calls a stale closure
+    const refetchRef = useRef(null);
+    refetchRef.current = () => (searchId ? handleSearchById(searchId) : fetchUsers());
+    const usersRef = useRef(users);
+    usersRef.current = users;
+
+    // The stream picks up refreshed tokens itself, so it is only restarted on sign in and sign out
+    const signedIn = !!auth.token;
+    useEffect(() => {
+        if (!signedIn) return undefined;
+        return subscribeToUserEvents(apiUrl, (events) => {
+            const visibleIds = new Set(usersRef.current.map((user) => user.id));
+            const needsRefetch = events.some((event) =>
+                event.type === 'IMPORT' || event.type === 'PURGE' || event.type === 'RESYNC' || (event.type === 'UPSERT' && !visibleIds.has(event.id)));
+            if (needsRefetch) {
+                refetchRef.current();
+                return;
+            }
+            setUsers((current) => events.reduce((next, event) => (event.type === 'DELETE'
+                ? next.filter((user) => user.id !== event.id)
+                : next.map((user) => (user.id === event.id ? event.user : user))), current));
+        });
+    }, [signedIn]);
+
+    const handleUserSaved = (savedUser) => {
+        setUsers((current) => current.map((user) => (user.id === savedUser.id ? savedUser : user)));
+    };
+
+    const handleUserDeleted = (id) => {
+        setUsers((current) => current.filter((user) => user.id !== id));
+        setPagination((current) => ({ ...current, total: Math.max(current.total - 1, 0) }));
+    };
+
     const fetchUsers = async () => {
         const params = {
             offset: pagination.offset,
@@ -133,6 +167,8 @@ const Home = () => {
                     onPageChange={handlePageChange}
                     onRowsPerPageChange={handleRowsPerPageChange}
                     fetchUsers={fetchUsers}
+                    onUserSaved={handleUserSaved}
+                    onUserDeleted={handleUserDeleted}
                 />
             </Box>
         </Container>
@@ -19,7 +19,7 @@ const SignIn = () => {
             if (csrfToken) {
                 document.cookie = `XSRF-TOKEN=${csrfToken}; path=/;`;
             }
-            login(response.data.token); // Make sure this matches the response key from your backend
+            login(response.data.token, response.data.refreshToken); // Make sure this matches the response keys from your backend
             navigate('/home');
         } catch (error) {
             console.error('Login failed:', error);
@@ -7,7 +7,7 @@ import { AuthContext } from '../context/AuthContext';
 import axiosInstance from '../axios/axiosInstance';
 import './UserTable.css';
 
-const UserTable = ({ users, pagination, onPageChange, onRowsPerPageChange, fetchUsers }) => {
+const UserTable = ({ users, pagination, onPageChange, onRowsPerPageChange, fetchUsers, onUserSaved, onUserDeleted }) => {
     const { auth } = useContext(AuthContext);
     const [openAddEditDialog, setOpenAddEditDialog] = useState(false);
     const [editUser, setEditUser] = useState(null);
@@ -44,7 +44,7 @@ const UserTable = ({ users, pagination, onPageChange, onRowsPerPageChange, fetch
                         Authorization: `Bearer ${auth.token}`,
                     },
                 });
-                fetchUsers();
+                onUserDeleted(deleteUserId);
                 handleDeleteClose();
             }
             else{
@@ -77,19 +77,20 @@ const UserTable = ({ users, pagination, onPageChange, onRowsPerPageChange, fetch
 
         try {
             if (isEditMode) {
-                await axiosInstance.put(`${apiUrl}/api/users/${editUser.id}`, user, {
+                const response = await axiosInstance.put(`${apiUrl}/api/users/${editUser.id}`, user, {
                     headers: {
                         Authorization: `Bearer ${auth.token}`,
                     },
                 });
+                onUserSaved(response.data);
             } else {
                 await axiosInstance.post(`${apiUrl}/api/users`, user, {
                     headers: {
                         Authorization: `Bearer ${auth.token}`,
                     },
                 });
+                fetchUsers();
             }
-            fetchUsers();
             handleAddEditDialogClose();
         } catch (error) {
             setError(`Save failed: ${error}`);
@@ -1,5 +1,7 @@
 import React, { createContext, useState, useEffect } from 'react';
 import { jwtDecode } from 'jwt-decode';
+import axiosInstance from '../axios/axiosInstance';
+const apiUrl = import.meta.env.VITE_APP_API_URL;
 
 const AuthContext = createContext();
 
@@ -13,20 +15,50 @@ const AuthProvider = ({ children }) => {
             const roles = decodedToken.authorities || [];
             setAuth({ token, roles });
         }
+
+        const handleTokenRefreshed = (event) => {
+            const decodedToken = jwtDecode(event.detail.token);
+            setAuth({ token: event.detail.token, roles: decodedToken.authorities || [] });
+        };
+        const handleLogout = () => clearSession();
+
+        window.addEventListener('auth:token-refreshed', handleTokenRefreshed);
+        window.addEventListener('auth:logout', handleLogout);
+        return () => {
+            window.removeEventListener('auth:token-refreshed', handleTokenRefreshed);
+            window.removeEventListener('auth:logout', handleLogout);
+        };
     }, []);
 
-    const login = (jwt) => {
+    const login = (jwt, refreshToken) => {
         const decodedToken = jwtDecode(jwt);
         const roles = decodedToken.authorities || [];
         localStorage.setItem('token', jwt);
+        if (refreshToken) {
+            localStorage.setItem('refreshToken', refreshToken);
+        }
         setAuth({ token: jwt, roles });
     };
 
-    const logout = () => {
+    const clearSession = () => {
         localStorage.removeItem('token');
+        localStorage.removeItem('refreshToken');
         setAuth({ token: null, roles: [] });
     };
 
+    // Revoke the refresh token on the server so it cannot be replayed, then drop the local session either way
+    const logout = async () => {
+        const refreshToken = localStorage.getItem('refreshToken');
+        if (refreshToken) {
+            try {
+                await axiosInstance.post(`${apiUrl}/api/auth/logout`, { refreshToken });
+            } catch (error) {
+                console.error('Failed to revoke refresh token', error);
+            }
+        }
+        clearSession();
+    };
+
     const isAuthenticated = !!auth.token;
 
     return (
@@ -0,0 +1,78 @@
+import axiosInstance from '../axios/axiosInstance';
+
+const MAX_ATTEMPTS = 5;
+
+// Remembers the upload session of a file, so a reload or a dropped connection resumes instead of starting over
+const sessionKey = (file) => `upload:${file.name}:${file.size}:${file.lastModified}`;
+
+const toHex = (buffer) => Array.from(new Uint8Array(buffer))
+    .map((b) => b.toString(16).padStart(2, '0'))
+    .join('');
+
+const sleep = (ms) => new Promise((resolve) => setTimeout(resolve, ms));
+
+const openSession = async (baseUrl, file, mode, headers) => {
+    const key = sessionKey(file);
+    const existing = localStorage.getItem(key);
+    if (existing) {
+        try {
+            const response = await axiosInstance.get(`${baseUrl}/${existing}`, { headers });
+            return response.data;
+        } catch (error) {
+            // The session expired or the server restarted; start a new one
+            localStorage.removeItem(key);
+        }
+    }
+    const response = await axiosInstance.post(baseUrl, { mode, totalSize: file.size }, { headers });
+    localStorage.setItem(key, response.data.uploadId);
+    return response.data;
+};
+
+const sendChunk = async (baseUrl, uploadId, index, blob, headers) => {
+    const body = await blob.arrayBuffer();
+    const checksum = toHex(await crypto.subtle.digest('SHA-256', body));
+    for (let attempt = 1; ; attempt++) {
+        try {
+            await axiosInstance.put(`${baseUrl}/${uploadId}/chunks/${index}`, body, {
+                headers: { ...headers, 'Content-Type': 'application/octet-stream', 'X-Chunk-SHA256': checksum },
+            });
+            return;
+        } catch (error) {
+            const status = error.response?.status;
+            // Client errors other than a conflict will not succeed on retry
+            if (attempt >= MAX_ATTEMPTS || (status >= 400 && status < 500 && status !== 409)) {
+                throw error;
+            }
+            await sleep(Math.min(1000 * 2 ** (attempt - 1), 10000));
+        }
+    }
+};
+
+/**
+ * Uploads a CSV file through the resumable upload API: the file is sent in checksummed chunks, failed chunks
+ * are retried, and an interrupted upload of the same file resumes from the first chunk the server is missing.
+ * The import runs once every chunk has arrived.
+ *
+ * @param {string} apiUrl the backend base URL
+ * @param {string} token the access token
+ * @param {File} file the CSV file to upload
+ * @param {object} options the import mode and a progress callback receiving the fraction of bytes sent
+ * @returns {Promise<object>} the import result
+ */
+export const uploadInChunks = async (apiUrl, token, file, { mode = 'merge', onProgress = () => {} } = {}) => {
+    const baseUrl = `${apiUrl}/api/users/uploads`;
+    const headers = { Authorization: `Bearer ${token}` };
+    const session = await openSession(baseUrl, file, mode, headers);
+    const { uploadId, chunkSize } = session;
+    const chunkCount = Math.max(1, Math.ceil(file.size / chunkSize));
+
+    for (let index = session.nextChunk; index < chunkCount; index++) {
+        onProgress(Math.min(1, (index * chunkSize) / file.size));
+        await sendChunk(baseUrl, uploadId, index, file.slice(index * chunkSize, (index + 1) * chunkSize), headers);
+    }
+    onProgress(1);
+
+    const response = await axiosInstance.post(`${baseUrl}/${uploadId}/commit`, null, { headers });
+    localStorage.removeItem(sessionKey(file));
+    return response.data;
+};
@@ -0,0 +1,71 @@
+import { refreshAccessToken } from '../axios/axiosInstance';
+
+// Subscribes to the backend user change stream. EventSource cannot send an Authorization header,
+// so the text/event-stream body is read through fetch and parsed here. Each connection reads the
+// current access token; a 401 goes through the shared refresh and reconnects with the new token,
+// and when the refresh fails (which signs the user out) or the new token is refused too, the
+// stream stops instead of retrying.
+export const subscribeToUserEvents = (apiUrl, onEvents) => {
+    const controller = new AbortController();
+    let retryDelay = 1000;
+    let refreshed = false;
+
+    const connect = async () => {
+        try {
+            const response = await fetch(`${apiUrl}/api/users/events`, {
+                headers: { Authorization: `Bearer ${localStorage.getItem('token')}`, Accept: 'text/event-stream' },
+                credentials: 'include',
+                signal: controller.signal,
+            });
+            if (response.status === 401) {
+                if (refreshed) {
+                    window.dispatchEvent(new CustomEvent('auth:logout'));
+                    return;
+                }
+                refreshed = true;
+                try {
+                    await refreshAccessToken();
+                } catch (error) {
+                    console.error('User event stream stopped, session could not be refreshed:', error);
+                    return;
+                }
+                if (!controller.signal.aborted) connect();
+                return;
+            }
+            if (!response.ok) {
+                throw new Error(`Event stream failed with status ${response.status}`);
+            }
+            retryDelay = 1000;
+            refreshed = false;
+            const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+            let buffer = '';
+            for (;;) {
+                const { value, done } = await reader.read();
+                if (done) break;
+                buffer += value;
+                let boundary;
+                while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+                    const frame = buffer.slice(0, boundary);
+                    buffer = buffer.slice(boundary + 2);
+                    const data = frame.split('\n')
+                        .filter((line) => line.startsWith('data:'))
+                        .map((line) => line.slice(5))
+                        .join('\n');
+                    if (data) {
+                        onEvents(JSON.parse(data));
+                    }
+                }
+            }
+        } catch (error) {
+            if (controller.signal.aborted) return;
+            console.error('User event stream disconnected:', error);
+        }
+        if (!controller.signal.aborted) {
+            setTimeout(connect, retryDelay);
+            retryDelay = Math.min(retryDelay * 2, 30000);
+        }
+    };
+
+    connect();
+    return () => controller.abort();
+};